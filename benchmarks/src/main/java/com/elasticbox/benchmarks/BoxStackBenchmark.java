@@ -0,0 +1,68 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.benchmarks;
+
+import com.elasticbox.BoxStack;
+import com.elasticbox.Client;
+
+import net.sf.json.JSONArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flattens the box stack of an instance, which every build step that deploys or updates instances does at least
+ * once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class BoxStackBenchmark {
+
+    @Param({ "4", "16", "64" })
+    public int depth;
+
+    @Param({ "20" })
+    public int variablesPerBox;
+
+    private Client client;
+    private JSONArray boxes;
+    private String boxId;
+
+    @Setup
+    public void setup() {
+        client = new OfflineClient();
+        boxes = Payloads.boxStack("box", depth, variablesPerBox);
+        boxId = boxes.getJSONObject(0).getString("id");
+    }
+
+    @Benchmark
+    public JSONArray toJsonArray() {
+        return new BoxStack(boxId, boxes, client).toJsonArray();
+    }
+
+}
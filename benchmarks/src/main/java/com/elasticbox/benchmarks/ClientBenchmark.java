@@ -0,0 +1,82 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.benchmarks;
+
+import com.elasticbox.Client;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges new variable values into an instance with {@link Client#updateInstance(JSONObject, JSONArray)}, which looks
+ * every variable up among the variables of the instance and of its box stack. The update itself isn't sent.
+ *
+ * <p>The merge adds the variables to the instance, so every invocation starts from a fresh copy of the instance. The
+ * copy isn't measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ClientBenchmark {
+
+    @Param({ "4", "16" })
+    public int depth;
+
+    @Param({ "20" })
+    public int variablesPerBox;
+
+    @Param({ "10", "200" })
+    public int updatedVariables;
+
+    private Client client;
+    private JSONObject template;
+    private JSONArray variables;
+    private JSONObject instance;
+
+    @Setup
+    public void setup() {
+        client = new OfflineClient();
+        template = Payloads.instance(0, Payloads.boxStack("box", depth, variablesPerBox), Payloads.policyBox("policy"));
+        variables = Payloads.variableUpdates(updatedVariables, depth, variablesPerBox);
+    }
+
+    @Setup(Level.Invocation)
+    public void copyInstance() {
+        instance = JSONObject.fromObject(template);
+    }
+
+    @Benchmark
+    public JSONObject updateInstanceVariables() throws IOException {
+        return client.updateInstance(instance, variables);
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.benchmarks;
+
+import com.elasticbox.Client;
+import com.elasticbox.jenkins.DescriptorHelper;
+import com.elasticbox.jenkins.util.CompositeObjectFilter;
+import com.elasticbox.jenkins.util.ObjectFilter;
+
+import net.sf.json.JSONArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the instances of a workspace through {@link DescriptorHelper#getInstances(Client, String, ObjectFilter)} with
+ * the filters of the build steps, from the parsing of the listing to the sorting of the accepted instances.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class DescriptorHelperBenchmark {
+
+    @Param({ "1000", "5000" })
+    public int instances;
+
+    @Param({ "4" })
+    public int depth;
+
+    @Param({ "10" })
+    public int variablesPerBox;
+
+    private Client client;
+    private ObjectFilter tagFilter;
+    private ObjectFilter tagPatternFilter;
+    private ObjectFilter boxFilter;
+    private ObjectFilter tagAndBoxFilter;
+
+    @Setup
+    public void setup() {
+        client = new OfflineClient(Payloads.listing(Payloads.instances(instances, depth, variablesPerBox)));
+        tagFilter = new DescriptorHelper.InstanceFilterByTags(
+                new HashSet<String>(Arrays.asList(Payloads.TAG, "group-3")), true);
+        tagPatternFilter = new DescriptorHelper.InstanceFilterByTags(
+                new HashSet<String>(Arrays.asList("/slave-1[0-9]*/", "/group-[0-4]/")), false);
+        // a box nested in the stack, so the filter has to look past the main box
+        boxFilter = new DescriptorHelper.InstanceFilterByBox(Payloads.boxId("box-3", depth - 1));
+        tagAndBoxFilter = new CompositeObjectFilter(
+                new DescriptorHelper.InstanceFilterByTags(new HashSet<String>(Arrays.asList(Payloads.TAG)), false),
+                boxFilter);
+    }
+
+    @Benchmark
+    public JSONArray filterByTags() {
+        return DescriptorHelper.getInstances(client, Payloads.WORKSPACE, tagFilter);
+    }
+
+    @Benchmark
+    public JSONArray filterByTagPatterns() {
+        return DescriptorHelper.getInstances(client, Payloads.WORKSPACE, tagPatternFilter);
+    }
+
+    @Benchmark
+    public JSONArray filterByBox() {
+        return DescriptorHelper.getInstances(client, Payloads.WORKSPACE, boxFilter);
+    }
+
+    @Benchmark
+    public JSONArray filterByTagsAndBox() {
+        return DescriptorHelper.getInstances(client, Payloads.WORKSPACE, tagAndBoxFilter);
+    }
+
+}
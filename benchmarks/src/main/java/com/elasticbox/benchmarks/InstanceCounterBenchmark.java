@@ -0,0 +1,68 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.benchmarks;
+
+import com.elasticbox.InstanceSnapshot;
+import com.elasticbox.jenkins.SlaveConfiguration;
+import com.elasticbox.jenkins.SlaveInstanceManager;
+import com.elasticbox.jenkins.util.SlaveInstance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the instances of a slave configuration with {@link SlaveInstance.InstanceCounter}, which looks the slave of
+ * every active instance up in the slave registry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class InstanceCounterBenchmark {
+
+    @Param({ "1000", "3000" })
+    public int slaves;
+
+    private List<InstanceSnapshot> instances;
+    private SlaveConfiguration slaveConfig;
+
+    @Setup
+    public void setup(JenkinsState jenkins) throws Exception {
+        jenkins.addSlaves(slaves);
+        instances = SlaveInstanceManager.getInstance().getInstances(jenkins.getCloud());
+        slaveConfig = jenkins.getSlaveConfiguration();
+        if (new SlaveInstance.InstanceCounter(instances).count(slaveConfig) != slaves) {
+            throw new IllegalStateException("The instances are not counted for the slave configuration");
+        }
+    }
+
+    @Benchmark
+    public int count() {
+        return new SlaveInstance.InstanceCounter(instances).count(slaveConfig);
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.benchmarks;
+
+import com.elasticbox.Client;
+import com.elasticbox.DeploymentRequest;
+import com.elasticbox.IProgressMonitor;
+import com.elasticbox.jenkins.ElasticBoxCloud;
+import com.elasticbox.jenkins.ElasticBoxSlave;
+import com.elasticbox.jenkins.ElasticBoxSlaveRegistry;
+import com.elasticbox.jenkins.SlaveConfiguration;
+import com.elasticbox.jenkins.model.services.deployment.DeploymentType;
+import com.elasticbox.jenkins.tests.ElasticBoxSimulator;
+import hudson.model.Node;
+
+import org.junit.runner.Description;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jenkins with an ElasticBox cloud backed by the {@link ElasticBoxSimulator}, for the benchmarks of the paths that
+ * read the nodes of Jenkins. The Jenkins instance is started once per trial and its start isn't measured.
+ */
+@State(Scope.Benchmark)
+public class JenkinsState {
+    public static final String LABEL = "elasticbox-benchmark";
+
+    // the slaves never connect, they must outlive the trial without being terminated
+    private static final int RETENTION_MINUTES = (int) TimeUnit.DAYS.toMinutes(1);
+
+    private ElasticBoxSimulator simulator;
+    private JenkinsRule jenkins;
+    private ElasticBoxCloud cloud;
+    private SlaveConfiguration slaveConfig;
+    private String boxId;
+    private String policyId;
+
+    @Setup(Level.Trial)
+    public void start() throws Throwable {
+        simulator = new ElasticBoxSimulator(8);
+        simulator.setLifecycle(0, 0, 0);
+        simulator.start();
+
+        jenkins = new JenkinsRule() {
+            {
+                timeout = 0;
+                testDescription = Description.createTestDescription(JenkinsState.class, "benchmark");
+            }
+        };
+        jenkins.before();
+
+        boxId = simulator.addSlaveBox("Benchmark Slave");
+        policyId = simulator.addPolicy("Benchmark Policy", Arrays.asList("linux"));
+        slaveConfig = new SlaveConfiguration(UUID.randomUUID().toString(), ElasticBoxSimulator.WORKSPACE, boxId,
+                boxId, policyId, null, null, null, 0, Integer.MAX_VALUE, Payloads.TAG, "[]", LABEL, "Benchmark",
+                "/home/jenkins", Node.Mode.EXCLUSIVE, RETENTION_MINUTES, null, 1, RETENTION_MINUTES,
+                DeploymentType.SCRIPTBOX_DEPLOYMENT_TYPE.getValue());
+        cloud = new ElasticBoxCloud("elasticbox-benchmark-" + UUID.randomUUID(), "ElasticBox Simulator",
+                simulator.getEndpointUrl(), Integer.MAX_VALUE, ElasticBoxSimulator.TOKEN,
+                Collections.singletonList(slaveConfig));
+        jenkins.getInstance().clouds.add(cloud);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        try {
+            jenkins.after();
+        } finally {
+            simulator.stop();
+        }
+    }
+
+    public JenkinsRule getJenkins() {
+        return jenkins;
+    }
+
+    public ElasticBoxCloud getCloud() {
+        return cloud;
+    }
+
+    public SlaveConfiguration getSlaveConfiguration() {
+        return slaveConfig;
+    }
+
+    /**
+     * Adds slaves of the cloud to Jenkins, each one with its instance deployed in the simulator.
+     */
+    public List<ElasticBoxSlave> addSlaves(int count) throws Exception {
+        Client client = cloud.getClient();
+        List<ElasticBoxSlave> slaves = new ArrayList<ElasticBoxSlave>(count);
+        List<DeploymentRequest> requests = new ArrayList<DeploymentRequest>(count);
+        for (int i = 0; i < count; i++) {
+            ElasticBoxSlave slave = new ElasticBoxSlave(slaveConfig, cloud);
+            slaves.add(slave);
+            requests.add(new DeploymentRequest.DeploymentRequestBuilder()
+                    .withBox(boxId, "Benchmark Slave")
+                    .withPolicy(policyId)
+                    .withWorkspace(ElasticBoxSimulator.WORKSPACE)
+                    .withTags(Arrays.asList(slave.getNodeName(), Payloads.TAG))
+                    .build());
+        }
+
+        List<IProgressMonitor> monitors = client.deploy(requests);
+        for (int i = 0; i < count; i++) {
+            slaves.get(i).setInstanceUrl(monitors.get(i).getResourceUrl());
+        }
+
+        List<Node> nodes = new ArrayList<Node>(jenkins.getInstance().getNodes());
+        nodes.addAll(slaves);
+        jenkins.getInstance().setNodes(nodes);
+        ElasticBoxSlaveRegistry.nodesChanged();
+        return slaves;
+    }
+
+}
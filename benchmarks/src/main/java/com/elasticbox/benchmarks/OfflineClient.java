@@ -0,0 +1,56 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.benchmarks;
+
+import com.elasticbox.Client;
+import com.elasticbox.InstanceListingParser;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Client that never sends a request: the instance listings are parsed from a fixed response body and the instance
+ * updates are returned as they are sent, so the benchmarks measure the plugin and not the network.
+ */
+public class OfflineClient extends Client {
+    private final byte[] listing;
+
+    public OfflineClient() {
+        this(Payloads.listing(new JSONArray()));
+    }
+
+    /**
+     * @param listing body of the response of every instance listing
+     */
+    public OfflineClient(byte[] listing) {
+        super(Payloads.ENDPOINT_URL, "benchmark-token");
+        this.listing = listing;
+    }
+
+    @Override
+    public void streamInstances(String workspaceId, List<String> instanceIDs, Collection<String> fields,
+                                InstanceListingParser.InstanceHandler handler) throws IOException {
+        new InstanceListingParser(fields).parse(new ByteArrayInputStream(listing), handler);
+    }
+
+    @Override
+    public JSONObject updateInstance(JSONObject instance) {
+        return instance;
+    }
+
+}
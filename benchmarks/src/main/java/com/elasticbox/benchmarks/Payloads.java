@@ -0,0 +1,290 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.benchmarks;
+
+import com.elasticbox.Constants;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Synthetic ElasticBox payloads with the shape of the responses of the API. The payloads are deterministic, so the
+ * numbers of different runs can be compared.
+ */
+public final class Payloads {
+    public static final String ENDPOINT_URL = "https://elasticbox.benchmark";
+    public static final String WORKSPACE = "benchmark";
+    public static final String TAG = "benchmark";
+
+    /**
+     * Number of different box stacks the instances are deployed from.
+     */
+    public static final int BOX_GROUPS = 10;
+
+    /**
+     * Name of the variables of type Box that nest each box of a stack into the previous one.
+     */
+    static final String NESTED_BOX_VARIABLE = "nested";
+
+    private static final String[] VARIABLE_TYPES = { "Text", "Text", "Port", "Number", "Password", "Options" };
+
+    private Payloads() {
+    }
+
+    public static JSONObject variable(String name, String type, String value, String scope) {
+        JSONObject variable = new JSONObject();
+        variable.put("name", name);
+        variable.put("type", type);
+        variable.put("value", value);
+        variable.put("scope", scope);
+        variable.put("visibility", "public");
+        return variable;
+    }
+
+    /**
+     * Returns the boxes of a stack as they are listed in the <code>boxes</code> of an instance: the first box is the
+     * main box and every box but the last one nests the next one with a variable of type Box. Every box also
+     * overrides a couple of the variables of the box it nests.
+     *
+     * @param prefix prefix of the IDs of the boxes
+     * @param depth number of boxes of the stack
+     * @param variablesPerBox number of variables of each box, besides the Box variable and the overrides
+     */
+    public static JSONArray boxStack(String prefix, int depth, int variablesPerBox) {
+        JSONArray boxes = new JSONArray();
+        for (int level = 0; level < depth; level++) {
+            JSONArray variables = new JSONArray();
+            for (int i = 0; i < variablesPerBox; i++) {
+                variables.add(variable("var-" + i, VARIABLE_TYPES[i % VARIABLE_TYPES.length], "value-" + i, ""));
+            }
+            if (level < depth - 1) {
+                variables.add(variable(NESTED_BOX_VARIABLE, "Box", boxId(prefix, level + 1), ""));
+                for (int i = 0; i < Math.min(2, variablesPerBox); i++) {
+                    variables.add(variable("var-" + i, VARIABLE_TYPES[i % VARIABLE_TYPES.length],
+                            "overridden-" + i, NESTED_BOX_VARIABLE));
+                }
+            }
+            boxes.add(scriptBox(boxId(prefix, level), prefix + " level " + level, variables));
+        }
+        return boxes;
+    }
+
+    public static String boxId(String prefix, int level) {
+        return prefix + '-' + level;
+    }
+
+    /**
+     * Returns the scope of the variables of the box at the specified level of a stack built by
+     * {@link #boxStack(String, int, int)}.
+     */
+    public static String scope(int level) {
+        StringBuilder scope = new StringBuilder();
+        for (int i = 0; i < level; i++) {
+            if (i > 0) {
+                scope.append('.');
+            }
+            scope.append(NESTED_BOX_VARIABLE);
+        }
+        return scope.toString();
+    }
+
+    public static JSONObject scriptBox(String id, String name, JSONArray variables) {
+        JSONObject box = new JSONObject();
+        box.put("id", id);
+        box.put("name", name);
+        box.put("schema", Constants.BASE_ELASTICBOX_SCHEMA + "boxes/script");
+        box.put("owner", WORKSPACE);
+        box.put("icon", "images/" + id + ".png");
+        box.put("requirements", Arrays.asList("linux", "jenkins"));
+        box.put("members", Arrays.asList(member("collaborator", "team-" + id), member("read", "reader-" + id)));
+        box.put("variables", variables);
+        box.put("updated", "2016-06-01 10:00:00.000000");
+        return box;
+    }
+
+    public static JSONObject policyBox(String id) {
+        JSONObject profile = new JSONObject();
+        profile.put("schema", Constants.BASE_ELASTICBOX_SCHEMA + "profiles/aws/ec2/profile");
+        profile.put("instances", 1);
+
+        JSONObject box = new JSONObject();
+        box.put("id", id);
+        box.put("name", "Policy " + id);
+        box.put("schema", Constants.BASE_ELASTICBOX_SCHEMA + "boxes/policy");
+        box.put("owner", WORKSPACE);
+        box.put("claims", Arrays.asList("linux", "large", id));
+        box.put("profile", profile);
+        box.put("provider_id", "provider-" + id);
+        box.put("members", new JSONArray());
+        box.put("variables", new JSONArray());
+        return box;
+    }
+
+    /**
+     * Returns an instance deployed from the boxes, with its own values for half of the variables of the main box.
+     * One in ten instances is being terminated and a few are processing or unavailable.
+     */
+    public static JSONObject instance(int index, JSONArray boxes, JSONObject policyBox) {
+        String id = "i-" + index;
+        JSONObject mainBox = boxes.getJSONObject(0);
+        JSONArray mainBoxVariables = mainBox.getJSONArray("variables");
+        JSONArray variables = new JSONArray();
+        for (int i = 0; i < mainBoxVariables.size() / 2; i++) {
+            JSONObject variable = JSONObject.fromObject(mainBoxVariables.getJSONObject(i));
+            if (!"Box".equals(variable.getString("type"))) {
+                variable.put("value", "instance-value-" + i);
+                variables.add(variable);
+            }
+        }
+
+        JSONObject operation = new JSONObject();
+        operation.put("event", index % 10 == 9 ? "terminate" : "deploy");
+        operation.put("workspace", WORKSPACE);
+        operation.put("created", "2016-06-01 10:00:00.000000");
+
+        JSONObject service = new JSONObject();
+        service.put("id", "eb-" + Integer.toString(index, 36));
+
+        JSONObject instance = new JSONObject();
+        instance.put("id", id);
+        instance.put("name", "Instance " + index);
+        instance.put("schema", Constants.BASE_ELASTICBOX_SCHEMA + "instance");
+        instance.put("uri", "/services/instances/" + id);
+        instance.put("owner", WORKSPACE);
+        instance.put("box", mainBox.getString("id"));
+        instance.put("boxes", boxes);
+        instance.put("policy_box", policyBox);
+        instance.put("variables", variables);
+        instance.put("automatic_updates", "off");
+        instance.put("state", index % 50 == 7 ? "unavailable" : index % 20 == 3 ? "processing" : "done");
+        instance.put("operation", operation);
+        instance.put("service", service);
+        instance.put("tags", Arrays.asList("slave-" + index, "group-" + index % BOX_GROUPS, TAG));
+        instance.put("updated", "2016-06-01 10:00:00.000000");
+        return instance;
+    }
+
+    /**
+     * Returns the instances of a workspace, deployed from {@link #BOX_GROUPS} different box stacks. The boxes of the
+     * stack of the group <code>n</code> have the IDs <code>box-n-0</code>, <code>box-n-1</code> and so on.
+     */
+    public static JSONArray instances(int count, int depth, int variablesPerBox) {
+        JSONArray[] stacks = new JSONArray[BOX_GROUPS];
+        for (int i = 0; i < BOX_GROUPS; i++) {
+            stacks[i] = boxStack("box-" + i, depth, variablesPerBox);
+        }
+        JSONObject policyBox = policyBox("policy");
+        JSONArray instances = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            instances.add(instance(i, stacks[i % BOX_GROUPS], policyBox));
+        }
+        return instances;
+    }
+
+    /**
+     * Returns the instances as the body of the response of an instance listing.
+     */
+    public static byte[] listing(JSONArray instances) {
+        return instances.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns boxes of the different types, one policy box for every four script boxes.
+     */
+    public static JSONArray boxes(int count, int variablesPerBox) {
+        JSONArray boxes = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            if (i % 5 == 4) {
+                boxes.add(policyBox("policy-" + i));
+            } else {
+                boxes.add(boxStack("script-" + i, 1, variablesPerBox).getJSONObject(0));
+            }
+        }
+        return boxes;
+    }
+
+    /**
+     * Returns workspaces, one personal workspace for every four team workspaces.
+     */
+    public static JSONArray workspaces(int count) {
+        JSONArray workspaces = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            JSONObject workspace = new JSONObject();
+            workspace.put("id", "workspace-" + i);
+            workspace.put("name", "Workspace " + i);
+            if (i % 5 == 4) {
+                workspace.put("schema", Constants.BASE_ELASTICBOX_SCHEMA + "workspaces/personal");
+                workspace.put("organization", "elasticbox");
+                workspace.put("email", "user-" + i + "@elasticbox.com");
+            } else {
+                workspace.put("schema", Constants.BASE_ELASTICBOX_SCHEMA + "workspaces/team");
+                workspace.put("organizations", Arrays.asList("elasticbox", "organization-" + i % 3));
+            }
+            workspaces.add(workspace);
+        }
+        return workspaces;
+    }
+
+    /**
+     * Returns new values for variables of every box of a stack built by {@link #boxStack(String, int, int)}, with
+     * the scopes the variables have in the box stack.
+     */
+    public static JSONArray variableUpdates(int count, int depth, int variablesPerBox) {
+        JSONArray variables = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            int level = i % depth;
+            int index = i / depth % variablesPerBox;
+            variables.add(variable("var-" + index, VARIABLE_TYPES[index % VARIABLE_TYPES.length], "updated-" + i,
+                    scope(level)));
+        }
+        return variables;
+    }
+
+    /**
+     * Returns the variables of a build step as they are saved in its configuration, with references to build
+     * variables, bindings to tagged instances and files.
+     */
+    public static String buildStepVariables(int count) {
+        JSONArray variables = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            String scope = i % 3 == 0 ? "" : scope(i % 3);
+            switch (i % 4) {
+                case 0:
+                    variables.add(variable("text-" + i, "Text", "${JOB_NAME}-${BUILD_NUMBER}-" + i, scope));
+                    break;
+                case 1:
+                    variables.add(variable("binding-" + i, "Binding", "(" + TAG + ",${BUILD_TAG},group-" + i + ")",
+                            scope));
+                    break;
+                case 2:
+                    variables.add(variable("file-" + i, "File", "${WORKSPACE}/config-" + i + ".json", scope));
+                    break;
+                default:
+                    variables.add(variable("port-" + i, "Port", String.valueOf(8000 + i), scope));
+                    break;
+            }
+        }
+        return variables.toString();
+    }
+
+    private static JSONObject member(String role, String workspace) {
+        JSONObject member = new JSONObject();
+        member.put("role", role);
+        member.put("workspace", workspace);
+        return member;
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.benchmarks;
+
+import com.elasticbox.jenkins.model.box.AbstractBox;
+import com.elasticbox.jenkins.model.instance.Instance;
+import com.elasticbox.jenkins.model.repository.api.deserializer.Utils;
+import com.elasticbox.jenkins.model.repository.api.deserializer.transformer.boxes.BoxFactory;
+import com.elasticbox.jenkins.model.repository.api.deserializer.transformer.instances.InstanceTransformer;
+import com.elasticbox.jenkins.model.repository.api.deserializer.transformer.workspaces.WorkspaceTransformer;
+import com.elasticbox.jenkins.model.workspace.AbstractWorkspace;
+
+import net.sf.json.JSONArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns the JSON of the API into the model of the repositories with the deserializer transformers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class TransformerBenchmark {
+
+    @Param({ "1000" })
+    public int count;
+
+    @Param({ "4" })
+    public int depth;
+
+    @Param({ "10" })
+    public int variablesPerBox;
+
+    private JSONArray instances;
+    private JSONArray boxes;
+    private JSONArray workspaces;
+
+    @Setup
+    public void setup() {
+        instances = Payloads.instances(count, depth, variablesPerBox);
+        boxes = Payloads.boxes(count, variablesPerBox);
+        workspaces = Payloads.workspaces(count);
+    }
+
+    @Benchmark
+    public List<Instance> transformInstances() {
+        return Utils.transform(instances, new InstanceTransformer());
+    }
+
+    @Benchmark
+    public List<AbstractBox> transformBoxes() {
+        return Utils.transform(boxes, new BoxFactory());
+    }
+
+    @Benchmark
+    public List<AbstractWorkspace> transformWorkspaces() {
+        return Utils.transform(workspaces, new WorkspaceTransformer());
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.benchmarks;
+
+import com.elasticbox.jenkins.util.VariableResolver;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.TaskListener;
+
+import net.sf.json.JSONArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the variables of a build step against the variables of a finished build, the way the build steps do
+ * before they deploy or update instances.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class VariableResolverBenchmark {
+
+    @Param({ "20", "500" })
+    public int variables;
+
+    private VariableResolver resolver;
+    private String buildStepVariables;
+
+    @Setup
+    public void setup(JenkinsState jenkins) throws Exception {
+        FreeStyleProject project = jenkins.getJenkins().createFreeStyleProject();
+        project.setAssignedLabel(jenkins.getJenkins().getInstance().getSelfLabel());
+        FreeStyleBuild build = jenkins.getJenkins().buildAndAssertSuccess(project);
+        resolver = new VariableResolver(build, TaskListener.NULL);
+        buildStepVariables = Payloads.buildStepVariables(variables);
+    }
+
+    @Benchmark
+    public JSONArray resolveVariables() throws IOException {
+        return resolver.resolveVariables(buildStepVariables);
+    }
+
+}
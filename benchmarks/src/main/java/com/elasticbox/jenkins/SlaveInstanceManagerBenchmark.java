@@ -0,0 +1,83 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import com.elasticbox.InstanceSnapshot;
+import com.elasticbox.benchmarks.JenkinsState;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the state of a {@link SlaveInstanceManager} from the slaves of Jenkins and the instance listing of their
+ * workspace. The benchmark lives in the package of the manager to create new managers.
+ *
+ * <p>The listing is fetched from the simulator once, during the setup, and then served by the listing cache of the
+ * client for the rest of the trial, so the numbers don't include the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Delasticbox.instanceListingCache.ttl=86400000")
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class SlaveInstanceManagerBenchmark {
+
+    @Param({ "1000", "3000" })
+    public int slaves;
+
+    private ElasticBoxCloud cloud;
+    private SlaveInstanceManager manager;
+
+    @Setup
+    public void setup(JenkinsState jenkins) throws Exception {
+        jenkins.addSlaves(slaves);
+        cloud = jenkins.getCloud();
+        manager = new SlaveInstanceManager();
+        if (manager.getInstances(cloud).size() != slaves) {
+            throw new IllegalStateException("The instances of the slaves are not listed");
+        }
+    }
+
+    /**
+     * Creates a manager and reads the instances of the cloud, like the first workload after Jenkins starts.
+     */
+    @Benchmark
+    public List<InstanceSnapshot> construct() throws IOException {
+        return new SlaveInstanceManager().getInstances(cloud);
+    }
+
+    /**
+     * Rebuilds the state of an existing manager after the nodes of Jenkins change.
+     */
+    @Benchmark
+    public List<InstanceSnapshot> rebuildAfterNodesChanged() throws IOException {
+        ElasticBoxSlaveRegistry.nodesChanged();
+        manager.refresh();
+        return manager.getInstances(cloud);
+    }
+
+}
@@ -12,10 +12,15 @@
 
 package com.elasticbox;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import net.sf.json.JSONObject;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public abstract class AbstractProgressMonitor implements IProgressMonitor {
     private final String resourceUrl;
@@ -45,24 +50,57 @@ public abstract class AbstractProgressMonitor implements IProgressMonitor {
         return isDone(getResource());
     }
 
+    /**
+     * Returns the workspace of the monitored instance when the resource can be fetched together with other instances
+     * of the same workspace, null otherwise.
+     */
+    protected String getWorkspaceId() {
+        return null;
+    }
+
+    protected InstanceStateWatcher getStateWatcher() {
+        return InstanceStateWatcher.DEFAULT;
+    }
+
+    /**
+     * Starts watching the monitored resource without waiting for it. The returned future completes like
+     * {@link #waitForDone} but without timeout, the caller stops the watch with {@link #cancelWatch} when it gives up.
+     */
+    public ListenableFuture<Void> watch() {
+        return getStateWatcher().watch(this);
+    }
+
+    public void cancelWatch() {
+        getStateWatcher().cancel(this);
+    }
+
     public void waitForDone(int timeout)
             throws IProgressMonitor.IncompleteException, IOException, InterruptedException {
 
-        long startTime = System.currentTimeMillis();
-        long remainingTime = timeout * 60000;
-        do {
-            if (isDone()) {
-                return;
+        InstanceStateWatcher watcher = getStateWatcher();
+        Future<Void> done = watcher.watch(this);
+        try {
+            if (timeout <= 0) {
+                done.get();
+            } else {
+                done.get(timeout, TimeUnit.MINUTES);
             }
-
-            synchronized (this) {
-                wait(1000);
+            return;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
             }
-
-            long currentTime = System.currentTimeMillis();
-            remainingTime =  remainingTime - (currentTime - startTime);
-            startTime = currentTime;
-        } while (timeout <= 0 || remainingTime > 0);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } catch (java.util.concurrent.TimeoutException ex) {
+            watcher.cancel(this);
+        } catch (InterruptedException ex) {
+            watcher.cancel(this);
+            throw ex;
+        }
 
         JSONObject resource = getResource();
         if (!isDone(resource)) {
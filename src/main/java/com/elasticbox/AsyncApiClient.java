@@ -0,0 +1,45 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * Non-blocking variant of {@link ApiClient}. The calls return immediately and the returned futures complete on the
+ * I/O threads of the HTTP engine, failing with the same {@link java.io.IOException} the blocking call would throw.
+ */
+public interface AsyncApiClient {
+
+    public ListenableFuture<JSONArray> getBoxVersions(String boxId);
+
+    public ListenableFuture<JSONArray> getAllBoxes(String workspaceId);
+
+    public ListenableFuture<JSONObject> getBox(String boxId);
+
+
+    public ListenableFuture<JSONObject> getInstance(String instanceId);
+
+    public ListenableFuture<JSONArray> getInstances(String workspaceId, List<String> instanceIDs);
+
+    public <T extends JSON> ListenableFuture<T> doPost(String url, JSONObject resource, boolean isArray);
+
+
+    public ListenableFuture<JSONArray> getWorkspaces();
+
+}
@@ -0,0 +1,504 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox;
+
+import com.elasticbox.jenkins.util.InstrumentedThreadPool;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.nio.client.HttpAsyncClient;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Non-blocking client for the ElasticBox API. Requests are multiplexed over a small number of I/O threads, so any
+ * number of calls can be in flight without holding a thread each. An instance is bound to a {@link Client}, whose
+ * endpoint, credentials and connection pool settings it shares, and is obtained with {@link Client#async()}.
+ *
+ * <p>The I/O threads never block: logging in to get a token, and renewing it after a request is rejected as
+ * unauthorized, run on a small pool of their own and the request is sent from there.</p>
+ *
+ * <p>It is used where many calls are made without a thread to spare for each, like the instance checks of the long
+ * operations and the force-termination of stuck slaves. The build steps keep the blocking {@link Client}, they run in
+ * the thread of their build and wait for the instances anyway.</p>
+ */
+public class AsyncClient implements AsyncApiClient {
+    private static final Logger LOGGER = Logger.getLogger(AsyncClient.class.getName());
+
+    private static final int AUTHENTICATION_THREADS =
+            Integer.getInteger("elasticbox.AsyncClient.authenticationThreads", 2);
+    private static final int AUTHENTICATION_QUEUE_SIZE =
+            Integer.getInteger("elasticbox.AsyncClient.authenticationQueueSize", 1000);
+
+    private static final ExecutorService authenticationPool = new InstrumentedThreadPool("authentication",
+            AUTHENTICATION_THREADS, AUTHENTICATION_QUEUE_SIZE, InstrumentedThreadPool.ABORT);
+
+    private final Client client;
+
+    AsyncClient(Client client) {
+        this.client = client;
+    }
+
+    public Client getClient() {
+        return client;
+    }
+
+    public ListenableFuture<JSONArray> getWorkspaces() {
+        return doGet(MessageFormat.format("{0}/services/workspaces", client.getEndpointUrl()), true);
+    }
+
+    public ListenableFuture<JSONArray> getAllBoxes(String workspaceId) {
+        try {
+            return doGet(MessageFormat.format("{0}/services/workspaces/{1}/boxes", client.getEndpointUrl(),
+                    URLEncoder.encode(workspaceId, Constants.UTF_8)), true);
+        } catch (IOException ex) {
+            return Futures.immediateFailedFuture(ex);
+        }
+    }
+
+    public ListenableFuture<JSONArray> getBoxVersions(String boxId) {
+        return doGet(MessageFormat.format("{0}/services/boxes/{1}/versions", client.getEndpointUrl(), boxId), true);
+    }
+
+    public ListenableFuture<JSONObject> getBox(String boxId) {
+        return doGet(MessageFormat.format("{0}/services/boxes/{1}", client.getEndpointUrl(), boxId), false);
+    }
+
+    public ListenableFuture<JSONObject> getInstance(String instanceId) {
+        if (StringUtils.isBlank(instanceId)) {
+            return Futures.immediateFailedFuture(new IOException("instanceId cannot be blank"));
+        }
+        return doGet(client.getInstanceUrl(instanceId), false);
+    }
+
+    public ListenableFuture<JSONArray> getInstances(String workspaceId, List<String> instanceIDs) {
+        return getInstances(workspaceId, instanceIDs, null);
+    }
+
+    /**
+     * Fetches the instances with the specified IDs, looking for them in one workspace after another until all of them
+     * are found.
+     */
+    public ListenableFuture<JSONArray> getInstances(List<String> instanceIDs) {
+        return getInstancesOfAllWorkspaces(instanceIDs, null);
+    }
+
+    /**
+     * Fetches the instances with the specified IDs like {@link #getInstances(List)}, with only the fields in
+     * {@link InstanceListingParser#SUMMARY_FIELDS}.
+     */
+    public ListenableFuture<JSONArray> getInstanceSummaries(List<String> instanceIDs) {
+        return getInstancesOfAllWorkspaces(instanceIDs, new InstanceListingParser(
+                InstanceListingParser.SUMMARY_FIELDS));
+    }
+
+    /**
+     * Fetches the instances of the specified monitors, with only the fields in
+     * {@link InstanceListingParser#SUMMARY_FIELDS}. The instances are fetched from the workspaces of their monitors at
+     * once, only the instances of the monitors that don't know their workspace are looked for in all workspaces.
+     */
+    public ListenableFuture<JSONArray> getInstanceSummaries(Collection<IProgressMonitor> monitors) {
+        Map<String, List<String>> workspaceIdToInstanceIDsMap = new HashMap<String, List<String>>();
+        List<String> otherInstanceIDs = new ArrayList<String>();
+        for (IProgressMonitor monitor : monitors) {
+            String instanceId = Client.getResourceId(monitor.getResourceUrl());
+            String workspaceId = monitor instanceof AbstractProgressMonitor
+                    ? ((AbstractProgressMonitor) monitor).getWorkspaceId() : null;
+            if (workspaceId == null) {
+                otherInstanceIDs.add(instanceId);
+                continue;
+            }
+            List<String> instanceIDs = workspaceIdToInstanceIDsMap.get(workspaceId);
+            if (instanceIDs == null) {
+                instanceIDs = new ArrayList<String>();
+                workspaceIdToInstanceIDsMap.put(workspaceId, instanceIDs);
+            }
+            instanceIDs.add(instanceId);
+        }
+
+        InstanceListingParser parser = new InstanceListingParser(InstanceListingParser.SUMMARY_FIELDS);
+        List<ListenableFuture<JSONArray>> futures = new ArrayList<ListenableFuture<JSONArray>>();
+        for (Map.Entry<String, List<String>> entry : workspaceIdToInstanceIDsMap.entrySet()) {
+            futures.add(getInstances(entry.getKey(), entry.getValue(), parser));
+        }
+        if (!otherInstanceIDs.isEmpty()) {
+            futures.add(getInstancesOfAllWorkspaces(otherInstanceIDs, parser));
+        }
+        return concat(futures);
+    }
+
+    private ListenableFuture<JSONArray> getInstances(String workspaceId, List<String> instanceIDs,
+                                                     InstanceListingParser parser) {
+        if (StringUtils.isBlank(workspaceId)) {
+            return Futures.immediateFailedFuture(new IOException("workspaceId cannot be blank"));
+        }
+
+        List<ListenableFuture<JSONArray>> batches = new ArrayList<ListenableFuture<JSONArray>>();
+        for (int start = 0; start < instanceIDs.size(); ) {
+            int end = Math.min(start + 800, instanceIDs.size());
+            StringBuilder ids = new StringBuilder();
+            for (int i = start; i < end; i++) {
+                ids.append(instanceIDs.get(i)).append(',');
+            }
+            String url = MessageFormat.format("/services/workspaces/{0}/instances?ids={1}", workspaceId,
+                    ids.toString());
+            if (parser == null) {
+                batches.add(this.<JSONArray>doGet(url, true));
+            } else {
+                HttpGet get = new HttpGet(prepareUrl(url));
+                get.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
+                batches.add(parseInstances(execute(get, true), parser));
+            }
+            start = end;
+        }
+
+        return concat(batches);
+    }
+
+    private ListenableFuture<JSONArray> getInstancesOfAllWorkspaces(final List<String> instanceIDs,
+                                                                    final InstanceListingParser parser) {
+        return Futures.transform(getWorkspaces(), new AsyncFunction<JSONArray, JSONArray>() {
+            public ListenableFuture<JSONArray> apply(JSONArray workspaces) {
+                List<String> workspaceIDs = new ArrayList<String>(workspaces.size());
+                for (Object workspace : workspaces) {
+                    workspaceIDs.add(((JSONObject) workspace).getString("id"));
+                }
+                return getInstancesOfWorkspaces(workspaceIDs.iterator(), new LinkedHashSet<String>(instanceIDs),
+                        new JSONArray(), parser);
+            }
+        });
+    }
+
+    /**
+     * Fetches the missing instances from the next workspace, until there are no more workspaces or missing instances.
+     */
+    private ListenableFuture<JSONArray> getInstancesOfWorkspaces(final Iterator<String> workspaceIDs,
+                                                                 final Set<String> missingInstanceIDs,
+                                                                 final JSONArray instances,
+                                                                 final InstanceListingParser parser) {
+        if (missingInstanceIDs.isEmpty() || !workspaceIDs.hasNext()) {
+            return Futures.immediateFuture(instances);
+        }
+
+        ListenableFuture<JSONArray> workspaceInstances = getInstances(workspaceIDs.next(),
+                new ArrayList<String>(missingInstanceIDs), parser);
+        return Futures.transform(workspaceInstances, new AsyncFunction<JSONArray, JSONArray>() {
+            public ListenableFuture<JSONArray> apply(JSONArray fetchedInstances) {
+                for (Object instance : fetchedInstances) {
+                    if (missingInstanceIDs.remove(((JSONObject) instance).getString("id"))) {
+                        instances.add(instance);
+                    }
+                }
+                return getInstancesOfWorkspaces(workspaceIDs, missingInstanceIDs, instances, parser);
+            }
+        });
+    }
+
+    /**
+     * Deploys an instance. The variables of type File are uploaded before this method returns, so the call blocks
+     * while uploading them.
+     */
+    public ListenableFuture<IProgressMonitor> deploy(String boxVersion, String policyId, String instanceName,
+                                                     String workspaceId, List<String> tags, JSONArray variables,
+                                                     String expirationTime, String expirationOperation,
+                                                     JSONArray policyVariables, String automaticUpdates) {
+
+        return deploy(new DeploymentRequest.DeploymentRequestBuilder()
+                .withBoxVersion(boxVersion)
+                .withPolicy(policyId)
+                .withName(instanceName)
+                .withWorkspace(workspaceId)
+                .withTags(tags)
+                .withVariables(variables)
+                .withExpiration(expirationTime, expirationOperation)
+                .withPolicyVariables(policyVariables)
+                .withAutomaticUpdates(automaticUpdates)
+                .build());
+    }
+
+    /**
+     * Deploys an instance, fetching the box version only if the request has neither the name of the instance nor the
+     * name of the box. The variables of type File are uploaded before this method returns, so the call blocks while
+     * uploading them.
+     */
+    public ListenableFuture<IProgressMonitor> deploy(final DeploymentRequest request) {
+        try {
+            client.prepareVariables(request.getVariables());
+        } catch (IOException ex) {
+            return Futures.immediateFailedFuture(ex);
+        }
+
+        ListenableFuture<String> name;
+        if (request.isNameResolved()) {
+            name = Futures.immediateFuture(null);
+        } else {
+            name = Futures.transform(getBox(request.getBoxVersion()), new AsyncFunction<JSONObject, String>() {
+                public ListenableFuture<String> apply(JSONObject box) {
+                    return Futures.immediateFuture(box.getString("name"));
+                }
+            });
+        }
+
+        return Futures.transform(name, new AsyncFunction<String, IProgressMonitor>() {
+            public ListenableFuture<IProgressMonitor> apply(String boxName) {
+                ListenableFuture<JSONObject> instance = doPost("/services/instances", request.toJson(boxName), false);
+                return toMonitor(instance, Collections.singleton(Client.InstanceOperation.DEPLOY));
+            }
+        });
+    }
+
+    public ListenableFuture<IProgressMonitor> terminate(final String instanceId) {
+        return Futures.transform(getInstance(instanceId), new AsyncFunction<JSONObject, IProgressMonitor>() {
+            public ListenableFuture<IProgressMonitor> apply(JSONObject instance) {
+                return doTerminate(instance, Client.getTerminateOperation(instance));
+            }
+        });
+    }
+
+    public ListenableFuture<IProgressMonitor> forceTerminate(final String instanceId) {
+        return Futures.transform(getInstance(instanceId), new AsyncFunction<JSONObject, IProgressMonitor>() {
+            public ListenableFuture<IProgressMonitor> apply(JSONObject instance) {
+                return doTerminate(instance, "force_terminate");
+            }
+        });
+    }
+
+    private ListenableFuture<IProgressMonitor> doTerminate(final JSONObject instance, String operation) {
+        HttpDelete delete = new HttpDelete(MessageFormat.format("{0}?operation={1}",
+                client.getInstanceUrl(instance.getString("id")), operation));
+        return Futures.transform(execute(delete, true), new AsyncFunction<HttpResponse, IProgressMonitor>() {
+            public ListenableFuture<IProgressMonitor> apply(HttpResponse response) {
+                client.getInstanceListingCache().invalidate(instance.optString("owner", null));
+                return Futures.immediateFuture(
+                        client.createInstanceMonitor(Client.TERMINATE_OPERATIONS, instance));
+            }
+        });
+    }
+
+    /**
+     * Waits for the future and returns its result, rethrowing the exception it failed with.
+     */
+    public static <V> V getResult(Future<V> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    public <T extends JSON> ListenableFuture<T> doGet(String url, final boolean isArray) {
+        HttpGet get = new HttpGet(prepareUrl(url));
+        get.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
+        return toJson(execute(get, true), isArray);
+    }
+
+    public <T extends JSON> ListenableFuture<T> doPost(String url, JSONObject resource, boolean isArray) {
+        HttpPost post = new HttpPost(prepareUrl(url));
+        post.setEntity(new StringEntity(resource.toString(), ContentType.APPLICATION_JSON));
+        return toJson(execute(post, true), isArray);
+    }
+
+    private String prepareUrl(String url) {
+        return url.startsWith("/") ? client.getEndpointUrl() + url : url;
+    }
+
+    private ListenableFuture<IProgressMonitor> toMonitor(ListenableFuture<JSONObject> instance,
+                                                         final Set<String> operations) {
+
+        return Futures.transform(instance, new AsyncFunction<JSONObject, IProgressMonitor>() {
+            public ListenableFuture<IProgressMonitor> apply(JSONObject instanceJson) {
+                client.getInstanceListingCache().invalidate(instanceJson.optString("owner", null));
+                return Futures.immediateFuture(client.createInstanceMonitor(operations, instanceJson));
+            }
+        });
+    }
+
+    private static <T extends JSON> ListenableFuture<T> toJson(ListenableFuture<HttpResponse> response,
+                                                               final boolean isArray) {
+
+        return Futures.transform(response, new AsyncFunction<HttpResponse, T>() {
+            public ListenableFuture<T> apply(HttpResponse httpResponse) throws IOException {
+                String body = Client.getResponseBodyAsString(httpResponse);
+                return Futures.immediateFuture(isArray ? (T) JSONArray.fromObject(body)
+                        : (T) JSONObject.fromObject(body));
+            }
+        });
+    }
+
+    private static ListenableFuture<JSONArray> parseInstances(ListenableFuture<HttpResponse> response,
+                                                              final InstanceListingParser parser) {
+
+        return Futures.transform(response, new AsyncFunction<HttpResponse, JSONArray>() {
+            public ListenableFuture<JSONArray> apply(HttpResponse httpResponse) throws IOException {
+                final JSONArray instances = new JSONArray();
+                if (httpResponse.getEntity() != null) {
+                    parser.parse(httpResponse.getEntity().getContent(), new InstanceListingParser.InstanceHandler() {
+                        public void handle(JSONObject instance) {
+                            instances.add(instance);
+                        }
+                    });
+                }
+                return Futures.immediateFuture(instances);
+            }
+        });
+    }
+
+    private static ListenableFuture<JSONArray> concat(List<ListenableFuture<JSONArray>> futures) {
+        return Futures.transform(Futures.allAsList(futures), new AsyncFunction<List<JSONArray>, JSONArray>() {
+            public ListenableFuture<JSONArray> apply(List<JSONArray> arrays) {
+                JSONArray result = new JSONArray();
+                for (JSONArray array : arrays) {
+                    result.addAll(array);
+                }
+                return Futures.immediateFuture(result);
+            }
+        });
+    }
+
+    private ListenableFuture<HttpResponse> execute(HttpRequestBase request, boolean retryUnauthorized) {
+        SettableFuture<HttpResponse> future = SettableFuture.create();
+        execute(request, retryUnauthorized, future);
+        return future;
+    }
+
+    private void execute(final HttpRequestBase request, final boolean retryUnauthorized,
+                         final SettableFuture<HttpResponse> future) {
+        String token = client.getCurrentToken();
+        if (token != null) {
+            send(request, token, retryUnauthorized, future);
+            return;
+        }
+
+        // logging in blocks, it must not run in the I/O threads that complete the previous requests
+        authenticate(future, new Runnable() {
+            public void run() {
+                String newToken;
+                try {
+                    newToken = client.getToken();
+                } catch (IOException ex) {
+                    future.setException(ex);
+                    return;
+                }
+                send(request, newToken, retryUnauthorized, future);
+            }
+        });
+    }
+
+    private void send(final HttpRequestBase request, String token, final boolean retryUnauthorized,
+                      final SettableFuture<HttpResponse> future) {
+        request.setHeader("ElasticBox-Token", token);
+        request.setHeader("ElasticBox-Release", Constants.ELASTICBOX_RELEASE);
+
+        HttpAsyncClient httpAsyncClient;
+        try {
+            httpAsyncClient = client.getConnectionPool().getHttpAsyncClient();
+        } catch (IllegalStateException ex) {
+            future.setException(new IOException(ex.getMessage(), ex));
+            return;
+        }
+        httpAsyncClient.execute(request, new FutureCallback<HttpResponse>() {
+            public void completed(HttpResponse response) {
+                int status = response.getStatusLine().getStatusCode();
+                if (status >= 200 && status <= 299) {
+                    future.set(response);
+                    return;
+                }
+
+                String message;
+                try {
+                    message = Client.getErrorMessage(Client.getResponseBodyAsString(response));
+                } catch (IOException ex) {
+                    message = ex.getMessage();
+                }
+                final ClientException exception = new ClientException(message, status);
+                if (status != HttpStatus.SC_UNAUTHORIZED) {
+                    future.setException(exception);
+                    return;
+                }
+
+                authenticate(future, new Runnable() {
+                    public void run() {
+                        if (client.renewToken() && retryUnauthorized) {
+                            request.reset();
+                            if (LOGGER.isLoggable(Level.FINE)) {
+                                LOGGER.fine("Token expired, retrying " + request.getRequestLine());
+                            }
+                            execute(request, false, future);
+                        } else {
+                            future.setException(exception);
+                        }
+                    }
+                });
+            }
+
+            public void failed(Exception ex) {
+                future.setException(ex instanceof IOException ? ex : new IOException(ex));
+            }
+
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+    }
+
+    private static void authenticate(SettableFuture<HttpResponse> future, Runnable task) {
+        try {
+            authenticationPool.execute(task);
+        } catch (RejectedExecutionException ex) {
+            future.setException(new IOException("Too many requests waiting for authentication, thread pool "
+                    + authenticationPool, ex));
+        }
+    }
+
+}
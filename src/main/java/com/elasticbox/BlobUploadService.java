@@ -0,0 +1,365 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox;
+
+import com.elasticbox.jenkins.util.InstrumentedThreadPool;
+
+import net.sf.json.JSONObject;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Uploads the files of the File variables and the box events to the blob storage of ElasticBox. The files are
+ * identified by the SHA-256 hash of their content and the URL of the blob of each hash is kept per endpoint and
+ * credentials, so a file that has been already uploaded for another slave or another build is not uploaded again, but
+ * a blob uploaded with the credentials of a user is never handed to another. Remote files are
+ * downloaded to a temporary file while they are hashed and every file is streamed from disk to the endpoint. The files
+ * of a request are uploaded at the same time by a pool of {@link #THREADS} threads shared by all the clients.
+ */
+public class BlobUploadService {
+    private static final Logger LOGGER = Logger.getLogger(BlobUploadService.class.getName());
+
+    static final int THREADS = Integer.getInteger("elasticbox.BlobUploadService.threads", 4);
+    static final int CACHE_SIZE = Integer.getInteger("elasticbox.BlobUploadService.cacheSize", 1000);
+    static final int QUEUE_SIZE = Integer.getInteger("elasticbox.BlobUploadService.queueSize", 100);
+    static final long MAX_AGE = Long.getLong("elasticbox.BlobUploadService.maxAge", TimeUnit.DAYS.toMillis(1));
+
+    // uploads that don't fit in the queue run in the thread of the request
+    private static final ExecutorService UPLOADER = new InstrumentedThreadPool("blob uploads", THREADS, QUEUE_SIZE,
+            InstrumentedThreadPool.CALLER_RUNS);
+
+    private static final ConcurrentMap<String, BlobCache> blobCaches = new ConcurrentHashMap<String, BlobCache>();
+
+    /**
+     * Receives the outcome of the uploads, to report them in the build log for instance.
+     */
+    public interface UploadListener {
+
+        /**
+         * Called when a file has been uploaded.
+         *
+         * @param size bytes of the file
+         * @param millis milliseconds it took to upload the file
+         */
+        void onUploaded(String fileName, long size, long millis);
+
+        /**
+         * Called when a file is not uploaded because a blob with the same content already exists.
+         */
+        void onReused(String fileName, String blobUrl);
+
+    }
+
+    private final Client client;
+    private final BlobCache blobCache;
+
+    /**
+     * Creates the service of a client.
+     *
+     * @param credentials the user name or the token that the client authenticates with
+     */
+    BlobUploadService(Client client, String credentials) {
+        this.client = client;
+        String cacheKey = getCacheKey(client.getEndpointUrl(), credentials);
+        BlobCache cache = blobCaches.get(cacheKey);
+        if (cache == null) {
+            cache = new BlobCache(CACHE_SIZE, MAX_AGE);
+            BlobCache existing = blobCaches.putIfAbsent(cacheKey, cache);
+            if (existing != null) {
+                cache = existing;
+            }
+        }
+        blobCache = cache;
+    }
+
+    /**
+     * Uploads the files of the File variables that have not been uploaded yet and replaces their values with the URLs
+     * of the blobs. The other variables are ignored.
+     *
+     * @param listener listener of the uploads, it may be null
+     */
+    public void uploadFileVariables(Collection<?> variables, UploadListener listener) throws IOException {
+        List<JSONObject> fileVariables = new ArrayList<JSONObject>();
+        for (Object variable : variables) {
+            JSONObject variableJson = (JSONObject) variable;
+            if ("File".equals(variableJson.getString("type"))) {
+                String value = variableJson.optString("value", null);
+                if (StringUtils.isNotBlank(value) && !blobCache.containsUrl(value)) {
+                    fileVariables.add(variableJson);
+                }
+            }
+        }
+
+        if (fileVariables.size() == 1) {
+            uploadFileVariable(fileVariables.get(0), listener);
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        try {
+            for (final JSONObject fileVariable : fileVariables) {
+                final UploadListener uploadListener = listener;
+                futures.add(UPLOADER.submit(new Callable<Void>() {
+                    public Void call() throws IOException {
+                        uploadFileVariable(fileVariable, uploadListener);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            throw (IOException) new InterruptedIOException("Upload of files interrupted").initCause(ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Uploads the file unless a blob with the same content already exists.
+     *
+     * @param contentType content type of the file, if null it is guessed from the file
+     * @param listener listener of the upload, it may be null
+     * @return the URL of the blob with the content of the file
+     */
+    public String upload(URI fileUri, ContentType contentType, UploadListener listener) throws IOException {
+        File file;
+        String fileName;
+        File tempFile = null;
+        try {
+            if (fileUri.getScheme() != null && fileUri.getScheme().equalsIgnoreCase("file")) {
+                file = new File(fileUri);
+                fileName = file.getName();
+                if (contentType == null) {
+                    String mimeType = Files.probeContentType(FileSystems.getDefault().getPath(file.getPath()));
+                    contentType = mimeType != null ? ContentType.create(mimeType) : ContentType.DEFAULT_BINARY;
+                }
+            } else {
+                URL fileUrl = fileUri.toURL();
+                URLConnection connection = fileUrl.openConnection();
+                if (contentType == null) {
+                    String mimeType = connection.getContentType();
+                    contentType = mimeType != null ? ContentType.create(mimeType) : ContentType.DEFAULT_BINARY;
+                }
+                String[] segments = fileUrl.getPath().split("/");
+                fileName = segments.length > 0 ? segments[segments.length - 1] : fileUrl.getHost();
+                tempFile = File.createTempFile("elasticbox-blob", null);
+                InputStream input = connection.getInputStream();
+                try {
+                    OutputStream output = new FileOutputStream(tempFile);
+                    try {
+                        IOUtils.copy(input, output);
+                    } finally {
+                        output.close();
+                    }
+                } finally {
+                    input.close();
+                }
+                file = tempFile;
+            }
+
+            String key = hash(file) + ';' + contentType.getMimeType();
+            String blobUrl = blobCache.get(key);
+            if (blobUrl != null) {
+                if (listener != null) {
+                    listener.onReused(fileName, blobUrl);
+                }
+                return blobUrl;
+            }
+
+            long startTime = System.currentTimeMillis();
+            blobUrl = post(file, contentType, fileName);
+            long millis = System.currentTimeMillis() - startTime;
+            blobCache.put(key, blobUrl);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(MessageFormat.format("Uploaded {0} ({1} bytes) to {2} in {3}ms", fileName, file.length(),
+                        blobUrl, millis));
+            }
+            if (listener != null) {
+                listener.onUploaded(fileName, file.length(), millis);
+            }
+            return blobUrl;
+        } finally {
+            if (tempFile != null && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    private void uploadFileVariable(JSONObject fileVariable, UploadListener listener) throws IOException {
+        String value = fileVariable.getString("value");
+        URI fileUri;
+        try {
+            fileUri = new URI(value);
+        } catch (URISyntaxException ex) {
+            throw new IOException(MessageFormat.format("Invalid file URI specified for variable {0}: {1}",
+                    fileVariable.getString("name"), value), ex);
+        }
+        fileVariable.put("value", upload(fileUri, null, listener));
+    }
+
+    private String post(File file, ContentType contentType, String fileName) throws IOException {
+        MultipartEntityBuilder entityBuilder = MultipartEntityBuilder.create().setLaxMode();
+        entityBuilder.addBinaryBody("blob", file, contentType, fileName);
+        HttpPost post = new HttpPost(client.prepareUrl("/services/blobs/upload"));
+        post.setEntity(entityBuilder.build());
+        try {
+            HttpResponse response = client.execute(post);
+            return JSONObject.fromObject(Client.getResponseBodyAsString(response)).getString("url");
+        } finally {
+            post.reset();
+        }
+    }
+
+    /**
+     * Returns the key of the blob cache of an endpoint and credentials, the credentials are hashed so they are not
+     * kept in the key.
+     */
+    static String getCacheKey(String endpointUrl, String credentials) {
+        MessageDigest digest = createDigest();
+        digest.update(StringUtils.defaultString(credentials).getBytes(StandardCharsets.UTF_8));
+        return endpointUrl + ' ' + String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+    static String hash(File file) throws IOException {
+        MessageDigest digest = createDigest();
+        InputStream input = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+        } finally {
+            input.close();
+        }
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Blob URLs by file hash of an endpoint. The least recently used entries are evicted when the cache is full and
+     * the entries expire after a while, in case the blobs are removed from the endpoint.
+     */
+    static final class BlobCache {
+        private final long maxAge;
+        private final Map<String, Blob> blobs;
+        private final Set<String> urls = new HashSet<String>();
+
+        BlobCache(final int maxSize, long maxAge) {
+            this.maxAge = maxAge;
+            blobs = new LinkedHashMap<String, Blob>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Blob> eldest) {
+                    if (size() > maxSize) {
+                        urls.remove(eldest.getValue().url);
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized String get(String key) {
+            Blob blob = blobs.get(key);
+            if (blob == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() - blob.uploadTime >= maxAge) {
+                blobs.remove(key);
+                urls.remove(blob.url);
+                return null;
+            }
+            return blob.url;
+        }
+
+        synchronized void put(String key, String url) {
+            Blob previous = blobs.put(key, new Blob(url));
+            if (previous != null) {
+                urls.remove(previous.url);
+            }
+            urls.add(url);
+        }
+
+        synchronized boolean containsUrl(String url) {
+            return urls.contains(url);
+        }
+    }
+
+    private static final class Blob {
+        private final String url;
+        private final long uploadTime = System.currentTimeMillis();
+
+        Blob(String url) {
+            this.url = url;
+        }
+    }
+
+}
@@ -28,31 +28,19 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.config.Registry;
-import org.apache.http.config.RegistryBuilder;
-import org.apache.http.conn.socket.ConnectionSocketFactory;
-import org.apache.http.conn.socket.PlainConnectionSocketFactory;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.conn.ssl.TrustStrategy;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
-import java.net.URLConnection;
 import java.net.URLEncoder;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
+import java.security.GeneralSecurityException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
@@ -60,6 +48,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -94,12 +83,15 @@ public class Client implements ApiClient {
     private static final Set<String> TASK_FINISH_STATES = new HashSet<String>(
             Arrays.asList(TaskState.DONE, TaskState.UNSUCCESSFUL));
 
-    private static HttpClient httpClient = null;
-
     private final String endpointUrl;
+    private final ConnectionPool connectionPool;
     private final String username;
     private final String password;
-    private String token = null;
+    private volatile String token = null;
+    private final InstanceStateWatcher stateWatcher = new InstanceStateWatcher(this);
+    private final InstanceListingCache instanceListingCache = new InstanceListingCache(this);
+    private final BlobUploadService blobUploadService;
+    private AsyncClient asyncClient;
 
     public static interface InstanceState {
         String PROCESSING = "processing";
@@ -136,11 +128,27 @@ public class Client implements ApiClient {
     }
 
     protected Client(String endpointUrl, String username, String password, String token) {
-        getHttpClient();
+        this(endpointUrl, username, password, token, ConnectionPoolConfig.DEFAULT);
+    }
+
+    protected Client(String endpointUrl, String username, String password, String token,
+                     ConnectionPoolConfig poolConfig) {
+        this(endpointUrl, username, password, token, poolConfig, false);
+    }
+
+    /**
+     * @param cached true if the client is kept by a cache that closes its connection pool when the cache doesn't use
+     *     it anymore, the pool is then never shared with the clients created on their own
+     */
+    protected Client(String endpointUrl, String username, String password, String token,
+                     ConnectionPoolConfig poolConfig, boolean cached) {
         this.endpointUrl = endpointUrl.endsWith("/") ? endpointUrl.substring(0, endpointUrl.length() - 1) : endpointUrl;
+        this.connectionPool = cached ? ConnectionPool.getCachedClientPool(this.endpointUrl, poolConfig)
+                : ConnectionPool.getConnectionPool(this.endpointUrl, poolConfig);
         this.username = username;
         this.password = password;
         this.token = token;
+        this.blobUploadService = new BlobUploadService(this, username != null ? username : token);
     }
 
     public Client(String endpointUrl, String username, String password) {
@@ -151,10 +159,46 @@ public class Client implements ApiClient {
         this(endpointUrl, null, null, token);
     }
 
+    public Client(String endpointUrl, String token, ConnectionPoolConfig poolConfig) {
+        this(endpointUrl, null, null, token, poolConfig);
+    }
+
     public String getEndpointUrl() {
         return endpointUrl;
     }
 
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    public InstanceStateWatcher getStateWatcher() {
+        return stateWatcher;
+    }
+
+    /**
+     * Returns the cache of the instance listings of the workspaces, which is shared by all the users of this client.
+     */
+    public InstanceListingCache getInstanceListingCache() {
+        return instanceListingCache;
+    }
+
+    /**
+     * Returns the service that uploads the files of the File variables to the endpoint of this client.
+     */
+    public BlobUploadService getBlobUploadService() {
+        return blobUploadService;
+    }
+
+    /**
+     * Returns the non-blocking client that shares the endpoint and the credentials of this client.
+     */
+    public synchronized AsyncClient async() {
+        if (asyncClient == null) {
+            asyncClient = new AsyncClient(this);
+        }
+        return asyncClient;
+    }
+
     protected String getUsername() {
         return username;
     }
@@ -179,7 +223,7 @@ public class Client implements ApiClient {
         json.put("email", getUsername());
         json.put("password", getPassword());
         post.setEntity(new StringEntity(json.toString(), ContentType.APPLICATION_JSON));
-        HttpResponse response = httpClient.execute(post);
+        HttpResponse response = connectionPool.getHttpClient().execute(post);
         int status = response.getStatusLine().getStatusCode();
         if (status != HttpStatus.SC_OK) {
             throw new ClientException(MessageFormat.format("Error {0} connecting to ElasticBox at {1}: {2}", status,
@@ -204,8 +248,19 @@ public class Client implements ApiClient {
     }
 
     public JSONArray getAllBoxes(String workspaceId) throws IOException {
-        return (JSONArray) doGet(MessageFormat.format("{0}/services/workspaces/{1}/boxes", endpointUrl,
-                URLEncoder.encode(workspaceId, Constants.UTF_8)), true);
+        return (JSONArray) getMetadata(getWorkspaceBoxesUrl(workspaceId), true);
+    }
+
+    protected String getWorkspaceBoxesUrl(String workspaceId) throws IOException {
+        return MessageFormat.format("{0}/services/workspaces/{1}/boxes", endpointUrl,
+                URLEncoder.encode(workspaceId, Constants.UTF_8));
+    }
+
+    /**
+     * Returns the index of the deployment policies of the workspace by their claims.
+     */
+    public PolicyIndex getPolicyIndex(String workspaceId) throws IOException {
+        return new PolicyIndex(getAllBoxes(workspaceId));
     }
 
     public JSONArray getBoxes(String workspaceId) throws IOException {
@@ -221,11 +276,12 @@ public class Client implements ApiClient {
     }
 
     public JSONArray getBoxVersions(String boxId) throws IOException {
-        return (JSONArray) doGet(MessageFormat.format("{0}/services/boxes/{1}/versions", endpointUrl, boxId), true);
+        return (JSONArray) getMetadata(MessageFormat.format("{0}/services/boxes/{1}/versions", endpointUrl, boxId),
+                true);
     }
 
     public JSONObject getBox(String boxId) throws IOException {
-        return (JSONObject) doGet(MessageFormat.format("{0}/services/boxes/{1}", endpointUrl, boxId), false);
+        return (JSONObject) getMetadata(MessageFormat.format("{0}/services/boxes/{1}", endpointUrl, boxId), false);
     }
 
     public JSONObject getProvider(String providerId) throws IOException {
@@ -236,36 +292,6 @@ public class Client implements ApiClient {
         return (JSONArray) doGet(MessageFormat.format("/services/workspaces/{0}/providers", workspaceId), true);
     }
 
-    private JSONObject uploadFile(URI fileUri, ContentType contentType) throws IOException {
-        MultipartEntityBuilder entityBuilder = MultipartEntityBuilder.create().setLaxMode();
-        if (fileUri.getScheme().equalsIgnoreCase("file")) {
-            File file = new File(fileUri);
-            if (contentType == null) {
-                String mimeType = Files.probeContentType(FileSystems.getDefault().getPath(file.getPath()));
-                contentType = mimeType != null ? ContentType.create(mimeType) : ContentType.DEFAULT_BINARY;
-            }
-            entityBuilder.addBinaryBody("blob", file, contentType, file.getName());
-        } else {
-            URL fileUrl = fileUri.toURL();
-            URLConnection connection = fileUrl.openConnection();
-            if (contentType == null) {
-                String mimeType = connection.getContentType();
-                contentType = mimeType != null ? ContentType.create(mimeType) : ContentType.DEFAULT_BINARY;
-            }
-            String[] segments = fileUrl.getPath().split("/");
-            entityBuilder.addBinaryBody(
-                    "blob", connection.getInputStream(), contentType, segments[segments.length - 1]);
-        }
-        HttpPost post = new HttpPost(prepareUrl("/services/blobs/upload"));
-        post.setEntity(entityBuilder.build());
-        try {
-            HttpResponse response = execute(post);
-            return JSONObject.fromObject(getResponseBodyAsString(response));
-        } finally {
-            post.reset();
-        }
-    }
-
     public JSONObject createWorkspace(String name) throws IOException {
         JSONObject workspace = new JSONObject();
         workspace.put("name", name);
@@ -276,20 +302,16 @@ public class Client implements ApiClient {
     public JSONObject createBox(JSONObject box) throws IOException, URISyntaxException {
         // upload files
         if (box.containsKey("variables")) {
-            for (Object variable : box.getJSONArray("variables")) {
-                JSONObject variableJson = (JSONObject) variable;
-                if (variableJson.getString("type").equals("File")) {
-                    uploadFileVariable(variableJson);
-                }
-            }
+            blobUploadService.uploadFileVariables(box.getJSONArray("variables"), null);
         }
         if (box.containsKey("events")) {
             JSONObject events = box.getJSONObject("events");
             for (Object entry : events.entrySet()) {
                 Map.Entry mapEntry = (Map.Entry) entry;
-                JSONObject blobInfo = uploadFile(new URI(mapEntry.getValue().toString()), ContentType.TEXT_PLAIN);
+                String blobUrl = blobUploadService.upload(new URI(mapEntry.getValue().toString()),
+                        ContentType.TEXT_PLAIN, null);
                 JSONObject event = new JSONObject();
-                event.put("url", blobInfo.getString("url"));
+                event.put("url", blobUrl);
                 event.put("destination_path", "scripts");
                 event.put("content_type", "text/x-shellscript");
                 events.put(mapEntry.getKey().toString(), event);
@@ -304,7 +326,7 @@ public class Client implements ApiClient {
     }
 
     private boolean isPolicy(JSONObject boxJson) {
-        return boxJson.getString("schema").endsWith("/boxes/policy");
+        return PolicyIndex.isPolicy(boxJson);
     }
 
     public JSONArray getProfiles(String workspaceId, String boxId) throws IOException {
@@ -316,45 +338,23 @@ public class Client implements ApiClient {
         if (isPolicy(box)) {
             throw new IOException("Cannot get deployment policies for a deployment policy box");
         }
-        JSONArray requiredServices = box.getJSONArray("requirements");
         JSONArray profiles = new JSONArray();
-        for (Object b : getAllBoxes(workspaceId)) {
-            JSONObject boxJson = (JSONObject) b;
-            if (isPolicy(boxJson)) {
-                Set<String> providedServices = new HashSet(boxJson.getJSONArray("claims"));
-                if (providedServices.containsAll(requiredServices)) {
-                    profiles.add(boxJson);
-                }
-            }
-        }
-
+        profiles.addAll(getPolicyIndex(workspaceId).getPolicies(box.getJSONArray("requirements")));
         return profiles;
     }
 
     public JSONArray getProfiles(String workspaceId) throws IOException {
         JSONArray profiles = new JSONArray();
-        for (Object b : getAllBoxes(workspaceId)) {
-            JSONObject boxJson = (JSONObject) b;
-            if (isPolicy(boxJson)) {
-                profiles.add(boxJson);
-            }
-        }
-
+        profiles.addAll(getPolicyIndex(workspaceId).getPolicies());
         return profiles;
     }
 
     public List<JSONObject> getPolicies(String workspaceId, Collection<String> claims) throws IOException {
-        List<JSONObject> profiles = new ArrayList<JSONObject>();
-        if (!claims.isEmpty()) {
-            for (Object profile : getProfiles(workspaceId)) {
-                JSONObject profileJson = (JSONObject) profile;
-                if (profileJson.getJSONArray("claims").containsAll(claims)) {
-                    profiles.add(profileJson);
-                }
-            }
+        if (claims.isEmpty()) {
+            return new ArrayList<JSONObject>();
         }
 
-        return profiles;
+        return getPolicyIndex(workspaceId).getPolicies(claims);
     }
 
     public JSONObject getInstance(String instanceId) throws IOException {
@@ -390,7 +390,7 @@ public class Client implements ApiClient {
 
         JSONArray instances = new JSONArray();
         for (int start = 0; start < instanceIDs.size(); ) {
-            int end = Math.min(800, instanceIDs.size());
+            int end = Math.min(start + 800, instanceIDs.size());
             StringBuilder ids = new StringBuilder();
             for (int i = start; i < end; i++) {
                 ids.append(instanceIDs.get(i)).append(',');
@@ -427,8 +427,134 @@ public class Client implements ApiClient {
         return instances;
     }
 
+    /**
+     * Reads the instances of the workspace as they are received, passing them one by one to the handler.
+     *
+     * @param workspaceId the workspace of the instances
+     * @param instanceIDs the IDs of the instances to read, or null to read all the instances of the workspace
+     * @param fields the fields of the instances to materialize, or null to materialize whole instances
+     * @param handler the handler of the instances
+     */
+    public void streamInstances(String workspaceId, List<String> instanceIDs, Collection<String> fields,
+                                final InstanceListingParser.InstanceHandler handler) throws IOException {
+        final InstanceListingParser parser = new InstanceListingParser(fields);
+        streamInstances(workspaceId, instanceIDs, new ListingReader() {
+            public void read(InputStream content) throws IOException {
+                parser.parse(content, handler);
+            }
+        });
+    }
+
+    /**
+     * Reads the instances of the workspace as {@link InstanceSnapshot}s, passing them one by one to the handler.
+     *
+     * @param workspaceId the workspace of the instances
+     * @param instanceIDs the IDs of the instances to read, or null to read all the instances of the workspace
+     * @param handler the handler of the instances
+     */
+    public void streamInstanceSnapshots(String workspaceId, List<String> instanceIDs,
+                                        final InstanceSnapshot.Handler handler) throws IOException {
+        streamInstances(workspaceId, instanceIDs, new ListingReader() {
+            public void read(InputStream content) throws IOException {
+                InstanceListingParser.parseSnapshots(content, handler);
+            }
+        });
+    }
+
+    private interface ListingReader {
+
+        void read(InputStream content) throws IOException;
+
+    }
+
+    private void streamInstances(String workspaceId, List<String> instanceIDs, ListingReader reader)
+            throws IOException {
+
+        if (StringUtils.isBlank(workspaceId)) {
+            throw new IOException("workspaceId cannot be blank");
+        }
+
+        if (instanceIDs == null) {
+            streamInstances(MessageFormat.format("/services/workspaces/{0}/instances", workspaceId), reader);
+            return;
+        }
+
+        for (int start = 0; start < instanceIDs.size(); ) {
+            int end = Math.min(start + 800, instanceIDs.size());
+            StringBuilder ids = new StringBuilder();
+            for (int i = start; i < end; i++) {
+                ids.append(instanceIDs.get(i)).append(',');
+            }
+            streamInstances(MessageFormat.format("/services/workspaces/{0}/instances?ids={1}", workspaceId,
+                    ids.toString()), reader);
+            start = end;
+        }
+    }
+
+    private void streamInstances(String url, ListingReader reader) throws IOException {
+        HttpGet get = new HttpGet(prepareUrl(url));
+        get.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
+        try {
+            HttpEntity entity = execute(get).getEntity();
+            if (entity != null) {
+                InputStream content = entity.getContent();
+                try {
+                    reader.read(content);
+                } finally {
+                    content.close();
+                }
+            }
+        } finally {
+            get.reset();
+        }
+    }
+
+    /**
+     * Returns the instances of the workspace with only the fields in {@link InstanceListingParser#SUMMARY_FIELDS}.
+     */
+    public List<JSONObject> getInstanceSummaries(String workspaceId) throws IOException {
+        return getInstanceSummaries(workspaceId, null);
+    }
+
+    /**
+     * Returns the specified instances of the workspace with only the fields in
+     * {@link InstanceListingParser#SUMMARY_FIELDS}.
+     */
+    public List<JSONObject> getInstanceSummaries(String workspaceId, List<String> instanceIDs) throws IOException {
+        final List<JSONObject> instances = new ArrayList<JSONObject>();
+        streamInstances(workspaceId, instanceIDs, InstanceListingParser.SUMMARY_FIELDS,
+                new InstanceListingParser.InstanceHandler() {
+                    public void handle(JSONObject instance) {
+                        instances.add(instance);
+                    }
+                });
+        return instances;
+    }
+
+    /**
+     * Returns snapshots of the instances of the workspace.
+     */
+    public List<InstanceSnapshot> getInstanceSnapshots(String workspaceId) throws IOException {
+        return getInstanceSnapshots(workspaceId, null);
+    }
+
+    /**
+     * Returns snapshots of the specified instances of the workspace.
+     */
+    public List<InstanceSnapshot> getInstanceSnapshots(String workspaceId, List<String> instanceIDs)
+            throws IOException {
+
+        final List<InstanceSnapshot> instances = new ArrayList<InstanceSnapshot>();
+        streamInstanceSnapshots(workspaceId, instanceIDs, new InstanceSnapshot.Handler() {
+            public void handle(InstanceSnapshot instance) {
+                instances.add(instance);
+            }
+        });
+        return instances;
+    }
+
     public JSONArray getBoxStack(String boxId) throws IOException {
-        return (JSONArray) doGet(MessageFormat.format("/services/boxes/{0}/stack", boxId), true);
+        return (JSONArray) getMetadata(MessageFormat.format("/services/boxes/{0}/stack", boxId), true);
     }
 
     public String getLatestBoxVersion(String workspace, String boxId) throws IOException {
@@ -466,6 +592,7 @@ public class Client implements ApiClient {
         put.setEntity(new StringEntity(instance.toString(), ContentType.APPLICATION_JSON));
         try {
             HttpResponse response = execute(put);
+            instanceListingCache.invalidate(instance.optString("owner", null));
             return JSONObject.fromObject(getResponseBodyAsString(response));
         } finally {
             put.reset();
@@ -482,6 +609,7 @@ public class Client implements ApiClient {
                 boxVariables.addAll(((JSONObject) box).getJSONArray("variables"));
             }
             JSONArray instanceVariables = instance.getJSONArray("variables");
+            uploadFileVariables(variables, instanceVariables, boxVariables);
             List<JSONObject> newVariables = new ArrayList<JSONObject>();
             for (Object variable : variables) {
                 JSONObject variableJson = (JSONObject) variable;
@@ -497,9 +625,7 @@ public class Client implements ApiClient {
                     }
                 }
                 if (instanceVariable != null) {
-                    if ("File".equals(variableJson.getString("type"))) {
-                        uploadFileVariable(variableJson);
-                    } else if (Constants.BINDING_TYPE_VARIABLE.equals(
+                    if (Constants.BINDING_TYPE_VARIABLE.equals(
                             variableJson.getString("type")) && variableJson.containsKey("tags")) {
 
                         instanceVariable.put("tags", variableJson.getJSONArray("tags"));
@@ -569,20 +695,23 @@ public class Client implements ApiClient {
         return updateInstance(instance, variablesWithFullScope);
     }
 
-    private void uploadFileVariable(JSONObject fileVariable) throws IOException {
-        String value = fileVariable.getString("value");
-        if (StringUtils.isBlank(value)) {
-            return;
-        }
-        URI fileUri;
-        try {
-            fileUri = new URI(value);
-        } catch (URISyntaxException ex) {
-            throw new IOException(MessageFormat.format("Invalid file URI specified for variable {0}: {1}",
-                    fileVariable.getString("name"), value), ex);
+    /**
+     * Uploads the files of the File variables that update any of the specified existing variables.
+     */
+    private void uploadFileVariables(JSONArray variables, JSONArray... existingVariables) throws IOException {
+        List<JSONObject> fileVariables = new ArrayList<JSONObject>();
+        for (Object variable : variables) {
+            JSONObject variableJson = (JSONObject) variable;
+            if ("File".equals(variableJson.getString("type"))) {
+                for (JSONArray existing : existingVariables) {
+                    if (findVariable(variableJson, existing) != null) {
+                        fileVariables.add(variableJson);
+                        break;
+                    }
+                }
+            }
         }
-        JSONObject blobInfo = uploadFile(fileUri, null);
-        fileVariable.put("value", blobInfo.getString("url"));
+        blobUploadService.uploadFileVariables(fileVariables, null);
     }
 
     public JSONObject updateBox(String boxId, JSONArray variables) throws IOException {
@@ -599,6 +728,7 @@ public class Client implements ApiClient {
                 boxVariables.addAll(((JSONObject) stackBox).getJSONArray("variables"));
             }
             JSONArray existingVariables = box.getJSONArray("variables");
+            uploadFileVariables(variables, existingVariables, boxVariables);
             List<JSONObject> newVariables = new ArrayList<JSONObject>();
             for (Object variable : variables) {
                 JSONObject variableJson = (JSONObject) variable;
@@ -614,9 +744,6 @@ public class Client implements ApiClient {
                     }
                 }
                 if (instanceVariable != null) {
-                    if ("File".equals(variableJson.getString("type"))) {
-                        uploadFileVariable(variableJson);
-                    }
                     instanceVariable.put("value", variableJson.getString("value"));
                 }
             }
@@ -635,6 +762,11 @@ public class Client implements ApiClient {
             this.lastModified = lastModified;
         }
 
+        @Override
+        protected InstanceStateWatcher getStateWatcher() {
+            return stateWatcher;
+        }
+
         @Override
         protected JSONObject getResource() throws IOException, IncompleteException {
             try {
@@ -652,10 +784,18 @@ public class Client implements ApiClient {
 
     protected class InstanceProgressMonitor extends ProgressMonitor {
         private final Set<String> operations;
+        private final String workspaceId;
 
-        private InstanceProgressMonitor(String instanceUrl, Set<String> operations, String lastModified) {
+        private InstanceProgressMonitor(String instanceUrl, Set<String> operations, String lastModified,
+                                        String workspaceId) {
             super(instanceUrl, lastModified);
             this.operations = operations;
+            this.workspaceId = workspaceId;
+        }
+
+        @Override
+        protected String getWorkspaceId() {
+            return workspaceId;
         }
 
         public boolean isDone(JSONObject instance) throws IProgressMonitor.IncompleteException, IOException {
@@ -744,64 +884,106 @@ public class Client implements ApiClient {
                                    String expirationOperation, JSONArray policyVariables, String automaticUpdates)
             throws IOException {
 
-        JSONObject box = new JSONObject();
-        box.put("id", boxVersion);
+        return deploy(new DeploymentRequest.DeploymentRequestBuilder()
+                .withBoxVersion(boxVersion)
+                .withPolicy(policyId)
+                .withName(instanceName)
+                .withWorkspace(workspaceId)
+                .withTags(tags)
+                .withVariables(variables)
+                .withExpiration(expirationTime, expirationOperation)
+                .withPolicyVariables(policyVariables)
+                .withAutomaticUpdates(automaticUpdates)
+                .build());
+    }
+
+    /**
+     * Deploys an instance. The box version is fetched only if the request has neither the name of the instance nor
+     * the name of the box.
+     */
+    public IProgressMonitor deploy(DeploymentRequest request) throws IOException {
+        try {
+            return deploy(Collections.singletonList(request)).get(0);
+        } catch (DeploymentException ex) {
+            throw ex.getCause();
+        }
+    }
 
-        for (Object json : variables) {
-            JSONObject variable = (JSONObject) json;
-            if (variable.containsKey("scope") && variable.getString("scope").isEmpty()) {
-                variable.remove("scope");
-            }
-            if ("File".equals(variable.getString("type"))) {
-                uploadFileVariable(variable);
+    /**
+     * Deploys the instances of the requests. Each box version without name is fetched once for all the requests, the
+     * files of the variables are uploaded together, and the instance listing of each workspace is invalidated once.
+     * The requests are submitted in order and the deployment stops at the first request that fails.
+     *
+     * @return the monitors of the deployments, in the order of the requests
+     * @throws DeploymentException if a request fails, with the monitors of the requests submitted before it
+     * @throws IOException if the boxes cannot be fetched or the files cannot be uploaded, before any request is
+     *         submitted
+     */
+    public List<IProgressMonitor> deploy(List<DeploymentRequest> requests) throws IOException {
+        Map<String, String> boxNames = new HashMap<String, String>();
+        List<Object> variables = new ArrayList<Object>();
+        for (DeploymentRequest request : requests) {
+            if (!request.isNameResolved() && !boxNames.containsKey(request.getBoxVersion())) {
+                boxNames.put(request.getBoxVersion(), getBox(request.getBoxVersion()).getString("name"));
             }
+            removeEmptyScopes(request.getVariables());
+            variables.addAll(request.getVariables());
         }
+        // The variables are replaced in place, so the requests get the URLs of the uploaded files
+        blobUploadService.uploadFileVariables(variables, null);
 
-        box.put("variables", variables);
-        JSONObject policyBox = new JSONObject();
-        policyBox.put("id", policyId);
-        policyBox.put("variables", policyVariables);
-        JSONObject boxVersionJson = getBox(boxVersion);
-
-        String name;
-        if (instanceName == null || StringUtils.isBlank(instanceName)) {
-            name = boxVersionJson.getString("name");
-        } else {
-            name = instanceName;
+        List<IProgressMonitor> monitors = new ArrayList<IProgressMonitor>(requests.size());
+        Set<String> workspaces = new HashSet<String>();
+        try {
+            for (DeploymentRequest request : requests) {
+                // a failed request may still have created its instance
+                workspaces.add(request.getWorkspaceId());
+                JSONObject instance;
+                try {
+                    instance = doPost("/services/instances", request.toJson(boxNames.get(request.getBoxVersion())),
+                            false);
+                } catch (IOException ex) {
+                    throw new DeploymentException(MessageFormat.format(
+                            "Deployment {0} of {1} failed: {2}", monitors.size() + 1, requests.size(),
+                            ex.getMessage()), ex, monitors);
+                }
+                monitors.add(createInstanceMonitor(Collections.singleton(InstanceOperation.DEPLOY), instance));
+            }
+        } finally {
+            for (String workspaceId : workspaces) {
+                instanceListingCache.invalidate(workspaceId);
+            }
         }
+        return monitors;
+    }
 
-        JSONObject deployRequest = new JSONObject();
-        deployRequest.put("schema", Constants.BASE_ELASTICBOX_SCHEMA + Constants.DEPLOYMENT_REQUEST_SCHEMA_NAME);
-        deployRequest.put("name", name);
-        deployRequest.put("box", box);
-        deployRequest.put("owner", workspaceId);
-        deployRequest.put("policy_box", policyBox);
-        deployRequest.put("automatic_updates",
-                automaticUpdates != null ? automaticUpdates : Constants.AUTOMATIC_UPDATES_OFF);
-
-        if (expirationTime != null && expirationOperation != null) {
-            JSONObject lease = new JSONObject();
-            lease.put("expire", expirationTime);
-            lease.put("operation", expirationOperation);
-            deployRequest.put("lease", lease);
-        }
+    /**
+     * Removes the empty scopes and uploads the files of the deployment variables.
+     */
+    void prepareVariables(JSONArray variables) throws IOException {
+        removeEmptyScopes(variables);
+        blobUploadService.uploadFileVariables(variables, null);
+    }
 
-        List<String> instanceTags = new ArrayList<String>();
-        if (tags != null) {
-            instanceTags.addAll(tags);
+    private static void removeEmptyScopes(JSONArray variables) {
+        for (Object json : variables) {
+            JSONObject variable = (JSONObject) json;
+            if (variable.containsKey("scope") && variable.getString("scope").isEmpty()) {
+                variable.remove("scope");
+            }
         }
-        deployRequest.put("instance_tags", instanceTags);
-
-        JSONObject instance = doPost("/services/instances", deployRequest, false);
+    }
 
-        return new InstanceProgressMonitor(endpointUrl + instance.getString("uri"),
-                Collections.singleton(InstanceOperation.DEPLOY), instance.getString("updated"));
+    IProgressMonitor createInstanceMonitor(Set<String> operations, JSONObject instance) {
+        return new InstanceProgressMonitor(endpointUrl + instance.getString("uri"), operations,
+                instance.getString("updated"), instance.optString("owner", null));
     }
 
     public IProgressMonitor reconfigure(String instanceId, JSONArray variables) throws IOException {
         JSONObject instance = doOperation(instanceId, InstanceOperation.RECONFIGURE, variables);
         return new InstanceProgressMonitor(getInstanceUrl(instanceId),
-                Collections.singleton(InstanceOperation.RECONFIGURE), instance.getString("updated"));
+                Collections.singleton(InstanceOperation.RECONFIGURE), instance.getString("updated"),
+                instance.optString("owner", null));
     }
 
     private JSONObject doOperation(String instanceId, String operation, JSONArray variables) throws IOException {
@@ -818,6 +1000,7 @@ public class Client implements ApiClient {
         HttpPut put = new HttpPut(MessageFormat.format("{0}/{1}", instanceUrl, operation));
         try {
             execute(put);
+            instanceListingCache.invalidate(instance.optString("owner", null));
             return instance;
         } finally {
             put.reset();
@@ -832,7 +1015,9 @@ public class Client implements ApiClient {
                 LOGGER.fine("Executing HTTP delete on instance[" + instanceUrl + "] - " + delete);
             }
             execute(delete);
-            return new InstanceProgressMonitor(instanceUrl, TERMINATE_OPERATIONS, instance.getString("updated"));
+            instanceListingCache.invalidate(instance.optString("owner", null));
+            return new InstanceProgressMonitor(instanceUrl, TERMINATE_OPERATIONS, instance.getString("updated"),
+                    instance.optString("owner", null));
         } finally {
             delete.reset();
         }
@@ -841,14 +1026,16 @@ public class Client implements ApiClient {
     public IProgressMonitor terminate(String instanceId) throws IOException {
         String instanceUrl = getInstanceUrl(instanceId);
         JSONObject instance = (JSONObject) doGet(instanceUrl, false);
+        return doTerminate(instanceUrl, getTerminateOperation(instance));
+    }
+
+    static String getTerminateOperation(JSONObject instance) {
         String state = instance.getString("state");
         String operation = instance.getJSONObject("operation").getString("event");
 
-        String terminateOperation = (state.equals(InstanceState.DONE) && ON_OPERATIONS.contains(operation))
+        return (state.equals(InstanceState.DONE) && ON_OPERATIONS.contains(operation))
                 || (state.equals(InstanceState.UNAVAILABLE) && operation.equals(InstanceOperation.TERMINATE))
                 ? "terminate" : "force_terminate";
-
-        return doTerminate(instanceUrl, terminateOperation);
     }
 
     public IProgressMonitor forceTerminate(String instanceId) throws IOException {
@@ -866,23 +1053,26 @@ public class Client implements ApiClient {
 
         instance = doOperation(instance, InstanceOperation.POWERON, null);
         return new InstanceProgressMonitor(getInstanceUrl(instanceId),
-                Collections.singleton(InstanceOperation.POWERON), instance.getString("updated"));
+                Collections.singleton(InstanceOperation.POWERON), instance.getString("updated"),
+                instance.optString("owner", null));
     }
 
     public IProgressMonitor shutdown(String instanceId) throws IOException {
         JSONObject instance = doOperation(instanceId, InstanceOperation.SHUTDOWN, null);
         return new InstanceProgressMonitor(getInstanceUrl(instanceId),
-                SHUTDOWN_OPERATIONS, instance.getString("updated"));
+                SHUTDOWN_OPERATIONS, instance.getString("updated"), instance.optString("owner", null));
     }
 
     public void delete(String instanceId) throws IOException {
         doDelete(MessageFormat.format("{0}?operation=delete", getInstanceUrl(instanceId)));
+        instanceListingCache.invalidateAll();
     }
 
     public IProgressMonitor reinstall(String instanceId, JSONArray variables) throws IOException {
         JSONObject instance = doOperation(instanceId, InstanceOperation.REINSTALL, variables);
         return new InstanceProgressMonitor(getInstanceUrl(instanceId),
-                Collections.singleton(InstanceOperation.REINSTALL), instance.getString("updated"));
+                Collections.singleton(InstanceOperation.REINSTALL), instance.getString("updated"),
+                instance.optString("owner", null));
     }
 
     public IProgressMonitor createTemplate(
@@ -911,10 +1101,18 @@ public class Client implements ApiClient {
         return new ProviderProgressMonitor(endpointUrl + provider.getString("uri"), provider.getString("updated"));
     }
 
-    private String prepareUrl(String url) {
+    protected String prepareUrl(String url) {
         return url.startsWith("/") ? endpointUrl + url : url;
     }
 
+    /**
+     * Reads box metadata: boxes, box versions, box stacks and box listings. Subclasses may serve it from a cache, the
+     * returned JSON belongs to the caller in any case.
+     */
+    protected JSON getMetadata(String url, boolean isArray) throws IOException {
+        return doGet(url, isArray);
+    }
+
     public JSON doGet(String url, boolean isArray) throws IOException {
         HttpGet get = new HttpGet(prepareUrl(url));
         get.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
@@ -1073,7 +1271,7 @@ public class Client implements ApiClient {
         return null;
     }
 
-    private String getErrorMessage(String errorResponseBody) {
+    static String getErrorMessage(String errorResponseBody) {
         JSONObject error = null;
         try {
             error = JSONObject.fromObject(errorResponseBody);
@@ -1083,6 +1281,35 @@ public class Client implements ApiClient {
         return error != null && error.containsKey("message") ? error.getString("message") : errorResponseBody;
     }
 
+    /**
+     * Returns the current token, connecting first if there is none.
+     */
+    synchronized String getToken() throws IOException {
+        if (token == null) {
+            connect();
+        }
+        return token;
+    }
+
+    /**
+     * Returns the current token without connecting, null if there is none yet or it has been dropped.
+     */
+    String getCurrentToken() {
+        return token;
+    }
+
+    /**
+     * Drops the current token so the next request logs in again. Returns false if the token cannot be renewed
+     * because this client is authenticated with a fixed token.
+     */
+    synchronized boolean renewToken() {
+        if (username == null) {
+            return false;
+        }
+        token = null;
+        return true;
+    }
+
     private void setRequiredHeaders(HttpRequestBase request) {
         request.setHeader("ElasticBox-Token", token);
         request.setHeader("ElasticBox-Release", Constants.ELASTICBOX_RELEASE);
@@ -1098,7 +1325,7 @@ public class Client implements ApiClient {
             connect();
         }
         setRequiredHeaders(request);
-        HttpResponse response = httpClient.execute(request);
+        HttpResponse response = connectionPool.getHttpClient().execute(request);
         int status = response.getStatusLine().getStatusCode();
         if (status == HttpStatus.SC_UNAUTHORIZED) {
             if (username != null) {
@@ -1107,11 +1334,12 @@ public class Client implements ApiClient {
                 request.reset();
                 connect();
                 setRequiredHeaders(request);
-                response = httpClient.execute(request);
+                response = connectionPool.getHttpClient().execute(request);
             }
             status = response.getStatusLine().getStatusCode();
         }
-        if (status < 200 || status > 299) {
+        // not modified is only returned to conditional requests, which handle it themselves
+        if ((status < 200 || status > 299) && status != HttpStatus.SC_NOT_MODIFIED) {
             if (username != null) {
                 token = null;
             }
@@ -1121,43 +1349,22 @@ public class Client implements ApiClient {
         return response;
     }
 
-    public static synchronized HttpClient getHttpClient() {
-        if (httpClient == null) {
-            HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
-            try {
-
-                SSLContext sslContext = new SSLContextBuilder().loadTrustMaterial(null, new TrustStrategy() {
-                    @Override
-                    public boolean isTrusted(X509Certificate[] x509Certificates, String authType)
-                            throws CertificateException {
-
-                        return true;
-                    }
-                    }).build();
-
-                httpClientBuilder.setSSLContext(sslContext);
-
-                SSLConnectionSocketFactory sslConnectionSocketFactory =
-                        new SSLConnectionSocketFactory(sslContext, new NoopHostnameVerifier());
-
-                Registry<ConnectionSocketFactory> socketFactoryRegistry =
-                        RegistryBuilder.<ConnectionSocketFactory>create()
-                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
-                        .register("https", sslConnectionSocketFactory).build();
-
-                PoolingHttpClientConnectionManager connectionManager =
-                        new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+    /**
+     * Returns an HTTP client with the default connection pool settings that is not bound to any endpoint.
+     */
+    public static HttpClient getHttpClient() {
+        return ConnectionPool.getConnectionPool(StringUtils.EMPTY, ConnectionPoolConfig.DEFAULT).getHttpClient();
+    }
 
-                httpClientBuilder.setConnectionManager(connectionManager);
+    static SSLContext createTrustAllSslContext() throws GeneralSecurityException {
+        return new SSLContextBuilder().loadTrustMaterial(null, new TrustStrategy() {
+            @Override
+            public boolean isTrusted(X509Certificate[] x509Certificates, String authType)
+                    throws CertificateException {
 
-                httpClient = httpClientBuilder.build();
-            } catch (Exception e) {
-                httpClient = httpClientBuilder.build();
+                return true;
             }
-
-        }
-
-        return httpClient;
+        }).build();
     }
 
 }
@@ -0,0 +1,314 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLContext;
+
+/**
+ * HTTP connection pool of an ElasticBox endpoint. There is one pool per endpoint and configuration, shared by all the
+ * clients of that endpoint. Besides the pool statistics of HttpClient, it keeps track of how long the requests wait
+ * to lease a connection. A pool that is no longer used, because the settings of its clients changed, is closed with
+ * {@link #close()} to release its connections and its idle connection evictor.
+ */
+public class ConnectionPool {
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private static final Map<String, ConnectionPool> pools = new ConcurrentHashMap<String, ConnectionPool>();
+
+    private final String key;
+    private final String endpointUrl;
+    private final ConnectionPoolConfig config;
+    private final InstrumentedConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final RequestConfig requestConfig;
+    private final ConnectionKeepAliveStrategy keepAliveStrategy;
+    private CloseableHttpAsyncClient httpAsyncClient;
+    private boolean closed;
+
+    private final AtomicLong leaseCount = new AtomicLong();
+    private final AtomicLong totalLeaseWait = new AtomicLong();
+    private final AtomicLong maxLeaseWait = new AtomicLong();
+
+    private ConnectionPool(String key, String endpointUrl, ConnectionPoolConfig config) {
+        this.key = key;
+        this.endpointUrl = endpointUrl;
+        this.config = config;
+
+        HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
+        InstrumentedConnectionManager manager;
+        try {
+            SSLContext sslContext = Client.createTrustAllSslContext();
+            httpClientBuilder.setSSLContext(sslContext);
+            Registry<ConnectionSocketFactory> socketFactoryRegistry =
+                    RegistryBuilder.<ConnectionSocketFactory>create()
+                    .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                    .register("https", new SSLConnectionSocketFactory(sslContext, new NoopHostnameVerifier()))
+                    .build();
+            manager = new InstrumentedConnectionManager(socketFactoryRegistry);
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Unable to create the SSL context of the HTTP client", ex);
+            manager = new InstrumentedConnectionManager();
+        }
+        manager.setMaxTotal(config.getMaxTotal());
+        manager.setDefaultMaxPerRoute(config.getMaxPerRoute());
+        connectionManager = manager;
+
+        final long keepAlive = TimeUnit.SECONDS.toMillis(config.getKeepAlive());
+        requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) TimeUnit.SECONDS.toMillis(config.getConnectTimeout()))
+                .setSocketTimeout((int) TimeUnit.SECONDS.toMillis(config.getSocketTimeout()))
+                .build();
+        keepAliveStrategy = new ConnectionKeepAliveStrategy() {
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+            }
+        };
+        httpClient = httpClientBuilder
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictExpiredConnections()
+                .evictIdleConnections(config.getIdleTimeout(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Returns the pool of the endpoint with the specified configuration, creating it if needed.
+     */
+    public static ConnectionPool getConnectionPool(String endpointUrl, ConnectionPoolConfig config) {
+        return getConnectionPool(getKey(endpointUrl, config), endpointUrl, config);
+    }
+
+    /**
+     * Returns the pool of the endpoint with the specified configuration that is used only by the cached clients of
+     * the clouds, creating it if needed. The clients created on their own never share it, so it can be closed when
+     * the cache doesn't keep any client that uses it.
+     */
+    public static ConnectionPool getCachedClientPool(String endpointUrl, ConnectionPoolConfig config) {
+        return getConnectionPool("cached " + getKey(endpointUrl, config), endpointUrl, config);
+    }
+
+    private static ConnectionPool getConnectionPool(String key, String endpointUrl, ConnectionPoolConfig config) {
+        ConnectionPool pool = pools.get(key);
+        if (pool == null) {
+            synchronized (pools) {
+                pool = pools.get(key);
+                if (pool == null) {
+                    pool = new ConnectionPool(key, endpointUrl, config);
+                    pools.put(key, pool);
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.fine(MessageFormat.format("Created connection pool for {0}: {1}", endpointUrl, config));
+                    }
+                }
+            }
+        }
+        return pool;
+    }
+
+    private static String getKey(String endpointUrl, ConnectionPoolConfig config) {
+        return endpointUrl + ' ' + config;
+    }
+
+    /**
+     * Removes the pool, so the next clients of its endpoint and configuration get a new one, and closes its
+     * connections, its idle connection evictor and its non-blocking client. The requests still running on the pool
+     * fail.
+     */
+    public void close() {
+        synchronized (pools) {
+            if (pools.get(key) == this) {
+                pools.remove(key);
+            }
+        }
+        CloseableHttpAsyncClient asyncClient;
+        synchronized (this) {
+            closed = true;
+            asyncClient = httpAsyncClient;
+        }
+        try {
+            httpClient.close();
+            if (asyncClient != null) {
+                asyncClient.close();
+            }
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(MessageFormat.format("Closed connection pool for {0}: {1}", endpointUrl, config));
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, MessageFormat.format("Error closing connection pool for {0}", endpointUrl),
+                    ex);
+        }
+    }
+
+    public String getEndpointUrl() {
+        return endpointUrl;
+    }
+
+    public ConnectionPoolConfig getConfig() {
+        return config;
+    }
+
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Returns the non-blocking HTTP client of the endpoint, which is created on first use with the same limits,
+     * timeouts and keep-alive as the pool. Its connections are not counted in the statistics of the pool.
+     */
+    public synchronized CloseableHttpAsyncClient getHttpAsyncClient() {
+        if (httpAsyncClient == null) {
+            if (closed) {
+                throw new IllegalStateException(MessageFormat.format("Connection pool for {0} is closed",
+                        endpointUrl));
+            }
+            HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+                    .setMaxConnTotal(config.getMaxTotal())
+                    .setMaxConnPerRoute(config.getMaxPerRoute())
+                    .setDefaultRequestConfig(requestConfig)
+                    .setKeepAliveStrategy(keepAliveStrategy);
+            try {
+                builder.setSSLContext(Client.createTrustAllSslContext())
+                        .setSSLHostnameVerifier(new NoopHostnameVerifier());
+            } catch (Exception ex) {
+                LOGGER.log(Level.WARNING, "Unable to create the SSL context of the asynchronous HTTP client", ex);
+            }
+            httpAsyncClient = builder.build();
+            httpAsyncClient.start();
+        }
+        return httpAsyncClient;
+    }
+
+    public int getLeased() {
+        return connectionManager.getTotalStats().getLeased();
+    }
+
+    /**
+     * Returns the number of requests that are waiting for a connection.
+     */
+    public int getPending() {
+        return connectionManager.getTotalStats().getPending();
+    }
+
+    public int getAvailable() {
+        return connectionManager.getTotalStats().getAvailable();
+    }
+
+    public long getLeaseCount() {
+        return leaseCount.get();
+    }
+
+    /**
+     * Returns the average time in milliseconds that the requests waited to lease a connection.
+     */
+    public long getAverageLeaseWait() {
+        long count = leaseCount.get();
+        return count > 0 ? totalLeaseWait.get() / count : 0;
+    }
+
+    /**
+     * Returns the longest time in milliseconds that a request waited to lease a connection.
+     */
+    public long getMaxLeaseWait() {
+        return maxLeaseWait.get();
+    }
+
+    @Override
+    public String toString() {
+        PoolStats stats = connectionManager.getTotalStats();
+        return MessageFormat.format("leased={0}, pending={1}, available={2}, max={3}, leases={4}, "
+                + "averageLeaseWait={5}ms, maxLeaseWait={6}ms",
+                stats.getLeased(), stats.getPending(), stats.getAvailable(), stats.getMax(), getLeaseCount(),
+                getAverageLeaseWait(), getMaxLeaseWait());
+    }
+
+    private void recordLeaseWait(long waitTime) {
+        leaseCount.incrementAndGet();
+        totalLeaseWait.addAndGet(waitTime);
+        long max = maxLeaseWait.get();
+        while (waitTime > max && !maxLeaseWait.compareAndSet(max, waitTime)) {
+            max = maxLeaseWait.get();
+        }
+    }
+
+    private class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+
+        InstrumentedConnectionManager() {
+            super();
+        }
+
+        InstrumentedConnectionManager(Registry<ConnectionSocketFactory> socketFactoryRegistry) {
+            super(socketFactoryRegistry);
+        }
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            final ConnectionRequest request = super.requestConnection(route, state);
+            final long requestTime = System.currentTimeMillis();
+            return new ConnectionRequest() {
+                public HttpClientConnection get(long timeout, TimeUnit unit)
+                        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+
+                    try {
+                        return request.get(timeout, unit);
+                    } finally {
+                        long waitTime = System.currentTimeMillis() - requestTime;
+                        recordLeaseWait(waitTime);
+                        if (waitTime > 1000 && LOGGER.isLoggable(Level.FINE)) {
+                            LOGGER.fine(MessageFormat.format("Waited {0}ms for a connection to {1}: {2}",
+                                    waitTime, endpointUrl, ConnectionPool.this));
+                        }
+                    }
+                }
+
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox;
+
+import java.text.MessageFormat;
+
+/**
+ * Limits and timeouts of the HTTP connection pool of an ElasticBox endpoint. A value that is zero or negative stands
+ * for the default one.
+ */
+public final class ConnectionPoolConfig {
+    public static final int DEFAULT_MAX_TOTAL = 100;
+    public static final int DEFAULT_MAX_PER_ROUTE = 20;
+    public static final int DEFAULT_KEEP_ALIVE = 60;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 30;
+    public static final int DEFAULT_SOCKET_TIMEOUT = 300;
+    public static final int DEFAULT_IDLE_TIMEOUT = 60;
+
+    public static final ConnectionPoolConfig DEFAULT = new ConnectionPoolConfig(0, 0, 0, 0, 0, 0);
+
+    private final int maxTotal;
+    private final int maxPerRoute;
+    private final int keepAlive;
+    private final int connectTimeout;
+    private final int socketTimeout;
+    private final int idleTimeout;
+
+    /**
+     * @param maxTotal maximum number of connections
+     * @param maxPerRoute maximum number of connections to the same host
+     * @param keepAlive seconds to keep a connection open when the server doesn't say how long
+     * @param connectTimeout seconds to wait for a connection to be established
+     * @param socketTimeout seconds to wait for data on an established connection
+     * @param idleTimeout seconds after which idle connections are closed
+     */
+    public ConnectionPoolConfig(int maxTotal, int maxPerRoute, int keepAlive, int connectTimeout, int socketTimeout,
+                                int idleTimeout) {
+        this.maxTotal = maxTotal > 0 ? maxTotal : DEFAULT_MAX_TOTAL;
+        this.maxPerRoute = maxPerRoute > 0 ? Math.min(maxPerRoute, this.maxTotal)
+                : Math.min(DEFAULT_MAX_PER_ROUTE, this.maxTotal);
+        this.keepAlive = keepAlive > 0 ? keepAlive : DEFAULT_KEEP_ALIVE;
+        this.connectTimeout = connectTimeout > 0 ? connectTimeout : DEFAULT_CONNECT_TIMEOUT;
+        this.socketTimeout = socketTimeout > 0 ? socketTimeout : DEFAULT_SOCKET_TIMEOUT;
+        this.idleTimeout = idleTimeout > 0 ? idleTimeout : DEFAULT_IDLE_TIMEOUT;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public int getKeepAlive() {
+        return keepAlive;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ConnectionPoolConfig)) {
+            return false;
+        }
+        ConnectionPoolConfig config = (ConnectionPoolConfig) obj;
+        return maxTotal == config.maxTotal && maxPerRoute == config.maxPerRoute && keepAlive == config.keepAlive
+                && connectTimeout == config.connectTimeout && socketTimeout == config.socketTimeout
+                && idleTimeout == config.idleTimeout;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = maxTotal;
+        result = 31 * result + maxPerRoute;
+        result = 31 * result + keepAlive;
+        result = 31 * result + connectTimeout;
+        result = 31 * result + socketTimeout;
+        result = 31 * result + idleTimeout;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("maxTotal={0}, maxPerRoute={1}, keepAlive={2}s, connectTimeout={3}s, "
+                + "socketTimeout={4}s, idleTimeout={5}s",
+                maxTotal, maxPerRoute, keepAlive, connectTimeout, socketTimeout, idleTimeout);
+    }
+
+}
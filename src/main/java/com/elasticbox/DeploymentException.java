@@ -0,0 +1,43 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2014 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when a request of a batch deployment fails. The instances of the requests before it have been already
+ * deployed, their monitors are returned by {@link #getMonitors()} in the order of the requests, and the requests after
+ * it have not been submitted. The error of the failed request is the cause.
+ */
+public class DeploymentException extends IOException {
+    private final List<IProgressMonitor> monitors;
+
+    public DeploymentException(String message, IOException cause, List<IProgressMonitor> monitors) {
+        super(message, cause);
+        this.monitors = Collections.unmodifiableList(monitors);
+    }
+
+    /**
+     * Returns the monitors of the deployments that were submitted before the failure.
+     */
+    public List<IProgressMonitor> getMonitors() {
+        return monitors;
+    }
+
+    @Override
+    public synchronized IOException getCause() {
+        return (IOException) super.getCause();
+    }
+}
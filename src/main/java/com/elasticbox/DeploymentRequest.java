@@ -0,0 +1,235 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Request to deploy an instance of a box version. The caller that already has the metadata of the box version, from
+ * its box stack for instance, should pass its name with {@link DeploymentRequestBuilder#withBox(String, String)} so
+ * the client doesn't fetch the box just to name the instance after it.
+ */
+public final class DeploymentRequest {
+    private final String boxVersion;
+    private final String boxName;
+    private final String policyId;
+    private final String name;
+    private final String workspaceId;
+    private final List<String> tags;
+    private final JSONArray variables;
+    private final String expirationTime;
+    private final String expirationOperation;
+    private final JSONArray policyVariables;
+    private final String automaticUpdates;
+
+    private DeploymentRequest(DeploymentRequestBuilder builder) {
+        boxVersion = builder.boxVersion;
+        boxName = builder.boxName;
+        policyId = builder.policyId;
+        name = builder.name;
+        workspaceId = builder.workspaceId;
+        tags = Collections.unmodifiableList(new ArrayList<String>(builder.tags));
+        variables = builder.variables;
+        expirationTime = builder.expirationTime;
+        expirationOperation = builder.expirationOperation;
+        policyVariables = builder.policyVariables;
+        automaticUpdates = builder.automaticUpdates;
+    }
+
+    public String getBoxVersion() {
+        return boxVersion;
+    }
+
+    /**
+     * Returns the name of the box version, or null if the caller didn't provide it.
+     */
+    public String getBoxName() {
+        return boxName;
+    }
+
+    public String getPolicyId() {
+        return policyId;
+    }
+
+    /**
+     * Returns the name of the instance, or null if the instance must be named after the box.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getWorkspaceId() {
+        return workspaceId;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public JSONArray getVariables() {
+        return variables;
+    }
+
+    public String getExpirationTime() {
+        return expirationTime;
+    }
+
+    public String getExpirationOperation() {
+        return expirationOperation;
+    }
+
+    public JSONArray getPolicyVariables() {
+        return policyVariables;
+    }
+
+    public String getAutomaticUpdates() {
+        return automaticUpdates;
+    }
+
+    /**
+     * Returns true if the name of the instance is known without fetching the box.
+     */
+    boolean isNameResolved() {
+        return StringUtils.isNotBlank(name) || boxName != null;
+    }
+
+    /**
+     * Creates the body of the deployment request.
+     *
+     * @param defaultName name of the instance if the request doesn't specify any name and the name of the box is
+     *                    unknown
+     */
+    JSONObject toJson(String defaultName) {
+        JSONObject box = new JSONObject();
+        box.put("id", boxVersion);
+        box.put("variables", variables);
+        JSONObject policyBox = new JSONObject();
+        policyBox.put("id", policyId);
+        policyBox.put("variables", policyVariables);
+
+        JSONObject deployRequest = new JSONObject();
+        deployRequest.put("schema", Constants.BASE_ELASTICBOX_SCHEMA + Constants.DEPLOYMENT_REQUEST_SCHEMA_NAME);
+        deployRequest.put("name", StringUtils.isNotBlank(name) ? name : boxName != null ? boxName : defaultName);
+        deployRequest.put("box", box);
+        deployRequest.put("owner", workspaceId);
+        deployRequest.put("policy_box", policyBox);
+        deployRequest.put("automatic_updates",
+                automaticUpdates != null ? automaticUpdates : Constants.AUTOMATIC_UPDATES_OFF);
+
+        if (expirationTime != null && expirationOperation != null) {
+            JSONObject lease = new JSONObject();
+            lease.put("expire", expirationTime);
+            lease.put("operation", expirationOperation);
+            deployRequest.put("lease", lease);
+        }
+
+        deployRequest.put("instance_tags", tags);
+        return deployRequest;
+    }
+
+    public static class DeploymentRequestBuilder {
+        private String boxVersion;
+        private String boxName;
+        private String policyId;
+        private String name;
+        private String workspaceId;
+        private List<String> tags = Collections.emptyList();
+        private JSONArray variables = new JSONArray();
+        private String expirationTime;
+        private String expirationOperation;
+        private JSONArray policyVariables;
+        private String automaticUpdates = Constants.AUTOMATIC_UPDATES_OFF;
+
+        /**
+         * Sets the box version to deploy. The client fetches the box version to name the instance after it if no
+         * instance name is set.
+         */
+        public DeploymentRequestBuilder withBoxVersion(String boxVersion) {
+            this.boxVersion = boxVersion;
+            return this;
+        }
+
+        /**
+         * Sets the box version to deploy along with its name, which is the name of the instance if no instance name
+         * is set.
+         */
+        public DeploymentRequestBuilder withBox(String boxVersion, String boxName) {
+            this.boxVersion = boxVersion;
+            this.boxName = boxName;
+            return this;
+        }
+
+        /**
+         * Sets the box version to deploy from its JSON, its box stack entry for instance.
+         */
+        public DeploymentRequestBuilder withBox(JSONObject boxVersion) {
+            return withBox(boxVersion.getString("id"), boxVersion.getString("name"));
+        }
+
+        public DeploymentRequestBuilder withPolicy(String policyId) {
+            this.policyId = policyId;
+            return this;
+        }
+
+        public DeploymentRequestBuilder withName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public DeploymentRequestBuilder withWorkspace(String workspaceId) {
+            this.workspaceId = workspaceId;
+            return this;
+        }
+
+        public DeploymentRequestBuilder withTags(List<String> tags) {
+            this.tags = tags != null ? tags : Collections.<String>emptyList();
+            return this;
+        }
+
+        public DeploymentRequestBuilder withVariables(JSONArray variables) {
+            this.variables = variables != null ? variables : new JSONArray();
+            return this;
+        }
+
+        public DeploymentRequestBuilder withExpiration(String expirationTime, String expirationOperation) {
+            this.expirationTime = expirationTime;
+            this.expirationOperation = expirationOperation;
+            return this;
+        }
+
+        public DeploymentRequestBuilder withPolicyVariables(JSONArray policyVariables) {
+            this.policyVariables = policyVariables;
+            return this;
+        }
+
+        public DeploymentRequestBuilder withAutomaticUpdates(String automaticUpdates) {
+            this.automaticUpdates = automaticUpdates;
+            return this;
+        }
+
+        public DeploymentRequest build() {
+            if (StringUtils.isBlank(boxVersion)) {
+                throw new IllegalStateException("The box version to deploy is required");
+            }
+            return new DeploymentRequest(this);
+        }
+    }
+
+}
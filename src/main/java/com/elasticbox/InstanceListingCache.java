@@ -0,0 +1,161 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Short-lived cache of the instance snapshots of the workspaces of a client. The workloads of a single executor cycle
+ * all need the instances of the same workspaces, with this cache they are fetched once per workspace: concurrent
+ * callers wait for the request that is already in flight instead of sending their own. The listings of a client are
+ * invalidated when an instance is deployed or changed through it.
+ */
+public class InstanceListingCache {
+    private static final Logger LOGGER = Logger.getLogger(InstanceListingCache.class.getName());
+
+    static final long DEFAULT_TIME_TO_LIVE = Long.getLong("elasticbox.instanceListingCache.ttl",
+            TimeUnit.SECONDS.toMillis(5));
+
+    private final Client client;
+    private final long timeToLive;
+    private final ConcurrentMap<String, Listing> listings = new ConcurrentHashMap<String, Listing>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+
+    InstanceListingCache(Client client) {
+        this(client, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * @param timeToLive milliseconds a listing is used after it is fetched, zero or negative to disable the cache
+     */
+    InstanceListingCache(Client client, long timeToLive) {
+        this.client = client;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the snapshots of the instances of the workspace, fetching them if the cached listing is missing or
+     * expired. The returned list cannot be modified.
+     */
+    public List<InstanceSnapshot> getInstances(final String workspaceId) throws IOException {
+        if (timeToLive <= 0) {
+            return Collections.unmodifiableList(client.getInstanceSnapshots(workspaceId));
+        }
+
+        requestCount.incrementAndGet();
+        while (true) {
+            Listing listing = listings.get(workspaceId);
+            if (listing != null && !listing.isExpired()) {
+                hitCount.incrementAndGet();
+                return listing.get();
+            }
+
+            Listing newListing = new Listing(workspaceId);
+            boolean added = listing == null ? listings.putIfAbsent(workspaceId, newListing) == null
+                    : listings.replace(workspaceId, listing, newListing);
+            if (added) {
+                newListing.fetch();
+                return newListing.get();
+            }
+        }
+    }
+
+    /**
+     * Discards the cached listing of the workspace.
+     */
+    public void invalidate(String workspaceId) {
+        if (workspaceId != null) {
+            listings.remove(workspaceId);
+        }
+    }
+
+    /**
+     * Discards the cached listings of all the workspaces, for changes to instances whose workspace is not known.
+     */
+    public void invalidateAll() {
+        listings.clear();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns how many requests were served by a cached listing or by a fetch started by another caller.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    private class Listing {
+        private final String workspaceId;
+        private final FutureTask<List<InstanceSnapshot>> task;
+        private volatile long expirationTime = Long.MAX_VALUE;
+
+        Listing(final String workspaceId) {
+            this.workspaceId = workspaceId;
+            task = new FutureTask<List<InstanceSnapshot>>(new Callable<List<InstanceSnapshot>>() {
+                public List<InstanceSnapshot> call() throws IOException {
+                    return Collections.unmodifiableList(client.getInstanceSnapshots(workspaceId));
+                }
+            });
+        }
+
+        void fetch() {
+            task.run();
+            expirationTime = System.currentTimeMillis() + timeToLive;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expirationTime;
+        }
+
+        List<InstanceSnapshot> get() throws IOException {
+            try {
+                return task.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
+            } catch (ExecutionException ex) {
+                // don't keep the failure, the next caller fetches the listing again
+                listings.remove(workspaceId, this);
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine(MessageFormat.format("Error fetching the instances of workspace {0}: {1}",
+                            workspaceId, ex.getCause()));
+                }
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+}
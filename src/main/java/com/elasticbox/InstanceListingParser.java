@@ -0,0 +1,268 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parses a JSON array of instances as it is read, handing each instance over as soon as it is complete. Only the
+ * requested fields are materialized, the rest of every instance is skipped without being buffered. A field is either
+ * a top-level name, like <code>tags</code>, or a name followed by the name of a field of its object value, like
+ * <code>operation.event</code>.
+ */
+public final class InstanceListingParser {
+
+    /**
+     * The fields read by the workloads that keep track of the slave instances.
+     */
+    public static final Collection<String> SUMMARY_FIELDS = Collections.unmodifiableList(Arrays.asList(
+            "id", "name", "uri", "owner", "state", "operation.event", "tags", "updated"));
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    public interface InstanceHandler {
+
+        void handle(JSONObject instance) throws IOException;
+
+    }
+
+    private final Map<String, Set<String>> projection;
+
+    /**
+     * @param fields fields to materialize, or null to materialize whole instances
+     */
+    public InstanceListingParser(Collection<String> fields) {
+        if (fields == null) {
+            projection = null;
+        } else {
+            projection = new HashMap<String, Set<String>>();
+            for (String field : fields) {
+                int dot = field.indexOf('.');
+                if (dot < 0) {
+                    projection.put(field, null);
+                } else {
+                    String name = field.substring(0, dot);
+                    Set<String> subfields = projection.get(name);
+                    if (subfields == null) {
+                        if (projection.containsKey(name)) {
+                            continue;
+                        }
+                        subfields = new HashSet<String>();
+                        projection.put(name, subfields);
+                    }
+                    subfields.add(field.substring(dot + 1));
+                }
+            }
+        }
+    }
+
+    public void parse(InputStream input, InstanceHandler handler) throws IOException {
+        JsonParser parser = JSON_FACTORY.createParser(input);
+        try {
+            startArray(parser);
+            while (nextInstance(parser)) {
+                handler.handle(readInstance(parser));
+            }
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Parses the instances as {@link InstanceSnapshot}s, without building a JSON object for them. The operation may be
+     * either the operation object of the instance or, like in older versions of ElasticBox, just its event.
+     */
+    public static void parseSnapshots(InputStream input, InstanceSnapshot.Handler handler) throws IOException {
+        JsonParser parser = JSON_FACTORY.createParser(input);
+        try {
+            startArray(parser);
+            while (nextInstance(parser)) {
+                handler.handle(readSnapshot(parser));
+            }
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static void startArray(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Expected an array of instances but got " + parser.getCurrentToken());
+        }
+    }
+
+    private static boolean nextInstance(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Expected an instance but got " + token);
+        }
+        return true;
+    }
+
+    private static InstanceSnapshot readSnapshot(JsonParser parser) throws IOException {
+        String id = null;
+        String workspace = null;
+        String updated = null;
+        InstanceSnapshot.State state = null;
+        InstanceSnapshot.Operation operation = null;
+        List<String> tags = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    id = parser.getText();
+                    break;
+
+                case "owner":
+                    workspace = parser.getText();
+                    break;
+
+                case "updated":
+                    updated = parser.getText();
+                    break;
+
+                case "state":
+                    state = InstanceSnapshot.State.fromValue(parser.getText());
+                    break;
+
+                case "operation":
+                    if (token == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String field = parser.getCurrentName();
+                            if (parser.nextToken() == JsonToken.VALUE_STRING && "event".equals(field)) {
+                                operation = InstanceSnapshot.Operation.fromValue(parser.getText());
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    } else {
+                        operation = InstanceSnapshot.Operation.fromValue(parser.getText());
+                    }
+                    break;
+
+                case "tags":
+                    if (token == JsonToken.START_ARRAY) {
+                        tags = new ArrayList<String>();
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            tags.add(parser.getText());
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (id == null) {
+            throw new IOException("Found an instance without ID");
+        }
+        return new InstanceSnapshot(id, workspace, state, operation, tags, updated);
+    }
+
+    private JSONObject readInstance(JsonParser parser) throws IOException {
+        if (projection == null) {
+            return readObject(parser, null);
+        }
+
+        JSONObject instance = new JSONObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (!projection.containsKey(name)) {
+                parser.skipChildren();
+                continue;
+            }
+            Set<String> subfields = projection.get(name);
+            if (subfields != null && token == JsonToken.START_OBJECT) {
+                instance.put(name, readObject(parser, subfields));
+            } else {
+                instance.put(name, readValue(parser));
+            }
+        }
+        return instance;
+    }
+
+    private static JSONObject readObject(JsonParser parser, Set<String> fields) throws IOException {
+        JSONObject object = new JSONObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if (fields == null || fields.contains(name)) {
+                object.put(name, readValue(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return object;
+    }
+
+    private static Object readValue(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case START_OBJECT:
+                return readObject(parser, null);
+
+            case START_ARRAY:
+                JSONArray array = new JSONArray();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    array.add(readValue(parser));
+                }
+                return array;
+
+            case VALUE_STRING:
+                return parser.getText();
+
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+
+            case VALUE_NULL:
+                return JSONNull.getInstance();
+
+            default:
+                throw new IOException("Unexpected JSON token " + parser.getCurrentToken());
+        }
+    }
+
+}
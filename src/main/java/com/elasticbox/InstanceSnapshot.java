@@ -0,0 +1,235 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable view of the fields of an instance that are needed to keep track of the slave instances. Snapshots are
+ * read directly from the instance listings by {@link InstanceListingParser#parseSnapshots}, without building the JSON
+ * object of the instance.
+ */
+public final class InstanceSnapshot {
+
+    public enum State {
+        PROCESSING(Client.InstanceState.PROCESSING),
+        DONE(Client.InstanceState.DONE),
+        UNAVAILABLE(Client.InstanceState.UNAVAILABLE),
+        UNKNOWN(null);
+
+        private static final Map<String, State> valueToStateMap = new HashMap<String, State>();
+
+        static {
+            for (State state : values()) {
+                valueToStateMap.put(state.value, state);
+            }
+        }
+
+        private final String value;
+
+        State(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public boolean isFinished() {
+            return this == DONE || this == UNAVAILABLE;
+        }
+
+        /**
+         * Returns the state with the specified value, or {@link #UNKNOWN} if there is none.
+         */
+        public static State fromValue(String value) {
+            State state = valueToStateMap.get(value);
+            return state != null ? state : UNKNOWN;
+        }
+    }
+
+    public enum Operation {
+        DEPLOY(Client.InstanceOperation.DEPLOY),
+        REINSTALL(Client.InstanceOperation.REINSTALL),
+        RECONFIGURE(Client.InstanceOperation.RECONFIGURE),
+        POWERON(Client.InstanceOperation.POWERON),
+        SHUTDOWN(Client.InstanceOperation.SHUTDOWN),
+        SHUTDOWN_SERVICE(Client.InstanceOperation.SHUTDOWN_SERVICE),
+        TERMINATE(Client.InstanceOperation.TERMINATE),
+        TERMINATE_SERVICE(Client.InstanceOperation.TERMINATE_SERVICE),
+        SNAPSHOT(Client.InstanceOperation.SNAPSHOT),
+        UNKNOWN(null);
+
+        private static final Map<String, Operation> valueToOperationMap = new HashMap<String, Operation>();
+
+        static {
+            for (Operation operation : values()) {
+                valueToOperationMap.put(operation.value, operation);
+            }
+        }
+
+        private final String value;
+
+        Operation(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * Whether the operation is one of {@link Client#ON_OPERATIONS}.
+         */
+        public boolean isOn() {
+            return Client.ON_OPERATIONS.contains(value);
+        }
+
+        /**
+         * Whether the operation is one of {@link Client#SHUTDOWN_OPERATIONS}.
+         */
+        public boolean isShutdown() {
+            return this == SHUTDOWN || this == SHUTDOWN_SERVICE;
+        }
+
+        /**
+         * Whether the operation is one of {@link Client#TERMINATE_OPERATIONS}.
+         */
+        public boolean isTerminate() {
+            return this == TERMINATE || this == TERMINATE_SERVICE;
+        }
+
+        /**
+         * Returns the operation with the specified value, or {@link #UNKNOWN} if there is none.
+         */
+        public static Operation fromValue(String value) {
+            Operation operation = valueToOperationMap.get(value);
+            return operation != null ? operation : UNKNOWN;
+        }
+    }
+
+    public interface Handler {
+
+        void handle(InstanceSnapshot instance) throws IOException;
+
+    }
+
+    private final String id;
+    private final String workspace;
+    private final State state;
+    private final Operation operation;
+    private final List<String> tags;
+    private final String updated;
+
+    /**
+     * @param id ID of the instance
+     * @param workspace ID of the workspace that owns the instance
+     * @param state state of the instance
+     * @param operation last operation of the instance
+     * @param tags tags of the instance, the list is not copied
+     * @param updated the time the instance was last updated, as returned by ElasticBox
+     */
+    public InstanceSnapshot(String id, String workspace, State state, Operation operation, List<String> tags,
+                            String updated) {
+        this.id = id;
+        this.workspace = workspace;
+        this.state = state != null ? state : State.UNKNOWN;
+        this.operation = operation != null ? operation : Operation.UNKNOWN;
+        this.tags = tags != null ? Collections.unmodifiableList(tags) : Collections.<String>emptyList();
+        this.updated = updated;
+    }
+
+    /**
+     * Creates the snapshot of an instance fetched on its own, for the instances that are not in the listings.
+     */
+    public static InstanceSnapshot valueOf(JSONObject instance) {
+        List<String> tags = null;
+        JSONArray tagsJson = instance.optJSONArray("tags");
+        if (tagsJson != null) {
+            tags = new ArrayList<String>(tagsJson.size());
+            for (Object tag : tagsJson) {
+                tags.add(tag.toString());
+            }
+        }
+        JSONObject operation = instance.optJSONObject("operation");
+        return new InstanceSnapshot(instance.getString("id"), instance.optString("owner", null),
+                State.fromValue(instance.optString("state", null)),
+                operation != null ? Operation.fromValue(operation.optString("event", null)) : null, tags,
+                instance.optString("updated", null));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getWorkspace() {
+        return workspace;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    /**
+     * Returns the first tag of the instance, which is the name of the slave for the slave instances, or null if the
+     * instance has no tags.
+     */
+    public String getFirstTag() {
+        return tags.isEmpty() ? null : tags.get(0);
+    }
+
+    public String getUpdated() {
+        return updated;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof InstanceSnapshot)) {
+            return false;
+        }
+        InstanceSnapshot instance = (InstanceSnapshot) obj;
+        return id.equals(instance.id) && (updated == null ? instance.updated == null
+                : updated.equals(instance.updated));
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "InstanceSnapshot{id=" + id + ", state=" + state + ", operation=" + operation + ", updated="
+                + updated + '}';
+    }
+
+}
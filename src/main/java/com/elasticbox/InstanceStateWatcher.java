@@ -0,0 +1,316 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the progress monitors registered by any number of waiting threads and completes their futures as soon as
+ * the monitored resources are done. Instance monitors of the same workspace are checked together with one batched
+ * request per poll, other monitors are checked individually. The poll interval grows while nothing changes and drops
+ * back to the minimum as soon as a resource is updated or a new monitor is registered.
+ *
+ * <p>When the instances of a workspace cannot be fetched, their monitors stay watched and the poll interval keeps
+ * growing, so a short outage of the endpoint doesn't fail every waiting thread. A monitor fails after
+ * {@link #MAX_ERRORS} polls in a row without its instance, unless its waiting thread times out before.</p>
+ *
+ * <p>The polls are blocking requests, so the watchers of each endpoint have their own scheduler with a bounded
+ * number of threads. A slow endpoint only delays the watchers of its own monitors.</p>
+ */
+public class InstanceStateWatcher {
+    private static final Logger LOGGER = Logger.getLogger(InstanceStateWatcher.class.getName());
+
+    static final long MIN_POLL_INTERVAL = Long.getLong("elasticbox.InstanceStateWatcher.minPollInterval", 1000);
+    static final long MAX_POLL_INTERVAL = Long.getLong("elasticbox.InstanceStateWatcher.maxPollInterval", 10 * 1000);
+    static final int MAX_ERRORS = Integer.getInteger("elasticbox.InstanceStateWatcher.maxErrors", 5);
+
+    private static final int THREADS = Integer.getInteger("elasticbox.InstanceStateWatcher.threads", 2);
+
+    private static final ConcurrentMap<String, ScheduledExecutorService> endpointToSchedulerMap =
+            new ConcurrentHashMap<String, ScheduledExecutorService>();
+
+    /**
+     * Watcher used by the monitors that are not bound to a client, all of them are checked individually.
+     */
+    public static final InstanceStateWatcher DEFAULT = new InstanceStateWatcher(null);
+
+    private final Client client;
+    private final long minPollInterval;
+    private final long maxPollInterval;
+    private final int maxErrors;
+    private final Map<AbstractProgressMonitor, Watch> watches = new LinkedHashMap<AbstractProgressMonitor, Watch>();
+    private long pollInterval;
+    private boolean polling;
+    private boolean resetInterval;
+    private ScheduledFuture<?> nextPoll;
+    // resolved on the first poll, the endpoint of the client is not set yet when its watcher is created
+    private ScheduledExecutorService scheduler;
+
+    private final Runnable pollTask = new Runnable() {
+        public void run() {
+            poll();
+        }
+    };
+
+    public InstanceStateWatcher(Client client) {
+        this(client, MIN_POLL_INTERVAL, MAX_POLL_INTERVAL, MAX_ERRORS);
+    }
+
+    InstanceStateWatcher(Client client, long minPollInterval, long maxPollInterval, int maxErrors) {
+        this.client = client;
+        this.minPollInterval = minPollInterval;
+        this.maxPollInterval = maxPollInterval;
+        this.maxErrors = maxErrors;
+        pollInterval = minPollInterval;
+    }
+
+    private static ScheduledExecutorService getScheduler(String endpointUrl) {
+        ScheduledExecutorService scheduler = endpointToSchedulerMap.get(endpointUrl);
+        if (scheduler == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(THREADS, new ThreadFactoryBuilder()
+                    .setNameFormat("ElasticBox-InstanceStateWatcher-" + endpointUrl.replace("%", "%%") + "-%d")
+                    .setDaemon(true).build());
+            // the endpoints without monitors to watch don't keep any thread
+            executor.setKeepAliveTime(60, TimeUnit.SECONDS);
+            executor.allowCoreThreadTimeOut(true);
+            scheduler = endpointToSchedulerMap.putIfAbsent(endpointUrl, executor);
+            if (scheduler == null) {
+                scheduler = executor;
+            } else {
+                executor.shutdown();
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Registers the monitor with this watcher. The returned future succeeds when the monitored resource is done and
+     * fails with the exception thrown while checking it, {@link IProgressMonitor.IncompleteException} included.
+     * Registering a monitor that is already watched returns the existing future.
+     */
+    public ListenableFuture<Void> watch(AbstractProgressMonitor monitor) {
+        Watch watch;
+        synchronized (this) {
+            watch = watches.get(monitor);
+            if (watch == null) {
+                watch = new Watch(monitor);
+                watches.put(monitor, watch);
+            }
+            pollInterval = minPollInterval;
+            resetInterval = true;
+            schedule(minPollInterval);
+        }
+        return watch.future;
+    }
+
+    /**
+     * Stops watching the monitor, the future returned for it is cancelled.
+     */
+    public void cancel(AbstractProgressMonitor monitor) {
+        Watch watch;
+        synchronized (this) {
+            watch = watches.remove(monitor);
+        }
+        if (watch != null) {
+            watch.future.cancel(false);
+        }
+    }
+
+    public synchronized int getWatchCount() {
+        return watches.size();
+    }
+
+    private synchronized void schedule(long delay) {
+        if (polling) {
+            return;
+        }
+        if (nextPoll != null) {
+            if (nextPoll.getDelay(TimeUnit.MILLISECONDS) <= delay) {
+                return;
+            }
+            nextPoll.cancel(false);
+        }
+        if (scheduler == null) {
+            scheduler = getScheduler(client != null ? client.getEndpointUrl() : "default");
+        }
+        nextPoll = scheduler.schedule(pollTask, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+        List<Watch> pending;
+        synchronized (this) {
+            polling = true;
+            resetInterval = false;
+            nextPoll = null;
+            pending = new ArrayList<Watch>(watches.values());
+        }
+
+        boolean changed = false;
+        try {
+            Map<String, List<Watch>> batches = new HashMap<String, List<Watch>>();
+            List<Watch> singles = new ArrayList<Watch>();
+            for (Watch watch : pending) {
+                String workspaceId = client != null ? watch.monitor.getWorkspaceId() : null;
+                if (workspaceId == null) {
+                    singles.add(watch);
+                } else {
+                    List<Watch> batch = batches.get(workspaceId);
+                    if (batch == null) {
+                        batch = new ArrayList<Watch>();
+                        batches.put(workspaceId, batch);
+                    }
+                    batch.add(watch);
+                }
+            }
+
+            for (Map.Entry<String, List<Watch>> entry : batches.entrySet()) {
+                changed |= checkBatch(entry.getKey(), entry.getValue());
+            }
+
+            for (Watch watch : singles) {
+                try {
+                    changed |= check(watch, watch.monitor.getResource());
+                } catch (IOException | RuntimeException ex) {
+                    complete(watch, ex);
+                    changed = true;
+                }
+            }
+        } finally {
+            synchronized (this) {
+                polling = false;
+                if (changed || resetInterval) {
+                    pollInterval = minPollInterval;
+                } else {
+                    pollInterval = Math.min(pollInterval * 2, maxPollInterval);
+                }
+                if (!watches.isEmpty()) {
+                    schedule(pollInterval);
+                }
+            }
+        }
+    }
+
+    private boolean checkBatch(String workspaceId, List<Watch> batch) {
+        List<String> instanceIds = new ArrayList<String>(batch.size());
+        for (Watch watch : batch) {
+            instanceIds.add(Client.getResourceId(watch.monitor.getResourceUrl()));
+        }
+
+        JSONArray instances;
+        try {
+            instances = client.getInstances(workspaceId, instanceIds);
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, MessageFormat.format("Error fetching {0} instances of workspace {1}",
+                    instanceIds.size(), workspaceId), ex);
+            boolean failed = false;
+            for (Watch watch : batch) {
+                if (++watch.errors >= maxErrors) {
+                    complete(watch, ex);
+                    failed = true;
+                }
+            }
+            // the others are checked again after a longer interval
+            return failed;
+        }
+
+        Map<String, JSONObject> idToInstanceMap = new HashMap<String, JSONObject>();
+        for (Object instance : instances) {
+            JSONObject instanceJson = (JSONObject) instance;
+            idToInstanceMap.put(instanceJson.getString("id"), instanceJson);
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < batch.size(); i++) {
+            Watch watch = batch.get(i);
+            watch.errors = 0;
+            JSONObject instance = idToInstanceMap.get(instanceIds.get(i));
+            if (instance == null) {
+                complete(watch, new IProgressMonitor.IncompleteException(
+                        MessageFormat.format("{0} cannot be found", watch.monitor.getResourceUrl())));
+                changed = true;
+            } else {
+                changed |= check(watch, instance);
+            }
+        }
+        return changed;
+    }
+
+    private boolean check(Watch watch, JSONObject resource) {
+        try {
+            if (watch.monitor.isDone(resource)) {
+                complete(watch, null);
+                return true;
+            }
+        } catch (IOException | RuntimeException ex) {
+            complete(watch, ex);
+            return true;
+        }
+
+        String updated = resource.optString("updated", null);
+        boolean changed = watch.lastUpdated != null && !watch.lastUpdated.equals(updated);
+        watch.lastUpdated = updated;
+        return changed;
+    }
+
+    private void complete(Watch watch, Exception exception) {
+        synchronized (this) {
+            if (watches.get(watch.monitor) == watch) {
+                watches.remove(watch.monitor);
+            }
+        }
+
+        if (exception == null) {
+            watch.future.set(null);
+        } else {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(MessageFormat.format("Stopped watching {0}: {1}", watch.monitor.getResourceUrl(),
+                        exception.getMessage()));
+            }
+            watch.future.setException(exception);
+        }
+    }
+
+    private static class Watch {
+        private final AbstractProgressMonitor monitor;
+        private final SettableFuture<Void> future = SettableFuture.create();
+        private String lastUpdated;
+        // polls in a row that failed to fetch the instance
+        private int errors;
+
+        Watch(AbstractProgressMonitor monitor) {
+            this.monitor = monitor;
+        }
+    }
+
+}
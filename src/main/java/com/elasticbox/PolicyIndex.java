@@ -0,0 +1,102 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the deployment policy boxes of a workspace by their claims. Each claim maps to the set of policies that
+ * provide it, so the policies that satisfy a set of requirements are found by intersecting the sets of the
+ * requirements instead of checking the claims of every box of the workspace. The index is immutable, a new one is
+ * built when the box listing of the workspace changes.
+ */
+public final class PolicyIndex {
+    private final List<JSONObject> policies = new ArrayList<JSONObject>();
+    private final Map<String, BitSet> claimIndex = new HashMap<String, BitSet>();
+
+    /**
+     * @param boxes the boxes of the workspace, the boxes that are not deployment policies are ignored
+     */
+    public PolicyIndex(JSONArray boxes) {
+        for (Object box : boxes) {
+            JSONObject boxJson = (JSONObject) box;
+            if (!isPolicy(boxJson)) {
+                continue;
+            }
+
+            int position = policies.size();
+            policies.add(boxJson);
+            if (boxJson.has("claims")) {
+                for (Object claim : boxJson.getJSONArray("claims")) {
+                    String claimName = claim.toString();
+                    BitSet claimPolicies = claimIndex.get(claimName);
+                    if (claimPolicies == null) {
+                        claimPolicies = new BitSet();
+                        claimIndex.put(claimName, claimPolicies);
+                    }
+                    claimPolicies.set(position);
+                }
+            }
+        }
+    }
+
+    static boolean isPolicy(JSONObject boxJson) {
+        return boxJson.getString("schema").endsWith("/boxes/policy");
+    }
+
+    public int size() {
+        return policies.size();
+    }
+
+    /**
+     * Returns a copy of all the deployment policies, in the order of the box listing.
+     */
+    public List<JSONObject> getPolicies() {
+        List<JSONObject> result = new ArrayList<JSONObject>(policies.size());
+        for (JSONObject policy : policies) {
+            result.add(JSONObject.fromObject(policy));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a copy of the deployment policies that provide all the specified claims, in the order of the box
+     * listing. All the policies are returned if no claim is specified.
+     */
+    public List<JSONObject> getPolicies(Collection<?> claims) {
+        BitSet matches = new BitSet(policies.size());
+        matches.set(0, policies.size());
+        for (Object claim : claims) {
+            BitSet claimPolicies = claimIndex.get(claim.toString());
+            if (claimPolicies == null) {
+                return new ArrayList<JSONObject>();
+            }
+            matches.and(claimPolicies);
+        }
+
+        List<JSONObject> result = new ArrayList<JSONObject>(matches.cardinality());
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            result.add(JSONObject.fromObject(policies.get(i)));
+        }
+        return result;
+    }
+
+}
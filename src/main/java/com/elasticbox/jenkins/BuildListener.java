@@ -33,6 +33,7 @@ public class BuildListener extends RunListener<AbstractBuild> {
             if (node instanceof ElasticBoxSlave) {
                 ElasticBoxSlave slave = (ElasticBoxSlave) node;
                 slave.incrementBuilds();
+                DemandForecaster.getInstance().recordBuild(slave, build.getDuration());
                 if (slave.hasExpired() || requiresGlobalSingleUseSlave(build.getProject())) {
                     LOGGER.info(build.toString() + " has completed. Marking slave for termination - " + slave);
                     slave.markForTermination();
@@ -0,0 +1,284 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import com.elasticbox.InstanceSnapshot;
+import com.elasticbox.jenkins.util.SlaveInstance;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the capacity of an ElasticBox cloud for provisioning. The active instances of the cloud are kept in a
+ * snapshot that is refreshed by the slave handler on every cycle, or on demand when it is too old, without holding any
+ * lock while the instances are fetched. The slaves being provisioned reserve their place in the cloud and in their
+ * slave configuration with atomic counters before they are created, so concurrent provisioning of several labels
+ * doesn't go over the limits without locking the cloud. A reservation is released when the instance of its slave
+ * appears in the snapshot or when the provisioning of the slave ends.
+ */
+public final class CloudCapacityTracker {
+    private static final Logger LOGGER = Logger.getLogger(CloudCapacityTracker.class.getName());
+
+    static final long MAX_AGE = Long.getLong("elasticbox.jenkins.CloudCapacityTracker.maxAge",
+            TimeUnit.SECONDS.toMillis(30));
+
+    private static final ConcurrentMap<String, CloudCapacityTracker> cloudToTrackerMap =
+            new ConcurrentHashMap<String, CloudCapacityTracker>();
+
+    public static final class Snapshot {
+        private final List<InstanceSnapshot> activeInstances;
+        private final long creationTime;
+        private final long releaseCount;
+        // the instances are counted per slave configuration only when a provisioning needs it
+        private volatile SlaveInstance.InstanceCounter instanceCounter;
+
+        Snapshot(List<InstanceSnapshot> activeInstances, long releaseCount) {
+            this.activeInstances = activeInstances;
+            this.releaseCount = releaseCount;
+            creationTime = System.currentTimeMillis();
+        }
+
+        public List<InstanceSnapshot> getActiveInstances() {
+            return activeInstances;
+        }
+
+        public int count(AbstractSlaveConfiguration slaveConfig) {
+            SlaveInstance.InstanceCounter counter = instanceCounter;
+            if (counter == null) {
+                counter = new SlaveInstance.InstanceCounter(activeInstances);
+                instanceCounter = counter;
+            }
+            return counter.count(slaveConfig);
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - creationTime >= MAX_AGE;
+        }
+    }
+
+    /**
+     * Place reserved for a new slave in the cloud and in its slave configuration. The slave is created once its place
+     * is reserved and then bound to the reservation, which is released with the slave. A reservation that cannot be
+     * bound because the slave is not created must be cancelled.
+     */
+    public final class Reservation {
+        private final String slaveConfigId;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile ElasticBoxSlave slave;
+
+        private Reservation(String slaveConfigId) {
+            this.slaveConfigId = slaveConfigId;
+        }
+
+        public void bind(ElasticBoxSlave slave) {
+            this.slave = slave;
+            reservations.put(slave.getNodeName(), this);
+            if (LOGGER.isLoggable(Level.FINER)) {
+                LOGGER.finer(MessageFormat.format("Reserved instance of cloud {0} for slave {1}, reserved instances: "
+                        + "{2}", cloudName, slave.getNodeName(), reservedInstances.get()));
+            }
+        }
+
+        public void cancel() {
+            free(this);
+        }
+    }
+
+    private final String cloudName;
+    private volatile Snapshot snapshot;
+    // counts the reservations released by the end of a provisioning, the snapshots taken before are stale
+    private final AtomicLong releaseCount = new AtomicLong();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final AtomicInteger reservedInstances = new AtomicInteger();
+    private final ConcurrentMap<String, AtomicInteger> slaveConfigIdToReservedInstancesMap =
+            new ConcurrentHashMap<String, AtomicInteger>();
+    // slave name to the reservation of the slave
+    private final ConcurrentMap<String, Reservation> reservations = new ConcurrentHashMap<String, Reservation>();
+
+    CloudCapacityTracker(String cloudName) {
+        this.cloudName = cloudName;
+    }
+
+    public static CloudCapacityTracker getInstance(ElasticBoxCloud cloud) {
+        CloudCapacityTracker tracker = cloudToTrackerMap.get(cloud.name);
+        if (tracker == null) {
+            CloudCapacityTracker newTracker = new CloudCapacityTracker(cloud.name);
+            tracker = cloudToTrackerMap.putIfAbsent(cloud.name, newTracker);
+            if (tracker == null) {
+                tracker = newTracker;
+            }
+        }
+        return tracker;
+    }
+
+    /**
+     * Returns a number that changes every time a reservation is released by the end of a provisioning. It is read
+     * before the active instances are fetched and passed to {@link #update}, so the snapshot is known to be stale if
+     * a reservation is released meanwhile.
+     */
+    public long getReleaseCount() {
+        return releaseCount.get();
+    }
+
+    /**
+     * Replaces the snapshot with the current active instances of the cloud and releases the reservations of the
+     * slaves whose instance is already active.
+     *
+     * @param releaseCount the value of {@link #getReleaseCount()} before the active instances were fetched
+     */
+    public void update(List<InstanceSnapshot> activeInstances, long releaseCount) {
+        // publish the snapshot first, the reservations released below are counted in it
+        snapshot = new Snapshot(activeInstances, releaseCount);
+        if (!reservations.isEmpty()) {
+            Set<String> activeInstanceIDs = new HashSet<String>(activeInstances.size());
+            for (InstanceSnapshot instance : activeInstances) {
+                activeInstanceIDs.add(instance.getId());
+            }
+            for (Map.Entry<String, Reservation> entry : reservations.entrySet()) {
+                ElasticBoxSlave slave = entry.getValue().slave;
+                if (slave.getInstanceUrl() != null && activeInstanceIDs.contains(slave.getInstanceId())
+                        && reservations.remove(entry.getKey(), entry.getValue())) {
+
+                    free(entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the snapshot of the active instances if it can be used, null if it is missing, stale or too old.
+     */
+    Snapshot getCurrentSnapshot() {
+        Snapshot currentSnapshot = snapshot;
+        return currentSnapshot != null && !isStale(currentSnapshot) && !currentSnapshot.isExpired()
+                ? currentSnapshot : null;
+    }
+
+    /**
+     * Returns the snapshot of the active instances, fetching them if the snapshot is missing, stale or too old. The
+     * instances are fetched without any lock. While a snapshot that is only too old is being refreshed, the other
+     * callers keep using it instead of fetching the instances as well, its reservations still cover the new slaves.
+     * A stale snapshot is never used, because the reservations released since it was taken are not counted in it.
+     */
+    public Snapshot getSnapshot(ElasticBoxCloud cloud) throws IOException {
+        Snapshot currentSnapshot = getCurrentSnapshot();
+        if (currentSnapshot != null) {
+            return currentSnapshot;
+        }
+
+        currentSnapshot = snapshot;
+        if (refreshing.compareAndSet(false, true)) {
+            try {
+                long currentReleaseCount = releaseCount.get();
+                update(SlaveInstanceManager.getInstance().getInstances(cloud), currentReleaseCount);
+            } finally {
+                refreshing.set(false);
+            }
+        } else if (currentSnapshot == null || isStale(currentSnapshot)) {
+            long currentReleaseCount = releaseCount.get();
+            update(SlaveInstanceManager.getInstance().getInstances(cloud), currentReleaseCount);
+        } else {
+            return currentSnapshot;
+        }
+        return snapshot;
+    }
+
+    private boolean isStale(Snapshot snapshot) {
+        return snapshot.releaseCount != releaseCount.get();
+    }
+
+    /**
+     * Returns how many more instances can be provisioned in the cloud.
+     */
+    public int getAvailableInstances(ElasticBoxCloud cloud, Snapshot snapshot) {
+        return cloud.getMaxInstances() - snapshot.getActiveInstances().size() - reservedInstances.get();
+    }
+
+    /**
+     * Reserves the place of a new slave in the cloud and in its slave configuration.
+     *
+     * @return the reservation, to be bound to the new slave, or null if the maximum number of instances of the cloud
+     *     or of the slave configuration has been reached
+     */
+    public Reservation reserve(ElasticBoxCloud cloud, AbstractSlaveConfiguration slaveConfig, Snapshot snapshot) {
+        if (!increment(reservedInstances, cloud.getMaxInstances() - snapshot.getActiveInstances().size())) {
+            return null;
+        }
+        if (!increment(getReservedInstances(slaveConfig.getId()),
+                slaveConfig.getMaxInstances() - snapshot.count(slaveConfig))) {
+
+            reservedInstances.decrementAndGet();
+            return null;
+        }
+
+        return new Reservation(slaveConfig.getId());
+    }
+
+    /**
+     * Releases the reservation of the slave, if it has any, and makes the next provisioning read the active
+     * instances again.
+     */
+    public void release(ElasticBoxSlave slave) {
+        Reservation reservation = reservations.remove(slave.getNodeName());
+        if (reservation != null && free(reservation)) {
+            releaseCount.incrementAndGet();
+        }
+    }
+
+    private boolean free(Reservation reservation) {
+        if (!reservation.released.compareAndSet(false, true)) {
+            return false;
+        }
+
+        reservedInstances.decrementAndGet();
+        getReservedInstances(reservation.slaveConfigId).decrementAndGet();
+        return true;
+    }
+
+    private AtomicInteger getReservedInstances(String slaveConfigId) {
+        AtomicInteger reserved = slaveConfigIdToReservedInstancesMap.get(slaveConfigId);
+        if (reserved == null) {
+            AtomicInteger newReserved = new AtomicInteger();
+            reserved = slaveConfigIdToReservedInstancesMap.putIfAbsent(slaveConfigId, newReserved);
+            if (reserved == null) {
+                reserved = newReserved;
+            }
+        }
+        return reserved;
+    }
+
+    private static boolean increment(AtomicInteger counter, int limit) {
+        while (true) {
+            int value = counter.get();
+            if (value >= limit) {
+                return false;
+            }
+            if (counter.compareAndSet(value, value + 1)) {
+                return true;
+            }
+        }
+    }
+
+}
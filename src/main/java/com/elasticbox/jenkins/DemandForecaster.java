@@ -0,0 +1,317 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import hudson.model.Label;
+import hudson.slaves.Cloud;
+
+import jenkins.model.Jenkins;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forecasts the demand of slaves of the slave configurations of the clouds from the history of the queue. For each
+ * slave configuration it records how often builds that it can run enter the queue and how long they take, then the
+ * number of builds expected to run at the same time is the arrival rate multiplied by the build duration. The arrival
+ * rate is the higher of the recent rate, which follows bursts, and the usual rate of the hour of the week when an
+ * instance launched now would be ready, which follows the time-of-day patterns.
+ *
+ * <p>When pre-warming is enabled, the slave handler launches the forecast slaves before the builds are queued, within
+ * the maximum number of instances of the slave configuration and of the cloud, reserving their place in the capacity
+ * of the cloud like the provisioned slaves.</p>
+ *
+ * <p>The history is kept only in memory, so it starts over when Jenkins restarts. The recent arrival rate recovers in
+ * minutes, but the hour-of-week rates take a week of uptime to be learned again, and until then the forecast follows
+ * only the recent demand.</p>
+ */
+public final class DemandForecaster {
+    static final boolean PREWARM_ENABLED = Boolean.getBoolean("elasticbox.jenkins.DemandForecaster.prewarm");
+    static final long LEAD_TIME = Long.getLong("elasticbox.jenkins.DemandForecaster.leadTime",
+            TimeUnit.MINUTES.toMillis(15));
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final int HOURS_PER_WEEK = 168;
+
+    // weight of the last minute in the recent arrival rate, about 5 minutes of memory
+    private static final double RATE_WEIGHT = 0.2;
+    // weight of the last week in the arrivals of an hour of the week
+    private static final double HOURLY_WEIGHT = 0.3;
+    // weight of the last build in the build duration
+    private static final double DURATION_WEIGHT = 0.2;
+
+    private static final DemandForecaster instance = new DemandForecaster();
+
+    private final ConcurrentMap<String, Demand> slaveConfigIdToDemandMap = new ConcurrentHashMap<String, Demand>();
+    // pre-warmed slave name to the ID of its slave configuration, until the slave runs a build or goes away
+    private final ConcurrentMap<String, String> prewarmedSlaves = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Demand history of a slave configuration. The times are local times in milliseconds, so the hours of the week
+     * follow the time zone of Jenkins.
+     */
+    static final class Demand {
+        private long minute = -1;
+        private int arrivalsThisMinute;
+        private double arrivalRate;
+        private long hour = -1;
+        private int arrivalsThisHour;
+        private final double[] hourOfWeekArrivals = new double[HOURS_PER_WEEK];
+        private double buildDuration;
+        private int hits;
+        private int misses;
+
+        synchronized void recordArrival(long time) {
+            roll(time);
+            arrivalsThisMinute++;
+            arrivalsThisHour++;
+        }
+
+        synchronized void recordBuild(long duration) {
+            buildDuration = buildDuration == 0 ? duration
+                    : DURATION_WEIGHT * duration + (1 - DURATION_WEIGHT) * buildDuration;
+        }
+
+        synchronized void recordPrewarmed(boolean hit) {
+            if (hit) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+
+        /**
+         * Returns the expected arrivals per minute for an instance that is launched at the specified time.
+         */
+        synchronized double getExpectedArrivalRate(long time, long leadTime) {
+            roll(time);
+            double hourlyRate = hourOfWeekArrivals[hourOfWeek((time + leadTime) / HOUR)] / 60;
+            return Math.max(arrivalRate, hourlyRate);
+        }
+
+        /**
+         * Returns the number of builds expected to run at the same time, by Little's law.
+         */
+        synchronized double getExpectedConcurrentBuilds(long time, long leadTime) {
+            return getExpectedArrivalRate(time, leadTime) * buildDuration / MINUTE;
+        }
+
+        synchronized double getBuildDuration() {
+            return buildDuration;
+        }
+
+        synchronized int getHits() {
+            return hits;
+        }
+
+        synchronized int getMisses() {
+            return misses;
+        }
+
+        private void roll(long time) {
+            long currentMinute = time / MINUTE;
+            long currentHour = time / HOUR;
+            if (minute < 0) {
+                minute = currentMinute;
+                hour = currentHour;
+                return;
+            }
+
+            // after an hour without arrivals the recent rate is practically zero
+            for (long i = Math.min(currentMinute - minute, 60); i > 0; i--) {
+                arrivalRate = RATE_WEIGHT * arrivalsThisMinute + (1 - RATE_WEIGHT) * arrivalRate;
+                arrivalsThisMinute = 0;
+            }
+            minute = currentMinute;
+
+            long elapsedHours = Math.min(currentHour - hour, HOURS_PER_WEEK);
+            for (long i = 0; i < elapsedHours; i++) {
+                int hourOfWeek = hourOfWeek(hour + i);
+                hourOfWeekArrivals[hourOfWeek] = HOURLY_WEIGHT * arrivalsThisHour
+                        + (1 - HOURLY_WEIGHT) * hourOfWeekArrivals[hourOfWeek];
+                arrivalsThisHour = 0;
+            }
+            hour = currentHour;
+        }
+
+        private static int hourOfWeek(long hour) {
+            return (int) (hour % HOURS_PER_WEEK);
+        }
+    }
+
+    public static final class Forecast {
+        private final String description;
+        private final double arrivalRate;
+        private final double buildDuration;
+        private final double concurrentBuilds;
+        private final int slaves;
+        private final int hits;
+        private final int misses;
+
+        Forecast(String description, double arrivalRate, double buildDuration, double concurrentBuilds, int slaves,
+                int hits, int misses) {
+            this.description = description;
+            this.arrivalRate = arrivalRate;
+            this.buildDuration = buildDuration;
+            this.concurrentBuilds = concurrentBuilds;
+            this.slaves = slaves;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public int getSlaves() {
+            return slaves;
+        }
+
+        /**
+         * Returns the percentage of pre-warmed slaves that ran a build, or -1 if no slave has been pre-warmed yet.
+         */
+        public int getHitRate() {
+            return hits + misses > 0 ? hits * 100 / (hits + misses) : -1;
+        }
+
+        @Override
+        public String toString() {
+            String forecast = MessageFormat.format("{0,number,0.##} builds/minute, {1,number,0.#} minutes/build, "
+                            + "{2,number,0.##} concurrent builds, {3} slaves",
+                    arrivalRate, buildDuration / MINUTE, concurrentBuilds, slaves);
+            int hitRate = getHitRate();
+            return hitRate < 0 ? forecast : MessageFormat.format("{0}, {1}% of {2} pre-warmed slaves used",
+                    forecast, hitRate, hits + misses);
+        }
+    }
+
+    private DemandForecaster() {
+    }
+
+    public static DemandForecaster getInstance() {
+        return instance;
+    }
+
+    /**
+     * Records that a build with the specified label entered the queue.
+     */
+    public void recordArrival(Label label) {
+        for (Cloud cloud : Jenkins.getInstance().clouds) {
+            if (cloud instanceof ElasticBoxCloud) {
+                SlaveConfiguration slaveConfig = ((ElasticBoxCloud) cloud).getSlaveConfiguration(label);
+                if (slaveConfig != null) {
+                    getDemand(slaveConfig.getId()).recordArrival(localTime(System.currentTimeMillis()));
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records that a build ran in the slave.
+     */
+    public void recordBuild(ElasticBoxSlave slave, long duration) {
+        String slaveConfigId = slave.getSlaveConfigurationId();
+        if (slaveConfigId == null) {
+            return;
+        }
+
+        Demand demand = getDemand(slaveConfigId);
+        demand.recordBuild(duration);
+        if (prewarmedSlaves.remove(slave.getNodeName()) != null) {
+            demand.recordPrewarmed(true);
+        }
+    }
+
+    void recordPrewarmed(ElasticBoxSlave slave, SlaveConfiguration slaveConfig) {
+        prewarmedSlaves.put(slave.getNodeName(), slaveConfig.getId());
+    }
+
+    /**
+     * Counts the pre-warmed slaves that were removed without running any build.
+     */
+    void checkPrewarmedSlaves() {
+        ElasticBoxSlaveRegistry registry = ElasticBoxSlaveRegistry.getInstance();
+        for (Iterator<Map.Entry<String, String>> iter = prewarmedSlaves.entrySet().iterator(); iter.hasNext(); ) {
+            Map.Entry<String, String> entry = iter.next();
+            if (registry.getSlaveByName(entry.getKey()) == null) {
+                iter.remove();
+                getDemand(entry.getValue()).recordPrewarmed(false);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of slaves to pre-warm for the slave configuration, zero if pre-warming is disabled.
+     */
+    int getPrewarmSlaves(SlaveConfiguration slaveConfig) {
+        if (!PREWARM_ENABLED) {
+            return 0;
+        }
+
+        Forecast forecast = getForecast(slaveConfig);
+        return forecast != null ? Math.min(forecast.getSlaves(), slaveConfig.getMaxInstances()) : 0;
+    }
+
+    /**
+     * Returns the forecast of the slave configuration, or null if it has no history.
+     */
+    public Forecast getForecast(AbstractSlaveConfiguration slaveConfig) {
+        Demand demand = slaveConfigIdToDemandMap.get(slaveConfig.getId());
+        if (demand == null) {
+            return null;
+        }
+
+        long now = localTime(System.currentTimeMillis());
+        double concurrentBuilds = demand.getExpectedConcurrentBuilds(now, LEAD_TIME);
+        int slaves = (int) Math.ceil(concurrentBuilds / Math.max(slaveConfig.getExecutors(), 1));
+        return new Forecast(slaveConfig.getDescription(), demand.getExpectedArrivalRate(now, LEAD_TIME),
+                demand.getBuildDuration(), concurrentBuilds, slaves, demand.getHits(), demand.getMisses());
+    }
+
+    public List<Forecast> getForecasts(ElasticBoxCloud cloud) {
+        List<Forecast> forecasts = new ArrayList<Forecast>();
+        for (SlaveConfiguration slaveConfig : cloud.getSlaveConfigurations()) {
+            Forecast forecast = getForecast(slaveConfig);
+            if (forecast != null) {
+                forecasts.add(forecast);
+            }
+        }
+        return forecasts;
+    }
+
+    private Demand getDemand(String slaveConfigId) {
+        Demand demand = slaveConfigIdToDemandMap.get(slaveConfigId);
+        if (demand == null) {
+            Demand newDemand = new Demand();
+            demand = slaveConfigIdToDemandMap.putIfAbsent(slaveConfigId, newDemand);
+            if (demand == null) {
+                demand = newDemand;
+            }
+        }
+        return demand;
+    }
+
+    private static long localTime(long time) {
+        return time + TimeZone.getDefault().getOffset(time);
+    }
+
+}
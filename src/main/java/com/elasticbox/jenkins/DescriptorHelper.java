@@ -16,6 +16,7 @@ import com.elasticbox.BoxStack;
 import com.elasticbox.Client;
 import com.elasticbox.ClientException;
 import com.elasticbox.Constants;
+import com.elasticbox.InstanceListingParser;
 import com.elasticbox.jenkins.model.services.deployment.DeploymentType;
 import com.elasticbox.jenkins.util.ClientCache;
 import com.elasticbox.jenkins.util.CompositeObjectFilter;
@@ -432,31 +433,39 @@ public class DescriptorHelper {
                         new InstanceFilterByBox((boxVersion))));
     }
 
-    public static JSONArray getInstances(Client client, String workspace, ObjectFilter filter) {
-        JSONArray instances = new JSONArray();
+    public static JSONArray getInstances(Client client, String workspace, final ObjectFilter filter) {
+        final JSONArray instances = new JSONArray();
         if (client == null || StringUtils.isBlank(workspace)) {
             return instances;
         }
 
         try {
-
-            JSONArray instanceArray = client.getInstances(workspace);
-
-            if (!instanceArray.isEmpty()
-                    && !instanceArray.getJSONObject(0).getJSONArray("boxes").getJSONObject(0).containsKey("id")) {
-
-                List<String> instanceIDs = new ArrayList<String>();
-                for (int i = 0; i < instanceArray.size(); i++) {
-                    instanceIDs.add(instanceArray.getJSONObject(i).getString("id"));
-                }
-                instanceArray = client.getInstances(workspace, instanceIDs);
-            }
-
-            for (Object instance : instanceArray) {
-                JSONObject json = (JSONObject) instance;
-                if (filter.accept(json)) {
-                    instances.add(json);
+            // the instances are filtered as they are read, only the accepted ones are kept in memory
+            final List<String> instanceIDs = new ArrayList<String>();
+            client.streamInstances(workspace, null, null, new InstanceListingParser.InstanceHandler() {
+                private Boolean boxIdsMissing;
+
+                public void handle(JSONObject instance) {
+                    if (boxIdsMissing == null) {
+                        boxIdsMissing = !hasBoxIds(instance);
+                    }
+                    if (boxIdsMissing) {
+                        instanceIDs.add(instance.getString("id"));
+                    } else if (filter.accept(instance)) {
+                        instances.add(instance);
+                    }
                 }
+            });
+
+            if (!instanceIDs.isEmpty()) {
+                // the listing doesn't have the IDs of the boxes, read the instances again by their IDs
+                client.streamInstances(workspace, instanceIDs, null, new InstanceListingParser.InstanceHandler() {
+                    public void handle(JSONObject instance) {
+                        if (filter.accept(instance)) {
+                            instances.add(instance);
+                        }
+                    }
+                });
             }
 
         } catch (IOException ex) {
@@ -472,6 +481,11 @@ public class DescriptorHelper {
         return instances;
     }
 
+    private static boolean hasBoxIds(JSONObject instance) {
+        JSONArray boxes = instance.optJSONArray("boxes");
+        return boxes == null || boxes.isEmpty() || boxes.getJSONObject(0).containsKey("id");
+    }
+
     public static JsonArrayResponse getInstancesAsJsonArrayResponse(Client client, String workspace, String box) {
 
         JSONArray instances = getInstances(client, workspace, new InstanceFilterByBox(box));
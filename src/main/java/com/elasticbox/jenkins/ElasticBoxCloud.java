@@ -15,14 +15,20 @@ package com.elasticbox.jenkins;
 import antlr.ANTLRException;
 
 import com.elasticbox.Client;
+import com.elasticbox.ConnectionPool;
+import com.elasticbox.ConnectionPoolConfig;
 import com.elasticbox.IProgressMonitor;
+import com.elasticbox.InstanceSnapshot;
 import com.elasticbox.jenkins.migration.AbstractConverter;
 import com.elasticbox.jenkins.migration.Version;
 import com.elasticbox.jenkins.model.services.deployment.DeployBoxOrderServiceImpl;
 import com.elasticbox.jenkins.model.services.deployment.DeploymentType;
 import com.elasticbox.jenkins.model.services.error.ServiceException;
 import com.elasticbox.jenkins.util.ClientCache;
-import com.elasticbox.jenkins.util.SlaveInstance;
+import com.elasticbox.jenkins.util.InstrumentedThreadPool;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import hudson.Extension;
 import hudson.model.Computer;
@@ -46,6 +52,7 @@ import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
 
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
@@ -97,6 +104,12 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
     @Deprecated
     private int retentionTime;
     private String description;
+    private int maxConnections;
+    private int maxConnectionsPerRoute;
+    private int keepAlive;
+    private int connectTimeout;
+    private int socketTimeout;
+    private int idleConnectionTimeout;
 
     @DataBoundConstructor
     public ElasticBoxCloud(String name, String description, String endpointUrl, int maxInstances, String token,
@@ -145,48 +158,40 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
         return token;
     }
 
-    private List<ElasticBoxSlave> getPendingSlaves(Label label, List<JSONObject> activeInstances) {
+    private List<ElasticBoxSlave> getPendingSlaves(Label label, List<InstanceSnapshot> activeInstances) {
         List<ElasticBoxSlave> pendingSlaves = new ArrayList<ElasticBoxSlave>();
         List<ElasticBoxSlave> offlineSlaves = new ArrayList<ElasticBoxSlave>();
-        for (Node node : Jenkins.getInstance().getNodes()) {
-            if (node instanceof ElasticBoxSlave) {
-                ElasticBoxSlave slave = (ElasticBoxSlave) node;
-                ElasticBoxCloud slaveCloud = null;
-                try {
-                    slaveCloud = slave.getCloud();
-                } catch (IOException ex) {
-                    LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+        for (ElasticBoxSlave slave : ElasticBoxSlaveRegistry.getInstance().getSlaves(label)) {
+            ElasticBoxCloud slaveCloud = null;
+            try {
+                slaveCloud = slave.getCloud();
+            } catch (IOException ex) {
+                LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+            }
+            if (slaveCloud == this) {
+                if (ElasticBoxSlaveHandler.isSubmitted(slave)) {
+                    pendingSlaves.add(slave);
                 }
-                if (slaveCloud == this && label.matches(slave)) {
-                    if (ElasticBoxSlaveHandler.isSubmitted(slave)) {
-                        pendingSlaves.add(slave);
-                    }
 
-                    if (slave.getInstanceUrl() != null && slave.getComputer().isOffline()) {
-                        offlineSlaves.add(slave);
-                    }
+                if (slave.getInstanceUrl() != null && slave.getComputer().isOffline()) {
+                    offlineSlaves.add(slave);
                 }
             }
         }
 
         if (!offlineSlaves.isEmpty() && !activeInstances.isEmpty()) {
-            Map<String, JSONObject> idToInstanceMap = new HashMap<String, JSONObject>(activeInstances.size());
-            for (JSONObject instance : activeInstances) {
-                idToInstanceMap.put(instance.getString("id"), instance);
+            Map<String, InstanceSnapshot> idToInstanceMap =
+                    new HashMap<String, InstanceSnapshot>(activeInstances.size());
+            for (InstanceSnapshot instance : activeInstances) {
+                idToInstanceMap.put(instance.getId(), instance);
             }
 
             for (ElasticBoxSlave slave : offlineSlaves) {
-                JSONObject instance = idToInstanceMap.get(slave.getInstanceId());
+                InstanceSnapshot instance = idToInstanceMap.get(slave.getInstanceId());
                 if (instance != null) {
-                    String state = instance.getString("state");
-                    // This is for backward compatibility.
-                    String operation = instance.optString("operation");
-                    if (operation == null) {
-                        operation = instance.getJSONObject("operation").getString("event");
-                    }
-
-                    if (Client.ON_OPERATIONS.contains(operation) && (Client.InstanceState.PROCESSING.equals(state)
-                            || Client.InstanceState.DONE.equals(state))) {
+                    InstanceSnapshot.State state = instance.getState();
+                    if (instance.getOperation().isOn() && (state == InstanceSnapshot.State.PROCESSING
+                            || state == InstanceSnapshot.State.DONE)) {
 
                         pendingSlaves.add(slave);
                     }
@@ -198,7 +203,7 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
     }
 
     @Override
-    public synchronized Collection<NodeProvisioner.PlannedNode> provision(Label label, int excessWorkload) {
+    public Collection<NodeProvisioner.PlannedNode> provision(Label label, int excessWorkload) {
         try {
             return doProvision(label, excessWorkload);
         } catch (RuntimeException ex) {
@@ -211,15 +216,20 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
         if (LOGGER.isLoggable(Level.FINER)) {
             LOGGER.entering(LOGGER.getName(), "doProvision(" + label + "," + excessWorkload + ")");
         }
-        List<JSONObject> activeInstances;
+        // the decisions are made without locking against a snapshot of the active instances, the new slaves reserve
+        // their place in the cloud and in their slave configuration
+        final CloudCapacityTracker capacityTracker = CloudCapacityTracker.getInstance(this);
+        CloudCapacityTracker.Snapshot snapshot;
         try {
-            activeInstances = ElasticBoxSlaveHandler.getActiveInstances(this);
+            snapshot = capacityTracker.getSnapshot(this);
         } catch (IOException ex) {
             LOGGER.log(Level.SEVERE, "Error fetching active instances", ex);
             return Collections.EMPTY_LIST;
         }
+        List<InstanceSnapshot> activeInstances = snapshot.getActiveInstances();
 
-        if (activeInstances.size() >= maxInstances) {
+        // the hibernated slaves are powered on again without taking more instances of the cloud
+        if (capacityTracker.getAvailableInstances(this, snapshot) <= 0 && !hasHibernatedSlaves(label)) {
             LOGGER.log(Level.WARNING,
                     MessageFormat.format("Cannot provision slave for label ''{0}'' because the maxinum number of "
                                     + "instances has been reached for ElasticBox cloud {1}.",
@@ -273,13 +283,13 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
         while (excessWorkload > 0) {
             try {
                 ElasticBoxSlave newSlave;
+                boolean resume = false;
                 if (isLabelForReusableSlave(label)) {
                     ProjectSlaveConfiguration slaveConfig = ProjectSlaveConfiguration.find(label);
                     if (slaveConfig != null) {
-                        SlaveInstance.InstanceCounter instanceCounter =
-                                new SlaveInstance.InstanceCounter(activeInstances);
-
-                        if (instanceCounter.count(slaveConfig) >= slaveConfig.getMaxInstances()) {
+                        CloudCapacityTracker.Reservation reservation =
+                                capacityTracker.reserve(this, slaveConfig, snapshot);
+                        if (reservation == null) {
                             LOGGER.log(Level.WARNING,
                                     MessageFormat.format(
                                             "Cannot provision slave for label {0} because the maxinum number of "
@@ -288,15 +298,26 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
                                             label.getName()));
                             break;
                         }
-                        newSlave = new ElasticBoxSlave(slaveConfig, false);
+                        try {
+                            newSlave = new ElasticBoxSlave(slaveConfig, false);
+                        } catch (IOException | Descriptor.FormException ex) {
+                            reservation.cancel();
+                            throw ex;
+                        }
+                        reservation.bind(newSlave);
                     } else {
                         LOGGER.log(Level.WARNING, MessageFormat.format("Cannot find any slave configuration for label"
                                 + " ''{0}''. No slave will be provisioned.", label.getName()));
                         break;
                     }
                 } else {
-                    SlaveConfiguration slaveConfig = findSlaveConfiguration(label, activeInstances);
-                    if (slaveConfig == null) {
+                    newSlave = claimHibernatedSlave(label);
+                    if (newSlave != null) {
+                        resume = true;
+                    } else {
+                        newSlave = reserveSlave(label, capacityTracker, snapshot);
+                    }
+                    if (newSlave == null) {
                         LOGGER.log(Level.WARNING, MessageFormat.format("Cannot provision slave for label \"{0}\" "
                                 + "because the maxinum number of ElasticBox instances of all matching slave "
                                 + "configurations has been reached.",
@@ -304,8 +325,6 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
 
                         break;
                     }
-
-                    newSlave = new ElasticBoxSlave(slaveConfig, this);
                 }
                 final ElasticBoxSlave slave = newSlave;
 
@@ -313,12 +332,22 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
                     LOGGER.fine("doProvision(): provisioning a EB Slave node - " + slave);
                 }
 
+                if (resume) {
+                    plannedNodes.add(new NodeProvisioner.PlannedNode(slave.getDisplayName(), resume(slave), 1));
+                    excessWorkload -= slave.getNumExecutors();
+                    continue;
+                }
+
                 plannedNodes.add(new NodeProvisioner.PlannedNode(slave.getDisplayName(),
                         new FutureWrapper<Node>(Computer.threadPoolForRemoting.submit(new Callable<Node>() {
                             public Node call() throws Exception {
-                                Jenkins.getInstance().addNode(slave);
-                                IProgressMonitor monitor = ElasticBoxSlaveHandler.submit(slave);
-                                monitor.waitForDone(slave.getLaunchTimeout());
+                                try {
+                                    Jenkins.getInstance().addNode(slave);
+                                    IProgressMonitor monitor = ElasticBoxSlaveHandler.submit(slave);
+                                    monitor.waitForDone(slave.getLaunchTimeout());
+                                } finally {
+                                    capacityTracker.release(slave);
+                                }
                                 if (slave.getComputer() != null && slave.getComputer().isOnline()) {
                                     return slave;
                                 } else {
@@ -388,6 +417,104 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
         return retentionTime;
     }
 
+    public int getMaxConnections() {
+        return getConnectionPoolConfig().getMaxTotal();
+    }
+
+    @DataBoundSetter
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return getConnectionPoolConfig().getMaxPerRoute();
+    }
+
+    @DataBoundSetter
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getKeepAlive() {
+        return getConnectionPoolConfig().getKeepAlive();
+    }
+
+    @DataBoundSetter
+    public void setKeepAlive(int keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public int getConnectTimeout() {
+        return getConnectionPoolConfig().getConnectTimeout();
+    }
+
+    @DataBoundSetter
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getSocketTimeout() {
+        return getConnectionPoolConfig().getSocketTimeout();
+    }
+
+    @DataBoundSetter
+    public void setSocketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+
+    public int getIdleConnectionTimeout() {
+        return getConnectionPoolConfig().getIdleTimeout();
+    }
+
+    @DataBoundSetter
+    public void setIdleConnectionTimeout(int idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    public ConnectionPoolConfig getConnectionPoolConfig() {
+        return new ConnectionPoolConfig(maxConnections, maxConnectionsPerRoute, keepAlive, connectTimeout,
+                socketTimeout, idleConnectionTimeout);
+    }
+
+    /**
+     * Returns the connection pool used by the client of this cloud, or null if the client has not been created yet.
+     */
+    public ConnectionPool getConnectionPool() {
+        Client client = ClientCache.getCachedClient(name);
+        return client != null ? client.getConnectionPool() : null;
+    }
+
+    /**
+     * Returns the thread pools of the plugin that are used by this cloud, which are the shared pools and the
+     * deployment pool of this cloud if it has been created.
+     */
+    public List<InstrumentedThreadPool> getThreadPools() {
+        InstrumentedThreadPool deploymentPool = ElasticBoxSlaveHandler.getCreatedDeploymentPool(this);
+        List<InstrumentedThreadPool> pools = new ArrayList<InstrumentedThreadPool>();
+        for (InstrumentedThreadPool pool : InstrumentedThreadPool.getPools()) {
+            if (pool == deploymentPool || !ElasticBoxSlaveHandler.isDeploymentPool(pool)) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    /**
+     * Returns the demand forecasts of the slave configurations of this cloud that have any history.
+     */
+    public List<DemandForecaster.Forecast> getDemandForecasts() {
+        return DemandForecaster.getInstance().getForecasts(this);
+    }
+
+    private void copyConnectionPoolSettings(ElasticBoxCloud cloud) {
+        maxConnections = cloud.maxConnections;
+        maxConnectionsPerRoute = cloud.maxConnectionsPerRoute;
+        keepAlive = cloud.keepAlive;
+        connectTimeout = cloud.connectTimeout;
+        socketTimeout = cloud.socketTimeout;
+        idleConnectionTimeout = cloud.idleConnectionTimeout;
+    }
+
     public List<? extends SlaveConfiguration> getSlaveConfigurations() {
         return slaveConfigurations != null ? Collections.unmodifiableList(slaveConfigurations) : Collections.EMPTY_LIST;
     }
@@ -406,7 +533,7 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
         return null;
     }
 
-    private SlaveConfiguration getSlaveConfiguration(Label label) {
+    SlaveConfiguration getSlaveConfiguration(Label label) {
         if (label == null) {
             return null;
         }
@@ -425,14 +552,105 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
                 .REUSE_PREFIX);
     }
 
-    private SlaveConfiguration findSlaveConfiguration(Label label, List<JSONObject> activeInstances) {
-        SlaveInstance.InstanceCounter instanceCounter = new SlaveInstance.InstanceCounter(activeInstances);
+    private boolean hasHibernatedSlaves(Label label) {
+        for (ElasticBoxSlave slave : ElasticBoxSlaveRegistry.getInstance().getSlaves(label)) {
+            if (slave.isHibernated() && isCloudOf(slave)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Claims a hibernated slave of this cloud that can run builds with the label.
+     *
+     * @return null if there is no hibernated slave left to resume
+     */
+    private ElasticBoxSlave claimHibernatedSlave(Label label) {
+        for (ElasticBoxSlave slave : ElasticBoxSlaveRegistry.getInstance().getSlaves(label)) {
+            if (slave.isHibernated() && isCloudOf(slave) && slave.getSlaveConfiguration() != null
+                    && slave.startResume()) {
+
+                return slave;
+            }
+        }
+
+        return null;
+    }
+
+    private boolean isCloudOf(ElasticBoxSlave slave) {
+        try {
+            return slave.getCloud() == this;
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Powers on a hibernated slave claimed with {@link ElasticBoxSlave#startResume()}. The instance is powered on in
+     * a thread of the remoting pool and the returned future waits for the slave to come online without holding a
+     * thread. The future fails and the slave is terminated if it cannot be resumed or it is not online after its
+     * launch timeout.
+     */
+    static Future<Node> resume(final ElasticBoxSlave slave) {
+        final ResumedSlaveWatcher watcher = ResumedSlaveWatcher.getInstance();
+        ListenableFuture<Node> online = watcher.watch(slave, TimeUnit.MINUTES.toMillis(slave.getLaunchTimeout()));
+        Futures.addCallback(online, new FutureCallback<Node>() {
+            public void onSuccess(Node node) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Resumed slave is online - " + slave);
+                }
+            }
+
+            public void onFailure(Throwable error) {
+                LOGGER.log(Level.WARNING, MessageFormat.format(
+                        "The slave {0} could not be resumed. It will be terminated and removed.",
+                        slave.getDisplayName()), error);
+                slave.markForTermination();
+            }
+        });
+
+        Computer.threadPoolForRemoting.submit(new Runnable() {
+            public void run() {
+                try {
+                    slave.resume();
+                } catch (IOException ex) {
+                    watcher.failed(slave, ex);
+                    return;
+                }
+                if (slave.getComputer() != null && slave.getComputer().isOnline()) {
+                    watcher.online(slave);
+                }
+            }
+        });
+        return online;
+    }
+
+    /**
+     * Creates a slave with the first slave configuration matching the label that still has room for it. The place of
+     * the slave is reserved before the slave is created.
+     */
+    private ElasticBoxSlave reserveSlave(Label label, CloudCapacityTracker capacityTracker,
+            CloudCapacityTracker.Snapshot snapshot) throws IOException, Descriptor.FormException {
 
         for (SlaveConfiguration slaveConfig : getSlaveConfigurations()) {
             if (label.matches(slaveConfig.getLabelSet())
-                    && instanceCounter.count(slaveConfig) < slaveConfig.getMaxInstances()) {
+                    && snapshot.count(slaveConfig) < slaveConfig.getMaxInstances()) {
 
-                return slaveConfig;
+                CloudCapacityTracker.Reservation reservation = capacityTracker.reserve(this, slaveConfig, snapshot);
+                if (reservation != null) {
+                    ElasticBoxSlave slave;
+                    try {
+                        slave = new ElasticBoxSlave(slaveConfig, this);
+                    } catch (IOException | Descriptor.FormException ex) {
+                        reservation.cancel();
+                        throw ex;
+                    }
+                    reservation.bind(slave);
+                    return slave;
+                }
             }
         }
 
@@ -569,12 +787,20 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
             }
 
             if (StringUtils.isBlank(newCloud.name)) {
-                newCloud = new ElasticBoxCloud(NAME_PREFIX + UUID.randomUUID().toString(), newCloud.getDescription(),
-                        newCloud.getEndpointUrl(),
+                ElasticBoxCloud namedCloud = new ElasticBoxCloud(NAME_PREFIX + UUID.randomUUID().toString(),
+                        newCloud.getDescription(), newCloud.getEndpointUrl(),
                         newCloud.getMaxInstances(), newCloud.getToken(), newCloud.getSlaveConfigurations());
+                namedCloud.copyConnectionPoolSettings(newCloud);
+                newCloud = namedCloud;
             }
 
             List<ElasticBoxCloud> cloudsToRemoveCachedClient = validateClouds(clouds);
+            Cloud existingCloud = Jenkins.getInstance().getCloud(newCloud.name);
+            if (existingCloud instanceof ElasticBoxCloud && !newCloud.getConnectionPoolConfig().equals(
+                    ((ElasticBoxCloud) existingCloud).getConnectionPoolConfig())) {
+
+                cloudsToRemoveCachedClient.add((ElasticBoxCloud) existingCloud);
+            }
             for (ElasticBoxCloud cloud : cloudsToRemoveCachedClient) {
                 ClientCache.removeClient(cloud);
             }
@@ -641,13 +867,11 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
                 }
             }
             Set<ElasticBoxCloud> cloudsWithSlaves = new HashSet<ElasticBoxCloud>();
-            for (Node node : Jenkins.getInstance().getNodes()) {
-                if (node instanceof ElasticBoxSlave) {
-                    try {
-                        cloudsWithSlaves.add(((ElasticBoxSlave) node).getCloud());
-                    } catch (IOException ex) {
-                        LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
-                    }
+            for (ElasticBoxSlave slave : ElasticBoxSlaveRegistry.getInstance().getSlaves()) {
+                try {
+                    cloudsWithSlaves.add(slave.getCloud());
+                } catch (IOException ex) {
+                    LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
                 }
             }
 
@@ -693,50 +917,47 @@ public class ElasticBoxCloud extends AbstractCloudImpl {
             }
 
             ElasticBoxCloud existingCloud = (ElasticBoxCloud) cloud;
-            for (Node node : Jenkins.getInstance().getNodes()) {
-                if (node instanceof ElasticBoxSlave) {
-                    ElasticBoxSlave slave = (ElasticBoxSlave) node;
-                    try {
-                        cloud = slave.getCloud();
-                    } catch (IOException ex) {
-                        Logger.getLogger(ElasticBoxCloud.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
-                    }
-                    if (cloud == existingCloud && StringUtils.isNotBlank(slave.getLabelString())) {
-                        AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
-                        if (slaveConfig != null) {
-                            if (newCloud.getSlaveConfiguration(slaveConfig.getId()) == null) {
-                                String message = MessageFormat.format(
-                                        "Cannot regenerate slave configuration ''{0}'' from ElasticBox cloud {1} "
-                                                + "because it is used by slave [{2}].",
-                                        slaveConfig.getDescription(),
-                                        existingCloud.getDisplayName(),
-                                        slave.getDisplayName() );
-                                LOGGER.severe(message);
-                                LOGGER.severe("Slave might be single use, and must finish before proceed. Label: "
-                                        + slave.getLabelString() );
-                                throw new FormException(message, SlaveConfiguration.SLAVE_CONFIGURATIONS);
-                            }
-                        } else {
-                            // this is for backward compatibility with older slaves that are not associated with
-                            // slave configuration via id
-                            Label label = null;
-                            try {
-                                label = Label.parseExpression(slave.getLabelString());
-                            } catch (ANTLRException ex) {
-                                Logger.getLogger(ElasticBoxCloud.class.getName()).log(Level.SEVERE, ex.getMessage(),
-                                        ex);
-                            }
-                            if (label != null && existingCloud.getSlaveConfiguration(label) != null
-                                    && newCloud.getSlaveConfiguration(label) == null) {
-
-                                throw new FormException(
-                                        MessageFormat.format("Cannot remove slave configuration with labels ''{0}'' "
-                                                        + " from ElasticBox cloud {1} because it is used by slave {2}.",
-                                                slave.getLabelString(),
-                                                existingCloud.getDisplayName(),
-                                                slave.getDisplayName()),
-                                        SlaveConfiguration.SLAVE_CONFIGURATIONS);
-                            }
+            for (ElasticBoxSlave slave : ElasticBoxSlaveRegistry.getInstance().getSlaves(existingCloud)) {
+                try {
+                    cloud = slave.getCloud();
+                } catch (IOException ex) {
+                    Logger.getLogger(ElasticBoxCloud.class.getName()).log(Level.SEVERE, ex.getMessage(), ex);
+                }
+                if (cloud == existingCloud && StringUtils.isNotBlank(slave.getLabelString())) {
+                    AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
+                    if (slaveConfig != null) {
+                        if (newCloud.getSlaveConfiguration(slaveConfig.getId()) == null) {
+                            String message = MessageFormat.format(
+                                    "Cannot regenerate slave configuration ''{0}'' from ElasticBox cloud {1} "
+                                            + "because it is used by slave [{2}].",
+                                    slaveConfig.getDescription(),
+                                    existingCloud.getDisplayName(),
+                                    slave.getDisplayName() );
+                            LOGGER.severe(message);
+                            LOGGER.severe("Slave might be single use, and must finish before proceed. Label: "
+                                    + slave.getLabelString() );
+                            throw new FormException(message, SlaveConfiguration.SLAVE_CONFIGURATIONS);
+                        }
+                    } else {
+                        // this is for backward compatibility with older slaves that are not associated with
+                        // slave configuration via id
+                        Label label = null;
+                        try {
+                            label = Label.parseExpression(slave.getLabelString());
+                        } catch (ANTLRException ex) {
+                            Logger.getLogger(ElasticBoxCloud.class.getName()).log(Level.SEVERE, ex.getMessage(),
+                                    ex);
+                        }
+                        if (label != null && existingCloud.getSlaveConfiguration(label) != null
+                                && newCloud.getSlaveConfiguration(label) == null) {
+
+                            throw new FormException(
+                                    MessageFormat.format("Cannot remove slave configuration with labels ''{0}'' "
+                                                    + " from ElasticBox cloud {1} because it is used by slave {2}.",
+                                            slave.getLabelString(),
+                                            existingCloud.getDisplayName(),
+                                            slave.getDisplayName()),
+                                    SlaveConfiguration.SLAVE_CONFIGURATIONS);
                         }
                     }
                 }
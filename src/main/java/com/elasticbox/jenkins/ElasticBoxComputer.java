@@ -20,7 +20,6 @@ import hudson.model.AbstractBuild;
 import hudson.model.Computer;
 import hudson.model.ComputerPinger;
 import hudson.model.Messages;
-import hudson.model.Node;
 import hudson.model.Queue;
 import hudson.model.TaskListener;
 import hudson.model.labels.LabelAtom;
@@ -184,6 +183,63 @@ public final class ElasticBoxComputer extends SlaveComputer {
         return isIdle() && isOnline() ? System.currentTimeMillis() - getIdleStartMilliseconds() : 0;
     }
 
+    /**
+     * Shuts down the instance of the idle slave instead of terminating it, if its slave configuration keeps
+     * hibernated instances and the pool of hibernated slaves of the configuration is not full.
+     *
+     * @return false if the slave must be terminated
+     */
+    boolean hibernate() {
+        if (slave.isSingleUse() || slave.getInstanceUrl() == null || slave.isDeletable() || slave.hasExpired()) {
+            return false;
+        }
+
+        AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
+        if (!(slaveConfig instanceof SlaveConfiguration)) {
+            return false;
+        }
+
+        int maxHibernatedInstances = ((SlaveConfiguration) slaveConfig).getMaxHibernatedInstances();
+        if (maxHibernatedInstances == 0
+                || countHibernatedSlaves(slaveConfig.getId()) >= maxHibernatedInstances) {
+
+            return false;
+        }
+
+        setAcceptingTasks(false);
+        setTemporarilyOffline(true, new OfflineCause() {
+
+            @Override
+            public String toString() {
+                return "The instance of this slave is shut down until a build needs it";
+            }
+
+        });
+        try {
+            slave.hibernate();
+        } catch (IOException ex) {
+            LOGGER.log(
+                    Level.SEVERE,
+                    MessageFormat.format(
+                            "Error hibernating ElasticBox slave {0}, it will be terminated",
+                            slave.getDisplayName()),
+                    ex);
+            return false;
+        }
+        disconnect(null);
+        return true;
+    }
+
+    static int countHibernatedSlaves(String slaveConfigId) {
+        int count = 0;
+        for (ElasticBoxSlave slave : ElasticBoxSlaveRegistry.getInstance().getSlavesByConfiguration(slaveConfigId)) {
+            if (slave.isHibernated() && !slave.isDeletable()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     void terminate() {
         slave.markForTermination();
         if (slave.getInstanceUrl() == null) {
@@ -298,6 +354,13 @@ public final class ElasticBoxComputer extends SlaveComputer {
     @Extension
     public static final class ComputerListenerImpl extends ComputerListener {
 
+        @Override
+        public void onOnline(Computer computer, TaskListener listener) {
+            if (computer instanceof ElasticBoxComputer && ((ElasticBoxComputer) computer).getSlave() != null) {
+                ResumedSlaveWatcher.getInstance().online(((ElasticBoxComputer) computer).getSlave());
+            }
+        }
+
         @Override
         public void onOffline(Computer computer, OfflineCause cause) {
             if (computer instanceof ElasticBoxComputer) {
@@ -310,14 +373,12 @@ public final class ElasticBoxComputer extends SlaveComputer {
 
         @Override
         public void onConfigurationChange() {
-            for (Node node : Jenkins.getInstance().getNodes()) {
-                if (node instanceof ElasticBoxSlave) {
-                    ElasticBoxSlave slave = (ElasticBoxSlave) node;
-                    if (slave.isDeletable()) {
-                        SlaveComputer computer = slave.getComputer();
-                        if (computer != null && computer.isAcceptingTasks()) {
-                            slave.markForTermination();
-                        }
+            ElasticBoxSlaveRegistry.nodesChanged();
+            for (ElasticBoxSlave slave : ElasticBoxSlaveRegistry.getInstance().getSlaves()) {
+                if (slave.isDeletable()) {
+                    SlaveComputer computer = slave.getComputer();
+                    if (computer != null && computer.isAcceptingTasks()) {
+                        slave.markForTermination();
                     }
                 }
             }
@@ -12,23 +12,36 @@
 
 package com.elasticbox.jenkins;
 
+import com.elasticbox.jenkins.util.InstrumentedThreadPool;
+
 import hudson.Extension;
 import hudson.ExtensionPoint;
 import hudson.model.AsyncPeriodicWork;
+import hudson.model.PeriodicWork;
 import hudson.model.TaskListener;
-import hudson.util.DaemonThreadFactory;
-import hudson.util.ExceptionCatchingThreadFactory;
 
 import jenkins.model.Jenkins;
+import jenkins.util.Timer;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Runs the workloads of the plugin periodically and whenever a workload is woken up. The wake-ups are debounced, so a
+ * burst of them results in one execution shortly after the first one; the periodic execution only catches up with
+ * the changes that don't wake the executor up, like the progress of the instances in ElasticBox. The workloads are
+ * never executed concurrently, an execution that starts while another one is in progress is deferred until it ends.
+ */
 @Extension
 public class ElasticBoxExecutor extends AsyncPeriodicWork {
     private static final Logger LOGGER = Logger.getLogger(ElasticBoxExecutor.class.getName());
@@ -36,27 +49,113 @@ public class ElasticBoxExecutor extends AsyncPeriodicWork {
     private static final long RECURRENT_PERIOD =
             Long.getLong("elasticbox.jenkins.ElasticBoxExecutor.recurrentPeriod", 20 * 1000);
 
+    private static final long WAKE_UP_DELAY =
+            Long.getLong("elasticbox.jenkins.ElasticBoxExecutor.wakeUpDelay", 1000);
+
+    // set by a wake-up until the execution that handles it starts
+    private static final AtomicBoolean wakeUpPending = new AtomicBoolean();
+
+    // set while the workloads are executed, the wake-ups and the periodic execution never run them concurrently
+    private static final AtomicBoolean executing = new AtomicBoolean();
+
+    private static final Runnable WAKE_UP = new Runnable() {
+        public void run() {
+            Jenkins jenkins = Jenkins.getInstance();
+            if (jenkins != null) {
+                ElasticBoxExecutor executor = jenkins.getExtensionList(PeriodicWork.class).get(
+                        ElasticBoxExecutor.class);
+                if (executor != null) {
+                    // an execution in progress makes this one return and schedules another one when it ends
+                    executor.doRun();
+                }
+            }
+        }
+    };
+
+    private static final int THREADS = Integer.getInteger("elasticbox.jenkins.ElasticBoxExecutor.threads", 4);
+    private static final int QUEUE_SIZE = Integer.getInteger("elasticbox.jenkins.ElasticBoxExecutor.queueSize", 100);
+
+    /**
+     * Pool of the asynchronous workloads and of the background tasks of the plugin.
+     */
     public static final ExecutorService threadPool =
-            Executors.newCachedThreadPool(new ExceptionCatchingThreadFactory(new DaemonThreadFactory()));
+            new InstrumentedThreadPool("workloads", THREADS, QUEUE_SIZE, InstrumentedThreadPool.ABORT);
+
+    // asynchronous workloads still running from a previous execution are not submitted again
+    private static final Set<Workload> runningWorkloads =
+            Collections.newSetFromMap(new ConcurrentHashMap<Workload, Boolean>());
 
     public ElasticBoxExecutor() {
         super(ElasticBoxExecutor.class.getName());
     }
 
+    /**
+     * Executes the workloads shortly, instead of waiting for the next period.
+     */
+    public static void wakeUp() {
+        if (!wakeUpPending.getAndSet(true)) {
+            scheduleWakeUp();
+        }
+    }
+
+    private static void scheduleWakeUp() {
+        if (LOGGER.isLoggable(Level.FINEST)) {
+            LOGGER.finest("Waking up in " + WAKE_UP_DELAY + " ms");
+        }
+        Timer.get().schedule(WAKE_UP, WAKE_UP_DELAY, TimeUnit.MILLISECONDS);
+    }
+
     private void executeAsync(final Workload workload, final TaskListener listener) {
-        threadPool.submit(new Runnable() {
-            public void run() {
-                try {
-                    workload.execute(listener);
-                } catch (IOException ex) {
-                    LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
-                }
+        if (!runningWorkloads.add(workload)) {
+            if (LOGGER.isLoggable(Level.FINEST)) {
+                LOGGER.finest("Asynchronous workload is still running: " + workload);
             }
-        });
+            return;
+        }
+
+        try {
+            threadPool.submit(new Runnable() {
+                public void run() {
+                    try {
+                        workload.execute(listener);
+                    } catch (IOException ex) {
+                        LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+                    } finally {
+                        runningWorkloads.remove(workload);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            runningWorkloads.remove(workload);
+            LOGGER.warning("Asynchronous workload " + workload + " is skipped until the next execution: "
+                    + threadPool);
+        }
     }
 
     @Override
     protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        if (!executing.compareAndSet(false, true)) {
+            // the execution in progress runs the workloads again when it ends, unless it ended meanwhile
+            wakeUpPending.set(true);
+            if (!executing.get()) {
+                scheduleWakeUp();
+            }
+            return;
+        }
+
+        wakeUpPending.set(false);
+        try {
+            executeWorkloads(listener);
+        } finally {
+            executing.set(false);
+            // the wake-ups received meanwhile were skipped because this execution was in progress
+            if (wakeUpPending.get()) {
+                scheduleWakeUp();
+            }
+        }
+    }
+
+    private void executeWorkloads(TaskListener listener) {
         List<Workload> syncWorkloads = new ArrayList<Workload>();
         for (Workload workload : Jenkins.getInstance().getExtensionList(Workload.class)) {
             if (workload.getExecutionType() == ExecutionType.ASYNC) {
@@ -79,6 +178,12 @@ public class ElasticBoxExecutor extends AsyncPeriodicWork {
                 LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
             }
         }
+
+        if (LOGGER.isLoggable(Level.FINER)) {
+            for (InstrumentedThreadPool pool : InstrumentedThreadPool.getPools()) {
+                LOGGER.finer("Thread pool " + pool);
+            }
+        }
     }
 
     @Override
@@ -15,14 +15,21 @@ package com.elasticbox.jenkins;
 import hudson.Extension;
 import hudson.model.AbstractProject;
 import hudson.model.Label;
-import hudson.model.Node;
 import hudson.model.queue.QueueListener;
 
-import jenkins.model.Jenkins;
+import java.util.List;
 
 @Extension
 public class ElasticBoxQueueListener extends QueueListener {
 
+    @Override
+    public void onEnterWaiting(hudson.model.Queue.WaitingItem wi) {
+        Label label = wi.getAssignedLabel();
+        if (label != null) {
+            DemandForecaster.getInstance().recordArrival(label);
+        }
+    }
+
     @Override
     public void onLeft(hudson.model.Queue.LeftItem li) {
         if (li.isCancelled()) {
@@ -34,11 +41,9 @@ public class ElasticBoxQueueListener extends QueueListener {
 
                 if (ebxBuildWrappers.singleUseSlaveOption != null && ebxBuildWrappers.instanceCreator != null) {
                     Label label = li.getAssignedLabel();
-                    for (Node node : Jenkins.getInstance().getNodes()) {
-                        if (node instanceof ElasticBoxSlave && label.matches(node)) {
-                            ((ElasticBoxSlave) node).markForTermination();
-                            break;
-                        }
+                    List<ElasticBoxSlave> slaves = ElasticBoxSlaveRegistry.getInstance().getSlaves(label);
+                    if (!slaves.isEmpty()) {
+                        slaves.get(0).markForTermination();
                     }
                 }
             }
@@ -16,6 +16,7 @@ import com.elasticbox.jenkins.migration.RetentionTimeConverter;
 import com.elasticbox.Client;
 import com.elasticbox.ClientException;
 import com.elasticbox.Constants;
+import com.elasticbox.InstanceSnapshot;
 import com.elasticbox.jenkins.util.JsonUtil;
 
 import hudson.Extension;
@@ -74,6 +75,9 @@ public class ElasticBoxSlave extends Slave {
     private final String cloudName;
     private boolean deletable;
     private boolean removableFromCloud = true;
+    private boolean hibernated;
+    // what this hibernated slave has been claimed for, null if it is not claimed
+    private transient HibernationClaim hibernationClaim;
 
     private final transient int launchTimeout;
 
@@ -169,7 +173,9 @@ public class ElasticBoxSlave extends Slave {
     }
 
     public void setInstanceUrl(String instanceUrl) {
+        String oldInstanceId = this.instanceUrl != null ? getInstanceId() : null;
         this.instanceUrl = instanceUrl;
+        ElasticBoxSlaveRegistry.getInstance().instanceChanged(this, oldInstanceId);
     }
 
     public String getInstanceUrl() {
@@ -220,6 +226,17 @@ public class ElasticBoxSlave extends Slave {
         return null;
     }
 
+    /**
+     * Returns the ID of the slave configuration of this slave without looking the configuration up.
+     */
+    String getSlaveConfigurationId() {
+        if (getRetentionStrategy() instanceof AbstractSlaveConfigurationRetentionStrategy) {
+            return ((AbstractSlaveConfigurationRetentionStrategy) getRetentionStrategy()).slaveConfigId;
+        }
+
+        return null;
+    }
+
     public JSONArray getPolicyVariables() {
         AbstractSlaveConfiguration slaveConfig = getSlaveConfiguration();
         if (slaveConfig != null) {
@@ -433,6 +450,82 @@ public class ElasticBoxSlave extends Slave {
         this.removableFromCloud = removableFromCloud;
     }
 
+    public boolean isHibernated() {
+        return hibernated;
+    }
+
+    /**
+     * Shuts down the instance of this slave. The slave is kept in Jenkins until it is resumed or terminated.
+     */
+    void hibernate() throws IOException {
+        checkInstanceReachable();
+        LOGGER.info("Hibernating slave - " + toString());
+        getCloud().getClient().shutdown(getInstanceId());
+        hibernated = true;
+        save();
+    }
+
+    /**
+     * Claims this hibernated slave for resuming, so only one provisioning resumes it.
+     *
+     * @return false if the slave is not hibernated or it is already being resumed or terminated
+     */
+    boolean startResume() {
+        return claimHibernated(HibernationClaim.RESUME);
+    }
+
+    /**
+     * Claims this hibernated slave for termination, so it is not resumed while it is marked for termination.
+     *
+     * @return false if the slave is not hibernated or it is already being resumed or terminated
+     */
+    boolean startTermination() {
+        return claimHibernated(HibernationClaim.TERMINATION);
+    }
+
+    /**
+     * Whether this hibernated slave has been claimed for resuming and is being powered on.
+     */
+    synchronized boolean isResuming() {
+        return hibernationClaim == HibernationClaim.RESUME;
+    }
+
+    private synchronized boolean claimHibernated(HibernationClaim claim) {
+        if (!hibernated || hibernationClaim != null || isDeletable()) {
+            return false;
+        }
+
+        hibernationClaim = claim;
+        return true;
+    }
+
+    /**
+     * Powers on the instance of this hibernated slave and lets the slave accept tasks again once it connects.
+     */
+    void resume() throws IOException {
+        try {
+            checkInstanceReachable();
+            LOGGER.info("Resuming slave - " + toString());
+            getCloud().getClient().poweron(getInstanceId());
+            hibernated = false;
+            save();
+            SlaveComputer computer = getComputer();
+            if (computer != null) {
+                computer.setTemporarilyOffline(false, null);
+                computer.setAcceptingTasks(true);
+            }
+        } finally {
+            synchronized (this) {
+                hibernationClaim = null;
+            }
+        }
+    }
+
+    private enum HibernationClaim {
+        RESUME,
+        TERMINATION
+    }
+
     private abstract static class ElasticBoxRetentionStrategy extends RetentionStrategy<ElasticBoxComputer> {
 
         public abstract boolean shouldTerminate(ElasticBoxComputer computer);
@@ -447,6 +540,17 @@ public class ElasticBoxSlave extends Slave {
         @Override
         public synchronized long check(ElasticBoxComputer computer) {
             if (shouldTerminate(computer)) {
+                if (computer.hibernate()) {
+                    LOGGER.info(
+                            MessageFormat.format(
+                                    "Retention time of {0} minutes is elapsed for slave {1}. The computer is "
+                                            + "hibernated",
+                                    getRetentionTime(),
+                                    computer.getSlave().getDisplayName()));
+
+                    return 1;
+                }
+
                 LOGGER.info(
                         MessageFormat.format(
                                 "Retention time of {0} minutes is elapsed for slave {1}. The computer is terminating",
@@ -558,7 +662,7 @@ public class ElasticBoxSlave extends Slave {
         @Override
         public boolean shouldTerminate(ElasticBoxComputer computer) {
             if (getMinInstances() > 0 && getSlaveConfiguration() != null) {
-                List<JSONObject> activeInstances;
+                List<InstanceSnapshot> activeInstances;
                 try {
                     activeInstances = ElasticBoxSlaveHandler.getActiveInstances(computer.getSlave().getCloud());
                 } catch (IOException ex) {
@@ -576,13 +680,12 @@ public class ElasticBoxSlave extends Slave {
                     return false;
                 }
 
+                // the hibernated slaves cannot run builds, so they don't count for the minimum number of instances
                 Set<String> configActiveInstanceIDs = new HashSet<String>();
-                for (Node node : Jenkins.getInstance().getNodes()) {
-                    if (node instanceof ElasticBoxSlave) {
-                        ElasticBoxSlave slave = (ElasticBoxSlave) node;
-                        if (slave.getSlaveConfiguration() == getSlaveConfiguration()) {
-                            configActiveInstanceIDs.add(slave.getInstanceId());
-                        }
+                for (ElasticBoxSlave slave : ElasticBoxSlaveRegistry.getInstance().getSlavesByConfiguration(
+                        slaveConfigId)) {
+                    if (!slave.isHibernated()) {
+                        configActiveInstanceIDs.add(slave.getInstanceId());
                     }
                 }
 
@@ -591,8 +694,8 @@ public class ElasticBoxSlave extends Slave {
                 }
 
                 int instanceCount = 0;
-                for (JSONObject instance : activeInstances) {
-                    if (configActiveInstanceIDs.contains(instance.getString("id"))) {
+                for (InstanceSnapshot instance : activeInstances) {
+                    if (configActiveInstanceIDs.contains(instance.getId())) {
                         instanceCount++;
                     }
                 }
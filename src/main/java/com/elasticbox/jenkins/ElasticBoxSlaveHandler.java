@@ -12,18 +12,24 @@
 
 package com.elasticbox.jenkins;
 
-import static com.elasticbox.jenkins.ElasticBoxExecutor.threadPool;
 
+import com.elasticbox.BoxStack;
 import com.elasticbox.Client;
 import com.elasticbox.ClientException;
 import com.elasticbox.Constants;
+import com.elasticbox.DeploymentException;
+import com.elasticbox.DeploymentRequest;
 import com.elasticbox.IProgressMonitor;
+import com.elasticbox.InstanceSnapshot;
+import com.elasticbox.jenkins.util.InstrumentedThreadPool;
 import com.elasticbox.jenkins.util.SlaveInstance;
 import com.elasticbox.jenkins.util.VariableResolver;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import hudson.Extension;
 import hudson.model.Descriptor;
-import hudson.model.Node;
 import hudson.model.TaskListener;
 import hudson.slaves.Cloud;
 
@@ -42,11 +48,20 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -57,13 +72,36 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
 
     public static final int TIMEOUT_MINUTES = Integer.getInteger("elasticbox.jenkins.deploymentTimeout", 60);
 
+    private static final int DEPLOYMENT_THREADS = Integer.getInteger("elasticbox.jenkins.deploymentThreads", 4);
+
+    private static final int DEPLOYMENT_QUEUE_SIZE =
+            Integer.getInteger("elasticbox.jenkins.deploymentQueueSize", 100);
+
+    private static final ConcurrentMap<String, InstrumentedThreadPool> cloudToDeploymentPoolMap =
+            new ConcurrentHashMap<String, InstrumentedThreadPool>();
+
     private static final Queue<InstanceCreationRequest> incomingQueue =
             new ConcurrentLinkedQueue<InstanceCreationRequest>();
 
     private static final Queue<InstanceCreationRequest> submittedQueue =
             new ConcurrentLinkedQueue<InstanceCreationRequest>();
 
-    private static final Queue<ElasticBoxSlave> terminatedSlaves = new ConcurrentLinkedQueue<ElasticBoxSlave>();
+    private static final Queue<InstanceCreationRequest> deployingQueue =
+            new ConcurrentLinkedQueue<InstanceCreationRequest>();
+
+    private static final long TERMINATE_RETRY_INTERVAL = Long.getLong(
+            "elasticbox.jenkins.ElasticBoxSlaveHandler.terminateRetryInterval", TimeUnit.MINUTES.toMillis(5));
+
+    private static final SlavePurgeTracker terminatedSlaves = new SlavePurgeTracker(TERMINATE_RETRY_INTERVAL);
+
+    private static final ExecutorService purgePool = new InstrumentedThreadPool("purge",
+            Integer.getInteger("elasticbox.jenkins.ElasticBoxSlaveHandler.purgeThreads", 4),
+            Integer.getInteger("elasticbox.jenkins.ElasticBoxSlaveHandler.purgeQueueSize", 200),
+            InstrumentedThreadPool.ABORT);
+
+    // slaves with a purge or removal task queued or running
+    private static final Set<ElasticBoxSlave> purgingSlaves =
+            Collections.newSetFromMap(new ConcurrentHashMap<ElasticBoxSlave, Boolean>());
 
     private static class InstanceCreationRequest {
         private ElasticBoxSlave slave;
@@ -83,18 +121,79 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
         }
     }
 
+    /**
+     * Deployments of slaves of the same box version, policy and workspace in a cycle of the handler. The box stack is
+     * resolved only by the first deployment of the group, the others use the same scope for the Jenkins variables and
+     * the same box name, so deploying a slave doesn't fetch the box version.
+     */
+    private static final class DeploymentGroup {
+        private final ElasticBoxCloud cloud;
+        private final String boxVersion;
+        private final List<InstanceCreationRequest> requests = new ArrayList<>();
+        private boolean resolved;
+        private String scope;
+        private String boxName;
+        private IOException error;
+
+        DeploymentGroup(ElasticBoxCloud cloud, String boxVersion) {
+            this.cloud = cloud;
+            this.boxVersion = boxVersion;
+        }
+
+        synchronized String getJenkinsVariablesScope() throws IOException {
+            resolve();
+            return scope;
+        }
+
+        synchronized String getBoxName() throws IOException {
+            resolve();
+            return boxName;
+        }
+
+        private void resolve() throws IOException {
+            if (!resolved) {
+                try {
+                    Client client = cloud.getClient();
+                    JSONArray boxStack = new BoxStack(boxVersion, client.getBoxStack(boxVersion), client)
+                            .toJsonArray();
+                    if (boxStack.isEmpty()) {
+                        throw new IOException(MessageFormat.format("Box version {0} has an empty box stack",
+                                boxVersion));
+                    }
+                    scope = SlaveInstance.getJenkinsVariablesScope(boxVersion, boxStack);
+                    boxName = boxStack.getJSONObject(0).getString("name");
+                } catch (IOException ex) {
+                    error = ex;
+                } catch (RuntimeException ex) {
+                    // malformed box metadata, it fails the same way for every deployment of the group
+                    error = new IOException(MessageFormat.format("Invalid box stack of box version {0}: {1}",
+                            boxVersion, ex.getMessage()), ex);
+                }
+                resolved = true;
+            }
+            if (error != null) {
+                throw new IOException(error.getMessage(), error);
+            }
+        }
+    }
+
     public static final ElasticBoxSlaveHandler getInstance() {
         return Jenkins.getInstance().getExtensionList(
                 ElasticBoxExecutor.Workload.class).get(ElasticBoxSlaveHandler.class);
     }
 
     public static final IProgressMonitor submit(ElasticBoxSlave slave) {
+        return submitRequest(slave).monitor;
+    }
+
+    private static InstanceCreationRequest submitRequest(ElasticBoxSlave slave) {
         InstanceCreationRequest newRequest = new InstanceCreationRequest(slave);
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.fine("Adding new slave to Incoming queue - " + slave);
         }
         incomingQueue.add(newRequest);
-        return newRequest.monitor;
+        ElasticBoxExecutor.wakeUp();
+        return newRequest;
     }
 
     private final void resubmitRequest(InstanceCreationRequest request) {
@@ -126,15 +225,20 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
                 return true;
             }
         }
+        for (InstanceCreationRequest request : deployingQueue) {
+            if (request.slave == slave) {
+                return true;
+            }
+        }
         return false;
     }
 
     public static final boolean addToTerminatedQueue(ElasticBoxSlave slave) {
-        if (!terminatedSlaves.contains(slave)) {
+        if (terminatedSlaves.add(slave)) {
             if (LOGGER.isLoggable(Level.FINE)) {
                 LOGGER.fine("Adding slave to Terminated queue. - " + slave);
             }
-            terminatedSlaves.add(slave);
+            ElasticBoxExecutor.wakeUp();
 
             for (Iterator<InstanceCreationRequest> iter = submittedQueue.iterator(); iter.hasNext();) {
                 InstanceCreationRequest request = iter.next();
@@ -147,20 +251,23 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
         return false;
     }
 
-    public static List<JSONObject> getActiveInstances(ElasticBoxCloud cloud) throws IOException {
-        return new SlaveInstanceManager().getInstances(cloud);
+    public static List<InstanceSnapshot> getActiveInstances(ElasticBoxCloud cloud) throws IOException {
+        return SlaveInstanceManager.getInstance().getInstances(cloud);
     }
 
-    public void tagSlaveInstance(JSONObject instance, ElasticBoxSlave slave) throws IOException {
-        if (instance.getJSONArray("tags").contains(slave.getNodeName())) {
+    public void tagSlaveInstance(InstanceSnapshot instanceSnapshot, ElasticBoxSlave slave) throws IOException {
+        if (instanceSnapshot.getTags().contains(slave.getNodeName())) {
             return;
         }
 
-        instance.getJSONArray("tags").add(slave.getNodeName());
         Client client = slave.getCloud().getClient();
+        JSONObject instance = client.getInstance(instanceSnapshot.getId());
+        instance.getJSONArray("tags").add(slave.getNodeName());
         client.updateInstance(instance);
-        log(Level.FINE, MessageFormat.format("Slave instance {0} has been tagged with slave name {1}",
-                Client.getPageUrl(client.getEndpointUrl(), instance), slave.getNodeName()));
+        if (LOGGER.isLoggable(Level.FINE)) {
+            log(Level.FINE, MessageFormat.format("Slave instance {0} has been tagged with slave name {1}",
+                    Client.getPageUrl(client.getEndpointUrl(), instance), slave.getNodeName()));
+        }
     }
 
     @Override
@@ -177,7 +284,7 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
                 StringBuilder trace = new StringBuilder(200);
                 trace.append("Pending tasks:");
                 if ( !terminatedSlaves.isEmpty() ) {
-                    trace.append("\n terminatedSlaves - ").append(terminatedSlaves.toString() );
+                    trace.append("\n terminatedSlaves - ").append(terminatedSlaves.getSlaves().toString() );
                 }
                 if ( !incomingQueue.isEmpty() ) {
                     trace.append("\n incomingQueue - ").append(incomingQueue.toString() );
@@ -191,7 +298,21 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
 
         checkNumberOfSlaves();
 
-        SlaveInstanceManager slaveInstanceManager = new SlaveInstanceManager();
+        // the reservations released while the instances are fetched are not counted in the new snapshots
+        Map<ElasticBoxCloud, Long> cloudToReleaseCountMap = new LinkedHashMap<>();
+        for (Cloud cloud : Jenkins.getInstance().clouds) {
+            if (cloud instanceof ElasticBoxCloud) {
+                ElasticBoxCloud ebCloud = (ElasticBoxCloud) cloud;
+                cloudToReleaseCountMap.put(ebCloud, CloudCapacityTracker.getInstance(ebCloud).getReleaseCount());
+            }
+        }
+        removeDeploymentPools(cloudToReleaseCountMap.keySet());
+        SlaveInstanceManager slaveInstanceManager = SlaveInstanceManager.getInstance();
+        slaveInstanceManager.refresh();
+        for (Map.Entry<ElasticBoxCloud, Long> entry : cloudToReleaseCountMap.entrySet()) {
+            CloudCapacityTracker.getInstance(entry.getKey()).update(
+                    slaveInstanceManager.getInstances(entry.getKey()), entry.getValue());
+        }
         purgeSlaves(slaveInstanceManager, listener);
 
         boolean saveConfig = processSubmittedQueue(listener);
@@ -293,20 +414,18 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
             throws IOException {
 
         List<ElasticBoxSlave> slavesToRemove = new ArrayList<>();
-        for (JSONObject instance : slaveInstanceManager.getInstances()) {
-            String state = instance.getString("state");
-            String instanceId = instance.getString("id");
-            ElasticBoxSlave slave = slaveInstanceManager.getSlave(instanceId);
+        for (InstanceSnapshot instance : slaveInstanceManager.getInstances()) {
+            InstanceSnapshot.State state = instance.getState();
+            ElasticBoxSlave slave = slaveInstanceManager.getSlave(instance.getId());
 
-            if (Client.InstanceState.DONE.equals(state)
-                    && Client.TERMINATE_OPERATIONS.contains(instance.getJSONObject("operation").getString("event"))
+            if (state == InstanceSnapshot.State.DONE && instance.getOperation().isTerminate()
                     && slave.isRemovableFromCloud() ) {
 
                 if (LOGGER.isLoggable(Level.FINER)) {
                     LOGGER.finer("Found Slave to remove - " + slave);
                 }
                 addToTerminatedQueue(slave);
-            } else if (Client.InstanceState.UNAVAILABLE.equals(state) && !slave.getComputer().isOffline()) {
+            } else if (state == InstanceSnapshot.State.UNAVAILABLE && !slave.getComputer().isOffline()) {
                 LOGGER.log(Level.INFO, MessageFormat.format(
                         "The instance {0} is unavailable, it will be terminated.", slave.getInstancePageUrl()));
 
@@ -317,72 +436,168 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
         return slavesToRemove;
     }
 
-    private boolean purgeSlave(ElasticBoxSlave slave, TaskListener listener) {
-        if (LOGGER.isLoggable(Level.FINER)) {
-            LOGGER.finer("Purging slave - " + slave);
-        }
-        JSONObject instance;
-        String state;
-        try {
-            instance = slave.getInstance();
-            state = slave.getInstanceState();
-        } catch (IOException ex) {
-            if (ex instanceof ClientException && ((ClientException) ex).getStatusCode() == HttpStatus.SC_NOT_FOUND) {
-                return true;
-            }
-            log(Level.SEVERE,
-                    "Error fetching the instance data of ElasticBox slave - " + slave.getDisplayName(), ex, listener);
-
-            return false;
-        }
-
-        switch (state) {
-            case Client.InstanceState.PROCESSING:
+    /**
+     * Advances the purge of the slave according to the state of its instance in the last listing: the instance is
+     * terminated, then it is deleted and the slave is removed. A termination is requested again only if the instance
+     * is still not terminated after a while, or in the next cycle if the request failed.
+     */
+    private void purgeSlave(final ElasticBoxSlave slave, InstanceSnapshot instance, final TaskListener listener) {
+        switch (SlavePurgeTracker.getAction(instance)) {
+            case WAIT:
                 if (LOGGER.isLoggable(Level.FINEST)) {
                     LOGGER.finest("Slave still processing, cannot be purged - " + slave);
                 }
-                return false;
+                break;
 
-            case Client.InstanceState.UNAVAILABLE:
+            case FORCE_TERMINATE:
                 if (LOGGER.isLoggable(Level.FINE)) {
                     LOGGER.fine("Slave is unavailable - " + slave);
                 }
-                try {
-                    slave.getCloud().getClient().forceTerminate(instance.getString("id"));
-                } catch (IOException ex) {
-                    log(Level.SEVERE,
-                            "Error force-terminating the instance of ElasticBox slave - " + slave.getDisplayName(),
-                            ex, listener);
-                }
-                return false;
+                requestTermination(slave, true, listener);
+                break;
 
-            default:
-                String event = instance.getJSONObject("operation").getString("event");
-                if (Client.TERMINATE_OPERATIONS.contains(event) ) {
-                    if (slave.isRemovableFromCloud() ) {
-                        LOGGER.info("Deleting slave - " + slave);
-                        deleteInstance(slave, listener);
-                    } else if (!slave.isDeletable() ) {
-                        if (LOGGER.isLoggable(Level.FINE)) {
+            case DELETE:
+                submitPurge(slave, new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (slave.isRemovableFromCloud()) {
+                            LOGGER.info("Deleting slave - " + slave);
+                            deleteInstance(slave, listener);
+                        } else if (!slave.isDeletable() && LOGGER.isLoggable(Level.FINE)) {
                             LOGGER.fine("Unavailable Slave has been terminated manually - " + slave);
                         }
+                        finishPurge(slave);
                     }
-                    return true;
-                } else {
-                    try {
-                        if (LOGGER.isLoggable(Level.FINE)) {
-                            LOGGER.info("Terminating not required slave - " + slave);
 
-                        }
-                        slave.terminate();
-                    } catch (IOException e) {
-                        log(Level.SEVERE,
-                                "Error terminating the instance of ElasticBox slave - " + slave.getDisplayName(),
-                                e, listener);
+                });
+                break;
+
+            default:
+                requestTermination(slave, false, listener);
+        }
+    }
+
+    private void requestTermination(final ElasticBoxSlave slave, final boolean force, final TaskListener listener) {
+        final long requestTime = System.currentTimeMillis();
+        if (!terminatedSlaves.startTermination(slave, requestTime)) {
+            return;
+        }
+
+        if (force) {
+            forceTerminate(slave, requestTime, listener);
+            return;
+        }
+
+        boolean submitted = submitPurge(slave, new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.fine("Terminating not required slave - " + slave);
                     }
+                    slave.terminate();
+                } catch (IOException ex) {
+                    terminatedSlaves.terminationFailed(slave, requestTime);
+                    log(Level.SEVERE, "Error terminating the instance of ElasticBox slave - "
+                            + slave.getDisplayName(), ex, listener);
+                }
+            }
+
+        });
+        if (!submitted) {
+            terminatedSlaves.terminationFailed(slave, requestTime);
+        }
+    }
+
+    /**
+     * Force-terminates the instance of the slave with the non-blocking client, so the slaves that are stuck don't hold
+     * the threads of the purge pool while their instances are terminated.
+     */
+    private void forceTerminate(final ElasticBoxSlave slave, final long requestTime, final TaskListener listener) {
+        ListenableFuture<IProgressMonitor> termination;
+        try {
+            slave.checkInstanceReachable();
+            termination = slave.getCloud().getClient().async().forceTerminate(slave.getInstanceId());
+        } catch (IOException ex) {
+            terminatedSlaves.terminationFailed(slave, requestTime);
+            log(Level.SEVERE, "Error terminating the instance of ElasticBox slave - " + slave.getDisplayName(), ex,
+                    listener);
+            return;
+        }
+
+        Futures.addCallback(termination, new FutureCallback<IProgressMonitor>() {
+            public void onSuccess(IProgressMonitor monitor) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Requested force-termination of slave - " + slave);
                 }
-                return false;
+            }
+
+            public void onFailure(Throwable error) {
+                terminatedSlaves.terminationFailed(slave, requestTime);
+                log(Level.SEVERE, "Error terminating the instance of ElasticBox slave - " + slave.getDisplayName(),
+                        error, listener);
+            }
+        });
+    }
+
+    /**
+     * Fetches the instance of a slave that is not in the listed workspaces with the non-blocking client, then advances
+     * its purge like for the listed instances.
+     */
+    private void fetchAndPurgeSlave(final ElasticBoxSlave slave, final TaskListener listener) {
+        if (!purgingSlaves.add(slave)) {
+            if (LOGGER.isLoggable(Level.FINEST)) {
+                LOGGER.finest("Slave is already being purged - " + slave);
+            }
+            return;
         }
+        if (LOGGER.isLoggable(Level.FINER)) {
+            LOGGER.finer("Purging slave - " + slave);
+        }
+
+        ListenableFuture<JSONObject> instance;
+        try {
+            slave.checkInstanceReachable();
+            instance = slave.getCloud().getClient().async().getInstance(slave.getInstanceId());
+        } catch (IOException ex) {
+            purgingSlaves.remove(slave);
+            log(Level.SEVERE, "Error fetching the instance data of ElasticBox slave - " + slave.getDisplayName(), ex,
+                    listener);
+            return;
+        }
+
+        Futures.addCallback(instance, new FutureCallback<JSONObject>() {
+            public void onSuccess(JSONObject instance) {
+                purgingSlaves.remove(slave);
+                purgeSlave(slave, InstanceSnapshot.valueOf(instance), listener);
+            }
+
+            public void onFailure(Throwable error) {
+                purgingSlaves.remove(slave);
+                if (error instanceof ClientException
+                        && ((ClientException) error).getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+
+                    submitPurge(slave, new Runnable() {
+
+                        @Override
+                        public void run() {
+                            finishPurge(slave);
+                        }
+
+                    });
+                } else {
+                    log(Level.SEVERE, "Error fetching the instance data of ElasticBox slave - "
+                            + slave.getDisplayName(), error, listener);
+                }
+            }
+        });
+    }
+
+    private static void finishPurge(ElasticBoxSlave slave) {
+        terminatedSlaves.remove(slave);
+        removeSlave(slave);
     }
 
     private boolean deleteInstance(ElasticBoxSlave slave, TaskListener listener) {
@@ -417,21 +632,27 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
         }
 
         // remove terminated slaves
-        for (final ElasticBoxSlave slave: terminatedSlaves) {
+        for (final ElasticBoxSlave slave: terminatedSlaves.getSlaves()) {
             if (LOGGER.isLoggable(Level.FINE)) {
                 LOGGER.fine("Terminated slave instance found. - " + slave);
             }
-            threadPool.submit(new Runnable() {
+            InstanceSnapshot instance = slaveInstanceManager.getInstance(slave);
+            if (instance != null) {
+                purgeSlave(slave, instance, listener);
+            } else if (slave.getInstanceUrl() == null || slaveInstanceManager.isListed(slave)) {
+                // the instance is already deleted
+                submitPurge(slave, new Runnable() {
 
-                @Override
-                public void run() {
-                    if (purgeSlave(slave, listener)) {
-                        terminatedSlaves.remove(slave);
-                        removeSlave(slave);
+                    @Override
+                    public void run() {
+                        finishPurge(slave);
                     }
-                }
 
-            });
+                });
+            } else {
+                // the instance is not in the listed workspaces, so its state is fetched
+                fetchAndPurgeSlave(slave, listener);
+            }
         }
 
         // remove bad slaves
@@ -441,7 +662,7 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
                 if (LOGGER.isLoggable(Level.FINE)) {
                     LOGGER.fine("Removable slave instance found - " + slave);
                 }
-                threadPool.submit(new Runnable() {
+                submitPurge(slave, new Runnable() {
 
                     @Override
                     public void run() {
@@ -453,17 +674,89 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
         }
     }
 
-    private void deployInstance(InstanceCreationRequest request) throws IOException {
-        final ElasticBoxSlave slave = request.slave;
-        final ElasticBoxCloud cloud = slave.getCloud();
-        final Client ebClient = cloud.getClient();
+    /**
+     * Submits a task to purge or remove the slave, unless a task for the slave is still queued or running.
+     *
+     * @return false if the task is not submitted
+     */
+    private static boolean submitPurge(final ElasticBoxSlave slave, final Runnable task) {
+        if (!purgingSlaves.add(slave)) {
+            if (LOGGER.isLoggable(Level.FINEST)) {
+                LOGGER.finest("Slave is already being purged - " + slave);
+            }
+            return false;
+        }
+
+        try {
+            purgePool.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        purgingSlaves.remove(slave);
+                    }
+                }
+
+            });
+        } catch (RejectedExecutionException ex) {
+            purgingSlaves.remove(slave);
+            LOGGER.warning("Purge of slave " + slave.getNodeName() + " is postponed, thread pool " + purgePool);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Deploys the instances of the requests with one batch call. If a request fails, the requests before it keep their
+     * instances, the failed one is dropped and the ones after it, which were not submitted, go back to the incoming
+     * queue.
+     */
+    private void deployInstances(List<InstanceCreationRequest> requests, DeploymentGroup group,
+                                 TaskListener listener) {
+        List<IProgressMonitor> monitors;
+        try {
+            Client ebClient = group.cloud.getClient();
+            LOGGER.info("Deploying box - " + ebClient.getBoxPageUrl(group.boxVersion));
+            List<DeploymentRequest> deploymentRequests = new ArrayList<>(requests.size());
+            for (InstanceCreationRequest request : requests) {
+                deploymentRequests.add(createDeploymentRequest(request.slave, group));
+            }
+            monitors = ebClient.deploy(deploymentRequests);
+        } catch (DeploymentException ex) {
+            monitors = ex.getMonitors();
+            InstanceCreationRequest failedRequest = requests.get(monitors.size());
+            failDeployment(failedRequest, ex.getCause(), listener);
+            for (InstanceCreationRequest request : requests.subList(monitors.size() + 1, requests.size())) {
+                deployingQueue.remove(request);
+                incomingQueue.add(request);
+            }
+        } catch (IOException | RuntimeException ex) {
+            for (InstanceCreationRequest request : requests) {
+                failDeployment(request, ex, listener);
+            }
+            return;
+        }
 
-        LOGGER.info("Deploying box - " + ebClient.getBoxPageUrl(slave.getBoxVersion() ));
+        for (int i = 0; i < monitors.size(); i++) {
+            InstanceCreationRequest request = requests.get(i);
+            try {
+                launched(request, monitors.get(i));
+                log("Deploying a new instance for slave - " + request.slave.getDisplayName(), listener);
+            } catch (RuntimeException ex) {
+                failDeployment(request, ex, listener);
+            } finally {
+                deployingQueue.remove(request);
+            }
+        }
+    }
 
-        final AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
+    private DeploymentRequest createDeploymentRequest(ElasticBoxSlave slave, DeploymentGroup group)
+            throws IOException {
 
-        final JSONArray variables = getJenkinsVariables(slave);
-        final String workspace = slaveConfig.getWorkspace();
+        AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
+        JSONArray variables = getJenkinsVariables(slave, group.getJenkinsVariablesScope());
 
         List<String> tags = new ArrayList<>();
         tags.add(slave.getNodeName() );
@@ -474,9 +767,19 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
             tags.addAll(Arrays.asList(userTagList) );
         }
 
-        IProgressMonitor monitor = ebClient.deploy(slave.getBoxVersion(), slave.getProfileId(), null, workspace, tags,
-                variables, null, null, slave.getPolicyVariables(), Constants.AUTOMATIC_UPDATES_OFF);
+        return new DeploymentRequest.DeploymentRequestBuilder()
+                .withBox(slave.getBoxVersion(), group.getBoxName())
+                .withPolicy(slave.getProfileId())
+                .withWorkspace(slaveConfig.getWorkspace())
+                .withTags(tags)
+                .withVariables(variables)
+                .withPolicyVariables(slave.getPolicyVariables())
+                .withAutomaticUpdates(Constants.AUTOMATIC_UPDATES_OFF)
+                .build();
+    }
 
+    private void launched(InstanceCreationRequest request, IProgressMonitor monitor) {
+        ElasticBoxSlave slave = request.slave;
         slave.setInstanceUrl(monitor.getResourceUrl());
         slave.setInstanceStatusMessage(
                 MessageFormat.format("Submitted request to deploy instance <a href=\"{0}\">{0}</a>",
@@ -490,13 +793,19 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
         submittedQueue.add(request);
     }
 
-    private JSONArray getJenkinsVariables(ElasticBoxSlave slave) throws IOException {
-        Client ebClient = slave.getCloud().getClient();
+    private void failDeployment(InstanceCreationRequest request, Exception error, TaskListener listener) {
+        log(Level.SEVERE, MessageFormat.format("Error deploying a new instance for slave {0}",
+                request.slave.getDisplayName()), error, listener);
+        request.monitor.setMonitor(IProgressMonitor.DONE_MONITOR);
+        removeSlave(request.slave);
+        deployingQueue.remove(request);
+    }
+
+    private JSONArray getJenkinsVariables(ElasticBoxSlave slave, String jenkinsVariablesScope) {
         AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
-        JSONArray variables = SlaveInstance.createJenkinsVariables(ebClient, slave);
-        JSONObject jenkinsVariable = variables.getJSONObject(0);
+        JSONArray variables = SlaveInstance.createJenkinsVariables(slave, jenkinsVariablesScope);
 
-        String scope = jenkinsVariable.containsKey("scope") ? jenkinsVariable.getString("scope") : StringUtils.EMPTY;
+        String scope = jenkinsVariablesScope != null ? jenkinsVariablesScope : StringUtils.EMPTY;
 
         if (slaveConfig != null && slaveConfig.getVariables() != null) {
             JSONArray configuredVariables = VariableResolver.parseVariables(slaveConfig.getVariables() );
@@ -514,18 +823,15 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
     private Map<AbstractSlaveConfiguration, List<ElasticBoxSlave>> countSlavesPerConfiguration() {
         Map<AbstractSlaveConfiguration, List<ElasticBoxSlave>> slaveConfigToSlaveListMap = new HashMap<>();
 
-        for (Node node : Jenkins.getInstance().getNodes()) {
-            if (node instanceof ElasticBoxSlave) {
-                ElasticBoxSlave slave = (ElasticBoxSlave) node;
-                AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
-                if (slaveConfig != null ) {
-                    List<ElasticBoxSlave> slaves = slaveConfigToSlaveListMap.get(slaveConfig);
-                    if (slaves == null) {
-                        slaves = new ArrayList<>();
-                        slaveConfigToSlaveListMap.put(slaveConfig, slaves);
-                    }
-                    slaves.add(slave);
+        for (ElasticBoxSlave slave : ElasticBoxSlaveRegistry.getInstance().getSlaves()) {
+            AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
+            if (slaveConfig != null ) {
+                List<ElasticBoxSlave> slaves = slaveConfigToSlaveListMap.get(slaveConfig);
+                if (slaves == null) {
+                    slaves = new ArrayList<>();
+                    slaveConfigToSlaveListMap.put(slaveConfig, slaves);
                 }
+                slaves.add(slave);
             }
         }
         return slaveConfigToSlaveListMap;
@@ -539,21 +845,30 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
             if (slaveConfig.getMinInstances() > 0) {
                 List<ElasticBoxSlave> slaveList = slaveConfigToSlaveCountMap.get(slaveConfig);
                 int slaveCount = (slaveList == null) ? 0 : slaveList.size();
-                if (slaveConfig.getMinInstances() > slaveCount) {
+                // the hibernated slaves cannot run builds, so they don't count for the minimum number of slaves unless
+                // they are being resumed
+                int runningSlaveCount = countRunningSlaves(slaveList);
+                if (slaveConfig.getMinInstances() > runningSlaveCount) {
 
                     try {
                         int minInstances = slaveConfig.getMinInstances();
                         if (LOGGER.isLoggable(Level.FINE)) {
                             LOGGER.fine(MessageFormat.format(
                                     "Found less slaves [{0}] than Min limit [{1}] for slave configuration [{2}]",
-                                    slaveCount, minInstances, slaveConfig.getDescription() ));
+                                    runningSlaveCount, minInstances, slaveConfig.getDescription() ));
                         }
-                        while (slaveCount < minInstances ) {
-                            ElasticBoxSlave slave = new ElasticBoxSlave(slaveConfig, cloud);
-                            LOGGER.info("New slave to be created - " + slave);
-                            Jenkins.getInstance().addNode(slave);
-                            ElasticBoxSlaveHandler.submit(slave);
-                            slaveCount++;
+                        while (runningSlaveCount < minInstances ) {
+                            ElasticBoxSlave slave = claimHibernatedSlave(slaveList);
+                            if (slave != null) {
+                                LOGGER.info("Hibernated slave to be resumed - " + slave);
+                                ElasticBoxCloud.resume(slave);
+                            } else {
+                                slave = new ElasticBoxSlave(slaveConfig, cloud);
+                                LOGGER.info("New slave to be created - " + slave);
+                                Jenkins.getInstance().addNode(slave);
+                                ElasticBoxSlaveHandler.submit(slave);
+                            }
+                            runningSlaveCount++;
                         }
                     } catch (IOException | Descriptor.FormException ex) {
                         log(Level.SEVERE, ex.getMessage(), ex);
@@ -588,10 +903,128 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
                     }
                 }
             }
+
+            prewarmSlaves(cloud, slaveConfig, slaveConfigToSlaveCountMap.get(slaveConfig));
+            trimHibernatedSlaves(slaveConfig, slaveConfigToSlaveCountMap.get(slaveConfig));
+        }
+    }
+
+    static int countRunningSlaves(List<ElasticBoxSlave> slaveList) {
+        int count = 0;
+        if (slaveList != null) {
+            for (ElasticBoxSlave slave : slaveList) {
+                if (!slave.isHibernated() || slave.isResuming()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static ElasticBoxSlave claimHibernatedSlave(List<ElasticBoxSlave> slaveList) {
+        if (slaveList != null) {
+            for (ElasticBoxSlave slave : slaveList) {
+                if (slave.startResume()) {
+                    return slave;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Terminates the hibernated slaves over the maximum of the slave configuration, after it has been lowered.
+     */
+    private void trimHibernatedSlaves(SlaveConfiguration slaveConfig, List<ElasticBoxSlave> slaveList) {
+        if (slaveList == null) {
+            return;
+        }
+
+        int excessSlaves = ElasticBoxComputer.countHibernatedSlaves(slaveConfig.getId())
+                - slaveConfig.getMaxHibernatedInstances();
+        for (ElasticBoxSlave slave : slaveList) {
+            if (excessSlaves <= 0) {
+                break;
+            }
+            if (slave.startTermination()) {
+                LOGGER.info("Terminating hibernated slave over the limit - " + slave);
+                slave.markForTermination();
+                excessSlaves--;
+            }
+        }
+    }
+
+    private void prewarmSlaves(ElasticBoxCloud cloud, SlaveConfiguration slaveConfig, List<ElasticBoxSlave> slaveList)
+            throws IOException {
+
+        DemandForecaster forecaster = DemandForecaster.getInstance();
+        int prewarmSlaves = forecaster.getPrewarmSlaves(slaveConfig);
+        // the slaves launched above for the minimum number of instances are not in the list yet
+        int slaveCount = Math.max(slaveList == null ? 0 : slaveList.size(), slaveConfig.getMinInstances());
+        if (prewarmSlaves <= slaveCount) {
+            return;
+        }
+
+        final CloudCapacityTracker capacityTracker = CloudCapacityTracker.getInstance(cloud);
+        CloudCapacityTracker.Snapshot snapshot = capacityTracker.getSnapshot(cloud);
+        int newSlaves = prewarmSlaves - slaveCount;
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(MessageFormat.format("Pre-warming up to [{0}] slaves for forecast demand of [{1}] slaves of "
+                    + "slave configuration [{2}]", newSlaves, prewarmSlaves, slaveConfig.getDescription()));
+        }
+        for (int i = 0; i < newSlaves; i++) {
+            // the reservation keeps the provisioning and the other slave configurations within the limits
+            CloudCapacityTracker.Reservation reservation = capacityTracker.reserve(cloud, slaveConfig, snapshot);
+            if (reservation == null) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine(MessageFormat.format("No capacity left to pre-warm slaves of slave configuration "
+                            + "[{0}]", slaveConfig.getDescription()));
+                }
+                return;
+            }
+
+            final ElasticBoxSlave slave;
+            try {
+                slave = new ElasticBoxSlave(slaveConfig, cloud);
+            } catch (IOException | Descriptor.FormException ex) {
+                reservation.cancel();
+                log(Level.SEVERE, ex.getMessage(), ex);
+                return;
+            }
+            reservation.bind(slave);
+
+            LOGGER.info("New pre-warmed slave to be created - " + slave);
+            final LaunchSlaveProgressMonitor monitor;
+            try {
+                Jenkins.getInstance().addNode(slave);
+                forecaster.recordPrewarmed(slave, slaveConfig);
+                monitor = submitRequest(slave).monitor;
+            } catch (IOException | RuntimeException ex) {
+                capacityTracker.release(slave);
+                log(Level.SEVERE, ex.getMessage(), ex);
+                return;
+            }
+
+            // release the reservation when the deployment of the slave ends, the instance state watcher completes
+            // the wait without holding a thread
+            Futures.addCallback(monitor.watch(slave.getLaunchTimeout()), new FutureCallback<Void>() {
+                public void onSuccess(Void result) {
+                    capacityTracker.release(slave);
+                }
+
+                public void onFailure(Throwable error) {
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.log(Level.FINE, MessageFormat.format("Pre-warmed slave {0} was not launched",
+                                slave.getNodeName()), error);
+                    }
+                    capacityTracker.release(slave);
+                }
+            });
         }
     }
 
     private void checkNumberOfSlaves() throws IOException {
+        DemandForecaster.getInstance().checkPrewarmedSlaves();
         Map<AbstractSlaveConfiguration, List<ElasticBoxSlave>> slaveCfgToSlaveListMap = countSlavesPerConfiguration();
         for (Cloud cloud : Jenkins.getInstance().clouds) {
             if (cloud instanceof ElasticBoxCloud) {
@@ -600,27 +1033,80 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
         }
     }
 
-    private boolean processIncomingQueue(TaskListener listener, SlaveInstanceManager instanceManager )
+    private static ExecutorService getDeploymentPool(ElasticBoxCloud cloud) {
+        InstrumentedThreadPool pool = cloudToDeploymentPoolMap.get(cloud.name);
+        if (pool == null) {
+            InstrumentedThreadPool executor = new InstrumentedThreadPool("deployment - " + cloud.name,
+                    DEPLOYMENT_THREADS, DEPLOYMENT_QUEUE_SIZE, InstrumentedThreadPool.ABORT);
+            pool = cloudToDeploymentPoolMap.putIfAbsent(cloud.name, executor);
+            if (pool == null) {
+                pool = executor;
+            } else {
+                executor.shutdown();
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Returns the deployment pool of the cloud, or null if no slave of the cloud has been deployed yet.
+     */
+    static InstrumentedThreadPool getCreatedDeploymentPool(ElasticBoxCloud cloud) {
+        return cloudToDeploymentPoolMap.get(cloud.name);
+    }
+
+    static boolean isDeploymentPool(InstrumentedThreadPool pool) {
+        return cloudToDeploymentPoolMap.containsValue(pool);
+    }
+
+    /**
+     * Shuts down the deployment pools of the clouds that have been deleted or renamed. The deployments already
+     * submitted to them still run.
+     */
+    private static void removeDeploymentPools(Collection<ElasticBoxCloud> clouds) {
+        Set<String> cloudNames = new HashSet<>();
+        for (ElasticBoxCloud cloud : clouds) {
+            cloudNames.add(cloud.name);
+        }
+        for (Iterator<Map.Entry<String, InstrumentedThreadPool>> iter = cloudToDeploymentPoolMap.entrySet().iterator();
+                iter.hasNext();) {
+
+            Map.Entry<String, InstrumentedThreadPool> entry = iter.next();
+            if (!cloudNames.contains(entry.getKey())) {
+                iter.remove();
+                entry.getValue().shutdown();
+                LOGGER.info(MessageFormat.format("Shut down the deployment pool of removed cloud {0}",
+                        entry.getKey()));
+            }
+        }
+    }
+
+    private boolean processIncomingQueue(final TaskListener listener, SlaveInstanceManager instanceManager )
             throws IOException {
 
 
         if (!incomingQueue.isEmpty() ) {
             Map<ElasticBoxCloud, Integer> cloudToMaxNewInstancesMap = instanceManager.getMaxInstancesPerCloud();
+            List<Future<?>> deployments = new ArrayList<>();
 
+            // group the requests of the same deployment, so the box stack is resolved once for all of them
+            Map<String, DeploymentGroup> deploymentGroups = new LinkedHashMap<>();
             for (InstanceCreationRequest req = incomingQueue.poll(); req != null; req = incomingQueue.poll()) {
                 ElasticBoxCloud cloud = req.slave.getCloud();
-                int maxNewInstances = cloudToMaxNewInstancesMap.get(cloud);
-                if (maxNewInstances > 0) {
-                    try {
-                        deployInstance(req);
-                        cloudToMaxNewInstancesMap.put(cloud, maxNewInstances--);
-                        log("Deploying a new instance for slave - " + req.slave.getDisplayName(), listener);
-                    } catch (IOException ex) {
-                        log(Level.SEVERE, MessageFormat.format("Error deploying a new instance for slave {0}",
-                                req.slave.getDisplayName()), ex, listener);
-                        req.monitor.setMonitor(IProgressMonitor.DONE_MONITOR);
-                        removeSlave(req.slave);
+                Integer maxNewInstances = cloudToMaxNewInstancesMap.get(cloud);
+                if (maxNewInstances != null && maxNewInstances > 0) {
+                    // the instance counts against the budget of the cloud as soon as its deployment is scheduled
+                    cloudToMaxNewInstancesMap.put(cloud, maxNewInstances - 1);
+                    deployingQueue.add(req);
+                    AbstractSlaveConfiguration slaveConfig = req.slave.getSlaveConfiguration();
+                    String key = StringUtils.join(new Object[] { cloud.name, req.slave.getBoxVersion(),
+                        req.slave.getProfileId(), slaveConfig != null ? slaveConfig.getWorkspace() : null }, '/');
+                    DeploymentGroup group = deploymentGroups.get(key);
+                    if (group == null) {
+                        group = new DeploymentGroup(cloud, req.slave.getBoxVersion());
+                        deploymentGroups.put(key, group);
                     }
+                    group.requests.add(req);
                 } else {
                     log(Level.WARNING, "Max number of ElasticBox instances has been reached for: "
                             + cloud.getDisplayName(), null, listener);
@@ -629,6 +1115,47 @@ public class ElasticBoxSlaveHandler extends ElasticBoxExecutor.Workload {
                     removeSlave(req.slave);
                 }
             }
+
+            for (final DeploymentGroup group : deploymentGroups.values()) {
+                if (LOGGER.isLoggable(Level.FINE) && group.requests.size() > 1) {
+                    LOGGER.fine(MessageFormat.format("Deploying {0} instances of box version {1} together",
+                            group.requests.size(), group.boxVersion));
+                }
+                // the requests of the group are shared out among the deployment threads, each one deploys its share
+                // with a single batch call
+                int batchSize = (group.requests.size() + DEPLOYMENT_THREADS - 1) / DEPLOYMENT_THREADS;
+                for (int start = 0; start < group.requests.size(); start += batchSize) {
+                    final List<InstanceCreationRequest> batch = new ArrayList<>(group.requests.subList(start,
+                            Math.min(start + batchSize, group.requests.size())));
+                    try {
+                        deployments.add(getDeploymentPool(group.cloud).submit(new Runnable() {
+                            public void run() {
+                                deployInstances(batch, group, listener);
+                            }
+                        }));
+                    } catch (RejectedExecutionException ex) {
+                        // the deployment pool is full, the slaves are deployed in a later cycle
+                        for (InstanceCreationRequest request : batch) {
+                            log(Level.WARNING, MessageFormat.format("Deployment of slave {0} is postponed",
+                                    request.slave.getDisplayName()), null, listener);
+                            deployingQueue.remove(request);
+                            incomingQueue.add(request);
+                        }
+                    }
+                }
+            }
+
+            // the slaves are saved with their instance URLs by the caller, so wait for the deployments to be submitted
+            for (Future<?> deployment : deployments) {
+                try {
+                    deployment.get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException ex) {
+                    LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+                }
+            }
             return true;
         }
         return false;
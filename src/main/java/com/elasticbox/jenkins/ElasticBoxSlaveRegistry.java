@@ -0,0 +1,213 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.labels.LabelAtom;
+
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of the ElasticBox slaves of Jenkins, indexed by cloud, slave configuration, instance, name and label.
+ * The indexes are rebuilt from the nodes of Jenkins only after the nodes change, so the lookups go through the
+ * matching slaves instead of all the nodes. The registry is notified of the changes by the computer listener of the
+ * plugin. When the instance of a slave is set, only the entry of the slave in the instance index is updated.
+ */
+public final class ElasticBoxSlaveRegistry {
+    private static final Logger LOGGER = Logger.getLogger(ElasticBoxSlaveRegistry.class.getName());
+
+    private static final ElasticBoxSlaveRegistry instance = new ElasticBoxSlaveRegistry();
+
+    private final AtomicLong generation = new AtomicLong(1);
+    private final AtomicLong instanceGeneration = new AtomicLong();
+    private volatile Index index = new Index(0);
+
+    private static final class Index {
+        private final long generation;
+        private final List<ElasticBoxSlave> slaves = new ArrayList<ElasticBoxSlave>();
+        private final Map<String, List<ElasticBoxSlave>> cloudToSlavesMap =
+                new HashMap<String, List<ElasticBoxSlave>>();
+        private final Map<String, List<ElasticBoxSlave>> slaveConfigIdToSlavesMap =
+                new HashMap<String, List<ElasticBoxSlave>>();
+        private final Map<LabelAtom, List<ElasticBoxSlave>> labelToSlavesMap =
+                new HashMap<LabelAtom, List<ElasticBoxSlave>>();
+        // updated in place when the instance of a slave is set
+        private final ConcurrentMap<String, ElasticBoxSlave> instanceIdToSlaveMap =
+                new ConcurrentHashMap<String, ElasticBoxSlave>();
+        private final Map<String, ElasticBoxSlave> nameToSlaveMap = new HashMap<String, ElasticBoxSlave>();
+
+        Index(long generation) {
+            this.generation = generation;
+        }
+
+        void add(ElasticBoxSlave slave) {
+            slaves.add(slave);
+            nameToSlaveMap.put(slave.getNodeName(), slave);
+            if (slave.getInstanceUrl() != null) {
+                instanceIdToSlaveMap.put(slave.getInstanceId(), slave);
+            }
+            try {
+                ElasticBoxCloud cloud = slave.getCloud();
+                if (cloud != null) {
+                    addTo(cloudToSlavesMap, cloud.name, slave);
+                }
+            } catch (IOException ex) {
+                LOGGER.warning(ex.getMessage() + " - " + slave);
+            }
+            String slaveConfigId = slave.getSlaveConfigurationId();
+            if (slaveConfigId != null) {
+                addTo(slaveConfigIdToSlavesMap, slaveConfigId, slave);
+            }
+            for (LabelAtom label : slave.getAssignedLabels()) {
+                addTo(labelToSlavesMap, label, slave);
+            }
+        }
+
+        private static <K> void addTo(Map<K, List<ElasticBoxSlave>> map, K key, ElasticBoxSlave slave) {
+            List<ElasticBoxSlave> slaves = map.get(key);
+            if (slaves == null) {
+                slaves = new ArrayList<ElasticBoxSlave>(1);
+                map.put(key, slaves);
+            }
+            slaves.add(slave);
+        }
+    }
+
+    private ElasticBoxSlaveRegistry() {
+    }
+
+    public static ElasticBoxSlaveRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Makes the registry read the nodes of Jenkins again before it is used next. Jenkins notifies the computer listener
+     * of the plugin every time a node is added or removed, which calls this method, so the callers that add or remove
+     * nodes don't need to.
+     */
+    public static void nodesChanged() {
+        instance.generation.incrementAndGet();
+    }
+
+    /**
+     * Returns a number that changes every time the nodes change.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Returns a number that changes every time the instance of a slave is set.
+     */
+    public long getInstanceGeneration() {
+        return instanceGeneration.get();
+    }
+
+    /**
+     * Updates the entry of the slave in the instance index after its instance is set, without reading the nodes
+     * again. The lock keeps an index that is being rebuilt from missing the new instance.
+     *
+     * @param oldInstanceId the ID of the previous instance of the slave, null if it had none
+     */
+    synchronized void instanceChanged(ElasticBoxSlave slave, String oldInstanceId) {
+        Index currentIndex = index;
+        if (currentIndex.nameToSlaveMap.get(slave.getNodeName()) == slave) {
+            if (oldInstanceId != null) {
+                currentIndex.instanceIdToSlaveMap.remove(oldInstanceId, slave);
+            }
+            if (slave.getInstanceUrl() != null) {
+                currentIndex.instanceIdToSlaveMap.put(slave.getInstanceId(), slave);
+            }
+        }
+        instanceGeneration.incrementAndGet();
+    }
+
+    public List<ElasticBoxSlave> getSlaves() {
+        return Collections.unmodifiableList(getIndex().slaves);
+    }
+
+    public List<ElasticBoxSlave> getSlaves(ElasticBoxCloud cloud) {
+        return unmodifiable(getIndex().cloudToSlavesMap.get(cloud.name));
+    }
+
+    public List<ElasticBoxSlave> getSlaves(Label label) {
+        Index currentIndex = getIndex();
+        if (label instanceof LabelAtom) {
+            return unmodifiable(currentIndex.labelToSlavesMap.get(label));
+        }
+
+        List<ElasticBoxSlave> slaves = new ArrayList<ElasticBoxSlave>();
+        for (ElasticBoxSlave slave : currentIndex.slaves) {
+            if (label.matches(slave)) {
+                slaves.add(slave);
+            }
+        }
+        return slaves;
+    }
+
+    public List<ElasticBoxSlave> getSlavesByConfiguration(String slaveConfigId) {
+        return unmodifiable(getIndex().slaveConfigIdToSlavesMap.get(slaveConfigId));
+    }
+
+    public ElasticBoxSlave getSlaveByInstanceId(String instanceId) {
+        return getIndex().instanceIdToSlaveMap.get(instanceId);
+    }
+
+    public ElasticBoxSlave getSlaveByName(String name) {
+        return getIndex().nameToSlaveMap.get(name);
+    }
+
+    private static List<ElasticBoxSlave> unmodifiable(List<ElasticBoxSlave> slaves) {
+        return slaves != null ? Collections.unmodifiableList(slaves) : Collections.<ElasticBoxSlave>emptyList();
+    }
+
+    private Index getIndex() {
+        Index currentIndex = index;
+        if (currentIndex.generation == generation.get()) {
+            return currentIndex;
+        }
+
+        synchronized (this) {
+            long currentGeneration = generation.get();
+            if (index.generation == currentGeneration) {
+                return index;
+            }
+
+            Index newIndex = new Index(currentGeneration);
+            for (Node node : Jenkins.getInstance().getNodes()) {
+                if (node instanceof ElasticBoxSlave) {
+                    newIndex.add((ElasticBoxSlave) node);
+                }
+            }
+            index = newIndex;
+            if (LOGGER.isLoggable(Level.FINEST)) {
+                LOGGER.finest("Indexed " + newIndex.slaves.size() + " ElasticBox slaves");
+            }
+            return newIndex;
+        }
+    }
+
+}
@@ -12,6 +12,7 @@
 
 package com.elasticbox.jenkins;
 
+import com.elasticbox.InstanceSnapshot;
 import com.elasticbox.jenkins.util.Condition;
 import com.thoughtworks.xstream.XStream;
 
@@ -21,8 +22,6 @@ import hudson.slaves.Cloud;
 
 import jenkins.model.Jenkins;
 
-import net.sf.json.JSONObject;
-
 import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
@@ -50,9 +49,10 @@ public class Initializers {
 
             public void run() {
                 try {
-                    SlaveInstanceManager manager = new SlaveInstanceManager();
-                    for (JSONObject instance : manager.getInstances()) {
-                        ElasticBoxSlave slave = manager.getSlave(instance.getString("id"));
+                    SlaveInstanceManager manager = SlaveInstanceManager.getInstance();
+                    manager.refresh();
+                    for (InstanceSnapshot instance : manager.getInstances()) {
+                        ElasticBoxSlave slave = manager.getSlave(instance.getId());
                         ElasticBoxSlaveHandler.getInstance().tagSlaveInstance(instance, slave);
                     }
                 } catch (IOException ex) {
@@ -12,17 +12,26 @@
 
 package com.elasticbox.jenkins;
 
+import com.elasticbox.AbstractProgressMonitor;
 import com.elasticbox.IProgressMonitor;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
 import hudson.slaves.SlaveComputer;
 
+import jenkins.util.Timer;
+
 import net.sf.json.JSONObject;
 
 import org.apache.commons.lang.time.StopWatch;
 
 import java.io.IOException;
 
+import java.text.MessageFormat;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,7 +42,8 @@ class LaunchSlaveProgressMonitor implements IProgressMonitor {
     private final Object waitLock = new Object();
     private final long creationTime;
     private final ElasticBoxSlave slave;
-    private IProgressMonitor monitor;
+    private final SettableFuture<Void> deployed = SettableFuture.create();
+    private volatile IProgressMonitor monitor;
     private long launchTime;
 
     public LaunchSlaveProgressMonitor(ElasticBoxSlave slave) {
@@ -61,11 +71,49 @@ class LaunchSlaveProgressMonitor implements IProgressMonitor {
         return creationTime;
     }
 
-    void setMonitor(IProgressMonitor monitor) {
+    void setMonitor(final IProgressMonitor monitor) {
         this.monitor = monitor;
         synchronized (waitLock) {
             waitLock.notifyAll();
         }
+        if (monitor instanceof AbstractProgressMonitor) {
+            Futures.addCallback(((AbstractProgressMonitor) monitor).watch(), new FutureCallback<Void>() {
+                public void onSuccess(Void result) {
+                    deployed.set(null);
+                }
+
+                public void onFailure(Throwable error) {
+                    deployed.setException(error);
+                }
+            });
+        } else {
+            // the deployment ended without an instance to watch
+            deployed.set(null);
+        }
+    }
+
+    /**
+     * Returns a future that completes when the deployment of the instance of the slave ends, without holding a
+     * thread while the deployment runs. The instance is watched by the state watcher of its client, and the future
+     * fails if the instance is not ready within the timeout.
+     *
+     * @param timeout the time in minutes to wait for the instance, 0 to wait without timeout
+     */
+    ListenableFuture<Void> watch(final int timeout) {
+        if (timeout > 0) {
+            Timer.get().schedule(new Runnable() {
+                public void run() {
+                    if (deployed.setException(new IProgressMonitor.TimeoutException(MessageFormat.format(
+                            "The instance of slave {0} is not ready after waiting for {1} minutes",
+                            slave.getNodeName(), timeout)))
+                            && monitor instanceof AbstractProgressMonitor) {
+
+                        ((AbstractProgressMonitor) monitor).cancelWatch();
+                    }
+                }
+            }, timeout, TimeUnit.MINUTES);
+        }
+        return deployed;
     }
 
     private void wait(Callable<Boolean> condition, long timeout) throws Exception {
@@ -0,0 +1,197 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.BuildableItemWithBuildWrappers;
+import hudson.model.Item;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+
+import jenkins.model.Jenkins;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index of the per-project slave configurations by ID. The index is updated when the projects are loaded, created,
+ * renamed, updated or deleted, so looking up the configuration of a slave doesn't have to go through the build
+ * wrappers of every project. If an ID is not found, the projects are scanned again, but not more often than every
+ * minute.
+ */
+final class ProjectSlaveConfigurationIndex {
+    private static final Logger LOGGER = Logger.getLogger(ProjectSlaveConfigurationIndex.class.getName());
+
+    private static final long RESCAN_INTERVAL = Long.getLong(
+            "elasticbox.jenkins.ProjectSlaveConfigurationIndex.rescanInterval", TimeUnit.MINUTES.toMillis(1));
+
+    private static final ProjectSlaveConfigurationIndex instance = new ProjectSlaveConfigurationIndex();
+
+    // replaced as a whole by a scan, so the lookups running meanwhile still see the previous index
+    private volatile Map<String, ProjectSlaveConfiguration> idToSlaveConfigMap =
+            new ConcurrentHashMap<String, ProjectSlaveConfiguration>();
+    private Map<String, List<String>> projectToSlaveConfigIdsMap = new HashMap<String, List<String>>();
+    private volatile boolean scanned;
+    private long lastScanTime;
+
+    private ProjectSlaveConfigurationIndex() {
+    }
+
+    static ProjectSlaveConfigurationIndex getInstance() {
+        return instance;
+    }
+
+    ProjectSlaveConfiguration find(String id) {
+        if (id == null) {
+            return null;
+        }
+
+        if (!scanned) {
+            scan(false);
+        }
+        ProjectSlaveConfiguration slaveConfig = idToSlaveConfigMap.get(id);
+        if (slaveConfig == null && scan(true)) {
+            slaveConfig = idToSlaveConfigMap.get(id);
+        }
+        return slaveConfig;
+    }
+
+    /**
+     * Scans all the projects again. A scan after a missing ID is skipped if the last scan is too recent.
+     *
+     * @return true if the projects were scanned
+     */
+    private synchronized boolean scan(boolean missing) {
+        long now = System.currentTimeMillis();
+        if (missing && now - lastScanTime < RESCAN_INTERVAL) {
+            return false;
+        }
+
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return false;
+        }
+
+        Map<String, ProjectSlaveConfiguration> newIdToSlaveConfigMap =
+                new ConcurrentHashMap<String, ProjectSlaveConfiguration>();
+        Map<String, List<String>> newProjectToSlaveConfigIdsMap = new HashMap<String, List<String>>();
+        for (BuildableItemWithBuildWrappers project : jenkins.getItems(BuildableItemWithBuildWrappers.class)) {
+            add(project, newIdToSlaveConfigMap, newProjectToSlaveConfigIdsMap);
+        }
+        idToSlaveConfigMap = newIdToSlaveConfigMap;
+        projectToSlaveConfigIdsMap = newProjectToSlaveConfigIdsMap;
+        lastScanTime = now;
+        scanned = true;
+        if (LOGGER.isLoggable(Level.FINER)) {
+            LOGGER.finer("Indexed " + idToSlaveConfigMap.size() + " per-project slave configurations");
+        }
+        return true;
+    }
+
+    private synchronized void update(Item item, String oldFullName) {
+        if (!scanned) {
+            // the first lookup indexes all the projects
+            return;
+        }
+
+        remove(oldFullName);
+        // only the top level projects have per-project slave configurations, like ProjectSlaveConfiguration.list
+        if (item instanceof BuildableItemWithBuildWrappers && item.getParent() == Jenkins.getInstance()) {
+            add((BuildableItemWithBuildWrappers) item, idToSlaveConfigMap, projectToSlaveConfigIdsMap);
+        }
+    }
+
+    private synchronized void remove(String fullName) {
+        List<String> slaveConfigIds = projectToSlaveConfigIdsMap.remove(fullName);
+        if (slaveConfigIds != null) {
+            for (String id : slaveConfigIds) {
+                idToSlaveConfigMap.remove(id);
+            }
+        }
+    }
+
+    private static void add(BuildableItemWithBuildWrappers project,
+            Map<String, ProjectSlaveConfiguration> idToSlaveConfigMap,
+            Map<String, List<String>> projectToSlaveConfigIdsMap) {
+
+        List<String> slaveConfigIds = null;
+        for (Object buildWrapper : project.getBuildWrappersList().toMap().values()) {
+            if (buildWrapper instanceof InstanceCreator) {
+                ProjectSlaveConfiguration slaveConfig = ((InstanceCreator) buildWrapper).getSlaveConfiguration();
+                if (slaveConfig != null && slaveConfig.getId() != null) {
+                    if (slaveConfigIds == null) {
+                        slaveConfigIds = new ArrayList<String>(1);
+                    }
+                    slaveConfigIds.add(slaveConfig.getId());
+                    idToSlaveConfigMap.put(slaveConfig.getId(), slaveConfig);
+                }
+            }
+        }
+        if (slaveConfigIds != null) {
+            projectToSlaveConfigIdsMap.put(project.asItem().getFullName(), slaveConfigIds);
+        }
+    }
+
+    @Extension
+    public static final class ItemListenerImpl extends ItemListener {
+
+        @Override
+        public void onLoaded() {
+            instance.scan(false);
+        }
+
+        @Override
+        public void onCreated(Item item) {
+            instance.update(item, item.getFullName());
+        }
+
+        @Override
+        public void onUpdated(Item item) {
+            instance.update(item, item.getFullName());
+        }
+
+        @Override
+        public void onRenamed(Item item, String oldName, String newName) {
+            String parentName = item.getParent().getFullName();
+            instance.update(item, parentName.isEmpty() ? oldName : parentName + '/' + oldName);
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            instance.remove(item.getFullName());
+        }
+
+    }
+
+    @Extension
+    public static final class SaveableListenerImpl extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable saveable, XmlFile file) {
+            if (saveable instanceof BuildableItemWithBuildWrappers) {
+                Item item = (Item) saveable;
+                instance.update(item, item.getFullName());
+            }
+        }
+
+    }
+
+}
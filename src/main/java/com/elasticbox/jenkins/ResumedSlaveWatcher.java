@@ -0,0 +1,96 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import hudson.model.Node;
+
+import jenkins.util.Timer;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for the hibernated slaves that are resumed to come online, without holding a thread for each of them. The
+ * computer listener of the plugin completes the wait of a slave when its computer comes online, and the wait fails if
+ * the slave is not online within the timeout.
+ */
+final class ResumedSlaveWatcher {
+
+    private static ResumedSlaveWatcher instance;
+
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<ElasticBoxSlave, SettableFuture<Node>> slaveToFutureMap =
+            new ConcurrentHashMap<ElasticBoxSlave, SettableFuture<Node>>();
+
+    ResumedSlaveWatcher(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    static synchronized ResumedSlaveWatcher getInstance() {
+        if (instance == null) {
+            instance = new ResumedSlaveWatcher(Timer.get());
+        }
+        return instance;
+    }
+
+    /**
+     * Starts waiting for the slave to come online.
+     *
+     * @param timeout the time in milliseconds to wait for the slave, 0 to wait without timeout
+     * @return a future that returns the slave when it is online
+     */
+    ListenableFuture<Node> watch(final ElasticBoxSlave slave, final long timeout) {
+        final SettableFuture<Node> future = SettableFuture.create();
+        slaveToFutureMap.put(slave, future);
+        if (timeout > 0) {
+            scheduler.schedule(new Runnable() {
+                public void run() {
+                    if (slaveToFutureMap.remove(slave, future)) {
+                        future.setException(new IOException(MessageFormat.format(
+                                "The slave {0} did not come online after {1} minutes", slave.getDisplayName(),
+                                TimeUnit.MILLISECONDS.toMinutes(timeout))));
+                    }
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+        return future;
+    }
+
+    /**
+     * Completes the wait for the slave, if it is being waited for.
+     */
+    void online(ElasticBoxSlave slave) {
+        SettableFuture<Node> future = slaveToFutureMap.remove(slave);
+        if (future != null) {
+            future.set(slave);
+        }
+    }
+
+    /**
+     * Fails the wait for the slave, if it is being waited for.
+     */
+    void failed(ElasticBoxSlave slave, Throwable error) {
+        SettableFuture<Node> future = slaveToFutureMap.remove(slave);
+        if (future != null) {
+            future.setException(error);
+        }
+    }
+
+}
@@ -33,6 +33,7 @@ import jenkins.model.Jenkins;
 import org.apache.commons.lang.StringUtils;
 
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
 import java.io.IOException;
@@ -49,6 +50,8 @@ public class SlaveConfiguration extends AbstractSlaveConfiguration {
 
     public static final String SLAVE_CONFIGURATIONS = "slaveConfigurations";
 
+    private int maxHibernatedInstances;
+
     @DataBoundConstructor
     public SlaveConfiguration(String id, String workspace, String box, String boxVersion, String profile,
             String claims, String provider, String location, int minInstances, int maxInstances, String tags,
@@ -61,6 +64,19 @@ public class SlaveConfiguration extends AbstractSlaveConfiguration {
                 boxDeploymentType);
     }
 
+    /**
+     * Returns how many idle slaves of this configuration are kept with their instance shut down instead of being
+     * terminated, so they can be powered on again for new builds. Zero disables the hibernation.
+     */
+    public int getMaxHibernatedInstances() {
+        return maxHibernatedInstances;
+    }
+
+    @DataBoundSetter
+    public void setMaxHibernatedInstances(int maxHibernatedInstances) {
+        this.maxHibernatedInstances = Math.max(maxHibernatedInstances, 0);
+    }
+
     @Extension
     public static final class DescriptorImpl extends AbstractSlaveConfigurationDescriptor {
 
@@ -13,14 +13,12 @@
 package com.elasticbox.jenkins;
 
 import com.elasticbox.Client;
-
-import hudson.model.Node;
+import com.elasticbox.InstanceSnapshot;
 
 import hudson.slaves.Cloud;
 import jenkins.model.Jenkins;
 
-import net.sf.json.JSONArray;
-import net.sf.json.JSONObject;
+import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -32,91 +30,300 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Keeps track of the ElasticBox slaves and of their instances. There is a single manager that lives across the
+ * executor cycles. The slaves are collected again only when the nodes or the clouds change, and the instance
+ * listings of the workspaces are applied as deltas: only the instances whose <code>updated</code> time changed are
+ * replaced.
+ *
+ * <p>The listings are fetched without holding the lock of the manager, which is taken only to read what must be
+ * fetched and to apply the fetched listings, so the callers never wait for the network of another caller.
+ */
 public class SlaveInstanceManager {
     private static final Logger LOGGER = Logger.getLogger(SlaveInstanceManager.class.getName());
 
-    private final Map<String, ElasticBoxSlave> instanceIdToSlaveMap;
-    private Map<ElasticBoxSlave, JSONObject> slaveToInstanceMap;
-    private final Map<ElasticBoxCloud, List<JSONObject>> cloudToInstancesMap;
-    private List<ElasticBoxSlave> slavesWithoutInstance;
-    private final Map<ElasticBoxCloud, Set<String>> cloudToWorkspaceIDsMap;
-    private boolean allFetched = false;
-
-    public SlaveInstanceManager() throws IOException {
-        instanceIdToSlaveMap = new HashMap<String, ElasticBoxSlave>();
-        cloudToInstancesMap = new HashMap<ElasticBoxCloud, List<JSONObject>>();
-        cloudToWorkspaceIDsMap = new HashMap<ElasticBoxCloud, Set<String>>();
-        for (Node node : Jenkins.getInstance().getNodes()) {
-            if (node instanceof ElasticBoxSlave) {
-                final ElasticBoxSlave slave = (ElasticBoxSlave) node;
-                ElasticBoxCloud cloud = slave.getCloud();
-                if (cloud != null) {
-                    Set<String> workspaceIDs = cloudToWorkspaceIDsMap.get(cloud);
-                    if (workspaceIDs == null) {
-                        workspaceIDs = new HashSet<String>();
-                        cloudToWorkspaceIDsMap.put(cloud, workspaceIDs);
-                    }
-                    AbstractSlaveConfiguration config = slave.getSlaveConfiguration();
-                    if (config != null) {
-                        workspaceIDs.add(config.getWorkspace());
-                    } else {
-                        LOGGER.warning("Found slave without config - " + slave);
-                    }
+    private static final long REBUILD_PERIOD = Long.getLong("elasticbox.jenkins.SlaveInstanceManager.rebuildPeriod",
+            TimeUnit.MINUTES.toMillis(10));
+
+    private static final SlaveInstanceManager instance = new SlaveInstanceManager();
+
+    private long slavesGeneration;
+    private long instancesGeneration;
+    private long lastRebuildTime;
+    private final List<ElasticBoxCloud> clouds = new ArrayList<ElasticBoxCloud>();
+
+    // collected from the nodes
+    private final Map<String, ElasticBoxSlave> instanceIdToSlaveMap = new HashMap<String, ElasticBoxSlave>();
+    private final Map<String, Set<String>> cloudToWorkspaceIDsMap = new HashMap<String, Set<String>>();
+    private final List<ElasticBoxSlave> slavesWithoutInstance = new ArrayList<ElasticBoxSlave>();
+
+    // updated from the instance listings
+    private final Map<String, Map<String, WorkspaceInstances>> cloudToWorkspaceInstancesMap =
+            new HashMap<String, Map<String, WorkspaceInstances>>();
+    private final Map<String, List<InstanceSnapshot>> cloudToInstancesMap =
+            new HashMap<String, List<InstanceSnapshot>>();
+    private final Map<String, InstanceSnapshot> idToInstanceMap = new HashMap<String, InstanceSnapshot>();
+    private boolean linkPending;
+
+    // orders the listings fetched concurrently, so an older listing is never applied over a newer one
+    private final AtomicLong listingSequence = new AtomicLong();
+
+    private static class WorkspaceInstances {
+        private List<InstanceSnapshot> listing;
+        private long listingSequence;
+        private Map<String, InstanceSnapshot> tagIndex;
+        private final Map<String, InstanceSnapshot> instances = new HashMap<String, InstanceSnapshot>();
+    }
+
+    /**
+     * Instance listings of the workspaces of a cloud, fetched without holding the lock of the manager.
+     */
+    private static final class CloudListings {
+        private final Client client;
+        private final Map<String, List<InstanceSnapshot>> listings = new HashMap<String, List<InstanceSnapshot>>();
+        private final Map<String, Long> sequences = new HashMap<String, Long>();
+
+        CloudListings(Client client) {
+            this.client = client;
+        }
+    }
+
+    SlaveInstanceManager() {
+    }
+
+    public static SlaveInstanceManager getInstance() {
+        return instance;
+    }
+
+    /**
+     * Brings the slaves and the instances of all the clouds up to date.
+     */
+    public void refresh() throws IOException {
+        Map<ElasticBoxCloud, Set<String>> cloudToWorkspaceIDs = new HashMap<ElasticBoxCloud, Set<String>>();
+        synchronized (this) {
+            rebuildIfNeeded();
+            for (ElasticBoxCloud cloud : clouds) {
+                Set<String> workspaceIDs = cloudToWorkspaceIDsMap.get(cloud.name);
+                if (workspaceIDs != null) {
+                    cloudToWorkspaceIDs.put(cloud, new HashSet<String>(workspaceIDs));
                 }
-                if (slave.getInstanceUrl() != null) {
-                    String instanceId = slave.getInstanceId();
-                    instanceIdToSlaveMap.put(instanceId, slave);
-                } else {
-                    if (slavesWithoutInstance == null) {
-                        slavesWithoutInstance = new ArrayList<>();
-                    }
-                    slavesWithoutInstance.add(slave);
+            }
+        }
+
+        Map<String, CloudListings> cloudToListingsMap = new HashMap<String, CloudListings>();
+        for (Map.Entry<ElasticBoxCloud, Set<String>> entry : cloudToWorkspaceIDs.entrySet()) {
+            cloudToListingsMap.put(entry.getKey().name, fetchListings(entry.getKey(), entry.getValue()));
+        }
+
+        synchronized (this) {
+            boolean instancesChanged = false;
+            for (ElasticBoxCloud cloud : clouds) {
+                CloudListings listings = cloudToListingsMap.get(cloud.name);
+                if (listings != null) {
+                    instancesChanged |= applyListings(cloud, listings);
+                }
+            }
+            if (!slavesWithoutInstance.isEmpty() && (linkPending || instancesChanged)) {
+                linkSlavesWithoutInstance(cloudToListingsMap);
+            }
+        }
+    }
+
+    public synchronized ElasticBoxSlave getSlave(String instanceId) {
+        return instanceIdToSlaveMap.get(instanceId);
+    }
+
+    public synchronized Collection<ElasticBoxSlave> getSlaves() {
+        return new ArrayList<ElasticBoxSlave>(instanceIdToSlaveMap.values());
+    }
+
+    public synchronized Collection<ElasticBoxSlave> getSlavesWithoutInstance() throws IOException {
+        if (!slavesWithoutInstance.isEmpty()) {
+            return new ArrayList<ElasticBoxSlave>(slavesWithoutInstance);
+        }
+
+        Map<String, ElasticBoxSlave> invalidInstanceIdToSlaveMap = new HashMap<>(instanceIdToSlaveMap);
+        invalidInstanceIdToSlaveMap.keySet().removeAll(idToInstanceMap.keySet());
+        return new ArrayList<ElasticBoxSlave>(invalidInstanceIdToSlaveMap.values());
+    }
+
+    public List<InstanceSnapshot> getInstances(ElasticBoxCloud cloud) throws IOException {
+        Set<String> workspaceIDs;
+        synchronized (this) {
+            rebuildIfNeeded();
+            workspaceIDs = cloudToWorkspaceIDsMap.get(cloud.name);
+            if (workspaceIDs == null) {
+                return Collections.emptyList();
+            }
+            workspaceIDs = new HashSet<String>(workspaceIDs);
+        }
+
+        CloudListings listings = fetchListings(cloud, workspaceIDs);
+
+        synchronized (this) {
+            applyListings(cloud, listings);
+            List<InstanceSnapshot> instances = cloudToInstancesMap.get(cloud.name);
+            if (instances == null) {
+                Map<String, WorkspaceInstances> workspaceToInstancesMap = cloudToWorkspaceInstancesMap.get(cloud.name);
+                if (workspaceToInstancesMap == null) {
+                    // the slaves of the cloud were removed while the listings were fetched
+                    return Collections.emptyList();
+                }
+                Map<String, InstanceSnapshot> cloudInstances = new HashMap<String, InstanceSnapshot>();
+                for (WorkspaceInstances workspaceInstances : workspaceToInstancesMap.values()) {
+                    cloudInstances.putAll(workspaceInstances.instances);
                 }
+                instances = Collections.unmodifiableList(new ArrayList<InstanceSnapshot>(cloudInstances.values()));
+                cloudToInstancesMap.put(cloud.name, instances);
             }
+            return instances;
         }
+    }
 
-        if (slavesWithoutInstance != null) {
+    public synchronized Collection<InstanceSnapshot> getInstances() throws IOException {
+        return new ArrayList<InstanceSnapshot>(idToInstanceMap.values());
+    }
 
-            ElasticBoxCloud cloud = null;
-            String wks = null;
-            JSONArray instances = null;
-            AbstractSlaveConfiguration config;
+    public synchronized InstanceSnapshot getInstance(ElasticBoxSlave slave) throws IOException {
+        return slave.getInstanceUrl() != null ? idToInstanceMap.get(slave.getInstanceId()) : null;
+    }
 
-            Iterator<ElasticBoxSlave> iterator = slavesWithoutInstance.iterator();
-            while (iterator.hasNext() ) {
+    /**
+     * Returns true if the instances of the workspace of the slave were listed, so an instance of the slave that is
+     * not among them has been deleted.
+     */
+    public synchronized boolean isListed(ElasticBoxSlave slave) throws IOException {
+        ElasticBoxCloud cloud = slave.getCloud();
+        AbstractSlaveConfiguration slaveConfig = slave.getSlaveConfiguration();
+        if (cloud == null || slaveConfig == null) {
+            return false;
+        }
 
-                ElasticBoxSlave slave = iterator.next();
-                config = slave.getSlaveConfiguration();
+        Map<String, WorkspaceInstances> workspaceToInstancesMap = cloudToWorkspaceInstancesMap.get(cloud.name);
+        WorkspaceInstances workspaceInstances = workspaceToInstancesMap != null
+                ? workspaceToInstancesMap.get(slaveConfig.getWorkspace()) : null;
+        return workspaceInstances != null && workspaceInstances.listing != null;
+    }
 
-                if ( slave.getCloud() != null && config != null) {
-                    if (!slave.getCloud().equals(cloud) && !config.getWorkspace().equals(wks)) {
-                        cloud = slave.getCloud();
-                        wks = slave.getSlaveConfiguration().getWorkspace();
-                        instances = cloud.getClient().getInstances(wks);
-                    }
-                    for (Object instance : instances) {
-                        JSONObject instanceJson = (JSONObject) instance;
-                        JSONArray tags = instanceJson.getJSONArray("tags");
-
-                        // If the instance corresponds to a Jenkins slave, first tag will match the slave name:
-                        if (tags.size() > 0 && slave.getNodeName().equals(tags.getString(0) )) {
-                            String instanceId = instanceJson.getString("id");
-                            if (slave.getInstanceUrl() == null) {
-                                final String url = cloud.getClient().getInstanceUrl(instanceId);
-                                slave.setInstanceUrl(url);
-                                LOGGER.info("Linked instance [" + url + "] with orphan slave - " + slave);
-                            }
-                            iterator.remove();
-                            instanceIdToSlaveMap.put(instanceId, slave);
-                            break;
-                        }
-                    }
+    public Map<ElasticBoxCloud, Integer> getMaxInstancesPerCloud() throws IOException {
+        Map<ElasticBoxCloud, Integer> cloudToMaxNewInstancesMap = new HashMap<>();
+        for (Cloud cloud : Jenkins.getInstance().clouds) {
+            if (cloud instanceof ElasticBoxCloud) {
+                ElasticBoxCloud ebCloud = (ElasticBoxCloud) cloud;
+                cloudToMaxNewInstancesMap.put(ebCloud, ebCloud.getMaxInstances() - getInstances(ebCloud).size());
+            }
+        }
+        return cloudToMaxNewInstancesMap;
+    }
+
+    private boolean rebuildIfNeeded() {
+        List<ElasticBoxCloud> currentClouds = new ArrayList<ElasticBoxCloud>();
+        for (Cloud cloud : Jenkins.getInstance().clouds) {
+            if (cloud instanceof ElasticBoxCloud) {
+                currentClouds.add((ElasticBoxCloud) cloud);
+            }
+        }
+
+        // the clouds are replaced with new objects when their configuration is saved
+        boolean cloudsChanged = currentClouds.size() != clouds.size();
+        for (int i = 0; !cloudsChanged && i < clouds.size(); i++) {
+            cloudsChanged = currentClouds.get(i) != clouds.get(i);
+        }
+
+        ElasticBoxSlaveRegistry registry = ElasticBoxSlaveRegistry.getInstance();
+        long currentSlavesGeneration = registry.getGeneration();
+        long currentInstancesGeneration = registry.getInstanceGeneration();
+        if (currentSlavesGeneration == slavesGeneration && !cloudsChanged
+                && System.currentTimeMillis() - lastRebuildTime < REBUILD_PERIOD) {
+            if (currentInstancesGeneration != instancesGeneration) {
+                instancesGeneration = currentInstancesGeneration;
+                addNewSlaveInstances();
+            }
+            return false;
+        }
+
+        slavesGeneration = currentSlavesGeneration;
+        instancesGeneration = currentInstancesGeneration;
+        lastRebuildTime = System.currentTimeMillis();
+        clouds.clear();
+        clouds.addAll(currentClouds);
+        rebuild();
+        return true;
+    }
+
+    /**
+     * Moves the slaves whose instance has been set since the last rebuild to the slaves with instance, without
+     * collecting the slaves again.
+     */
+    private void addNewSlaveInstances() {
+        boolean added = false;
+        for (Iterator<ElasticBoxSlave> iter = slavesWithoutInstance.iterator(); iter.hasNext(); ) {
+            ElasticBoxSlave slave = iter.next();
+            if (slave.getInstanceUrl() != null) {
+                iter.remove();
+                instanceIdToSlaveMap.put(slave.getInstanceId(), slave);
+                added = true;
+            }
+        }
+
+        if (added) {
+            // the instances may be in the listings already applied, so the next listings are applied in full
+            for (Map<String, WorkspaceInstances> workspaceToInstancesMap : cloudToWorkspaceInstancesMap.values()) {
+                for (WorkspaceInstances workspaceInstances : workspaceToInstancesMap.values()) {
+                    workspaceInstances.listing = null;
+                }
+            }
+        }
+    }
+
+    private void rebuild() {
+        instanceIdToSlaveMap.clear();
+        cloudToWorkspaceIDsMap.clear();
+        slavesWithoutInstance.clear();
+        for (ElasticBoxSlave slave : ElasticBoxSlaveRegistry.getInstance().getSlaves()) {
+            ElasticBoxCloud cloud;
+            try {
+                cloud = slave.getCloud();
+            } catch (IOException ex) {
+                LOGGER.warning(ex.getMessage() + " - " + slave);
+                cloud = null;
+            }
+            if (cloud != null) {
+                Set<String> workspaceIDs = cloudToWorkspaceIDsMap.get(cloud.name);
+                if (workspaceIDs == null) {
+                    workspaceIDs = new HashSet<String>();
+                    cloudToWorkspaceIDsMap.put(cloud.name, workspaceIDs);
+                }
+                AbstractSlaveConfiguration config = slave.getSlaveConfiguration();
+                if (config != null) {
+                    workspaceIDs.add(config.getWorkspace());
+                } else {
+                    LOGGER.warning("Found slave without config - " + slave);
                 }
             }
+            if (slave.getInstanceUrl() != null) {
+                instanceIdToSlaveMap.put(slave.getInstanceId(), slave);
+            } else {
+                slavesWithoutInstance.add(slave);
+            }
+        }
+
+        // the slaves may have changed, so the listings must be filtered again
+        cloudToWorkspaceInstancesMap.keySet().retainAll(cloudToWorkspaceIDsMap.keySet());
+        for (Map.Entry<String, Map<String, WorkspaceInstances>> entry : cloudToWorkspaceInstancesMap.entrySet()) {
+            entry.getValue().keySet().retainAll(cloudToWorkspaceIDsMap.get(entry.getKey()));
+            for (WorkspaceInstances workspaceInstances : entry.getValue().values()) {
+                workspaceInstances.listing = null;
+            }
         }
+        cloudToInstancesMap.clear();
+        rebuildInstanceIndex();
+        linkPending = true;
 
         if (LOGGER.isLoggable(Level.FINEST)) {
             StringBuilder sb = new StringBuilder(300);
@@ -128,98 +335,168 @@ public class SlaveInstanceManager {
         }
     }
 
-    public ElasticBoxSlave getSlave(String instanceId) {
-        return instanceIdToSlaveMap.get(instanceId);
+    /**
+     * Fetches the current instance listings of the workspaces of the cloud. Must be called without holding the lock
+     * of the manager.
+     */
+    private CloudListings fetchListings(ElasticBoxCloud cloud, Set<String> workspaceIDs) throws IOException {
+        CloudListings listings = new CloudListings(cloud.getClient());
+        for (String workspaceId : workspaceIDs) {
+            listings.listings.put(workspaceId, listings.client.getInstanceListingCache().getInstances(workspaceId));
+            listings.sequences.put(workspaceId, listingSequence.incrementAndGet());
+        }
+        return listings;
     }
 
-    public Collection<ElasticBoxSlave> getSlaves() {
-        return instanceIdToSlaveMap.values();
-    }
+    /**
+     * Applies the fetched instance listings of the workspaces of the cloud. Returns true if any instance of a slave
+     * was added, removed or updated.
+     */
+    private boolean applyListings(ElasticBoxCloud cloud, CloudListings listings) {
+        Set<String> workspaceIDs = cloudToWorkspaceIDsMap.get(cloud.name);
+        if (workspaceIDs == null) {
+            return false;
+        }
 
-    public Collection<ElasticBoxSlave> getSlavesWithoutInstance() throws IOException {
+        Map<String, WorkspaceInstances> workspaceToInstancesMap = cloudToWorkspaceInstancesMap.get(cloud.name);
+        if (workspaceToInstancesMap == null) {
+            workspaceToInstancesMap = new HashMap<String, WorkspaceInstances>();
+            cloudToWorkspaceInstancesMap.put(cloud.name, workspaceToInstancesMap);
+        }
 
-        if (slavesWithoutInstance == null) {
-            ensureAllFetched();
-            Set<String> validInstanceIDs = new HashSet<>();
-            for (List<JSONObject> instances : cloudToInstancesMap.values()) {
-                for (JSONObject instance : instances) {
-                    validInstanceIDs.add(instance.getString("id"));
-                }
+        boolean changed = false;
+        for (String workspaceId : workspaceIDs) {
+            List<InstanceSnapshot> listing = listings.listings.get(workspaceId);
+            if (listing == null) {
+                // the workspace was added while the listings were fetched, it is read the next time
+                continue;
             }
-            Map<String, ElasticBoxSlave> invalidInstanceIdToSlaveMap = new HashMap<>(instanceIdToSlaveMap);
 
-            invalidInstanceIdToSlaveMap.keySet().removeAll(validInstanceIDs);
-            slavesWithoutInstance = new ArrayList<ElasticBoxSlave>(invalidInstanceIdToSlaveMap.values());
-        }
-        return slavesWithoutInstance;
-    }
+            WorkspaceInstances workspaceInstances = workspaceToInstancesMap.get(workspaceId);
+            if (workspaceInstances == null) {
+                workspaceInstances = new WorkspaceInstances();
+                workspaceToInstancesMap.put(workspaceId, workspaceInstances);
+            }
 
-    public List<JSONObject> getInstances(ElasticBoxCloud cloud) throws IOException {
-        if (cloudToWorkspaceIDsMap.containsKey(cloud)) {
-            List<JSONObject> instances = cloudToInstancesMap.get(cloud);
-            if (instances == null) {
-                // the instances of the cloud are not fetched yet
-                instances = new ArrayList<JSONObject>();
-                Client client = cloud.getClient();
-                for (String workspaceId : cloudToWorkspaceIDsMap.get(cloud)) {
-                    for (Object instance : client.getInstances(workspaceId)) {
-                        JSONObject instanceJson = (JSONObject) instance;
-                        String instanceId = instanceJson.getString("id");
-                        if (instanceIdToSlaveMap.containsKey(instanceId)) {
-                            instances.add(instanceJson);
-                        }
+            long sequence = listings.sequences.get(workspaceId);
+            if (listing == workspaceInstances.listing || sequence < workspaceInstances.listingSequence) {
+                // same listing as the last time or older than the applied one, nothing changed
+                continue;
+            }
+
+            workspaceInstances.listing = listing;
+            workspaceInstances.listingSequence = sequence;
+            workspaceInstances.tagIndex = null;
+            Set<String> removedInstanceIDs = new HashSet<String>(workspaceInstances.instances.keySet());
+            for (InstanceSnapshot instance : listing) {
+                String instanceId = instance.getId();
+                if (instanceIdToSlaveMap.containsKey(instanceId)) {
+                    removedInstanceIDs.remove(instanceId);
+                    InstanceSnapshot knownInstance = workspaceInstances.instances.get(instanceId);
+                    if (knownInstance == null
+                            || !StringUtils.equals(knownInstance.getUpdated(), instance.getUpdated())) {
+
+                        workspaceInstances.instances.put(instanceId, instance);
+                        changed = true;
                     }
                 }
-                cloudToInstancesMap.put(cloud, instances);
             }
-            return instances;
-        } else {
-            return Collections.emptyList();
+            if (!removedInstanceIDs.isEmpty()) {
+                workspaceInstances.instances.keySet().removeAll(removedInstanceIDs);
+                changed = true;
+            }
         }
-    }
 
-    public Collection<JSONObject> getInstances() throws IOException {
-        return getSlaveToInstanceMap().values();
+        if (changed) {
+            cloudToInstancesMap.remove(cloud.name);
+            rebuildInstanceIndex();
+        }
+        return changed;
     }
 
-    public JSONObject getInstance(ElasticBoxSlave slave) throws IOException {
-        return getSlaveToInstanceMap().get(slave);
+    private void rebuildInstanceIndex() {
+        idToInstanceMap.clear();
+        for (Map<String, WorkspaceInstances> workspaceToInstancesMap : cloudToWorkspaceInstancesMap.values()) {
+            for (WorkspaceInstances workspaceInstances : workspaceToInstancesMap.values()) {
+                idToInstanceMap.putAll(workspaceInstances.instances);
+            }
+        }
     }
 
-    private Map<ElasticBoxSlave, JSONObject> getSlaveToInstanceMap() throws IOException {
-        if (slaveToInstanceMap == null) {
-            ensureAllFetched();
-            slaveToInstanceMap = new HashMap<ElasticBoxSlave, JSONObject>();
-            for (List<JSONObject> cloudInstances : cloudToInstancesMap.values()) {
-                for (JSONObject instance : cloudInstances) {
-                    slaveToInstanceMap.put(getSlave(instance.getString("id")), instance);
+    private void linkSlavesWithoutInstance(Map<String, CloudListings> cloudToListingsMap) throws IOException {
+        linkPending = false;
+        boolean linked = false;
+        Iterator<ElasticBoxSlave> iterator = slavesWithoutInstance.iterator();
+        while (iterator.hasNext() ) {
+
+            ElasticBoxSlave slave = iterator.next();
+            AbstractSlaveConfiguration config = slave.getSlaveConfiguration();
+            ElasticBoxCloud cloud = slave.getCloud();
+            CloudListings listings = cloud != null ? cloudToListingsMap.get(cloud.name) : null;
+
+            if (listings != null && config != null) {
+                Map<String, InstanceSnapshot> tagIndex = getTagIndex(cloud, config.getWorkspace());
+                // If the instance corresponds to a Jenkins slave, first tag will match the slave name:
+                InstanceSnapshot instance = tagIndex != null ? tagIndex.get(slave.getNodeName()) : null;
+                if (instance != null) {
+                    String instanceId = instance.getId();
+                    if (slave.getInstanceUrl() == null) {
+                        final String url = listings.client.getInstanceUrl(instanceId);
+                        slave.setInstanceUrl(url);
+                        LOGGER.info("Linked instance [" + url + "] with orphan slave - " + slave);
+                    }
+                    iterator.remove();
+                    instanceIdToSlaveMap.put(instanceId, slave);
+                    linked = true;
+                }
+            }
+        }
+
+        if (linked) {
+            // read the instances of the linked slaves from the same listings
+            for (ElasticBoxCloud ebCloud : clouds) {
+                CloudListings listings = cloudToListingsMap.get(ebCloud.name);
+                Map<String, WorkspaceInstances> workspaceToInstancesMap =
+                        cloudToWorkspaceInstancesMap.get(ebCloud.name);
+                if (listings != null && workspaceToInstancesMap != null) {
+                    for (WorkspaceInstances workspaceInstances : workspaceToInstancesMap.values()) {
+                        workspaceInstances.listing = null;
+                    }
+                    applyListings(ebCloud, listings);
                 }
             }
         }
-        return slaveToInstanceMap;
     }
 
-    private void ensureAllFetched() throws IOException {
-        if (this.allFetched) {
-            return;
+
+    /**
+     * Returns the instances of the workspace indexed by their first tag, which is the name of the slave for the
+     * instances deployed by Jenkins, or null if the workspace has no listing yet. The index is kept until the listing
+     * of the workspace changes.
+     */
+    private Map<String, InstanceSnapshot> getTagIndex(ElasticBoxCloud cloud, String workspaceId) {
+        Map<String, WorkspaceInstances> workspaceToInstancesMap = cloudToWorkspaceInstancesMap.get(cloud.name);
+        WorkspaceInstances workspaceInstances = workspaceToInstancesMap != null
+                ? workspaceToInstancesMap.get(workspaceId) : null;
+        if (workspaceInstances == null || workspaceInstances.listing == null) {
+            return null;
         }
 
-        Set<ElasticBoxCloud> unfetchedClouds = new HashSet(cloudToWorkspaceIDsMap.keySet());
-        unfetchedClouds.removeAll(cloudToInstancesMap.keySet());
-        for (ElasticBoxCloud cloud : unfetchedClouds) {
-            getInstances(cloud);
+        if (workspaceInstances.tagIndex == null) {
+            workspaceInstances.tagIndex = indexByFirstTag(workspaceInstances.listing);
         }
-        this.allFetched = true;
+        return workspaceInstances.tagIndex;
     }
 
-    public Map<ElasticBoxCloud, Integer> getMaxInstancesPerCloud() throws IOException {
-        Map<ElasticBoxCloud, Integer> cloudToMaxNewInstancesMap = new HashMap<>();
-        for (Cloud cloud : Jenkins.getInstance().clouds) {
-            if (cloud instanceof ElasticBoxCloud) {
-                ElasticBoxCloud ebCloud = (ElasticBoxCloud) cloud;
-                cloudToMaxNewInstancesMap.put(ebCloud, ebCloud.getMaxInstances() - getInstances(ebCloud).size());
+    private static Map<String, InstanceSnapshot> indexByFirstTag(List<InstanceSnapshot> instances) {
+        Map<String, InstanceSnapshot> tagIndex = new HashMap<String, InstanceSnapshot>(instances.size() * 2);
+        for (InstanceSnapshot instance : instances) {
+            String firstTag = instance.getFirstTag();
+            // keep the first instance with the tag, like a scan of the listing would
+            if (firstTag != null && !tagIndex.containsKey(firstTag)) {
+                tagIndex.put(firstTag, instance);
             }
         }
-        return cloudToMaxNewInstancesMap;
+        return tagIndex;
     }
 }
@@ -0,0 +1,108 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import com.elasticbox.InstanceSnapshot;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the slaves being purged by the slave handler and the time of the last termination request of their instances.
+ * The termination of an instance is requested by one caller at a time, and it is requested again only if the instance
+ * is still not terminated after the retry interval. A request that fails is forgotten, so the termination is requested
+ * again in the next cycle of the handler.
+ */
+final class SlavePurgeTracker {
+
+    /**
+     * What the purge of a slave does next, according to the state of its instance.
+     */
+    enum Action {
+        WAIT,
+        TERMINATE,
+        FORCE_TERMINATE,
+        DELETE
+    }
+
+    // slaves being purged, with the time of the last termination request of their instance or 0 if there is none
+    private final ConcurrentMap<ElasticBoxSlave, Long> slaveToRequestTimeMap =
+            new ConcurrentHashMap<ElasticBoxSlave, Long>();
+    private final long retryInterval;
+
+    SlavePurgeTracker(long retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+
+    static Action getAction(InstanceSnapshot instance) {
+        switch (instance.getState()) {
+            case PROCESSING:
+                return Action.WAIT;
+
+            case UNAVAILABLE:
+                return Action.FORCE_TERMINATE;
+
+            default:
+                return instance.getOperation().isTerminate() ? Action.DELETE : Action.TERMINATE;
+        }
+    }
+
+    /**
+     * Starts the purge of the slave.
+     *
+     * @return false if the slave is already being purged
+     */
+    boolean add(ElasticBoxSlave slave) {
+        return slaveToRequestTimeMap.putIfAbsent(slave, 0L) == null;
+    }
+
+    boolean remove(ElasticBoxSlave slave) {
+        return slaveToRequestTimeMap.remove(slave) != null;
+    }
+
+    boolean isEmpty() {
+        return slaveToRequestTimeMap.isEmpty();
+    }
+
+    Set<ElasticBoxSlave> getSlaves() {
+        return Collections.unmodifiableSet(slaveToRequestTimeMap.keySet());
+    }
+
+    /**
+     * Records a new termination request for the instance of the slave if the slave is being purged and its instance
+     * has not been requested to terminate within the retry interval. The caller that gets true makes the request and
+     * calls {@link #terminationFailed} if it fails.
+     *
+     * @param requestTime the time of the new request
+     * @return true if the termination must be requested
+     */
+    boolean startTermination(ElasticBoxSlave slave, long requestTime) {
+        Long lastRequestTime = slaveToRequestTimeMap.get(slave);
+        if (lastRequestTime == null || requestTime - lastRequestTime < retryInterval) {
+            return false;
+        }
+        return slaveToRequestTimeMap.replace(slave, lastRequestTime, requestTime);
+    }
+
+    /**
+     * Forgets the failed termination request, so it is made again in the next cycle.
+     *
+     * @param requestTime the time of the request, as passed to {@link #startTermination}
+     */
+    void terminationFailed(ElasticBoxSlave slave, long requestTime) {
+        slaveToRequestTimeMap.replace(slave, requestTime, 0L);
+    }
+
+}
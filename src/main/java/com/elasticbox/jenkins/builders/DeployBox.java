@@ -16,8 +16,8 @@ import static com.elasticbox.jenkins.DescriptorHelper.getEmptyListBoxModel;
 import static com.elasticbox.jenkins.DescriptorHelper.anyOfThemIsBlank;
 
 import com.elasticbox.Client;
-import com.elasticbox.ClientException;
 import com.elasticbox.Constants;
+import com.elasticbox.DeploymentRequest;
 import com.elasticbox.IProgressMonitor;
 import com.elasticbox.jenkins.ElasticBoxCloud;
 import com.elasticbox.jenkins.DescriptorHelper;
@@ -40,6 +40,7 @@ import com.elasticbox.jenkins.model.workspace.AbstractWorkspace;
 import com.elasticbox.jenkins.util.ClientCache;
 import com.elasticbox.jenkins.util.CompositeObjectFilter;
 import com.elasticbox.jenkins.util.TaskLogger;
+import com.elasticbox.jenkins.util.UploadLogger;
 import com.elasticbox.jenkins.util.VariableResolver;
 
 import hudson.AbortException;
@@ -64,7 +65,6 @@ import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
 import org.apache.commons.lang.StringUtils;
-import org.apache.http.HttpStatus;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
@@ -161,8 +161,9 @@ public class DeployBox extends Builder implements IInstanceProvider, Serializabl
         readResolve();
     }
 
-    private Result performAlternateAction(JSONArray existingInstances, ElasticBoxCloud ebCloud, Client client,
-                                          VariableResolver resolver, TaskLogger logger, AbstractBuild<?, ?> build)
+    private Result performAlternateAction(JSONArray existingInstances, ElasticBoxCloud ebCloud, final Client client,
+                                          VariableResolver resolver, final TaskLogger logger,
+                                          AbstractBuild<?, ?> build)
             throws IOException, InterruptedException {
 
         JSONObject instance = existingInstances.getJSONObject(0);
@@ -178,21 +179,7 @@ public class DeployBox extends Builder implements IInstanceProvider, Serializabl
                     waitForCompletionTimeout, client, logger);
 
         } else if (alternateAction.equals(ACTION_DELETE_AND_DEPLOY)) {
-            for (Object existingInstance : existingInstances) {
-                if (Thread.interrupted()) {
-                    throw new InterruptedException();
-                }
-                JSONObject instanceJson = (JSONObject) existingInstance;
-                // Don't fail if the instance is not found
-                try {
-                    TerminateOperation.terminate(instanceJson, client, logger);
-                    client.delete(instanceJson.getString("id"));
-                } catch (ClientException ex) {
-                    if (ex.getStatusCode() != HttpStatus.SC_NOT_FOUND) {
-                        throw ex;
-                    }
-                }
-            }
+            TerminateOperation.terminateAndDelete(existingInstances, client, logger);
             String instanceId = deploy(ebCloud, client, resolver, logger, build);
             instance = client.getInstance(instanceId);
             existing = false;
@@ -210,8 +197,9 @@ public class DeployBox extends Builder implements IInstanceProvider, Serializabl
 
         JSONArray resolvedVariables = resolver.resolveVariables(variables);
 
-        DescriptorHelper.removeInvalidVariables(resolvedVariables,
-                ((DescriptorImpl) getDescriptor()).doGetBoxStack(cloud, workspace, box, boxVersion).getJsonArray());
+        String boxId = DescriptorHelper.getResolvedBoxVersion(client, workspace, box, boxVersion);
+        JSONArray boxStack = DescriptorHelper.getBoxStack(client, workspace, box, boxId).getJsonArray();
+        DescriptorHelper.removeInvalidVariables(resolvedVariables, boxStack);
 
         String expirationTime = null;
         String expirationOperation = null;
@@ -226,7 +214,6 @@ public class DeployBox extends Builder implements IInstanceProvider, Serializabl
             }
             expirationOperation = expirationSchedule.getOperation();
         }
-        String boxId = DescriptorHelper.getResolvedBoxVersion(client, workspace, box, boxVersion);
         String policyId = DescriptorHelper.resolveDeploymentPolicy(client, workspace, profile, claims);
         JSONArray policyVariables = new JSONArray();
         if (StringUtils.isNotBlank(provider)) {
@@ -250,9 +237,20 @@ public class DeployBox extends Builder implements IInstanceProvider, Serializabl
 
         Set<String> resolvedTags = resolver.resolveTags(tags);
 
-        IProgressMonitor monitor = client.deploy(boxId, policyId, resolver.resolve(instanceName), workspace,
-                new ArrayList(resolvedTags), resolvedVariables, expirationTime, expirationOperation,
-                policyVariables, autoUpdates);
+        client.getBlobUploadService().uploadFileVariables(resolvedVariables, new UploadLogger(logger));
+        // The box stack already has the name of the box, so the client doesn't need to fetch it again
+        String boxName = boxStack.isEmpty() ? null : boxStack.getJSONObject(0).getString("name");
+        IProgressMonitor monitor = client.deploy(new DeploymentRequest.DeploymentRequestBuilder()
+                .withBox(boxId, boxName)
+                .withPolicy(policyId)
+                .withName(resolver.resolve(instanceName))
+                .withWorkspace(workspace)
+                .withTags(new ArrayList<String>(resolvedTags))
+                .withVariables(resolvedVariables)
+                .withExpiration(expirationTime, expirationOperation)
+                .withPolicyVariables(policyVariables)
+                .withAutomaticUpdates(autoUpdates)
+                .build());
 
         String instanceId = Client.getResourceId(monitor.getResourceUrl());
         String instancePageUrl = Client.getPageUrl(ebCloud.getEndpointUrl(), client.getInstance(instanceId));
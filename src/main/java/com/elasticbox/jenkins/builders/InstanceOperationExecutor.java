@@ -0,0 +1,226 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.builders;
+
+import com.elasticbox.Client;
+import com.elasticbox.IProgressMonitor;
+import com.elasticbox.jenkins.util.InstrumentedThreadPool;
+import com.elasticbox.jenkins.util.TaskLogger;
+
+import hudson.AbortException;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Performs an operation on the instances matched by a build step, issuing the API calls of several instances at the
+ * same time instead of one after the other. At most {@link #PARALLELISM} instances of a build step are processed at
+ * the same time and all the build steps share a pool of {@link #THREADS} threads.
+ */
+final class InstanceOperationExecutor {
+    private static final Logger LOGGER = Logger.getLogger(InstanceOperationExecutor.class.getName());
+
+    static final int PARALLELISM =
+            Integer.getInteger("elasticbox.jenkins.builders.InstanceOperationExecutor.parallelism", 10);
+
+    static final int THREADS = Integer.getInteger("elasticbox.jenkins.builders.InstanceOperationExecutor.threads", 20);
+
+    static final ErrorPolicy ERROR_POLICY =
+            Boolean.getBoolean("elasticbox.jenkins.builders.InstanceOperationExecutor.continueOnError")
+                    ? ErrorPolicy.CONTINUE_ON_ERROR
+                    : ErrorPolicy.FAIL_FAST;
+
+    // the queue holds the tasks of the build steps that run at the same time, when it is full the build step runs
+    // the task in its own thread
+    private static final InstrumentedThreadPool threadPool = new InstrumentedThreadPool("operations", THREADS,
+            THREADS * PARALLELISM, InstrumentedThreadPool.CALLER_RUNS);
+
+    enum ErrorPolicy {
+        /**
+         * The first failed instance stops the operation, the instances that have not been processed yet are skipped.
+         */
+        FAIL_FAST,
+
+        /**
+         * The operation is performed on all the instances and the build step fails at the end if any of them failed.
+         */
+        CONTINUE_ON_ERROR
+    }
+
+    interface InstanceTask {
+
+        /**
+         * Performs the operation on the specified instance. It runs in the shared pool, so it must only issue the API
+         * calls and return the monitor, the operations are waited for by {@link #waitForCompletion(Result, int)}.
+         *
+         * @return the monitor of the operation to wait for, or null if there is nothing to wait for
+         */
+        IProgressMonitor perform(JSONObject instance) throws IOException, InterruptedException;
+
+    }
+
+    private final String operationDisplayName;
+    private final Client client;
+    private final TaskLogger logger;
+    private final int parallelism;
+    private final ErrorPolicy errorPolicy;
+
+    InstanceOperationExecutor(String operationDisplayName, Client client, TaskLogger logger) {
+        this(operationDisplayName, client, logger, PARALLELISM, ERROR_POLICY);
+    }
+
+    InstanceOperationExecutor(String operationDisplayName, Client client, TaskLogger logger, int parallelism,
+                              ErrorPolicy errorPolicy) {
+        this.operationDisplayName = operationDisplayName;
+        this.client = client;
+        this.logger = logger;
+        this.parallelism = Math.max(1, parallelism);
+        this.errorPolicy = errorPolicy;
+    }
+
+    ErrorPolicy getErrorPolicy() {
+        return errorPolicy;
+    }
+
+    /**
+     * Performs the task on each of the specified instances. With {@link ErrorPolicy#FAIL_FAST} the first error is
+     * thrown as soon as it happens, otherwise the failed instances are reported by {@link Result#checkFailures()}.
+     */
+    Result execute(JSONArray instances, final InstanceTask task) throws IOException, InterruptedException {
+        CompletionService<IProgressMonitor> completionService =
+                new ExecutorCompletionService<IProgressMonitor>(threadPool);
+        List<Future<IProgressMonitor>> futures = new ArrayList<Future<IProgressMonitor>>();
+        List<String> instancePageUrls = new ArrayList<String>();
+        Result result = new Result(instances.size());
+        boolean completed = false;
+        try {
+            int submitted = 0;
+            for (int done = 0; done < instances.size(); done++) {
+                while (submitted < instances.size() && submitted - done < parallelism) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    final JSONObject instance = instances.getJSONObject(submitted++);
+                    instancePageUrls.add(Client.getPageUrl(client.getEndpointUrl(), instance));
+                    futures.add(completionService.submit(new Callable<IProgressMonitor>() {
+
+                        public IProgressMonitor call() throws Exception {
+                            return task.perform(instance);
+                        }
+
+                    }));
+                }
+
+                Future<IProgressMonitor> future = completionService.take();
+                try {
+                    IProgressMonitor monitor = future.get();
+                    if (monitor != null) {
+                        result.monitors.add(monitor);
+                    }
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    }
+                    if (errorPolicy == ErrorPolicy.FAIL_FAST) {
+                        throw toIOException(cause);
+                    }
+                    String instancePageUrl = instancePageUrls.get(futures.indexOf(future));
+                    LOGGER.log(Level.FINE, cause.getMessage(), cause);
+                    logger.error("Failed to perform operation {0} for instance {1}: {2}", operationDisplayName,
+                            instancePageUrl, cause.getMessage());
+                    result.failedInstances.add(instancePageUrl);
+                }
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                for (Future<IProgressMonitor> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Waits for the operations started by {@link #execute(JSONArray, InstanceTask)} and then fails if any of the
+     * instances failed.
+     */
+    void waitForCompletion(Result result, int timeoutMinutes) throws IOException, InterruptedException {
+        if (!result.monitors.isEmpty()) {
+            LongOperation.waitForCompletion(operationDisplayName, result.monitors, client, logger, timeoutMinutes,
+                    errorPolicy);
+        }
+        result.checkFailures();
+    }
+
+    private static IOException toIOException(Throwable throwable) {
+        if (throwable instanceof IOException) {
+            return (IOException) throwable;
+        }
+        if (throwable instanceof RuntimeException) {
+            throw (RuntimeException) throwable;
+        }
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        return new IOException(throwable);
+    }
+
+    final class Result {
+        private final int instanceCount;
+        private final List<IProgressMonitor> monitors = new ArrayList<IProgressMonitor>();
+        private final List<String> failedInstances = new ArrayList<String>();
+
+        private Result(int instanceCount) {
+            this.instanceCount = instanceCount;
+        }
+
+        List<IProgressMonitor> getMonitors() {
+            return Collections.unmodifiableList(monitors);
+        }
+
+        List<String> getFailedInstances() {
+            return Collections.unmodifiableList(failedInstances);
+        }
+
+        /**
+         * Throws {@link AbortException} if the operation failed for any of the instances.
+         */
+        void checkFailures() throws AbortException {
+            if (!failedInstances.isEmpty()) {
+                throw new AbortException(MessageFormat.format(
+                        "Operation {0} failed for {1} of {2} instances: {3}", operationDisplayName,
+                        failedInstances.size(), instanceCount, StringUtils.join(failedInstances, ", ")));
+            }
+        }
+    }
+
+}
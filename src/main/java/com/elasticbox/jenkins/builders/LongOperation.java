@@ -12,6 +12,7 @@
 
 package com.elasticbox.jenkins.builders;
 
+import com.elasticbox.AsyncClient;
 import com.elasticbox.Client;
 import com.elasticbox.IProgressMonitor;
 import com.elasticbox.jenkins.util.TaskLogger;
@@ -61,12 +62,47 @@ public abstract class LongOperation extends Operation {
 
     static void waitForCompletion(String operationDisplayName, List<IProgressMonitor> monitors, Client client,
             TaskLogger logger, int timeoutMinutes) throws IOException, InterruptedException {
+        waitForCompletion(operationDisplayName, monitors, client, logger, timeoutMinutes,
+                InstanceOperationExecutor.ErrorPolicy.FAIL_FAST);
+    }
+
+    /**
+     * Waits for the operations of the specified monitors, polling the state of all the instances at once from their
+     * workspaces and logging how many of them have completed so far. With
+     * {@link InstanceOperationExecutor.ErrorPolicy#CONTINUE_ON_ERROR} the waiting goes on for the rest of the instances
+     * when the operation fails for one of them.
+     */
+    static void waitForCompletion(String operationDisplayName, List<IProgressMonitor> monitors, Client client,
+            TaskLogger logger, int timeoutMinutes, InstanceOperationExecutor.ErrorPolicy errorPolicy)
+            throws IOException, InterruptedException {
+        waitForCompletion(operationDisplayName, monitors, client, logger, timeoutMinutes, errorPolicy, null);
+    }
+
+    /**
+     * Waits for the operations of the specified monitors like the other methods, going on when the operation fails
+     * for an instance, but returns the monitors of the failed operations instead of failing, so the caller can try
+     * something else with their instances.
+     */
+    static List<IProgressMonitor> waitForCompletionOrFailures(String operationDisplayName,
+            List<IProgressMonitor> monitors, Client client, TaskLogger logger, int timeoutMinutes)
+            throws IOException, InterruptedException {
+        List<IProgressMonitor> failedMonitors = new ArrayList<IProgressMonitor>();
+        waitForCompletion(operationDisplayName, monitors, client, logger, timeoutMinutes,
+                InstanceOperationExecutor.ErrorPolicy.CONTINUE_ON_ERROR, failedMonitors);
+        return failedMonitors;
+    }
+
+    private static void waitForCompletion(String operationDisplayName, List<IProgressMonitor> monitors, Client client,
+            TaskLogger logger, int timeoutMinutes, InstanceOperationExecutor.ErrorPolicy errorPolicy,
+            List<IProgressMonitor> failedMonitors) throws IOException, InterruptedException {
         Map<String, IProgressMonitor> instanceIdToMonitorMap = new HashMap<String, IProgressMonitor>();
         for (IProgressMonitor monitor : monitors) {
             instanceIdToMonitorMap.put(Client.getResourceId(monitor.getResourceUrl()), monitor);
         }
         Object waitLock = new Object();
         long startWaitTime = System.currentTimeMillis();
+        List<String> failedInstances = new ArrayList<String>();
+        int completedCount = 0;
 
         while (!instanceIdToMonitorMap.isEmpty()
             && TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis() - startWaitTime) < timeoutMinutes) {
@@ -75,7 +111,8 @@ public abstract class LongOperation extends Operation {
                 waitLock.wait(3000);
             }
             List<String> instanceIDs = new ArrayList<String>(instanceIdToMonitorMap.keySet());
-            JSONArray instances = client.getInstances(instanceIDs);
+            JSONArray instances = AsyncClient.getResult(client.async().getInstanceSummaries(
+                    instanceIdToMonitorMap.values()));
             for (Object instance : instances) {
                 JSONObject instanceJson = (JSONObject) instance;
                 String instanceId = instanceJson.getString("id");
@@ -86,9 +123,17 @@ public abstract class LongOperation extends Operation {
                 try {
                     done = monitor.isDone(instanceJson);
                 } catch (IProgressMonitor.IncompleteException ex) {
-                    logger.error("Failed to perform operation {0} for instance {1}: {1}", operationDisplayName,
+                    logger.error("Failed to perform operation {0} for instance {1}: {2}", operationDisplayName,
                             instancePageUrl, ex.getMessage());
-                    throw new AbortException(ex.getMessage());
+                    if (errorPolicy == InstanceOperationExecutor.ErrorPolicy.FAIL_FAST) {
+                        throw new AbortException(ex.getMessage());
+                    }
+                    failedInstances.add(instancePageUrl);
+                    if (failedMonitors != null) {
+                        failedMonitors.add(monitor);
+                    }
+                    instanceIdToMonitorMap.remove(instanceId);
+                    continue;
                 }
                 if (done) {
                     logger.info(MessageFormat.format("Operation {0} is successful for instance {1}",
@@ -96,6 +141,12 @@ public abstract class LongOperation extends Operation {
                     instanceIdToMonitorMap.remove(instanceId);
                 }
             }
+            int finishedCount = monitors.size() - instanceIdToMonitorMap.size();
+            if (monitors.size() > 1 && finishedCount > completedCount) {
+                completedCount = finishedCount;
+                logger.info(MessageFormat.format("Operation {0} has completed for {1} of {2} instances",
+                        operationDisplayName, completedCount, monitors.size()));
+            }
             if (!instanceIDs.isEmpty()) {
                 throw new AbortException(MessageFormat.format("Cannot find the instances with the following IDs: {0}",
                         StringUtils.join(instanceIDs, ", ")));
@@ -119,6 +170,12 @@ public abstract class LongOperation extends Operation {
 
             throw new AbortException(message);
         }
+
+        if (!failedInstances.isEmpty() && failedMonitors == null) {
+            throw new AbortException(MessageFormat.format("Operation {0} failed for {1} of {2} instances: {3}",
+                    operationDisplayName, failedInstances.size(), monitors.size(),
+                    StringUtils.join(failedInstances, ", ")));
+        }
     }
 
 }
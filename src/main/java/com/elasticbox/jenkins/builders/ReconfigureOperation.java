@@ -34,8 +34,6 @@ import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.io.IOException;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
 
 public class ReconfigureOperation extends LongOperation implements IOperation.InstanceOperation {
@@ -62,21 +60,22 @@ public class ReconfigureOperation extends LongOperation implements IOperation.In
         reconfigure(instances, null, getWaitForCompletionTimeout(), cloud.getClient(), logger);
     }
 
-    static void reconfigure(JSONArray instances, JSONArray variables, int waitForCompletionTimeout, Client client,
-            TaskLogger logger) throws InterruptedException, IOException {
-        List<IProgressMonitor> monitors = new ArrayList<IProgressMonitor>();
-        for (Object instance : instances) {
-            if (Thread.interrupted()) {
-                throw new InterruptedException();
-            }
-            JSONObject instanceJson = (JSONObject) instance;
-            String instanceId = instanceJson.getString("id");
-            IProgressMonitor monitor = client.reconfigure(instanceId,
-                    DescriptorHelper.removeInvalidVariables(variables, instanceId, client));
-            monitors.add(monitor);
-            String instancePageUrl = Client.getPageUrl(client.getEndpointUrl(), instanceJson);
-            logger.info(MessageFormat.format("Reconfiguring box instance {0}", instancePageUrl));
-        }
+    static void reconfigure(JSONArray instances, final JSONArray variables, int waitForCompletionTimeout,
+            final Client client, final TaskLogger logger) throws InterruptedException, IOException {
+        InstanceOperationExecutor executor = new InstanceOperationExecutor(DescriptorImpl.DISPLAY_NAME, client, logger);
+        InstanceOperationExecutor.Result result = executor.execute(instances,
+                new InstanceOperationExecutor.InstanceTask() {
+                    public IProgressMonitor perform(JSONObject instance) throws IOException {
+                        String instanceId = instance.getString("id");
+                        // the invalid variables are removed in place, each instance needs its own copy
+                        JSONArray instanceVariables = variables != null ? JSONArray.fromObject(variables) : null;
+                        IProgressMonitor monitor = client.reconfigure(instanceId,
+                                DescriptorHelper.removeInvalidVariables(instanceVariables, instanceId, client));
+                        String instancePageUrl = Client.getPageUrl(client.getEndpointUrl(), instance);
+                        logger.info(MessageFormat.format("Reconfiguring box instance {0}", instancePageUrl));
+                        return monitor;
+                    }
+                });
         if (waitForCompletionTimeout > 0) {
             logger.info(
                 MessageFormat.format(
@@ -86,12 +85,9 @@ public class ReconfigureOperation extends LongOperation implements IOperation.In
                         : "the instance")
             );
 
-            LongOperation.waitForCompletion(
-                DescriptorImpl.DISPLAY_NAME,
-                monitors,
-                client,
-                logger,
-                waitForCompletionTimeout);
+            executor.waitForCompletion(result, waitForCompletionTimeout);
+        } else {
+            result.checkFailures();
         }
 
     }
@@ -34,8 +34,6 @@ import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.io.IOException;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
 
 public class ReinstallOperation extends LongOperation implements IOperation.InstanceOperation {
@@ -73,22 +71,22 @@ public class ReinstallOperation extends LongOperation implements IOperation.Inst
 
     static void reinstall(
         JSONArray instances,
-        JSONArray variables,
+        final JSONArray variables,
         int waitForCompletionTimeout,
-        Client client,
-        TaskLogger logger) throws InterruptedException, IOException {
-
-        List<IProgressMonitor> monitors = new ArrayList<IProgressMonitor>();
-        for (Object instance : instances) {
-            if (Thread.interrupted()) {
-                throw new InterruptedException();
-            }
-            JSONObject instanceJson = (JSONObject) instance;
-            IProgressMonitor monitor = client.reinstall(instanceJson.getString("id"), variables);
-            monitors.add(monitor);
-            String instancePageUrl = Client.getPageUrl(client.getEndpointUrl(), instanceJson);
-            logger.info(MessageFormat.format("Reinstalling box instance {0}", instancePageUrl));
-        }
+        final Client client,
+        final TaskLogger logger) throws InterruptedException, IOException {
+
+        InstanceOperationExecutor executor = new InstanceOperationExecutor(DescriptorImpl.DISPLAY_NAME, client, logger);
+        InstanceOperationExecutor.Result result = executor.execute(
+            instances,
+            new InstanceOperationExecutor.InstanceTask() {
+                public IProgressMonitor perform(JSONObject instance) throws IOException {
+                    IProgressMonitor monitor = client.reinstall(instance.getString("id"), variables);
+                    String instancePageUrl = Client.getPageUrl(client.getEndpointUrl(), instance);
+                    logger.info(MessageFormat.format("Reinstalling box instance {0}", instancePageUrl));
+                    return monitor;
+                }
+            });
 
         if (waitForCompletionTimeout > 0) {
 
@@ -96,8 +94,9 @@ public class ReinstallOperation extends LongOperation implements IOperation.Inst
                 MessageFormat.format(
                     "Waiting for {0} to finish reinstall", instances.size() > 1 ? "the instances" : "the instance"));
 
-            LongOperation.waitForCompletion(
-                DescriptorImpl.DISPLAY_NAME, monitors, client, logger, waitForCompletionTimeout);
+            executor.waitForCompletion(result, waitForCompletionTimeout);
+        } else {
+            result.checkFailures();
         }
     }
 
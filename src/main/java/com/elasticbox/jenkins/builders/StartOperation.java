@@ -31,8 +31,6 @@ import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.io.IOException;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
 
 public class StartOperation extends LongOperation implements IOperation.InstanceOperation {
@@ -47,12 +45,12 @@ public class StartOperation extends LongOperation implements IOperation.Instance
         String workspace,
         AbstractBuild<?, ?> build,
         Launcher launcher,
-        TaskLogger logger) throws InterruptedException, IOException {
+        final TaskLogger logger) throws InterruptedException, IOException {
 
         logger.info("Executing Start");
 
         VariableResolver resolver = new VariableResolver(cloud.name, workspace, build, logger.getTaskListener());
-        Client client = cloud.getClient();
+        final Client client = cloud.getClient();
         Set<String> resolvedTags = resolver.resolveTags(getTags());
 
         logger.info(
@@ -65,19 +63,21 @@ public class StartOperation extends LongOperation implements IOperation.Instance
             return;
         }
 
-        List<IProgressMonitor> monitors = new ArrayList<IProgressMonitor>();
-        for (Object instance : instances) {
-            if (Thread.interrupted()) {
-                throw new InterruptedException();
-            }
-            JSONObject instanceJson = (JSONObject) instance;
-            IProgressMonitor monitor = client.poweron(instanceJson.getString("id"));
-            monitors.add(monitor);
-            String instancePageUrl = Client.getPageUrl(cloud.getEndpointUrl(), instanceJson);
-            logger.info(MessageFormat.format("Starting instance {0}", instancePageUrl));
-        }
-        if (isWaitForCompletion()) {
+        InstanceOperationExecutor executor =
+            new InstanceOperationExecutor(getDescriptor().getDisplayName(), client, logger);
 
+        InstanceOperationExecutor.Result result = executor.execute(
+            instances,
+            new InstanceOperationExecutor.InstanceTask() {
+                public IProgressMonitor perform(JSONObject instance) throws IOException {
+                    IProgressMonitor monitor = client.poweron(instance.getString("id"));
+                    String instancePageUrl = Client.getPageUrl(client.getEndpointUrl(), instance);
+                    logger.info(MessageFormat.format("Starting instance {0}", instancePageUrl));
+                    return monitor;
+                }
+            });
+
+        if (isWaitForCompletion()) {
             logger.info(
                 MessageFormat.format(
                     "Waiting for {0} to comlete starting",
@@ -85,12 +85,9 @@ public class StartOperation extends LongOperation implements IOperation.Instance
                         ? "the instances"
                         : "the instance"));
 
-            LongOperation.waitForCompletion(
-                getDescriptor().getDisplayName(),
-                monitors,
-                client,
-                logger,
-                getWaitForCompletionTimeout());
+            executor.waitForCompletion(result, getWaitForCompletionTimeout());
+        } else {
+            result.checkFailures();
         }
     }
 
@@ -33,8 +33,6 @@ import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.io.IOException;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
 
 public class StopOperation extends LongOperation implements IOperation.InstanceOperation {
@@ -49,12 +47,12 @@ public class StopOperation extends LongOperation implements IOperation.InstanceO
         String workspace,
         AbstractBuild<?, ?> build,
         Launcher launcher,
-        TaskLogger logger) throws InterruptedException, IOException {
+        final TaskLogger logger) throws InterruptedException, IOException {
 
         logger.info(MessageFormat.format("Executing {0}", getDescriptor().getDisplayName()));
 
         VariableResolver resolver = new VariableResolver(cloud.name, workspace, build, logger.getTaskListener());
-        Client client = cloud.getClient();
+        final Client client = cloud.getClient();
         Set<String> resolvedTags = resolver.resolveTags(getTags());
 
         logger.info(
@@ -67,17 +65,19 @@ public class StopOperation extends LongOperation implements IOperation.InstanceO
             return;
         }
 
-        List<IProgressMonitor> monitors = new ArrayList<IProgressMonitor>();
-        for (Object instance : instances) {
-            if (Thread.interrupted()) {
-                throw new InterruptedException();
-            }
-            JSONObject instanceJson = (JSONObject) instance;
-            IProgressMonitor monitor = client.shutdown(instanceJson.getString("id"));
-            monitors.add(monitor);
-            String instancePageUrl = Client.getPageUrl(cloud.getEndpointUrl(), instanceJson);
-            logger.info(MessageFormat.format("Stopping instance {0}", instancePageUrl));
-        }
+        InstanceOperationExecutor executor =
+            new InstanceOperationExecutor(getDescriptor().getDisplayName(), client, logger);
+
+        InstanceOperationExecutor.Result result = executor.execute(
+            instances,
+            new InstanceOperationExecutor.InstanceTask() {
+                public IProgressMonitor perform(JSONObject instance) throws IOException {
+                    IProgressMonitor monitor = client.shutdown(instance.getString("id"));
+                    String instancePageUrl = Client.getPageUrl(client.getEndpointUrl(), instance);
+                    logger.info(MessageFormat.format("Stopping instance {0}", instancePageUrl));
+                    return monitor;
+                }
+            });
 
         if (isWaitForCompletion()) {
             logger.info(
@@ -87,12 +87,9 @@ public class StopOperation extends LongOperation implements IOperation.InstanceO
                         ? "the instances"
                         : "the instance"));
 
-            LongOperation.waitForCompletion(
-                getDescriptor().getDisplayName(),
-                monitors,
-                client,
-                logger,
-                getWaitForCompletionTimeout());
+            executor.waitForCompletion(result, getWaitForCompletionTimeout());
+        } else {
+            result.checkFailures();
         }
     }
 
@@ -13,6 +13,7 @@
 package com.elasticbox.jenkins.builders;
 
 import com.elasticbox.Client;
+import com.elasticbox.ClientException;
 import com.elasticbox.IProgressMonitor;
 import com.elasticbox.jenkins.DescriptorHelper;
 import com.elasticbox.jenkins.ElasticBoxCloud;
@@ -20,7 +21,6 @@ import com.elasticbox.jenkins.ElasticBoxSlaveHandler;
 import com.elasticbox.jenkins.util.TaskLogger;
 import com.elasticbox.jenkins.util.VariableResolver;
 
-import hudson.AbortException;
 import hudson.Extension;
 import hudson.Launcher;
 import hudson.model.AbstractBuild;
@@ -31,12 +31,14 @@ import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.HttpStatus;
 
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
@@ -84,7 +86,7 @@ public class TerminateOperation extends LongOperation implements IOperation.Inst
         logger.info("Executing Terminate");
 
         VariableResolver resolver = new VariableResolver(cloud.name, workspace, build, logger.getTaskListener());
-        Client client = cloud.getClient();
+        final Client client = cloud.getClient();
         Set<String> resolvedTags = resolver.resolveTags(getTags());
         logger.info(MessageFormat.format("Looking for instances with the following tags: {0}",
                 StringUtils.join(resolvedTags, ", ")));
@@ -93,102 +95,152 @@ public class TerminateOperation extends LongOperation implements IOperation.Inst
             return;
         }
 
-        List<String> instanceIDs = terminate(instances, getWaitForCompletionTimeout(), isForce(), cloud, logger, build);
+        terminate(instances, getWaitForCompletionTimeout(), isForce(), cloud, logger, build);
 
         if (isDelete()) {
             logger.info(MessageFormat.format("Deleting terminated {0}",
                     instances.size() > 1 ? "instances" : "instance"));
-            for (String instanceId : instanceIDs) {
-                client.delete(instanceId);
-            }
+            new InstanceOperationExecutor(DescriptorImpl.DISPLAY_NAME, client, logger).execute(instances,
+                    new InstanceOperationExecutor.InstanceTask() {
+                        public IProgressMonitor perform(JSONObject instance) throws IOException {
+                            client.delete(instance.getString("id"));
+                            return null;
+                        }
+                    }).checkFailures();
         }
     }
 
-    static List<String> terminate(JSONArray instances, int waitForCompletionTimeout, boolean force,
-            ElasticBoxCloud cloud, TaskLogger logger, AbstractBuild<?, ?> build)
+    static List<String> terminate(JSONArray instances, int waitForCompletionTimeout, final boolean force,
+            final ElasticBoxCloud cloud, final TaskLogger logger, final AbstractBuild<?, ?> build)
             throws InterruptedException, IOException {
-        Client client = cloud.getClient();
-        List<IProgressMonitor> monitors = new ArrayList<IProgressMonitor>();
+        final Client client = cloud.getClient();
         List<String> instanceIDs = new ArrayList<String>();
         for (Object instance : instances) {
-            if (Thread.interrupted()) {
-                throw new InterruptedException();
-            }
-            JSONObject instanceJson = (JSONObject) instance;
-            String instanceId = instanceJson.getString("id");
-            instanceIDs.add(instanceId);
-
-            String instancePageUrl = Client.getPageUrl(client.getEndpointUrl(), instanceJson);
-            if (Client.TERMINATE_OPERATIONS.contains(instanceJson.getJSONObject("operation").getString("event"))
-                && Client.InstanceState.DONE.equals(instanceJson.getString("state"))) {
-
-                logger.info(MessageFormat.format("Instance {0} is already terminated", instancePageUrl));
-                continue;
-            }
-            IProgressMonitor monitor = force ? client.forceTerminate(instanceId) : client.terminate(instanceId);
-            monitors.add(monitor);
-
-            logger.info(
-                MessageFormat.format(
-                    force
-                        ? "Force-terminating instance {0}"
-                        : "Terminating instance {0}",
-                    instancePageUrl));
-
-            notifyTerminating(build, instanceId, cloud);
+            instanceIDs.add(((JSONObject) instance).getString("id"));
         }
 
-        if (!monitors.isEmpty() && waitForCompletionTimeout > 0) {
+        InstanceOperationExecutor executor = new InstanceOperationExecutor(DescriptorImpl.DISPLAY_NAME, client, logger);
+        InstanceOperationExecutor.Result result = executor.execute(instances,
+                new InstanceOperationExecutor.InstanceTask() {
+                    public IProgressMonitor perform(JSONObject instance) throws IOException, InterruptedException {
+                        String instanceId = instance.getString("id");
+                        String instancePageUrl = Client.getPageUrl(client.getEndpointUrl(), instance);
+                        if (Client.TERMINATE_OPERATIONS.contains(instance.getJSONObject("operation").getString("event"))
+                            && Client.InstanceState.DONE.equals(instance.getString("state"))) {
+
+                            logger.info(MessageFormat.format("Instance {0} is already terminated", instancePageUrl));
+                            return null;
+                        }
+                        IProgressMonitor monitor = force
+                                ? client.forceTerminate(instanceId)
+                                : client.terminate(instanceId);
+
+                        logger.info(
+                            MessageFormat.format(
+                                force
+                                    ? "Force-terminating instance {0}"
+                                    : "Terminating instance {0}",
+                                instancePageUrl));
+
+                        notifyTerminating(build, instanceId, cloud);
+                        return monitor;
+                    }
+                });
+
+        if (!result.getMonitors().isEmpty() && waitForCompletionTimeout > 0) {
             logger.info(MessageFormat.format("Waiting for {0} to complete terminating",
                     instances.size() > 1 ? "the instances" : "the instance"));
 
-            LongOperation.waitForCompletion(
-                DescriptorImpl.DISPLAY_NAME,
-                monitors,
-                client,
-                logger,
-                waitForCompletionTimeout);
+            executor.waitForCompletion(result, waitForCompletionTimeout);
+        } else {
+            result.checkFailures();
         }
 
         return instanceIDs;
     }
 
-    public static void terminate(JSONObject instance, Client client, TaskLogger logger)
+    /**
+     * Terminates and deletes the instances, force-terminating the ones that fail to terminate. Only the API calls run
+     * in the thread pool of the instance operations, the terminations are waited for all at once in the thread of the
+     * build.
+     */
+    static void terminateAndDelete(JSONArray instances, final Client client, final TaskLogger logger)
             throws IOException, InterruptedException {
+        InstanceOperationExecutor executor = new InstanceOperationExecutor(DescriptorImpl.DISPLAY_NAME, client, logger);
+        InstanceOperationExecutor.Result result = executor.execute(instances,
+                new InstanceOperationExecutor.InstanceTask() {
+                    public IProgressMonitor perform(JSONObject instance) throws IOException {
+                        IProgressMonitor monitor = requestTermination(client, instance, false);
+                        if (monitor != null) {
+                            logger.info(MessageFormat.format("Terminating box instance {0}",
+                                    Client.getPageUrl(client.getEndpointUrl(), instance)));
+                        }
+                        return monitor;
+                    }
+                });
+
+        if (!result.getMonitors().isEmpty()) {
+            logger.info(MessageFormat.format("Waiting for {0} to be terminated",
+                    result.getMonitors().size() > 1 ? "the box instances" : "the box instance"));
+            List<IProgressMonitor> failedMonitors = LongOperation.waitForCompletionOrFailures(
+                    DescriptorImpl.DISPLAY_NAME, result.getMonitors(), client, logger,
+                    ElasticBoxSlaveHandler.TIMEOUT_MINUTES);
+
+            if (!failedMonitors.isEmpty()) {
+                Set<String> failedInstanceIDs = new HashSet<String>();
+                for (IProgressMonitor monitor : failedMonitors) {
+                    failedInstanceIDs.add(Client.getResourceId(monitor.getResourceUrl()));
+                }
+                JSONArray failedInstances = new JSONArray();
+                for (Object instance : instances) {
+                    if (failedInstanceIDs.contains(((JSONObject) instance).getString("id"))) {
+                        failedInstances.add(instance);
+                    }
+                }
+
+                InstanceOperationExecutor.Result forceResult = executor.execute(failedInstances,
+                        new InstanceOperationExecutor.InstanceTask() {
+                            public IProgressMonitor perform(JSONObject instance) throws IOException {
+                                IProgressMonitor monitor = requestTermination(client, instance, true);
+                                if (monitor != null) {
+                                    logger.info(MessageFormat.format("Force-terminating instance {0}",
+                                            Client.getPageUrl(client.getEndpointUrl(), instance)));
+                                }
+                                return monitor;
+                            }
+                        });
+                executor.waitForCompletion(forceResult, ElasticBoxSlaveHandler.TIMEOUT_MINUTES);
+            }
+        }
+        result.checkFailures();
+
+        executor.execute(instances, new InstanceOperationExecutor.InstanceTask() {
+            public IProgressMonitor perform(JSONObject instance) throws IOException {
+                try {
+                    client.delete(instance.getString("id"));
+                } catch (ClientException ex) {
+                    if (ex.getStatusCode() != HttpStatus.SC_NOT_FOUND) {
+                        throw ex;
+                    }
+                }
+                return null;
+            }
+        }).checkFailures();
+    }
+
+    /**
+     * Terminates the instance, returning null if it doesn't exist anymore.
+     */
+    private static IProgressMonitor requestTermination(Client client, JSONObject instance, boolean force)
+            throws IOException {
         String instanceId = instance.getString("id");
-        IProgressMonitor monitor = client.terminate(instanceId);
-        String instancePageUrl = Client.getPageUrl(client.getEndpointUrl(), instance);
-        logger.info(MessageFormat.format("Terminating box instance {0}", instancePageUrl));
         try {
-            logger.info(MessageFormat.format("Waiting for the box instance {0} to be terminated", instancePageUrl));
-            monitor.waitForDone(ElasticBoxSlaveHandler.TIMEOUT_MINUTES);
-            logger.info(MessageFormat.format("The box instance {0} has been terminated successfully ",
-                    instancePageUrl));
-        } catch (IProgressMonitor.IncompleteException ex) {
-
-            logger.info(ex.getMessage());
-
-            monitor = client.forceTerminate(instanceId);
-
-            logger.info(MessageFormat.format("Force-terminating instance {0}", instancePageUrl));
-
-            try {
-                logger.info(
-                    MessageFormat.format(
-                        "Waiting for the box instance {0} to be force-terminated", instancePageUrl));
-
-                monitor.waitForDone(ElasticBoxSlaveHandler.TIMEOUT_MINUTES);
-
-                logger.info(
-                    MessageFormat.format(
-                        "The box instance {0} has been force-terminated successfully ",
-                        instancePageUrl));
-
-            } catch (IProgressMonitor.IncompleteException e) {
-                Logger.getLogger(DeployBox.class.getName()).log(Level.SEVERE, null, e);
-                logger.error("Failed to terminate box instance {0}: {1}", instancePageUrl, ex.getMessage());
-                throw new AbortException(ex.getMessage());
+            return force ? client.forceTerminate(instanceId) : client.terminate(instanceId);
+        } catch (ClientException ex) {
+            if (ex.getStatusCode() != HttpStatus.SC_NOT_FOUND) {
+                throw ex;
             }
+            return null;
         }
     }
 
@@ -200,7 +252,7 @@ public class TerminateOperation extends LongOperation implements IOperation.Inst
 
     @Extension
     public static final class DescriptorImpl extends OperationDescriptor {
-        private static final String DISPLAY_NAME = "Terminate";
+        static final String DISPLAY_NAME = "Terminate";
 
         @Override
         public String getDisplayName() {
@@ -16,6 +16,7 @@ import com.elasticbox.Client;
 import com.elasticbox.jenkins.DescriptorHelper;
 import com.elasticbox.jenkins.util.ClientCache;
 import com.elasticbox.jenkins.util.TaskLogger;
+import com.elasticbox.jenkins.util.UploadLogger;
 import com.elasticbox.jenkins.util.VariableResolver;
 
 import hudson.Extension;
@@ -68,6 +69,7 @@ public class UpdateBox extends AbstractBuilder {
             resolvedVariables,
             DescriptorHelper.getBoxStack(client, getWorkspace(), box, box).getJsonArray());
 
+        client.getBlobUploadService().uploadFileVariables(resolvedVariables, new UploadLogger(logger));
         JSONObject boxJson = client.updateBox(box, resolvedVariables);
         String boxPageUrl = Client.getPageUrl(client.getEndpointUrl(), boxJson);
         logger.info(MessageFormat.format("Updated box {0}", boxPageUrl));
@@ -38,6 +38,7 @@ public class DeleteInstancesWorkload extends ElasticBoxExecutor.Workload {
     public void add(PullRequestInstance terminatingInstance) {
         if (!terminatingInstances.contains(terminatingInstance)) {
             terminatingInstances.add(terminatingInstance);
+            ElasticBoxExecutor.wakeUp();
         }
     }
 
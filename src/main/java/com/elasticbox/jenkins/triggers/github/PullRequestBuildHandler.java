@@ -14,9 +14,9 @@ package com.elasticbox.jenkins.triggers.github;
 
 import com.cloudbees.jenkins.GitHubRepositoryName;
 import com.coravy.hudson.plugins.github.GithubProjectProperty;
-import com.elasticbox.jenkins.ElasticBoxExecutor;
 import com.elasticbox.jenkins.triggers.IBuildHandler;
 import com.elasticbox.jenkins.triggers.PullRequestBuildTrigger;
+import com.elasticbox.jenkins.util.InstrumentedThreadPool;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Executor;
@@ -75,8 +75,12 @@ public class PullRequestBuildHandler implements IBuildHandler {
     public static final String PR_OWNER_EMAIL = "PR_OWNER_EMAIL";
     public static final String PR_URL = "PR_URL";
 
-    private static final SequentialExecutionQueue sequentialExecutionQueue
-        = new SequentialExecutionQueue(ElasticBoxExecutor.threadPool);
+    // the webhooks are handled in the thread of the request when the queue is full
+    private static final SequentialExecutionQueue sequentialExecutionQueue = new SequentialExecutionQueue(
+        new InstrumentedThreadPool("GitHub",
+            Integer.getInteger("elasticbox.jenkins.PullRequestBuildHandler.threads", 2),
+            Integer.getInteger("elasticbox.jenkins.PullRequestBuildHandler.queueSize", 100),
+            InstrumentedThreadPool.CALLER_RUNS));
 
     private static final Collection<GHEvent> WEBHOOK_EVENTS
         = Arrays.asList(GHEvent.PULL_REQUEST, GHEvent.ISSUE_COMMENT);
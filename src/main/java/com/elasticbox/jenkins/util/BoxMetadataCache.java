@@ -0,0 +1,171 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.util;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the responses of the box metadata requests of a client: boxes, box versions, box stacks and the box
+ * listings of the workspaces. The least recently used responses are evicted when the cache is full. A response is
+ * used as is while it is fresh, after that it is revalidated with its ETag or Last-Modified header, if it has any.
+ * The cache keeps the bodies of the responses, so every caller parses its own copy of the metadata.
+ */
+public class BoxMetadataCache {
+    static final int DEFAULT_MAX_SIZE = Integer.getInteger("elasticbox.boxMetadataCache.size", 500);
+    static final long DEFAULT_MAX_AGE = Long.getLong("elasticbox.boxMetadataCache.maxAge",
+            TimeUnit.MINUTES.toMillis(1));
+
+    public static final class Response {
+        private final String body;
+        private final String etag;
+        private final String lastModified;
+        private volatile long validationTime;
+
+        public Response(String body, String etag, String lastModified) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            validationTime = System.currentTimeMillis();
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        boolean isRevalidable() {
+            return etag != null || lastModified != null;
+        }
+    }
+
+    public interface Fetcher {
+
+        /**
+         * Fetches the resource at the specified URL. If a cached response is passed, the request should be
+         * conditional on its validators.
+         *
+         * @return the new response, or null if the resource hasn't been modified since the cached response
+         */
+        Response fetch(String url, Response cachedResponse) throws IOException;
+
+    }
+
+    private final long maxAge;
+    private final Map<String, Response> responses;
+    private long generation;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong revalidationCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public BoxMetadataCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_AGE);
+    }
+
+    /**
+     * @param maxSize maximum number of responses in the cache
+     * @param maxAge milliseconds a response is used without revalidating it
+     */
+    public BoxMetadataCache(final int maxSize, long maxAge) {
+        this.maxAge = maxAge;
+        responses = new LinkedHashMap<String, Response>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Response> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the body of the response of the specified URL, using the fetcher when the response is not cached yet
+     * or must be revalidated.
+     */
+    public String get(String url, Fetcher fetcher) throws IOException {
+        Response response;
+        long fetchGeneration;
+        synchronized (this) {
+            response = responses.get(url);
+            fetchGeneration = generation;
+        }
+
+        long now = System.currentTimeMillis();
+        if (response != null && now - response.validationTime < maxAge) {
+            hitCount.incrementAndGet();
+            return response.getBody();
+        }
+
+        Response newResponse = fetcher.fetch(url, response != null && response.isRevalidable() ? response : null);
+        if (newResponse == null) {
+            if (response == null || !response.isRevalidable()) {
+                throw new IOException("Unexpected not modified response for " + url);
+            }
+            revalidationCount.incrementAndGet();
+            response.validationTime = now;
+        } else {
+            missCount.incrementAndGet();
+            response = newResponse;
+        }
+
+        synchronized (this) {
+            // don't cache a response that may have been fetched before the cache was invalidated
+            if (fetchGeneration == generation) {
+                responses.put(url, response);
+            }
+        }
+        return response.getBody();
+    }
+
+    public synchronized void invalidate(String url) {
+        generation++;
+        responses.remove(url);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        responses.clear();
+    }
+
+    public synchronized int size() {
+        return responses.size();
+    }
+
+    /**
+     * Returns how many requests were served from the cache without contacting the server.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns how many requests were served from the cache after the server confirmed the response was not modified.
+     */
+    public long getRevalidationCount() {
+        return revalidationCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+}
@@ -14,22 +14,36 @@ package com.elasticbox.jenkins.util;
 
 import com.elasticbox.Client;
 import com.elasticbox.ClientException;
+import com.elasticbox.ConnectionPool;
+import com.elasticbox.PolicyIndex;
 import com.elasticbox.jenkins.ElasticBoxCloud;
 
 import jenkins.model.Jenkins;
 
 import hudson.slaves.Cloud;
 
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
 
 import javax.annotation.CheckForNull;
 import java.io.IOException;
+import java.net.URISyntaxException;
 import java.text.MessageFormat;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -47,10 +61,11 @@ public class ClientCache {
 
         synchronized (clientCache) {
             // remove clients of deleted clouds
-            for (Iterator<String> iter = clientCache.keySet().iterator(); iter.hasNext();) {
-                String name = iter.next();
-                if (Jenkins.getInstance().getCloud(name) == null) {
+            for (Iterator<Map.Entry<String, Client>> iter = clientCache.entrySet().iterator(); iter.hasNext();) {
+                Map.Entry<String, Client> entry = iter.next();
+                if (Jenkins.getInstance().getCloud(entry.getKey()) == null) {
                     iter.remove();
+                    closeUnusedConnectionPool(entry.getValue());
                 }
             }
 
@@ -97,18 +112,120 @@ public class ClientCache {
         return null;
     }
 
+    /**
+     * Returns the client of the cloud if it has been already created, without creating it.
+     */
+    @CheckForNull
+    public static Client getCachedClient(String cloudName) {
+        return cloudName != null ? clientCache.get(cloudName) : null;
+    }
+
+    /**
+     * Removes the client of the cloud, closing its connection pool if no other cached client shares it, so the pools
+     * of replaced settings don't stay open with their idle connection evictor. The cached clients have pools of
+     * their own, the clients created without the cache are never using the closed pool.
+     */
     public static void removeClient(ElasticBoxCloud cloud) {
-        clientCache.remove(cloud.name);
+        synchronized (clientCache) {
+            Client client = clientCache.remove(cloud.name);
+            if (client != null) {
+                closeUnusedConnectionPool(client);
+            }
+        }
+    }
+
+    private static void closeUnusedConnectionPool(Client removedClient) {
+        ConnectionPool pool = removedClient.getConnectionPool();
+        for (Client client : clientCache.values()) {
+            if (client.getConnectionPool() == pool) {
+                return;
+            }
+        }
+        pool.close();
     }
 
     private static final class CachedClient extends Client {
         private final String cloudName;
+        private final BoxMetadataCache metadataCache = new BoxMetadataCache();
+
+        private final BoxMetadataCache.Fetcher metadataFetcher = new BoxMetadataCache.Fetcher() {
+            public BoxMetadataCache.Response fetch(String url, BoxMetadataCache.Response cachedResponse)
+                    throws IOException {
+
+                HttpGet get = new HttpGet(url);
+                get.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
+                if (cachedResponse != null) {
+                    if (cachedResponse.getEtag() != null) {
+                        get.setHeader(HttpHeaders.IF_NONE_MATCH, cachedResponse.getEtag());
+                    }
+                    if (cachedResponse.getLastModified() != null) {
+                        get.setHeader(HttpHeaders.IF_MODIFIED_SINCE, cachedResponse.getLastModified());
+                    }
+                }
+                try {
+                    HttpResponse response = execute(get);
+                    if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                        EntityUtils.consumeQuietly(response.getEntity());
+                        return null;
+                    }
+                    Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+                    Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+                    return new BoxMetadataCache.Response(getResponseBodyAsString(response),
+                            etag != null ? etag.getValue() : null,
+                            lastModified != null ? lastModified.getValue() : null);
+                } finally {
+                    get.reset();
+                }
+            }
+        };
+
+        private final ConcurrentMap<String, CachedPolicyIndex> policyIndexes =
+                new ConcurrentHashMap<String, CachedPolicyIndex>();
 
         public CachedClient(ElasticBoxCloud cloud) throws IOException {
-            super(cloud.getEndpointUrl(), cloud.getToken());
+            super(cloud.getEndpointUrl(), null, null, cloud.getToken(), cloud.getConnectionPoolConfig(), true);
             cloudName = cloud.name;
         }
 
+        @Override
+        protected JSON getMetadata(String url, boolean isArray) throws IOException {
+            String body = metadataCache.get(prepareUrl(url), metadataFetcher);
+            return isArray ? JSONArray.fromObject(body) : JSONObject.fromObject(body);
+        }
+
+        @Override
+        public PolicyIndex getPolicyIndex(String workspaceId) throws IOException {
+            String body = metadataCache.get(prepareUrl(getWorkspaceBoxesUrl(workspaceId)), metadataFetcher);
+            // the metadata cache returns the same body until the box listing of the workspace changes, the index is
+            // only rebuilt when the listing is fetched again
+            CachedPolicyIndex cachedIndex = policyIndexes.get(workspaceId);
+            if (cachedIndex != null && cachedIndex.body == body) {
+                return cachedIndex.index;
+            }
+
+            PolicyIndex index = new PolicyIndex(JSONArray.fromObject(body));
+            policyIndexes.put(workspaceId, new CachedPolicyIndex(body, index));
+            return index;
+        }
+
+        @Override
+        public JSONObject createBox(JSONObject box) throws IOException, URISyntaxException {
+            try {
+                return super.createBox(box);
+            } finally {
+                metadataCache.invalidateAll();
+            }
+        }
+
+        @Override
+        public JSONObject updateBox(String boxId, JSONArray variables) throws IOException {
+            try {
+                return super.updateBox(boxId, variables);
+            } finally {
+                metadataCache.invalidateAll();
+            }
+        }
+
         private ElasticBoxCloud getElasticBoxCloud() {
             return (ElasticBoxCloud) Jenkins.getInstance().getCloud(cloudName);
         }
@@ -138,6 +255,16 @@ public class ClientCache {
                 throw ex;
             }
         }
+
+        private static final class CachedPolicyIndex {
+            private final String body;
+            private final PolicyIndex index;
+
+            CachedPolicyIndex(String body, PolicyIndex index) {
+                this.body = body;
+                this.index = index;
+            }
+        }
     }
 
 }
@@ -0,0 +1,161 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.util;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Thread pool of the plugin with a fixed number of daemon threads and a bounded queue. The threads are named after the
+ * purpose of the pool and the pool keeps the number of rejected tasks and how long the tasks waited in the queue, so
+ * a pool that cannot keep up shows in its statistics instead of piling up threads.
+ */
+public final class InstrumentedThreadPool extends ThreadPoolExecutor {
+    private static final Logger LOGGER = Logger.getLogger(InstrumentedThreadPool.class.getName());
+
+    /**
+     * Tasks that are rejected when the queue is full throw a {@link RejectedExecutionException}.
+     */
+    public static final RejectedExecutionHandler ABORT = new AbortPolicy();
+
+    /**
+     * Tasks that are rejected when the queue is full run in the thread that submits them.
+     */
+    public static final RejectedExecutionHandler CALLER_RUNS = new CallerRunsPolicy();
+
+    private static final List<InstrumentedThreadPool> pools = new CopyOnWriteArrayList<InstrumentedThreadPool>();
+
+    private final String name;
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public InstrumentedThreadPool(String name, int threads, int queueSize, RejectedExecutionHandler handler) {
+        super(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(queueSize),
+                new ExceptionCatchingThreadFactory(new NamingThreadFactory(new DaemonThreadFactory(),
+                        "ElasticBox " + name)));
+        this.name = name;
+        allowCoreThreadTimeOut(true);
+        setRejectedExecutionHandler(new CountingRejectedExecutionHandler(handler));
+        pools.add(this);
+    }
+
+    /**
+     * Returns all the thread pools of the plugin that haven't been shut down.
+     */
+    public static List<InstrumentedThreadPool> getPools() {
+        return Collections.unmodifiableList(new ArrayList<InstrumentedThreadPool>(pools));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Returns the average time in milliseconds that the tasks waited in the queue before running.
+     */
+    public long getAverageLatency() {
+        long count = executedCount.get();
+        return count > 0 ? totalLatency.get() / count : 0;
+    }
+
+    /**
+     * Returns the longest time in milliseconds that a task waited in the queue before running.
+     */
+    public long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new TimedRunnable(command));
+    }
+
+    @Override
+    protected void terminated() {
+        pools.remove(this);
+        super.terminated();
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("{0}: active={1}, queued={2}, completed={3}, rejected={4}, "
+                + "averageLatency={5}ms, maxLatency={6}ms",
+                name, getActiveCount(), getQueueDepth(), getCompletedTaskCount(), getRejectedCount(),
+                getAverageLatency(), getMaxLatency());
+    }
+
+    private void recordLatency(long latency) {
+        executedCount.incrementAndGet();
+        totalLatency.addAndGet(latency);
+        long max = maxLatency.get();
+        while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+            max = maxLatency.get();
+        }
+    }
+
+    private final class TimedRunnable implements Runnable {
+        private final Runnable task;
+        private final long submissionTime = System.currentTimeMillis();
+
+        TimedRunnable(Runnable task) {
+            this.task = task;
+        }
+
+        public void run() {
+            recordLatency(System.currentTimeMillis() - submissionTime);
+            task.run();
+        }
+    }
+
+    private final class CountingRejectedExecutionHandler implements RejectedExecutionHandler {
+        private final RejectedExecutionHandler handler;
+
+        CountingRejectedExecutionHandler(RejectedExecutionHandler handler) {
+            this.handler = handler;
+        }
+
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            rejectedCount.incrementAndGet();
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Task rejected by thread pool " + InstrumentedThreadPool.this);
+            }
+            handler.rejectedExecution(task, executor);
+        }
+    }
+
+}
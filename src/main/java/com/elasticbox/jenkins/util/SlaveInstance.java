@@ -14,10 +14,10 @@ package com.elasticbox.jenkins.util;
 
 import com.elasticbox.BoxStack;
 import com.elasticbox.Client;
+import com.elasticbox.InstanceSnapshot;
 import com.elasticbox.jenkins.AbstractSlaveConfiguration;
 import com.elasticbox.jenkins.ElasticBoxSlave;
-
-import hudson.model.Node;
+import com.elasticbox.jenkins.ElasticBoxSlaveRegistry;
 
 import jenkins.model.Jenkins;
 
@@ -28,7 +28,6 @@ import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
 import java.text.MessageFormat;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -69,14 +68,31 @@ public class SlaveInstance {
     }
 
     public static JSONArray createJenkinsVariables(Client client, ElasticBoxSlave slave) throws IOException {
-        Map<String, JSONObject> requiredVariables = Collections.EMPTY_MAP;
+        return createJenkinsVariables(slave, getJenkinsVariablesScope(client, slave.getBoxVersion()));
+    }
 
+    /**
+     * Finds the box of the runtime stack of the box version that has the variables required by the slaves.
+     *
+     * @return the scope of the required variables, or null if they are variables of the box version itself
+     */
+    public static String getJenkinsVariablesScope(Client client, String boxVersion) throws IOException {
         JSONArray boxStack = new BoxStack(
-                            slave.getBoxVersion(),
-                            client.getBoxStack(slave.getBoxVersion()),
+                            boxVersion,
+                            client.getBoxStack(boxVersion),
                             client
         ).toJsonArray();
 
+        return getJenkinsVariablesScope(boxVersion, boxStack);
+    }
+
+    /**
+     * Same as {@link #getJenkinsVariablesScope(Client, String)} for a box stack that has been already fetched, as
+     * returned by {@link BoxStack#toJsonArray()}.
+     */
+    public static String getJenkinsVariablesScope(String boxVersion, JSONArray boxStack) throws IOException {
+        Map<String, JSONObject> requiredVariables = Collections.EMPTY_MAP;
+
         for (int i = 0; i < boxStack.size(); i++) {
             requiredVariables = getRequiredVariables(boxStack.getJSONObject(i));
             if (requiredVariables.size() == REQUIRED_VARIABLES.size()) {
@@ -88,20 +104,24 @@ public class SlaveInstance {
             throw new IOException(
                 MessageFormat.format(
                     "No box in the runtime stack of the box version {0} has the required variables {1}.",
-                    slave.getBoxVersion(),
+                    boxVersion,
                     StringUtils.join(REQUIRED_VARIABLES, ", ")));
         }
 
         JSONObject jenkinsUrlVariable = requiredVariables.get(JENKINS_URL_VARIABLE);
-        String jenkinsUrl = Jenkins.getInstance().getRootUrl();
+        return jenkinsUrlVariable.containsKey("scope") ? jenkinsUrlVariable.getString("scope") : null;
+    }
 
+    /**
+     * Creates the variables required by the slave, in the scope returned by {@link #getJenkinsVariablesScope}.
+     */
+    public static JSONArray createJenkinsVariables(ElasticBoxSlave slave, String scope) {
+        String jenkinsUrl = Jenkins.getInstance().getRootUrl();
 
         JSONObject variable = new JSONObject();
         variable.put("name", JENKINS_URL_VARIABLE);
         variable.put("type", "Text");
         variable.put("value", jenkinsUrl);
-
-        String scope = jenkinsUrlVariable.containsKey("scope") ? jenkinsUrlVariable.getString("scope") : null;
         if (scope != null) {
             variable.put("scope", scope);
         }
@@ -138,24 +158,21 @@ public class SlaveInstance {
         return getRequiredVariables(boxJson).size() == REQUIRED_VARIABLES.size();
     }
 
-    public static Map<String, Integer> getSlaveConfigIdToInstanceCountMap(List<JSONObject> activeInstances) {
-        Map<String, String> slaveNameToConfigIdMap = new HashMap<String, String>();
-        for (Node node : Jenkins.getInstance().getNodes()) {
-            if (node instanceof ElasticBoxSlave) {
-                ElasticBoxSlave slave = (ElasticBoxSlave) node;
-                AbstractSlaveConfiguration config = slave.getSlaveConfiguration();
+    public static Map<String, Integer> getSlaveConfigIdToInstanceCountMap(List<InstanceSnapshot> activeInstances) {
+        ElasticBoxSlaveRegistry registry = ElasticBoxSlaveRegistry.getInstance();
+        Map<String, Integer> slaveConfigIdToInstanceCountMap = new HashMap<String, Integer>();
+        for (InstanceSnapshot instance : activeInstances) {
+            // the first tag that is the name of a slave with configuration
+            AbstractSlaveConfiguration config = null;
+            for (String tag : instance.getTags()) {
+                ElasticBoxSlave slave = registry.getSlaveByName(tag);
+                config = slave != null ? slave.getSlaveConfiguration() : null;
                 if (config != null) {
-                    slaveNameToConfigIdMap.put(slave.getNodeName(), config.getId());
+                    break;
                 }
             }
-        }
-        Map<String, Integer> slaveConfigIdToInstanceCountMap = new HashMap<String, Integer>();
-        for (JSONObject instance : activeInstances) {
-            List<?> tags = new ArrayList(instance.getJSONArray("tags"));
-            tags.retainAll(slaveNameToConfigIdMap.keySet());
-            if (!tags.isEmpty()) {
-                String slaveName = (String) tags.get(0);
-                String slaveConfigId = slaveNameToConfigIdMap.get(slaveName);
+            if (config != null) {
+                String slaveConfigId = config.getId();
                 Integer instanceCount = slaveConfigIdToInstanceCountMap.get(slaveConfigId);
                 slaveConfigIdToInstanceCountMap.put(slaveConfigId, instanceCount == null ? 1 : ++instanceCount);
             }
@@ -167,22 +184,12 @@ public class SlaveInstance {
     public static class InstanceCounter {
         private final Map<String, Integer> slaveConfigIdToInstanceCountMap;
 
-        public InstanceCounter(List<JSONObject> activeInstances) {
-            Map<String, AbstractSlaveConfiguration> instanceIdToSlaveConfigMap
-                = new HashMap<String, AbstractSlaveConfiguration>();
-
-            for (Node node : Jenkins.getInstance().getNodes()) {
-                if (node instanceof ElasticBoxSlave) {
-                    ElasticBoxSlave slave = (ElasticBoxSlave) node;
-                    AbstractSlaveConfiguration config = slave.getSlaveConfiguration();
-                    if (config != null) {
-                        instanceIdToSlaveConfigMap.put(slave.getInstanceId(), slave.getSlaveConfiguration());
-                    }
-                }
-            }
+        public InstanceCounter(List<InstanceSnapshot> activeInstances) {
+            ElasticBoxSlaveRegistry registry = ElasticBoxSlaveRegistry.getInstance();
             slaveConfigIdToInstanceCountMap = new HashMap<String, Integer>();
-            for (JSONObject instance : activeInstances) {
-                AbstractSlaveConfiguration slaveConfig = instanceIdToSlaveConfigMap.get(instance.getString("id"));
+            for (InstanceSnapshot instance : activeInstances) {
+                ElasticBoxSlave slave = registry.getSlaveByInstanceId(instance.getId());
+                AbstractSlaveConfiguration slaveConfig = slave != null ? slave.getSlaveConfiguration() : null;
                 if (slaveConfig != null) {
                     Integer instanceCount = slaveConfigIdToInstanceCountMap.get(slaveConfig.getId());
                     slaveConfigIdToInstanceCountMap.put(
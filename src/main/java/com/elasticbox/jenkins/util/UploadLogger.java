@@ -0,0 +1,37 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.util;
+
+import com.elasticbox.BlobUploadService;
+
+/**
+ * Reports the file uploads of a build step and their throughput in the build log.
+ */
+public class UploadLogger implements BlobUploadService.UploadListener {
+    private final TaskLogger logger;
+
+    public UploadLogger(TaskLogger logger) {
+        this.logger = logger;
+    }
+
+    public void onUploaded(String fileName, long size, long millis) {
+        long kilobytes = size / 1024;
+        logger.info("Uploaded file {0} ({1} KB) in {2} ms, {3} KB/s", fileName, kilobytes, millis,
+                millis > 0 ? kilobytes * 1000 / millis : kilobytes);
+    }
+
+    public void onReused(String fileName, String blobUrl) {
+        logger.info("File {0} is already uploaded to {1}", fileName, blobUrl);
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ *
+ *  ElasticBox Confidential
+ *  Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ *  NOTICE:  All information contained herein is, and remains the property
+ *  of ElasticBox. The intellectual and technical concepts contained herein are
+ *  proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ *  and are protected by trade secret or copyright law. Dissemination of this
+ *  information or reproduction of this material is strictly forbidden unless prior
+ *  written permission is obtained from ElasticBox.
+ *
+ */
+
+package com.elasticbox;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestBlobUploadService {
+
+    @Test
+    public void testHashIsSha256OfContent() throws Exception {
+        File file = File.createTempFile("blob", null);
+        try {
+            OutputStream output = new FileOutputStream(file);
+            try {
+                output.write("abc".getBytes(StandardCharsets.UTF_8));
+            } finally {
+                output.close();
+            }
+
+            assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                    BlobUploadService.hash(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testCacheKeyDependsOnEndpointAndCredentials() {
+        String key = BlobUploadService.getCacheKey("https://elasticbox.com", "token-1");
+        assertEquals(key, BlobUploadService.getCacheKey("https://elasticbox.com", "token-1"));
+        assertFalse(key.equals(BlobUploadService.getCacheKey("https://elasticbox.com", "token-2")));
+        assertFalse(key.equals(BlobUploadService.getCacheKey("https://other.elasticbox.com", "token-1")));
+        assertFalse(key.contains("token-1"));
+    }
+
+    @Test
+    public void testBlobCacheEvictsLeastRecentlyUsed() {
+        BlobUploadService.BlobCache cache = new BlobUploadService.BlobCache(2, TimeUnit.DAYS.toMillis(1));
+        cache.put("hash-1", "/blobs/1");
+        cache.put("hash-2", "/blobs/2");
+        assertEquals("/blobs/1", cache.get("hash-1"));
+        cache.put("hash-3", "/blobs/3");
+
+        assertNull(cache.get("hash-2"));
+        assertFalse(cache.containsUrl("/blobs/2"));
+        assertTrue(cache.containsUrl("/blobs/1"));
+        assertTrue(cache.containsUrl("/blobs/3"));
+    }
+
+    @Test
+    public void testBlobCacheExpires() throws Exception {
+        BlobUploadService.BlobCache cache = new BlobUploadService.BlobCache(10, 1);
+        cache.put("hash-1", "/blobs/1");
+        Thread.sleep(5);
+
+        assertNull(cache.get("hash-1"));
+        assertFalse(cache.containsUrl("/blobs/1"));
+    }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TestConnectionPool {
+
+    @Test
+    public void testClientsCreatedOnTheirOwnDoNotShareCachedPools() {
+        String endpointUrl = "http://connection-pool-test";
+        ConnectionPool cachedPool = ConnectionPool.getCachedClientPool(endpointUrl, ConnectionPoolConfig.DEFAULT);
+        Client client = new Client(endpointUrl, "token");
+        assertNotSame(cachedPool, client.getConnectionPool());
+        assertSame(client.getConnectionPool(), new Client(endpointUrl + '/', "token").getConnectionPool());
+
+        // closing the pool of the cached clients leaves the other clients working
+        cachedPool.close();
+        assertSame(client.getConnectionPool(), ConnectionPool.getConnectionPool(endpointUrl,
+                ConnectionPoolConfig.DEFAULT));
+        assertNotSame(cachedPool, ConnectionPool.getCachedClientPool(endpointUrl, ConnectionPoolConfig.DEFAULT));
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ *
+ *  ElasticBox Confidential
+ *  Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ *  NOTICE:  All information contained herein is, and remains the property
+ *  of ElasticBox. The intellectual and technical concepts contained herein are
+ *  proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ *  and are protected by trade secret or copyright law. Dissemination of this
+ *  information or reproduction of this material is strictly forbidden unless prior
+ *  written permission is obtained from ElasticBox.
+ *
+ */
+
+package com.elasticbox;
+
+import net.sf.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestDeploymentRequest {
+
+    @Test
+    public void testInstanceNamedAfterKnownBox() {
+        DeploymentRequest request = new DeploymentRequest.DeploymentRequestBuilder()
+                .withBox("box-version", "Jenkins Slave")
+                .withPolicy("policy")
+                .withWorkspace("workspace")
+                .withTags(Arrays.asList("slave-1"))
+                .build();
+
+        assertTrue(request.isNameResolved());
+        JSONObject json = request.toJson(null);
+        assertEquals("Jenkins Slave", json.getString("name"));
+        assertEquals("box-version", json.getJSONObject("box").getString("id"));
+        assertEquals("policy", json.getJSONObject("policy_box").getString("id"));
+        assertEquals("workspace", json.getString("owner"));
+        assertEquals("slave-1", json.getJSONArray("instance_tags").getString(0));
+        assertEquals(Constants.AUTOMATIC_UPDATES_OFF, json.getString("automatic_updates"));
+        assertFalse(json.containsKey("lease"));
+    }
+
+    @Test
+    public void testInstanceNameOverridesBoxName() {
+        DeploymentRequest request = new DeploymentRequest.DeploymentRequestBuilder()
+                .withBox("box-version", "Jenkins Slave")
+                .withName("my-instance")
+                .withPolicy("policy")
+                .withWorkspace("workspace")
+                .withExpiration("2016-01-01 00:00", "terminate")
+                .build();
+
+        JSONObject json = request.toJson(null);
+        assertEquals("my-instance", json.getString("name"));
+        assertEquals("terminate", json.getJSONObject("lease").getString("operation"));
+    }
+
+    @Test
+    public void testUnknownBoxNameIsResolvedByClient() {
+        DeploymentRequest request = new DeploymentRequest.DeploymentRequestBuilder()
+                .withBoxVersion("box-version")
+                .withPolicy("policy")
+                .withWorkspace("workspace")
+                .build();
+
+        assertFalse(request.isNameResolved());
+        assertEquals("Fetched Box", request.toJson("Fetched Box").getString("name"));
+    }
+
+}
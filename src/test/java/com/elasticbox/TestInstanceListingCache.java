@@ -0,0 +1,146 @@
+/*
+ *
+ *  ElasticBox Confidential
+ *  Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ *  NOTICE:  All information contained herein is, and remains the property
+ *  of ElasticBox. The intellectual and technical concepts contained herein are
+ *  proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ *  and are protected by trade secret or copyright law. Dissemination of this
+ *  information or reproduction of this material is strictly forbidden unless prior
+ *  written permission is obtained from ElasticBox.
+ *
+ */
+
+package com.elasticbox;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TestInstanceListingCache {
+
+    @Test
+    public void testConcurrentCallersShareOneRequest() throws Exception {
+        final CountDownLatch requestStarted = new CountDownLatch(1);
+        final CountDownLatch releaseRequest = new CountDownLatch(1);
+        final FakeClient client = new FakeClient() {
+            @Override
+            public List<InstanceSnapshot> getInstanceSnapshots(String workspaceId) throws IOException {
+                requestStarted.countDown();
+                try {
+                    releaseRequest.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+                return super.getInstanceSnapshots(workspaceId);
+            }
+        };
+        final InstanceListingCache cache = new InstanceListingCache(client, TimeUnit.MINUTES.toMillis(1));
+
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            List<Future<List<InstanceSnapshot>>> results = new ArrayList<Future<List<InstanceSnapshot>>>();
+            for (int i = 0; i < 10; i++) {
+                results.add(executor.submit(new Callable<List<InstanceSnapshot>>() {
+                    public List<InstanceSnapshot> call() throws IOException {
+                        return cache.getInstances("eb");
+                    }
+                }));
+                if (i == 0) {
+                    requestStarted.await(5, TimeUnit.SECONDS);
+                }
+            }
+            releaseRequest.countDown();
+
+            List<InstanceSnapshot> first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<List<InstanceSnapshot>> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, client.requests.get());
+        assertEquals(10, cache.getRequestCount());
+        assertEquals(9, cache.getHitCount());
+    }
+
+    @Test
+    public void testInvalidationAndExpiration() throws Exception {
+        FakeClient client = new FakeClient();
+        InstanceListingCache cache = new InstanceListingCache(client, TimeUnit.MINUTES.toMillis(1));
+        cache.getInstances("eb");
+        cache.getInstances("eb");
+        cache.getInstances("other");
+        assertEquals(2, client.requests.get());
+
+        cache.invalidate("eb");
+        cache.getInstances("eb");
+        cache.getInstances("other");
+        assertEquals(3, client.requests.get());
+
+        cache.invalidateAll();
+        cache.getInstances("other");
+        assertEquals(4, client.requests.get());
+
+        cache = new InstanceListingCache(client, 1);
+        cache.getInstances("eb");
+        Thread.sleep(10);
+        cache.getInstances("eb");
+        assertEquals(6, client.requests.get());
+    }
+
+    @Test
+    public void testFailureIsNotCached() throws Exception {
+        final AtomicInteger failures = new AtomicInteger(1);
+        FakeClient client = new FakeClient() {
+            @Override
+            public List<InstanceSnapshot> getInstanceSnapshots(String workspaceId) throws IOException {
+                if (failures.getAndDecrement() > 0) {
+                    requests.incrementAndGet();
+                    throw new ClientException("Service unavailable", 503);
+                }
+                return super.getInstanceSnapshots(workspaceId);
+            }
+        };
+        InstanceListingCache cache = new InstanceListingCache(client, TimeUnit.MINUTES.toMillis(1));
+        try {
+            cache.getInstances("eb");
+            fail("The failure of the request should be thrown");
+        } catch (ClientException ex) {
+            assertEquals(503, ex.getStatusCode());
+        }
+        assertEquals(1, cache.getInstances("eb").size());
+        assertEquals(2, client.requests.get());
+    }
+
+    private static class FakeClient extends Client {
+        final AtomicInteger requests = new AtomicInteger();
+
+        FakeClient() {
+            super("http://localhost", "token");
+        }
+
+        @Override
+        public List<InstanceSnapshot> getInstanceSnapshots(String workspaceId) throws IOException {
+            requests.incrementAndGet();
+            return Collections.singletonList(new InstanceSnapshot("i-" + requests.get(), workspaceId,
+                    InstanceSnapshot.State.DONE, InstanceSnapshot.Operation.DEPLOY, null, null));
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ *
+ *  ElasticBox Confidential
+ *  Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ *  NOTICE:  All information contained herein is, and remains the property
+ *  of ElasticBox. The intellectual and technical concepts contained herein are
+ *  proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ *  and are protected by trade secret or copyright law. Dissemination of this
+ *  information or reproduction of this material is strictly forbidden unless prior
+ *  written permission is obtained from ElasticBox.
+ *
+ */
+
+package com.elasticbox;
+
+import net.sf.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestInstanceListingParser {
+
+    private static final String LISTING = "["
+            + "{\"id\": \"i-1\", \"name\": \"slave-1\", \"owner\": \"eb\", \"state\": \"done\","
+            + " \"operation\": {\"event\": \"terminate\", \"workspace\": \"eb\"}, \"tags\": [\"slave-1\", \"ci\"],"
+            + " \"variables\": [{\"name\": \"JENKINS_URL\", \"value\": \"http://jenkins\"}],"
+            + " \"updated\": \"2016-05-01 10:00:00.000000\"},"
+            + "{\"id\": \"i-2\", \"state\": \"sleeping\", \"operation\": \"poweron\", \"tags\": [], \"box\": null}"
+            + "]";
+
+    @Test
+    public void testSummariesOnlyHaveRequestedFields() throws Exception {
+        final List<JSONObject> instances = new ArrayList<JSONObject>();
+        new InstanceListingParser(InstanceListingParser.SUMMARY_FIELDS).parse(input(LISTING),
+                new InstanceListingParser.InstanceHandler() {
+                    public void handle(JSONObject instance) {
+                        instances.add(instance);
+                    }
+                });
+
+        assertEquals(2, instances.size());
+        JSONObject instance = instances.get(0);
+        assertEquals("slave-1", instance.getString("name"));
+        assertEquals("terminate", instance.getJSONObject("operation").getString("event"));
+        assertFalse(instance.getJSONObject("operation").containsKey("workspace"));
+        assertFalse(instance.containsKey("variables"));
+        assertEquals(Arrays.asList("slave-1", "ci"), instance.getJSONArray("tags"));
+    }
+
+    @Test
+    public void testSnapshots() throws Exception {
+        final List<InstanceSnapshot> instances = new ArrayList<InstanceSnapshot>();
+        InstanceListingParser.parseSnapshots(input(LISTING), new InstanceSnapshot.Handler() {
+            public void handle(InstanceSnapshot instance) {
+                instances.add(instance);
+            }
+        });
+
+        assertEquals(2, instances.size());
+        InstanceSnapshot instance = instances.get(0);
+        assertEquals("i-1", instance.getId());
+        assertEquals("eb", instance.getWorkspace());
+        assertEquals(InstanceSnapshot.State.DONE, instance.getState());
+        assertTrue(instance.getOperation().isTerminate());
+        assertEquals("slave-1", instance.getFirstTag());
+        assertEquals("2016-05-01 10:00:00.000000", instance.getUpdated());
+
+        instance = instances.get(1);
+        assertEquals(InstanceSnapshot.State.UNKNOWN, instance.getState());
+        assertEquals("The operation of older versions is only the event",
+                InstanceSnapshot.Operation.POWERON, instance.getOperation());
+        assertTrue(instance.getOperation().isOn());
+        assertNull(instance.getFirstTag());
+    }
+
+    @Test(expected = IOException.class)
+    public void testListingMustBeAnArray() throws Exception {
+        InstanceListingParser.parseSnapshots(input("{\"id\": \"i-1\"}"), new InstanceSnapshot.Handler() {
+            public void handle(InstanceSnapshot instance) {
+            }
+        });
+    }
+
+    private static InputStream input(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ *
+ *  ElasticBox Confidential
+ *  Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ *  NOTICE:  All information contained herein is, and remains the property
+ *  of ElasticBox. The intellectual and technical concepts contained herein are
+ *  proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ *  and are protected by trade secret or copyright law. Dissemination of this
+ *  information or reproduction of this material is strictly forbidden unless prior
+ *  written permission is obtained from ElasticBox.
+ *
+ */
+
+package com.elasticbox;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestInstanceStateWatcher {
+    private static final long MIN_POLL_INTERVAL = 10;
+    private static final long MAX_POLL_INTERVAL = 50;
+    private static final int MAX_ERRORS = 3;
+
+    private static InstanceStateWatcher createWatcher(Client client) {
+        return new InstanceStateWatcher(client, MIN_POLL_INTERVAL, MAX_POLL_INTERVAL, MAX_ERRORS);
+    }
+
+    @Test
+    public void testInstancesOfSameWorkspaceArePolledTogether() throws Exception {
+        final AtomicInteger requests = new AtomicInteger(0);
+        Client client = new Client("http://localhost", "token") {
+            @Override
+            public JSONArray getInstances(String workspaceId, List<String> instanceIDs) throws IOException {
+                int request = requests.incrementAndGet();
+                JSONArray instances = new JSONArray();
+                for (String id : instanceIDs) {
+                    instances.add(instance(id, request < 3 ? "processing" : "done"));
+                }
+                return instances;
+            }
+        };
+
+        InstanceStateWatcher watcher = createWatcher(client);
+        FakeMonitor first = new FakeMonitor(watcher, client, "first");
+        FakeMonitor second = new FakeMonitor(watcher, client, "second");
+        Future<Void> firstDone = watcher.watch(first);
+        second.waitForDone(1);
+        firstDone.get(1, TimeUnit.SECONDS);
+
+        assertEquals("Both instances should be fetched with the same requests", 3, requests.get());
+        assertEquals(0, watcher.getWatchCount());
+    }
+
+    @Test
+    public void testFailedBatchIsPolledAgain() throws Exception {
+        final AtomicInteger requests = new AtomicInteger(0);
+        Client client = new Client("http://localhost", "token") {
+            @Override
+            public JSONArray getInstances(String workspaceId, List<String> instanceIDs) throws IOException {
+                if (requests.incrementAndGet() < MAX_ERRORS) {
+                    throw new IOException("Service unavailable");
+                }
+                JSONArray instances = new JSONArray();
+                for (String id : instanceIDs) {
+                    instances.add(instance(id, "done"));
+                }
+                return instances;
+            }
+        };
+
+        InstanceStateWatcher watcher = createWatcher(client);
+        new FakeMonitor(watcher, client, "first").waitForDone(1);
+
+        assertEquals(MAX_ERRORS, requests.get());
+        assertEquals(0, watcher.getWatchCount());
+    }
+
+    @Test
+    public void testMissingInstanceIsIncomplete() throws Exception {
+        Client client = new Client("http://localhost", "token") {
+            @Override
+            public JSONArray getInstances(String workspaceId, List<String> instanceIDs) throws IOException {
+                return new JSONArray();
+            }
+        };
+
+        try {
+            new FakeMonitor(createWatcher(client), client, "missing").waitForDone(1);
+            fail("Waiting for a deleted instance should fail");
+        } catch (IProgressMonitor.IncompleteException ex) {
+            assertTrue(ex.getMessage().contains("missing"));
+        }
+    }
+
+    @Test
+    public void testSlowEndpointDoesNotDelayOtherEndpoints() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        Client slowClient = new Client("http://slow", "token") {
+            @Override
+            public JSONArray getInstances(String workspaceId, List<String> instanceIDs) throws IOException {
+                try {
+                    blocked.await();
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+                return new JSONArray();
+            }
+        };
+        Client client = new Client("http://fast", "token") {
+            @Override
+            public JSONArray getInstances(String workspaceId, List<String> instanceIDs) throws IOException {
+                JSONArray instances = new JSONArray();
+                for (String id : instanceIDs) {
+                    instances.add(instance(id, "done"));
+                }
+                return instances;
+            }
+        };
+
+        try {
+            // more slow polls than the threads of a scheduler
+            for (int i = 0; i < 4; i++) {
+                InstanceStateWatcher slowWatcher = createWatcher(slowClient);
+                slowWatcher.watch(new FakeMonitor(slowWatcher, slowClient, "slow-" + i));
+            }
+            InstanceStateWatcher watcher = createWatcher(client);
+            watcher.watch(new FakeMonitor(watcher, client, "fast")).get(5, TimeUnit.SECONDS);
+        } finally {
+            blocked.countDown();
+        }
+    }
+
+    private static JSONObject instance(String id, String state) {
+        JSONObject instance = new JSONObject();
+        instance.put("id", id);
+        instance.put("state", state);
+        instance.put("updated", state);
+        return instance;
+    }
+
+    private static class FakeMonitor extends AbstractProgressMonitor {
+        private final InstanceStateWatcher watcher;
+
+        FakeMonitor(InstanceStateWatcher watcher, Client client, String instanceId) {
+            super(client.getEndpointUrl() + "/services/instances/" + instanceId);
+            this.watcher = watcher;
+        }
+
+        @Override
+        protected JSONObject getResource() throws IOException {
+            throw new IOException("Instances must be fetched in batch");
+        }
+
+        @Override
+        protected String getWorkspaceId() {
+            return "workspace";
+        }
+
+        @Override
+        protected InstanceStateWatcher getStateWatcher() {
+            return watcher;
+        }
+
+        public boolean isDone(JSONObject resource) throws IncompleteException, IOException {
+            return "done".equals(resource.getString("state"));
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ *
+ *  ElasticBox Confidential
+ *  Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ *  NOTICE:  All information contained herein is, and remains the property
+ *  of ElasticBox. The intellectual and technical concepts contained herein are
+ *  proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ *  and are protected by trade secret or copyright law. Dissemination of this
+ *  information or reproduction of this material is strictly forbidden unless prior
+ *  written permission is obtained from ElasticBox.
+ *
+ */
+
+package com.elasticbox;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestPolicyIndex {
+
+    private static final JSONArray BOXES = JSONArray.fromObject("["
+            + "{\"id\": \"p-1\", \"schema\": \"http://elasticbox.net/schemas/boxes/policy\","
+            + " \"claims\": [\"linux\", \"aws\"]},"
+            + "{\"id\": \"b-1\", \"schema\": \"http://elasticbox.net/schemas/boxes/script\","
+            + " \"requirements\": [\"linux\"]},"
+            + "{\"id\": \"p-2\", \"schema\": \"http://elasticbox.net/schemas/boxes/policy\","
+            + " \"claims\": [\"linux\", \"gce\"]},"
+            + "{\"id\": \"p-3\", \"schema\": \"http://elasticbox.net/schemas/boxes/policy\", \"claims\": []}"
+            + "]");
+
+    @Test
+    public void testPoliciesSatisfyingClaims() {
+        PolicyIndex index = new PolicyIndex(BOXES);
+
+        assertEquals(3, index.size());
+        assertEquals(Arrays.asList("p-1", "p-2", "p-3"), ids(index.getPolicies()));
+        assertEquals(Arrays.asList("p-1", "p-2", "p-3"), ids(index.getPolicies(Collections.<String>emptyList())));
+        assertEquals(Arrays.asList("p-1", "p-2"), ids(index.getPolicies(Arrays.asList("linux"))));
+        assertEquals(Arrays.asList("p-2"), ids(index.getPolicies(Arrays.asList("gce", "linux"))));
+        assertTrue(index.getPolicies(Arrays.asList("aws", "gce")).isEmpty());
+        assertTrue(index.getPolicies(Arrays.asList("windows")).isEmpty());
+    }
+
+    @Test
+    public void testPoliciesAreCopied() {
+        PolicyIndex index = new PolicyIndex(BOXES);
+
+        JSONObject policy = index.getPolicies(Arrays.asList("aws")).get(0);
+        policy.getJSONArray("claims").clear();
+
+        assertFalse(index.getPolicies(Arrays.asList("aws")).get(0).getJSONArray("claims").isEmpty());
+    }
+
+    private static List<String> ids(List<JSONObject> policies) {
+        List<String> ids = new ArrayList<String>();
+        for (JSONObject policy : policies) {
+            ids.add(policy.getString("id"));
+        }
+        return ids;
+    }
+
+}
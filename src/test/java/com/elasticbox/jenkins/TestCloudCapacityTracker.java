@@ -0,0 +1,177 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import com.elasticbox.InstanceSnapshot;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.powermock.reflect.Whitebox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestCloudCapacityTracker {
+    private ElasticBoxCloud cloud;
+    private CloudCapacityTracker tracker;
+
+    @Before
+    public void setUp() {
+        cloud = mock(ElasticBoxCloud.class);
+        when(cloud.getMaxInstances()).thenReturn(3);
+        tracker = new CloudCapacityTracker("cloud");
+    }
+
+    private static AbstractSlaveConfiguration createSlaveConfiguration(String id, int maxInstances) {
+        AbstractSlaveConfiguration slaveConfig = mock(AbstractSlaveConfiguration.class);
+        when(slaveConfig.getId()).thenReturn(id);
+        when(slaveConfig.getMaxInstances()).thenReturn(maxInstances);
+        return slaveConfig;
+    }
+
+    private static ElasticBoxSlave createSlave(String name, String instanceId) {
+        ElasticBoxSlave slave = mock(ElasticBoxSlave.class, Mockito.CALLS_REAL_METHODS);
+        Whitebox.setInternalState(slave, "name", name);
+        if (instanceId != null) {
+            Whitebox.setInternalState(slave, "instanceUrl", "https://elasticbox/services/instances/" + instanceId);
+        }
+        return slave;
+    }
+
+    private static InstanceSnapshot createInstance(String id) {
+        return new InstanceSnapshot(id, "workspace", InstanceSnapshot.State.DONE, InstanceSnapshot.Operation.DEPLOY,
+                null, "1");
+    }
+
+    private CloudCapacityTracker.Snapshot update(List<InstanceSnapshot> activeInstances) {
+        tracker.update(activeInstances, tracker.getReleaseCount());
+        CloudCapacityTracker.Snapshot snapshot = tracker.getCurrentSnapshot();
+        assertNotNull(snapshot);
+        return snapshot;
+    }
+
+    @Test
+    public void testReservationsStayWithinTheLimits() {
+        CloudCapacityTracker.Snapshot snapshot = update(Collections.<InstanceSnapshot>emptyList());
+        AbstractSlaveConfiguration slaveConfig1 = createSlaveConfiguration("config-1", 2);
+        AbstractSlaveConfiguration slaveConfig2 = createSlaveConfiguration("config-2", 2);
+
+        assertNotNull(tracker.reserve(cloud, slaveConfig1, snapshot));
+        assertNotNull(tracker.reserve(cloud, slaveConfig1, snapshot));
+        assertNull("The slave configuration is full", tracker.reserve(cloud, slaveConfig1, snapshot));
+
+        CloudCapacityTracker.Reservation reservation = tracker.reserve(cloud, slaveConfig2, snapshot);
+        assertNotNull(reservation);
+        assertNull("The cloud is full", tracker.reserve(cloud, slaveConfig2, snapshot));
+        assertEquals(0, tracker.getAvailableInstances(cloud, snapshot));
+
+        reservation.cancel();
+        reservation.cancel();
+        assertEquals(1, tracker.getAvailableInstances(cloud, snapshot));
+        assertNotNull(tracker.reserve(cloud, slaveConfig2, snapshot));
+    }
+
+    @Test
+    public void testConcurrentReservationsStayWithinTheLimit() throws Exception {
+        when(cloud.getMaxInstances()).thenReturn(50);
+        final CloudCapacityTracker.Snapshot snapshot = update(Collections.<InstanceSnapshot>emptyList());
+        final AbstractSlaveConfiguration slaveConfig = createSlaveConfiguration("config", 100);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    public Integer call() {
+                        int reserved = 0;
+                        for (int j = 0; j < 20; j++) {
+                            if (tracker.reserve(cloud, slaveConfig, snapshot) != null) {
+                                reserved++;
+                            }
+                        }
+                        return reserved;
+                    }
+                }));
+            }
+            int reserved = 0;
+            for (Future<Integer> result : results) {
+                reserved += result.get();
+            }
+            assertEquals(50, reserved);
+            assertEquals(0, tracker.getAvailableInstances(cloud, snapshot));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReleaseMakesTheSnapshotStale() {
+        CloudCapacityTracker.Snapshot snapshot = update(Collections.<InstanceSnapshot>emptyList());
+        ElasticBoxSlave slave = createSlave("slave-1", null);
+        tracker.reserve(cloud, createSlaveConfiguration("config", 2), snapshot).bind(slave);
+        assertEquals(2, tracker.getAvailableInstances(cloud, snapshot));
+
+        tracker.release(slave);
+        assertNull("The released instance is not in the snapshot", tracker.getCurrentSnapshot());
+        assertEquals(3, tracker.getAvailableInstances(cloud, snapshot));
+
+        snapshot = update(Collections.singletonList(createInstance("i-1")));
+        tracker.release(slave);
+        assertNotNull("The slave has no reservation left", tracker.getCurrentSnapshot());
+        assertEquals(2, tracker.getAvailableInstances(cloud, snapshot));
+    }
+
+    @Test
+    public void testSnapshotFetchedBeforeReleaseIsStale() {
+        CloudCapacityTracker.Snapshot snapshot = update(Collections.<InstanceSnapshot>emptyList());
+        ElasticBoxSlave slave = createSlave("slave-1", null);
+        tracker.reserve(cloud, createSlaveConfiguration("config", 2), snapshot).bind(slave);
+
+        // the slave is released while the instances are fetched
+        long releaseCount = tracker.getReleaseCount();
+        tracker.release(slave);
+        tracker.update(Collections.<InstanceSnapshot>emptyList(), releaseCount);
+
+        assertNull(tracker.getCurrentSnapshot());
+    }
+
+    @Test
+    public void testActiveInstanceReleasesTheReservation() {
+        CloudCapacityTracker.Snapshot snapshot = update(Collections.<InstanceSnapshot>emptyList());
+        ElasticBoxSlave slave = createSlave("slave-1", "i-1");
+        ElasticBoxSlave otherSlave = createSlave("slave-2", "i-2");
+        AbstractSlaveConfiguration slaveConfig = createSlaveConfiguration("config", 2);
+        tracker.reserve(cloud, slaveConfig, snapshot).bind(slave);
+        tracker.reserve(cloud, slaveConfig, snapshot).bind(otherSlave);
+
+        snapshot = update(Collections.singletonList(createInstance("i-1")));
+        assertEquals("The instance of the slave is counted once", 1, tracker.getAvailableInstances(cloud, snapshot));
+
+        tracker.release(slave);
+        assertNotNull("The reservation was already released", tracker.getCurrentSnapshot());
+        assertEquals(1, tracker.getAvailableInstances(cloud, snapshot));
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ *
+ *  ElasticBox Confidential
+ *  Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ *  NOTICE:  All information contained herein is, and remains the property
+ *  of ElasticBox. The intellectual and technical concepts contained herein are
+ *  proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ *  and are protected by trade secret or copyright law. Dissemination of this
+ *  information or reproduction of this material is strictly forbidden unless prior
+ *  written permission is obtained from ElasticBox.
+ *
+ */
+
+package com.elasticbox.jenkins;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestDemandForecaster {
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long WEEK = TimeUnit.DAYS.toMillis(7);
+
+    @Test
+    public void testRecentBurstRaisesTheArrivalRate() {
+        DemandForecaster.Demand demand = new DemandForecaster.Demand();
+        long time = 0;
+        for (int minute = 0; minute < 30; minute++) {
+            for (int i = 0; i < 10; i++) {
+                demand.recordArrival(time + minute * MINUTE);
+            }
+        }
+
+        double rate = demand.getExpectedArrivalRate(time + 30 * MINUTE, 0);
+        assertTrue("Rate should approach 10 builds per minute: " + rate, rate > 9.9 && rate <= 10);
+
+        rate = demand.getExpectedArrivalRate(time + 5 * HOUR, 0);
+        assertTrue("Rate should decay without arrivals: " + rate, rate < 0.01);
+    }
+
+    @Test
+    public void testHourOfWeekPatternIsForecast() {
+        DemandForecaster.Demand demand = new DemandForecaster.Demand();
+        long nineAm = 9 * HOUR;
+        for (int week = 0; week < 4; week++) {
+            for (int i = 0; i < 60; i++) {
+                demand.recordArrival(week * WEEK + nineAm + i * MINUTE);
+            }
+        }
+
+        // a week later, at a quarter to nine, the arrivals of nine o'clock are expected after the lead time
+        long beforeNineAm = 4 * WEEK + nineAm - 15 * MINUTE;
+        double rate = demand.getExpectedArrivalRate(beforeNineAm, 15 * MINUTE);
+        assertTrue("Rate should follow the usual arrivals at nine: " + rate, rate > 0.7 && rate < 1);
+        assertEquals(0, demand.getExpectedArrivalRate(beforeNineAm, 0), 0.001);
+    }
+
+    @Test
+    public void testConcurrentBuildsFollowLittlesLaw() {
+        DemandForecaster.Demand demand = new DemandForecaster.Demand();
+        for (int minute = 0; minute < 60; minute++) {
+            demand.recordArrival(minute * MINUTE);
+            demand.recordArrival(minute * MINUTE);
+        }
+        demand.recordBuild(5 * MINUTE);
+
+        assertEquals(10, demand.getExpectedConcurrentBuilds(60 * MINUTE, 0), 0.01);
+
+        demand.recordBuild(10 * MINUTE);
+        assertEquals(6 * MINUTE, demand.getBuildDuration(), 1);
+    }
+
+    @Test
+    public void testHitRate() {
+        DemandForecaster.Demand demand = new DemandForecaster.Demand();
+        demand.recordPrewarmed(true);
+        demand.recordPrewarmed(true);
+        demand.recordPrewarmed(true);
+        demand.recordPrewarmed(false);
+
+        DemandForecaster.Forecast forecast = new DemandForecaster.Forecast("config", 1, MINUTE, 1, 1,
+                demand.getHits(), demand.getMisses());
+        assertEquals(75, forecast.getHitRate());
+        assertEquals(-1, new DemandForecaster.Forecast("config", 1, MINUTE, 1, 1, 0, 0).getHitRate());
+    }
+
+}
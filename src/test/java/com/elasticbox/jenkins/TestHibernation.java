@@ -0,0 +1,126 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import hudson.model.Node;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.powermock.reflect.Whitebox;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class TestHibernation {
+    private final ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(1);
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private static ElasticBoxSlave createSlave(boolean hibernated) {
+        ElasticBoxSlave slave = mock(ElasticBoxSlave.class, Mockito.CALLS_REAL_METHODS);
+        Whitebox.setInternalState(slave, "hibernated", hibernated);
+        return slave;
+    }
+
+    @Test
+    public void testResumeAndTerminationClaimsExcludeEachOther() {
+        ElasticBoxSlave slave = createSlave(true);
+        assertTrue(slave.startResume());
+        assertTrue(slave.isResuming());
+        assertFalse("The slave is already being resumed", slave.startResume());
+        assertFalse("A slave being resumed cannot be terminated", slave.startTermination());
+
+        slave = createSlave(true);
+        assertTrue(slave.startTermination());
+        assertFalse(slave.isResuming());
+        assertFalse("A slave being terminated cannot be resumed", slave.startResume());
+
+        slave = createSlave(false);
+        assertFalse(slave.startResume());
+        assertFalse(slave.startTermination());
+    }
+
+    @Test
+    public void testHibernatedSlavesDoNotCountForMinInstances() {
+        ElasticBoxSlave running = createSlave(false);
+        ElasticBoxSlave hibernated = createSlave(true);
+        ElasticBoxSlave resuming = createSlave(true);
+        resuming.startResume();
+
+        assertEquals(0, ElasticBoxSlaveHandler.countRunningSlaves(null));
+        assertEquals(1, ElasticBoxSlaveHandler.countRunningSlaves(Arrays.asList(running, hibernated)));
+        assertEquals(2, ElasticBoxSlaveHandler.countRunningSlaves(Arrays.asList(running, hibernated, resuming)));
+    }
+
+    @Test
+    public void testResumedSlaveComesOnline() throws Exception {
+        ResumedSlaveWatcher watcher = new ResumedSlaveWatcher(scheduler);
+        ElasticBoxSlave slave = createSlave(true);
+        Future<Node> online = watcher.watch(slave, TimeUnit.MINUTES.toMillis(1));
+        assertFalse(online.isDone());
+
+        watcher.online(createSlave(true));
+        assertFalse("Another slave came online", online.isDone());
+
+        watcher.online(slave);
+        assertSame(slave, online.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testResumedSlaveTimesOut() throws Exception {
+        ResumedSlaveWatcher watcher = new ResumedSlaveWatcher(scheduler);
+        ElasticBoxSlave slave = createSlave(true);
+        Future<Node> online = watcher.watch(slave, 100);
+        try {
+            online.get(10, TimeUnit.SECONDS);
+            fail("The slave did not come online");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("did not come online"));
+        }
+
+        // the slave coming online late doesn't change the outcome of the planned node
+        watcher.online(slave);
+        assertTrue(online.isDone());
+    }
+
+    @Test
+    public void testFailedResume() throws Exception {
+        ResumedSlaveWatcher watcher = new ResumedSlaveWatcher(scheduler);
+        ElasticBoxSlave slave = createSlave(true);
+        Future<Node> online = watcher.watch(slave, 0);
+        watcher.failed(slave, new IOException("Cannot power on"));
+        try {
+            online.get(1, TimeUnit.SECONDS);
+            fail("The slave could not be powered on");
+        } catch (ExecutionException ex) {
+            assertEquals("Cannot power on", ex.getCause().getMessage());
+        }
+    }
+
+}
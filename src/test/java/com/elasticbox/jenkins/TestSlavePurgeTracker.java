@@ -0,0 +1,98 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins;
+
+import com.elasticbox.InstanceSnapshot;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class TestSlavePurgeTracker {
+    private static final long RETRY_INTERVAL = 5 * 60 * 1000;
+    private static final long NOW = 1000 * RETRY_INTERVAL;
+
+    @Test
+    public void testSlaveIsPurgedOnce() {
+        SlavePurgeTracker tracker = new SlavePurgeTracker(RETRY_INTERVAL);
+        ElasticBoxSlave slave = mock(ElasticBoxSlave.class);
+
+        assertTrue(tracker.add(slave));
+        assertFalse("The slave is already being purged", tracker.add(slave));
+        assertEquals(Collections.singleton(slave), tracker.getSlaves());
+
+        assertTrue(tracker.remove(slave));
+        assertTrue(tracker.isEmpty());
+        assertFalse("A removed slave cannot be terminated", tracker.startTermination(slave, NOW));
+    }
+
+    @Test
+    public void testTerminationIsRequestedOnceUntilTheRetryInterval() {
+        SlavePurgeTracker tracker = new SlavePurgeTracker(RETRY_INTERVAL);
+        ElasticBoxSlave slave = mock(ElasticBoxSlave.class);
+        tracker.add(slave);
+
+        assertTrue(tracker.startTermination(slave, NOW));
+        assertFalse("The termination has just been requested", tracker.startTermination(slave, NOW));
+        assertFalse(tracker.startTermination(slave, NOW + RETRY_INTERVAL - 1));
+        assertTrue("The instance is not terminated yet", tracker.startTermination(slave, NOW + RETRY_INTERVAL));
+    }
+
+    @Test
+    public void testFailedTerminationIsRequestedAgain() {
+        SlavePurgeTracker tracker = new SlavePurgeTracker(RETRY_INTERVAL);
+        ElasticBoxSlave slave = mock(ElasticBoxSlave.class);
+        tracker.add(slave);
+
+        assertTrue(tracker.startTermination(slave, NOW));
+        tracker.terminationFailed(slave, NOW);
+        assertTrue("The failed request is made again in the next cycle", tracker.startTermination(slave, NOW + 1));
+
+        // a late failure of an older request doesn't reset the newer one
+        tracker.terminationFailed(slave, NOW);
+        assertFalse(tracker.startTermination(slave, NOW + 2));
+    }
+
+    @Test
+    public void testFailedForceTerminationIsRequestedAgain() {
+        SlavePurgeTracker tracker = new SlavePurgeTracker(RETRY_INTERVAL);
+        ElasticBoxSlave slave = mock(ElasticBoxSlave.class);
+        tracker.add(slave);
+        InstanceSnapshot unavailable = new InstanceSnapshot("i-1", "workspace", InstanceSnapshot.State.UNAVAILABLE,
+                InstanceSnapshot.Operation.DEPLOY, null, "1");
+
+        assertEquals(SlavePurgeTracker.Action.FORCE_TERMINATE, SlavePurgeTracker.getAction(unavailable));
+        assertTrue(tracker.startTermination(slave, NOW));
+        assertFalse(tracker.startTermination(slave, NOW + 1));
+        tracker.terminationFailed(slave, NOW);
+        assertTrue(tracker.startTermination(slave, NOW + 2));
+    }
+
+    @Test
+    public void testActions() {
+        assertEquals(SlavePurgeTracker.Action.WAIT, SlavePurgeTracker.getAction(new InstanceSnapshot("i-1", null,
+                InstanceSnapshot.State.PROCESSING, InstanceSnapshot.Operation.TERMINATE, null, "1")));
+        assertEquals(SlavePurgeTracker.Action.TERMINATE, SlavePurgeTracker.getAction(new InstanceSnapshot("i-1", null,
+                InstanceSnapshot.State.DONE, InstanceSnapshot.Operation.DEPLOY, null, "1")));
+        assertEquals(SlavePurgeTracker.Action.DELETE, SlavePurgeTracker.getAction(new InstanceSnapshot("i-1", null,
+                InstanceSnapshot.State.DONE, InstanceSnapshot.Operation.TERMINATE, null, "1")));
+        assertEquals(SlavePurgeTracker.Action.DELETE, SlavePurgeTracker.getAction(new InstanceSnapshot("i-1", null,
+                InstanceSnapshot.State.DONE, InstanceSnapshot.Operation.TERMINATE_SERVICE, null, "1")));
+    }
+
+}
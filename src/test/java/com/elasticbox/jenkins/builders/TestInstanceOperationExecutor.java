@@ -0,0 +1,116 @@
+/*
+ *
+ *  ElasticBox Confidential
+ *  Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ *  NOTICE:  All information contained herein is, and remains the property
+ *  of ElasticBox. The intellectual and technical concepts contained herein are
+ *  proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ *  and are protected by trade secret or copyright law. Dissemination of this
+ *  information or reproduction of this material is strictly forbidden unless prior
+ *  written permission is obtained from ElasticBox.
+ *
+ */
+
+
+package com.elasticbox.jenkins.builders;
+
+import com.elasticbox.Client;
+import com.elasticbox.IProgressMonitor;
+import com.elasticbox.jenkins.util.TaskLogger;
+import hudson.AbortException;
+import hudson.model.TaskListener;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestInstanceOperationExecutor {
+    private static final String ENDPOINT_URL = "http://localhost";
+
+    private final Client client = new Client(ENDPOINT_URL, "token");
+    private final TaskLogger logger = new TaskLogger(TaskListener.NULL);
+
+    @Test
+    public void testFailFastCancelsTheRunningTasks() throws Exception {
+        final AtomicInteger started = new AtomicInteger();
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        InstanceOperationExecutor executor = new InstanceOperationExecutor("Test", client, logger, 2,
+                InstanceOperationExecutor.ErrorPolicy.FAIL_FAST);
+
+        try {
+            executor.execute(instances(5), new InstanceOperationExecutor.InstanceTask() {
+                public IProgressMonitor perform(JSONObject instance) throws IOException, InterruptedException {
+                    started.incrementAndGet();
+                    if ("0".equals(instance.getString("id"))) {
+                        // let the other task start before failing
+                        running.await();
+                        throw new IOException("Instance 0 failed");
+                    }
+                    running.countDown();
+                    try {
+                        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                    } catch (InterruptedException ex) {
+                        interrupted.countDown();
+                        throw ex;
+                    }
+                    return null;
+                }
+            });
+            fail("The failure of an instance should stop the operation");
+        } catch (IOException ex) {
+            assertEquals("Instance 0 failed", ex.getMessage());
+        }
+
+        assertTrue("The running task should be cancelled", interrupted.await(10, TimeUnit.SECONDS));
+        assertEquals("The instances after the failure should be skipped", 2, started.get());
+    }
+
+    @Test
+    public void testContinueOnErrorReportsAllFailures() throws Exception {
+        InstanceOperationExecutor executor = new InstanceOperationExecutor("Test", client, logger, 2,
+                InstanceOperationExecutor.ErrorPolicy.CONTINUE_ON_ERROR);
+
+        InstanceOperationExecutor.Result result = executor.execute(instances(5),
+                new InstanceOperationExecutor.InstanceTask() {
+                    public IProgressMonitor perform(JSONObject instance) throws IOException {
+                        int id = Integer.parseInt(instance.getString("id"));
+                        if (id % 2 == 1) {
+                            throw new IOException("Instance " + id + " failed");
+                        }
+                        return new IProgressMonitor.DoneMonitor(client.getInstanceUrl(instance.getString("id")));
+                    }
+                });
+
+        assertEquals(3, result.getMonitors().size());
+        assertEquals(2, result.getFailedInstances().size());
+        try {
+            result.checkFailures();
+            fail("The failed instances should fail the operation");
+        } catch (AbortException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("failed for 2 of 5 instances"));
+        }
+    }
+
+    private static JSONArray instances(int count) {
+        JSONArray instances = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            JSONObject instance = new JSONObject();
+            instance.put("id", String.valueOf(i));
+            instance.put("name", "instance-" + i);
+            instance.put("uri", "/services/instances/" + i);
+            instances.add(instance);
+        }
+        return instances;
+    }
+
+}
@@ -0,0 +1,878 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.tests;
+
+import com.elasticbox.Client;
+import com.elasticbox.Constants;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-process simulator of the ElasticBox API used by {@link Client}: workspaces, boxes, box versions and stacks,
+ * instances and their operations, blobs and tokens. It keeps everything in memory, so the plugin can be exercised
+ * under load without a real endpoint and without deploying anything.
+ *
+ * <p>The simulator can delay every response, fail a fraction of the requests or the next requests of a route, and
+ * the instance operations take a configurable time before the instance is done. Every request is counted by route,
+ * a route being the method and the path with the IDs replaced by placeholders, like
+ * <code>GET /services/boxes/{id}/stack</code>. Responses to conditional requests that are not modified are counted
+ * separately, with the route followed by <code>304</code>.
+ *
+ * @see SlaveProvisionScaleTest
+ */
+public class ElasticBoxSimulator {
+    private static final Logger LOGGER = Logger.getLogger(ElasticBoxSimulator.class.getName());
+
+    public static final String TOKEN = "simulator-token";
+    public static final String USER = "simulator@elasticbox.com";
+    public static final String PASSWORD = "simulator";
+    public static final String WORKSPACE = "simulator";
+
+    private static final String BOX_SCHEMA = Constants.BASE_ELASTICBOX_SCHEMA + "boxes/script";
+    private static final String POLICY_SCHEMA = Constants.BASE_ELASTICBOX_SCHEMA + "boxes/policy";
+    private static final String INSTANCE_SCHEMA = Constants.BASE_ELASTICBOX_SCHEMA + "instance";
+    private static final Set<String> OPERATIONS = new HashSet<String>(Arrays.asList(Client.InstanceOperation.POWERON,
+            Client.InstanceOperation.SHUTDOWN, Client.InstanceOperation.REINSTALL,
+            Client.InstanceOperation.RECONFIGURE, Client.InstanceOperation.SNAPSHOT));
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Random random = new Random();
+    private final AtomicLong idSequence = new AtomicLong();
+    private long lastTimestamp;
+
+    private final Map<String, JSONObject> workspaces = new LinkedHashMap<String, JSONObject>();
+    private final Map<String, JSONObject> boxes = new LinkedHashMap<String, JSONObject>();
+    private final Map<String, List<JSONObject>> boxVersions = new ConcurrentHashMap<String, List<JSONObject>>();
+    private final Map<String, SimulatedInstance> instances = new LinkedHashMap<String, SimulatedInstance>();
+    private final Map<String, byte[]> blobs = new ConcurrentHashMap<String, byte[]>();
+    private final Set<String> tokens = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final ConcurrentMap<String, AtomicInteger> requestCounts = new ConcurrentHashMap<String, AtomicInteger>();
+    private final ConcurrentMap<String, InjectedError> injectedErrors = new ConcurrentHashMap<String, InjectedError>();
+
+    private volatile long minLatency;
+    private volatile long maxLatency;
+    private volatile double errorRate;
+    private volatile int errorStatus = 503;
+    private volatile long deployTime = 1000;
+    private volatile long operationTime = 1000;
+    private volatile long terminateTime = 1000;
+    private volatile double deployFailureRate;
+
+    /**
+     * Creates a simulator listening on a free port of the loopback interface, with the workspace {@link #WORKSPACE}
+     * and the token {@link #TOKEN}.
+     *
+     * @param threads number of threads serving the requests
+     */
+    public ElasticBoxSimulator(int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("ElasticBoxSimulator-%d").setDaemon(true).build());
+        server.setExecutor(executor);
+        server.createContext("/services", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                ElasticBoxSimulator.this.handle(exchange);
+            }
+        });
+        tokens.add(TOKEN);
+        addWorkspace(WORKSPACE);
+    }
+
+    public void start() {
+        server.start();
+        LOGGER.info("ElasticBox simulator listening at " + getEndpointUrl());
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getEndpointUrl() {
+        return MessageFormat.format("http://{0}:{1,number,#}", server.getAddress().getHostString(),
+                server.getAddress().getPort());
+    }
+
+    // configuration
+
+    /**
+     * Delays every response by a random time between the specified milliseconds.
+     */
+    public void setLatency(long minLatency, long maxLatency) {
+        this.minLatency = minLatency;
+        this.maxLatency = Math.max(minLatency, maxLatency);
+    }
+
+    /**
+     * Fails the specified fraction of the requests, other than the requests of the tokens, with the status.
+     */
+    public void setErrorRate(double errorRate, int errorStatus) {
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+    }
+
+    /**
+     * Fails the next requests of the route with the status.
+     *
+     * @param route method and path of the requests with placeholders for the IDs, like
+     *              <code>POST /services/instances</code>
+     */
+    public void failNext(String route, int status, int count) {
+        injectedErrors.put(route, new InjectedError(status, count));
+    }
+
+    /**
+     * Sets how many milliseconds the deployments, the other instance operations and the terminations take.
+     */
+    public void setLifecycle(long deployTime, long operationTime, long terminateTime) {
+        this.deployTime = deployTime;
+        this.operationTime = operationTime;
+        this.terminateTime = terminateTime;
+    }
+
+    /**
+     * Makes the specified fraction of the deployments end with the instance unavailable.
+     */
+    public void setDeployFailureRate(double deployFailureRate) {
+        this.deployFailureRate = deployFailureRate;
+    }
+
+    // data
+
+    public synchronized JSONObject addWorkspace(String id) {
+        JSONObject workspace = new JSONObject();
+        workspace.put("id", id);
+        workspace.put("name", id);
+        workspace.put("schema", Constants.BASE_ELASTICBOX_SCHEMA + "workspaces/personal");
+        workspace.put("uri", "/services/workspaces/" + id);
+        workspaces.put(id, workspace);
+        return workspace;
+    }
+
+    /**
+     * Adds a script box owned by {@link #WORKSPACE} with the variables required by the Jenkins slaves.
+     *
+     * @return the ID of the box
+     */
+    public String addSlaveBox(String name) {
+        JSONArray variables = new JSONArray();
+        variables.add(createVariable("JENKINS_URL", "Text", ""));
+        variables.add(createVariable("JNLP_SLAVE_OPTIONS", "Text", ""));
+        return addBox(name, Arrays.asList(Constants.LINUX_CLAIM), variables).getString("id");
+    }
+
+    /**
+     * Adds a script box owned by {@link #WORKSPACE}. Variables of type Box reference other boxes by ID, which become
+     * part of the stack of the box.
+     */
+    public synchronized JSONObject addBox(String name, List<String> requirements, JSONArray variables) {
+        JSONObject box = new JSONObject();
+        box.put("id", nextId("box"));
+        box.put("name", name);
+        box.put("schema", BOX_SCHEMA);
+        box.put("owner", WORKSPACE);
+        box.put("members", new JSONArray());
+        box.put("requirements", requirements);
+        box.put("variables", variables);
+        box.put("events", new JSONObject());
+        return putBox(box);
+    }
+
+    /**
+     * Adds a deployment policy owned by {@link #WORKSPACE}.
+     *
+     * @return the ID of the policy
+     */
+    public synchronized String addPolicy(String name, List<String> claims) {
+        JSONObject policy = new JSONObject();
+        policy.put("id", nextId("policy"));
+        policy.put("name", name);
+        policy.put("schema", POLICY_SCHEMA);
+        policy.put("owner", WORKSPACE);
+        policy.put("members", new JSONArray());
+        policy.put("claims", claims);
+        policy.put("variables", new JSONArray());
+        JSONObject profile = new JSONObject();
+        profile.put("schema", Constants.BASE_ELASTICBOX_SCHEMA + "test/compute/profile");
+        policy.put("profile", profile);
+        return putBox(policy).getString("id");
+    }
+
+    /**
+     * Publishes a version of the box with its current content.
+     *
+     * @return the ID of the box version
+     */
+    public synchronized String addBoxVersion(String boxId, String description) {
+        JSONObject version = JSONObject.fromObject(boxes.get(boxId));
+        version.put("id", nextId("version"));
+        JSONObject versionInfo = new JSONObject();
+        versionInfo.put("box", boxId);
+        versionInfo.put("description", description);
+        List<JSONObject> versions = boxVersions.get(boxId);
+        if (versions == null) {
+            versions = new ArrayList<JSONObject>();
+            boxVersions.put(boxId, versions);
+        }
+        versionInfo.put("number", versions.size() + 1);
+        version.put("version", versionInfo);
+        versions.add(0, version);
+        return putBox(version).getString("id");
+    }
+
+    /**
+     * Returns copies of the instances that haven't been deleted.
+     */
+    public synchronized List<JSONObject> getInstances() {
+        List<JSONObject> instanceList = new ArrayList<JSONObject>(instances.size());
+        long now = System.currentTimeMillis();
+        for (SimulatedInstance instance : instances.values()) {
+            instanceList.add(JSONObject.fromObject(instance.get(now)));
+        }
+        return instanceList;
+    }
+
+    // statistics
+
+    public int getRequestCount(String route) {
+        AtomicInteger count = requestCounts.get(route);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Returns the number of requests by route, sorted by route.
+     */
+    public Map<String, Integer> getRequestCounts() {
+        Map<String, Integer> counts = new TreeMap<String, Integer>();
+        for (Map.Entry<String, AtomicInteger> entry : requestCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    public int getTotalRequestCount() {
+        int total = 0;
+        for (AtomicInteger count : requestCounts.values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    public void resetRequestCounts() {
+        requestCounts.clear();
+    }
+
+    // request handling
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            URI uri = exchange.getRequestURI();
+            String[] segments = StringUtils.split(uri.getPath(), '/');
+            String route = method + ' ' + getRoute(segments);
+            count(route);
+
+            long latency = minLatency + (maxLatency > minLatency
+                    ? (long) (random.nextDouble() * (maxLatency - minLatency)) : 0);
+            if (latency > 0) {
+                Thread.sleep(latency);
+            }
+
+            if (!isTokenRoute(route)) {
+                if (!tokens.contains(String.valueOf(exchange.getRequestHeaders().getFirst("ElasticBox-Token")))) {
+                    sendError(exchange, 401, "Invalid or missing token");
+                    return;
+                }
+                InjectedError injectedError = injectedErrors.get(route);
+                if (injectedError != null && injectedError.remaining.getAndDecrement() > 0) {
+                    sendError(exchange, injectedError.status, "Injected error");
+                    return;
+                }
+                if (errorRate > 0 && random.nextDouble() < errorRate) {
+                    sendError(exchange, errorStatus, "Simulated error");
+                    return;
+                }
+            }
+
+            Response response = dispatch(method, segments, getParameters(uri.getRawQuery()), exchange);
+            if (response == null) {
+                sendError(exchange, 404, MessageFormat.format("{0} {1} not found", method, uri.getPath()));
+            } else if (response.etag != null
+                    && response.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                count(route + " 304");
+                exchange.getResponseHeaders().set("ETag", response.etag);
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                send(exchange, response);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            sendError(exchange, 503, "Simulator is stopping");
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.SEVERE, "Error handling " + exchange.getRequestURI(), ex);
+            sendError(exchange, 500, String.valueOf(ex.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Response dispatch(String method, String[] segments, Map<String, String> parameters,
+                              HttpExchange exchange) throws IOException {
+
+        if (segments.length < 2) {
+            return null;
+        }
+        String resource = segments[1];
+        String id = segments.length > 2 ? segments[2] : null;
+        String subresource = segments.length > 3 ? segments[3] : null;
+        switch (resource) {
+            case "workspaces":
+                if (id == null) {
+                    return "GET".equals(method) ? getWorkspaces()
+                            : "POST".equals(method) ? postWorkspace(readJson(exchange)) : null;
+                }
+                if ("boxes".equals(subresource)) {
+                    return getWorkspaceBoxes(id);
+                } else if ("instances".equals(subresource)) {
+                    return getWorkspaceInstances(id, parameters.get("ids"));
+                } else if ("providers".equals(subresource)) {
+                    return new Response(200, new JSONArray().toString(), null);
+                }
+                return null;
+
+            case "boxes":
+                if (id == null) {
+                    return "POST".equals(method) ? postBox(readJson(exchange)) : null;
+                }
+                if (subresource == null) {
+                    return "GET".equals(method) ? getBox(id) : "PUT".equals(method) ? putBox(id, readJson(exchange))
+                            : null;
+                } else if ("versions".equals(subresource)) {
+                    return getBoxVersions(id);
+                } else if ("stack".equals(subresource)) {
+                    return getBoxStack(id);
+                }
+                return null;
+
+            case "instances":
+                if (id == null) {
+                    return "POST".equals(method) ? deploy(readJson(exchange)) : null;
+                }
+                if (subresource != null) {
+                    return "PUT".equals(method) ? doOperation(id, subresource) : null;
+                }
+                switch (method) {
+                    case "GET":
+                        return getInstance(id);
+                    case "PUT":
+                        return updateInstance(id, readJson(exchange));
+                    case "DELETE":
+                        return deleteInstance(id, parameters.get("operation"));
+                    default:
+                        return null;
+                }
+
+            case "blobs":
+                if ("upload".equals(id) && "POST".equals(method)) {
+                    return uploadBlob(exchange);
+                } else if ("download".equals(id) && subresource != null) {
+                    byte[] blob = blobs.get(subresource);
+                    return blob != null ? new Response(200, new String(blob, StandardCharsets.UTF_8), null) : null;
+                }
+                return null;
+
+            case "tokens":
+                if ("POST".equals(method)) {
+                    String token = newToken();
+                    tokens.add(token);
+                    JSONObject tokenInfo = readJson(exchange);
+                    tokenInfo.put("value", token);
+                    return new Response(200, tokenInfo.toString(), null);
+                }
+                return getTokens();
+
+            case "security":
+                if ("token".equals(id) && "POST".equals(method)) {
+                    JSONObject credentials = readJson(exchange);
+                    if (USER.equals(credentials.optString("email"))
+                            && PASSWORD.equals(credentials.optString("password"))) {
+                        String token = newToken();
+                        tokens.add(token);
+                        return new Response(200, token, null);
+                    }
+                    return new Response(401, errorMessage("Invalid credentials"), null);
+                }
+                return null;
+
+            default:
+                return null;
+        }
+    }
+
+    private synchronized Response getWorkspaces() {
+        return json(JSONArray.fromObject(workspaces.values()), false);
+    }
+
+    private synchronized Response postWorkspace(JSONObject workspace) {
+        return json(addWorkspace(workspace.optString("name", nextId("workspace"))), false);
+    }
+
+    private synchronized Response getWorkspaceBoxes(String workspaceId) {
+        if (!workspaces.containsKey(workspaceId)) {
+            return null;
+        }
+        JSONArray workspaceBoxes = new JSONArray();
+        for (JSONObject box : boxes.values()) {
+            if (!box.containsKey("version") && workspaceId.equals(box.getString("owner"))) {
+                workspaceBoxes.add(box);
+            }
+        }
+        return json(workspaceBoxes, true);
+    }
+
+    private synchronized Response getWorkspaceInstances(String workspaceId, String ids) {
+        if (!workspaces.containsKey(workspaceId)) {
+            return null;
+        }
+        Set<String> instanceIds = ids != null
+                ? new HashSet<String>(Arrays.asList(StringUtils.split(ids, ','))) : null;
+        long now = System.currentTimeMillis();
+        JSONArray workspaceInstances = new JSONArray();
+        for (SimulatedInstance instance : instances.values()) {
+            JSONObject json = instance.get(now);
+            if (workspaceId.equals(json.getString("owner"))
+                    && (instanceIds == null || instanceIds.contains(json.getString("id")))) {
+                workspaceInstances.add(json);
+            }
+        }
+        return json(workspaceInstances, false);
+    }
+
+    private synchronized Response postBox(JSONObject box) {
+        box.put("id", nextId("box"));
+        if (!box.containsKey("owner")) {
+            box.put("owner", WORKSPACE);
+        }
+        if (!box.containsKey("members")) {
+            box.put("members", new JSONArray());
+        }
+        return json(putBox(box), false);
+    }
+
+    private synchronized Response getBox(String boxId) {
+        JSONObject box = boxes.get(boxId);
+        return box != null ? json(box, true) : null;
+    }
+
+    private synchronized Response putBox(String boxId, JSONObject box) {
+        if (!boxes.containsKey(boxId)) {
+            return null;
+        }
+        box.put("id", boxId);
+        return json(putBox(box), false);
+    }
+
+    private synchronized Response getBoxVersions(String boxId) {
+        if (!boxes.containsKey(boxId)) {
+            return null;
+        }
+        List<JSONObject> versions = boxVersions.get(boxId);
+        return json(versions != null ? JSONArray.fromObject(versions) : new JSONArray(), true);
+    }
+
+    private synchronized Response getBoxStack(String boxId) {
+        if (!boxes.containsKey(boxId)) {
+            return null;
+        }
+        return json(JSONArray.fromObject(getStack(boxId)), true);
+    }
+
+    private synchronized Response getInstance(String instanceId) {
+        SimulatedInstance instance = instances.get(instanceId);
+        return instance != null ? json(instance.get(System.currentTimeMillis()), false) : null;
+    }
+
+    private synchronized Response getTokens() {
+        JSONArray tokenList = new JSONArray();
+        for (String token : tokens) {
+            JSONObject tokenInfo = new JSONObject();
+            tokenInfo.put("value", token);
+            tokenList.add(tokenInfo);
+        }
+        return json(tokenList, false);
+    }
+
+    private synchronized Response deploy(JSONObject request) {
+        String boxId = request.getJSONObject("box").getString("id");
+        String policyId = request.getJSONObject("policy_box").getString("id");
+        String workspaceId = request.getString("owner");
+        if (!boxes.containsKey(boxId) || !boxes.containsKey(policyId) || !workspaces.containsKey(workspaceId)) {
+            return new Response(400, errorMessage(MessageFormat.format(
+                    "Invalid deployment request for box {0} with policy {1} in workspace {2}", boxId, policyId,
+                    workspaceId)), null);
+        }
+
+        String timestamp = nextTimestamp();
+        JSONObject instance = new JSONObject();
+        String instanceId = nextId("i");
+        instance.put("id", instanceId);
+        instance.put("name", request.getString("name"));
+        instance.put("schema", INSTANCE_SCHEMA);
+        instance.put("uri", "/services/instances/" + instanceId);
+        instance.put("owner", workspaceId);
+        instance.put("tags", request.optJSONArray("instance_tags") != null
+                ? request.getJSONArray("instance_tags") : new JSONArray());
+        instance.put("variables", request.getJSONObject("box").optJSONArray("variables") != null
+                ? request.getJSONObject("box").getJSONArray("variables") : new JSONArray());
+        instance.put("boxes", JSONArray.fromObject(getStack(boxId)));
+        instance.put("policy_box", request.getJSONObject("policy_box"));
+        instance.put("automatic_updates", request.optString("automatic_updates", Constants.AUTOMATIC_UPDATES_OFF));
+        if (request.containsKey("lease")) {
+            instance.put("lease", request.getJSONObject("lease"));
+        }
+        JSONObject service = new JSONObject();
+        service.put("id", "eb-" + instanceId);
+        service.put("machines", new JSONArray());
+        instance.put("service", service);
+        instance.put("created", timestamp);
+
+        SimulatedInstance simulatedInstance = new SimulatedInstance(instance);
+        simulatedInstance.start(Client.InstanceOperation.DEPLOY, timestamp, deployTime,
+                random.nextDouble() < deployFailureRate ? Client.InstanceState.UNAVAILABLE : Client.InstanceState.DONE);
+        instances.put(instanceId, simulatedInstance);
+        return new Response(201, instance.toString(), null);
+    }
+
+    private synchronized Response updateInstance(String instanceId, JSONObject update) {
+        SimulatedInstance instance = instances.get(instanceId);
+        if (instance == null) {
+            return null;
+        }
+        JSONObject json = instance.get(System.currentTimeMillis());
+        for (String field : Arrays.asList("name", "tags", "variables", "boxes", "automatic_updates", "lease")) {
+            if (update.containsKey(field)) {
+                json.put(field, update.get(field));
+            }
+        }
+        json.put("updated", nextTimestamp());
+        return json(json, false);
+    }
+
+    private synchronized Response doOperation(String instanceId, String operation) {
+        SimulatedInstance instance = instances.get(instanceId);
+        if (instance == null || !OPERATIONS.contains(operation)) {
+            return null;
+        }
+        if (!instance.isFinished(System.currentTimeMillis())) {
+            return new Response(409, errorMessage("Instance is processing another operation"), null);
+        }
+        instance.start(operation, nextTimestamp(), operationTime, Client.InstanceState.DONE);
+        return new Response(202, null, null);
+    }
+
+    private synchronized Response deleteInstance(String instanceId, String operation) {
+        SimulatedInstance instance = instances.get(instanceId);
+        if (instance == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if ("delete".equals(operation)) {
+            if (!instance.isTerminated(now)) {
+                return new Response(409, errorMessage("Instance must be terminated before it is deleted"), null);
+            }
+            instances.remove(instanceId);
+            return new Response(204, null, null);
+        } else if ("terminate".equals(operation) || "force_terminate".equals(operation)) {
+            if ("terminate".equals(operation) && !instance.isFinished(now)) {
+                return new Response(409, errorMessage("Instance is processing another operation"), null);
+            }
+            instance.start(Client.InstanceOperation.TERMINATE, nextTimestamp(), terminateTime,
+                    Client.InstanceState.DONE);
+            return new Response(202, null, null);
+        }
+        return new Response(400, errorMessage("Invalid operation " + operation), null);
+    }
+
+    private Response uploadBlob(HttpExchange exchange) throws IOException {
+        String blobId = nextId("blob");
+        InputStream input = exchange.getRequestBody();
+        try {
+            blobs.put(blobId, IOUtils.toByteArray(input));
+        } finally {
+            input.close();
+        }
+        JSONObject blob = new JSONObject();
+        blob.put("id", blobId);
+        blob.put("url", "/services/blobs/download/" + blobId);
+        return new Response(200, blob.toString(), null);
+    }
+
+    // helpers
+
+    private List<JSONObject> getStack(String boxId) {
+        List<JSONObject> stack = new ArrayList<JSONObject>();
+        addToStack(boxes.get(boxId), stack, new HashSet<String>());
+        return stack;
+    }
+
+    private void addToStack(JSONObject box, List<JSONObject> stack, Set<String> visited) {
+        if (box == null || !visited.add(box.getString("id"))) {
+            return;
+        }
+        stack.add(box);
+        for (Object variable : box.getJSONArray("variables")) {
+            JSONObject variableJson = (JSONObject) variable;
+            if ("Box".equals(variableJson.getString("type"))) {
+                addToStack(boxes.get(variableJson.getString("value")), stack, visited);
+            }
+        }
+    }
+
+    private JSONObject putBox(JSONObject box) {
+        box.put("uri", "/services/boxes/" + box.getString("id"));
+        box.put("updated", nextTimestamp());
+        boxes.put(box.getString("id"), box);
+        return box;
+    }
+
+    private static JSONObject createVariable(String name, String type, String value) {
+        JSONObject variable = new JSONObject();
+        variable.put("name", name);
+        variable.put("type", type);
+        variable.put("value", value);
+        variable.put("required", false);
+        variable.put("visibility", "public");
+        return variable;
+    }
+
+    private String nextId(String prefix) {
+        return prefix + '-' + idSequence.incrementAndGet();
+    }
+
+    private static String newToken() {
+        return java.util.UUID.randomUUID().toString();
+    }
+
+    /**
+     * Returns a timestamp in the format of the API that is later than any other returned timestamp.
+     */
+    private synchronized String nextTimestamp() {
+        long micros = Math.max(System.currentTimeMillis() * 1000, lastTimestamp + 1);
+        lastTimestamp = micros;
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(micros / 1000)) + String.format(".%06d", micros % 1000000);
+    }
+
+    private void count(String route) {
+        AtomicInteger count = requestCounts.get(route);
+        if (count == null) {
+            AtomicInteger newCount = new AtomicInteger();
+            count = requestCounts.putIfAbsent(route, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private static boolean isTokenRoute(String route) {
+        return route.equals("POST /services/security/token");
+    }
+
+    /**
+     * Returns the path with the IDs replaced by placeholders.
+     */
+    private static String getRoute(String[] segments) {
+        StringBuilder route = new StringBuilder();
+        for (int i = 0; i < segments.length; i++) {
+            route.append('/');
+            if (i == 2 && !"blobs".equals(segments[1]) && !"security".equals(segments[1])) {
+                route.append("{id}");
+            } else if (i == 3 && "blobs".equals(segments[1])) {
+                route.append("{id}");
+            } else if (i == 3 && "instances".equals(segments[1])) {
+                route.append("{operation}");
+            } else {
+                route.append(segments[i]);
+            }
+        }
+        return route.toString();
+    }
+
+    private static Map<String, String> getParameters(String query) {
+        Map<String, String> parameters = new LinkedHashMap<String, String>();
+        if (query != null) {
+            for (String parameter : StringUtils.split(query, '&')) {
+                int index = parameter.indexOf('=');
+                if (index > 0) {
+                    parameters.put(parameter.substring(0, index), parameter.substring(index + 1));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static JSONObject readJson(HttpExchange exchange) throws IOException {
+        InputStream input = exchange.getRequestBody();
+        try {
+            String body = IOUtils.toString(input, StandardCharsets.UTF_8);
+            return StringUtils.isBlank(body) ? new JSONObject() : JSONObject.fromObject(body);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static Response json(Object json, boolean withEtag) {
+        String body = json.toString();
+        return new Response(200, body, withEtag ? '"' + Integer.toHexString(body.hashCode()) + '"' : null);
+    }
+
+    private static String errorMessage(String message) {
+        JSONObject error = new JSONObject();
+        error.put("message", message);
+        return error.toString();
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, new Response(status, errorMessage(message), null));
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        if (response.etag != null) {
+            exchange.getResponseHeaders().set("ETag", response.etag);
+        }
+        if (response.body == null) {
+            exchange.sendResponseHeaders(response.status, -1);
+            return;
+        }
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status, body.length);
+        OutputStream output = exchange.getResponseBody();
+        try {
+            output.write(body);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static final class Response {
+        private final int status;
+        private final String body;
+        private final String etag;
+
+        Response(int status, String body, String etag) {
+            this.status = status;
+            this.body = body;
+            this.etag = etag;
+        }
+    }
+
+    private static final class InjectedError {
+        private final int status;
+        private final AtomicInteger remaining;
+
+        InjectedError(int status, int count) {
+            this.status = status;
+            remaining = new AtomicInteger(count);
+        }
+    }
+
+    /**
+     * Instance whose current operation finishes at a given time. The state is updated when the instance is read, so
+     * the simulator doesn't need any thread to drive the lifecycle of the instances.
+     */
+    private final class SimulatedInstance {
+        private final JSONObject json;
+        private long completionTime;
+        private String completionState;
+
+        SimulatedInstance(JSONObject json) {
+            this.json = json;
+        }
+
+        void start(String operation, String timestamp, long duration, String finalState) {
+            JSONObject operationJson = new JSONObject();
+            operationJson.put("event", operation);
+            operationJson.put("workspace", json.getString("owner"));
+            operationJson.put("created", timestamp);
+            json.put("operation", operationJson);
+            json.put("state", Client.InstanceState.PROCESSING);
+            json.put("updated", timestamp);
+            completionTime = System.currentTimeMillis() + duration;
+            completionState = finalState;
+        }
+
+        JSONObject get(long now) {
+            if (completionState != null && now >= completionTime) {
+                json.put("state", completionState);
+                json.put("updated", nextTimestamp());
+                completionState = null;
+            }
+            return json;
+        }
+
+        boolean isFinished(long now) {
+            return !Client.InstanceState.PROCESSING.equals(get(now).getString("state"));
+        }
+
+        boolean isTerminated(long now) {
+            JSONObject instance = get(now);
+            return Client.InstanceState.UNAVAILABLE.equals(instance.getString("state"))
+                    || (Client.InstanceState.DONE.equals(instance.getString("state"))
+                    && Client.InstanceOperation.TERMINATE.equals(
+                            instance.getJSONObject("operation").getString("event")));
+        }
+    }
+
+}
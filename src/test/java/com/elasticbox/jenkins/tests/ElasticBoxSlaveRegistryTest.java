@@ -0,0 +1,87 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.tests;
+
+import com.elasticbox.jenkins.DescriptorHelper;
+import com.elasticbox.jenkins.ElasticBoxCloud;
+import com.elasticbox.jenkins.ElasticBoxSlave;
+import com.elasticbox.jenkins.ElasticBoxSlaveRegistry;
+import com.elasticbox.jenkins.SlaveConfiguration;
+import com.elasticbox.jenkins.model.services.deployment.DeploymentType;
+import hudson.model.Node;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * Checks that the slave registry follows the nodes added to and removed from Jenkins through the computer listener
+ * of the plugin, without being told of the changes.
+ */
+public class ElasticBoxSlaveRegistryTest {
+    private static final String LABEL = "elasticbox-registry-test";
+
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    private ElasticBoxSimulator simulator;
+    private ElasticBoxCloud cloud;
+    private SlaveConfiguration slaveConfig;
+
+    @Before
+    public void setup() throws Exception {
+        simulator = new ElasticBoxSimulator(2);
+        simulator.start();
+        String boxId = simulator.addSlaveBox("Registry Test Slave");
+        String policyId = simulator.addPolicy("Registry Test Policy", Arrays.asList("linux"));
+        slaveConfig = new SlaveConfiguration(UUID.randomUUID().toString(), ElasticBoxSimulator.WORKSPACE, boxId,
+                DescriptorHelper.LATEST_BOX_VERSION, policyId, null, null, null, 0, 2, "registry-test", "[]", LABEL,
+                "Registry test", null, Node.Mode.EXCLUSIVE, 0, null, 1, 60,
+                DeploymentType.SCRIPTBOX_DEPLOYMENT_TYPE.getValue());
+        cloud = new ElasticBoxCloud("elasticbox-registry-test", "ElasticBox Simulator", simulator.getEndpointUrl(), 2,
+                ElasticBoxSimulator.TOKEN, Collections.singletonList(slaveConfig));
+        jenkins.getInstance().clouds.add(cloud);
+    }
+
+    @After
+    public void tearDown() {
+        simulator.stop();
+    }
+
+    @Test
+    public void testRegistryTracksAddedAndRemovedNodes() throws Exception {
+        ElasticBoxSlaveRegistry registry = ElasticBoxSlaveRegistry.getInstance();
+        ElasticBoxSlave slave = new ElasticBoxSlave(slaveConfig, cloud);
+        Assert.assertNull(registry.getSlaveByName(slave.getNodeName()));
+
+        jenkins.getInstance().addNode(slave);
+        Assert.assertSame(slave, registry.getSlaveByName(slave.getNodeName()));
+        Assert.assertEquals(Collections.singletonList(slave), registry.getSlaves(cloud));
+        Assert.assertEquals(Collections.singletonList(slave), registry.getSlavesByConfiguration(slaveConfig.getId()));
+        Assert.assertEquals(Collections.singletonList(slave),
+                registry.getSlaves(jenkins.getInstance().getLabelAtom(LABEL)));
+
+        jenkins.getInstance().removeNode(slave);
+        Assert.assertNull(registry.getSlaveByName(slave.getNodeName()));
+        Assert.assertTrue(registry.getSlaves(cloud).isEmpty());
+        Assert.assertTrue(registry.getSlavesByConfiguration(slaveConfig.getId()).isEmpty());
+    }
+
+}
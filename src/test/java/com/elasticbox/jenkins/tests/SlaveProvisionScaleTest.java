@@ -0,0 +1,199 @@
+/*
+ * ElasticBox Confidential
+ * Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ * NOTICE:  All information contained herein is, and remains the property
+ * of ElasticBox. The intellectual and technical concepts contained herein are
+ * proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ * and are protected by trade secret or copyright law. Dissemination of this
+ * information or reproduction of this material is strictly forbidden unless prior
+ * written permission is obtained from ElasticBox.
+ */
+
+package com.elasticbox.jenkins.tests;
+
+import com.elasticbox.Client;
+import com.elasticbox.jenkins.DescriptorHelper;
+import com.elasticbox.jenkins.ElasticBoxCloud;
+import com.elasticbox.jenkins.ElasticBoxSlave;
+import com.elasticbox.jenkins.SlaveConfiguration;
+import com.elasticbox.jenkins.model.services.deployment.DeploymentType;
+import com.elasticbox.jenkins.util.Condition;
+import hudson.model.FreeStyleProject;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.Queue;
+import hudson.slaves.NodeProvisioner;
+
+import jenkins.model.JenkinsLocationConfiguration;
+import net.sf.json.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Drives a large number of queued builds through {@link ElasticBoxCloud#provision} against the
+ * {@link ElasticBoxSimulator}, so the provisioning and the deployment of the slaves can be measured without a real
+ * ElasticBox endpoint. The slaves never connect, the test covers the plugin up to the deployment of their instances.
+ *
+ * <p>The number of builds, the latency of the simulator and the timeout can be changed with the system properties
+ * <code>elasticbox.jenkins.test.scale.builds</code>, <code>elasticbox.jenkins.test.scale.latency</code> and
+ * <code>elasticbox.jenkins.test.scale.timeout</code>.
+ *
+ * <p>The test is excluded from the regular test run and takes several minutes. Run it on its own with
+ * <code>mvn test -DskipTests=false -Dtest=SlaveProvisionScaleTest</code>.
+ */
+public class SlaveProvisionScaleTest {
+    private static final Logger LOGGER = Logger.getLogger(SlaveProvisionScaleTest.class.getName());
+
+    private static final int BUILDS = Integer.getInteger("elasticbox.jenkins.test.scale.builds", 1000);
+    private static final int LATENCY = Integer.getInteger("elasticbox.jenkins.test.scale.latency", 20);
+    private static final int TIMEOUT_MINUTES = Integer.getInteger("elasticbox.jenkins.test.scale.timeout", 15);
+    private static final String LABEL = "elasticbox-scale-test";
+
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule() {
+        {
+            timeout = (int) TimeUnit.MINUTES.toSeconds(TIMEOUT_MINUTES + 5);
+        }
+    };
+
+    private ElasticBoxSimulator simulator;
+
+    @Before
+    public void setup() throws Exception {
+        simulator = new ElasticBoxSimulator(32);
+        simulator.setLatency(LATENCY / 2, LATENCY * 2);
+        simulator.setLifecycle(2000, 1000, 1000);
+        simulator.start();
+        JenkinsLocationConfiguration.get().setUrl(jenkins.getURL().toString());
+    }
+
+    @After
+    public void tearDown() {
+        simulator.stop();
+    }
+
+    @Test
+    public void testProvisionQueuedBuilds() throws Exception {
+        String boxId = simulator.addSlaveBox("Scale Test Slave");
+        String policyId = simulator.addPolicy("Scale Test Policy", Arrays.asList("linux"));
+        SlaveConfiguration slaveConfig = new SlaveConfiguration(UUID.randomUUID().toString(),
+                ElasticBoxSimulator.WORKSPACE, boxId, DescriptorHelper.LATEST_BOX_VERSION, policyId, null, null, null,
+                0, BUILDS, "scale-test", "[]", LABEL, "Scale test", null, Node.Mode.EXCLUSIVE, 0, null, 1, 60,
+                DeploymentType.SCRIPTBOX_DEPLOYMENT_TYPE.getValue());
+        final ElasticBoxCloud cloud = new ElasticBoxCloud("elasticbox-scale-test", "ElasticBox Simulator",
+                simulator.getEndpointUrl(), BUILDS, ElasticBoxSimulator.TOKEN, Collections.singletonList(slaveConfig));
+        jenkins.getInstance().clouds.add(cloud);
+
+        final Label label = jenkins.getInstance().getLabel(LABEL);
+        for (int i = 0; i < BUILDS; i++) {
+            FreeStyleProject project = jenkins.createFreeStyleProject("scale-test-" + i);
+            project.setAssignedLabel(label);
+            project.scheduleBuild2(0);
+        }
+        new Condition() {
+            @Override
+            public boolean satisfied() {
+                return Queue.getInstance().countBuildableItemsFor(label) >= BUILDS;
+            }
+        }.waitUntilSatisfied(TimeUnit.MINUTES.toSeconds(TIMEOUT_MINUTES));
+
+        // provision until every queued build has a slave, the cloud discounts the slaves that are already pending
+        long provisionStart = System.currentTimeMillis();
+        long deadline = provisionStart + TimeUnit.MINUTES.toMillis(TIMEOUT_MINUTES);
+        List<NodeProvisioner.PlannedNode> plannedNodes = new ArrayList<NodeProvisioner.PlannedNode>();
+        int provisionCalls = 0;
+        while (getSlaves(cloud).size() < BUILDS && System.currentTimeMillis() < deadline) {
+            plannedNodes.addAll(cloud.provision(label, Queue.getInstance().countBuildableItemsFor(label)));
+            provisionCalls++;
+            Thread.sleep(100);
+        }
+        long provisionMillis = System.currentTimeMillis() - provisionStart;
+
+        // wait for the slave handler to deploy the instances of all the slaves
+        new Condition() {
+            @Override
+            public boolean satisfied() {
+                return simulator.getRequestCount("POST /services/instances") >= BUILDS && allInstancesDone();
+            }
+        }.waitUntilSatisfied(TimeUnit.MINUTES.toSeconds(TIMEOUT_MINUTES));
+        long deployMillis = System.currentTimeMillis() - provisionStart;
+
+        List<ElasticBoxSlave> slaves = getSlaves(cloud);
+        List<JSONObject> instances = simulator.getInstances();
+        LOGGER.info(MessageFormat.format("Provisioned {0} slaves for {1} queued builds in {2} ms with {3} calls, "
+                + "deployed {4} instances in {5} ms", slaves.size(), BUILDS, provisionMillis, provisionCalls,
+                instances.size(), deployMillis));
+        StringBuilder requests = new StringBuilder(MessageFormat.format("{0} requests to the simulator:",
+                simulator.getTotalRequestCount()));
+        for (Map.Entry<String, Integer> entry : simulator.getRequestCounts().entrySet()) {
+            requests.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        LOGGER.info(requests.toString());
+
+        for (NodeProvisioner.PlannedNode plannedNode : plannedNodes) {
+            plannedNode.future.cancel(true);
+        }
+
+        // one slave and one instance per queued build, neither more nor less
+        Assert.assertEquals(BUILDS, slaves.size());
+        Assert.assertEquals(BUILDS, simulator.getRequestCount("POST /services/instances"));
+        Assert.assertEquals(BUILDS, instances.size());
+        Set<String> slaveNames = new HashSet<String>();
+        for (ElasticBoxSlave slave : slaves) {
+            slaveNames.add(slave.getNodeName());
+        }
+        Set<String> instanceSlaveNames = new HashSet<String>();
+        for (JSONObject instance : instances) {
+            for (Object tag : instance.getJSONArray("tags")) {
+                if (slaveNames.contains(tag)) {
+                    Assert.assertTrue("Slave " + tag + " has more than one instance",
+                            instanceSlaveNames.add(tag.toString()));
+                }
+            }
+        }
+        Assert.assertEquals(slaveNames, instanceSlaveNames);
+
+        // the box metadata is cached and the deployments don't fetch the box, so the metadata requests don't grow
+        // with the number of slaves
+        Assert.assertTrue(simulator.getRequestCount("GET /services/boxes/{id}") < BUILDS / 10);
+        Assert.assertTrue(simulator.getRequestCount("GET /services/boxes/{id}/stack") < BUILDS / 10);
+    }
+
+    private boolean allInstancesDone() {
+        for (JSONObject instance : simulator.getInstances()) {
+            if (!Client.InstanceState.DONE.equals(instance.getString("state"))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<ElasticBoxSlave> getSlaves(ElasticBoxCloud cloud) throws IOException {
+        List<ElasticBoxSlave> slaves = new ArrayList<ElasticBoxSlave>();
+        for (Node node : jenkins.getInstance().getNodes()) {
+            if (node instanceof ElasticBoxSlave && ((ElasticBoxSlave) node).getCloud() == cloud) {
+                slaves.add((ElasticBoxSlave) node);
+            }
+        }
+        return slaves;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ *
+ *  ElasticBox Confidential
+ *  Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ *  NOTICE:  All information contained herein is, and remains the property
+ *  of ElasticBox. The intellectual and technical concepts contained herein are
+ *  proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ *  and are protected by trade secret or copyright law. Dissemination of this
+ *  information or reproduction of this material is strictly forbidden unless prior
+ *  written permission is obtained from ElasticBox.
+ *
+ */
+
+package com.elasticbox.jenkins.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestBoxMetadataCache {
+
+    @Test
+    public void testFreshResponsesAreNotFetchedAgain() throws Exception {
+        FakeFetcher fetcher = new FakeFetcher(null);
+        BoxMetadataCache cache = new BoxMetadataCache(10, TimeUnit.MINUTES.toMillis(1));
+
+        assertEquals("/boxes/a#1", cache.get("/boxes/a", fetcher));
+        assertEquals("/boxes/a#1", cache.get("/boxes/a", fetcher));
+        assertEquals(1, fetcher.urls.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedResponseIsEvicted() throws Exception {
+        FakeFetcher fetcher = new FakeFetcher(null);
+        BoxMetadataCache cache = new BoxMetadataCache(2, TimeUnit.MINUTES.toMillis(1));
+
+        cache.get("/boxes/a", fetcher);
+        cache.get("/boxes/b", fetcher);
+        cache.get("/boxes/a", fetcher);
+        cache.get("/boxes/c", fetcher);
+        assertEquals(2, cache.size());
+
+        cache.get("/boxes/a", fetcher);
+        assertEquals(3, fetcher.urls.size());
+        cache.get("/boxes/b", fetcher);
+        assertEquals("/boxes/b", fetcher.urls.get(3));
+    }
+
+    @Test
+    public void testStaleResponsesAreRevalidated() throws Exception {
+        FakeFetcher fetcher = new FakeFetcher("\"v1\"");
+        BoxMetadataCache cache = new BoxMetadataCache(10, 1);
+
+        assertEquals("/boxes/a#1", cache.get("/boxes/a", fetcher));
+        assertNull(fetcher.lastCachedResponse);
+        Thread.sleep(5);
+
+        fetcher.notModified = true;
+        assertEquals("/boxes/a#1", cache.get("/boxes/a", fetcher));
+        assertEquals("\"v1\"", fetcher.lastCachedResponse.getEtag());
+        assertEquals(1, cache.getRevalidationCount());
+        Thread.sleep(5);
+
+        fetcher.notModified = false;
+        assertEquals("/boxes/a#3", cache.get("/boxes/a", fetcher));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testResponseFetchedDuringInvalidationIsNotCached() throws Exception {
+        final BoxMetadataCache cache = new BoxMetadataCache(10, TimeUnit.MINUTES.toMillis(1));
+        FakeFetcher fetcher = new FakeFetcher(null) {
+            @Override
+            public BoxMetadataCache.Response fetch(String url, BoxMetadataCache.Response cachedResponse)
+                    throws IOException {
+
+                BoxMetadataCache.Response response = super.fetch(url, cachedResponse);
+                if (urls.size() == 1) {
+                    cache.invalidateAll();
+                }
+                return response;
+            }
+        };
+
+        cache.get("/boxes/a", fetcher);
+        assertEquals(0, cache.size());
+        assertEquals("/boxes/a#2", cache.get("/boxes/a", fetcher));
+        assertEquals(1, cache.size());
+    }
+
+    private static class FakeFetcher implements BoxMetadataCache.Fetcher {
+        final List<String> urls = new ArrayList<String>();
+        final String etag;
+        boolean notModified;
+        BoxMetadataCache.Response lastCachedResponse;
+
+        FakeFetcher(String etag) {
+            this.etag = etag;
+        }
+
+        public BoxMetadataCache.Response fetch(String url, BoxMetadataCache.Response cachedResponse)
+                throws IOException {
+
+            urls.add(url);
+            lastCachedResponse = cachedResponse;
+            if (notModified && cachedResponse != null) {
+                return null;
+            }
+            return new BoxMetadataCache.Response(url + '#' + urls.size(), etag, null);
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ *
+ *  ElasticBox Confidential
+ *  Copyright (c) 2016 All Right Reserved, ElasticBox Inc.
+ *
+ *  NOTICE:  All information contained herein is, and remains the property
+ *  of ElasticBox. The intellectual and technical concepts contained herein are
+ *  proprietary and may be covered by U.S. and Foreign Patents, patents in process,
+ *  and are protected by trade secret or copyright law. Dissemination of this
+ *  information or reproduction of this material is strictly forbidden unless prior
+ *  written permission is obtained from ElasticBox.
+ *
+ */
+
+package com.elasticbox.jenkins.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestInstrumentedThreadPool {
+
+    @Test
+    public void testQueueIsBounded() throws Exception {
+        InstrumentedThreadPool pool = new InstrumentedThreadPool("test", 1, 1, InstrumentedThreadPool.ABORT);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blockingTask = new Runnable() {
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        try {
+            pool.submit(blockingTask);
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            pool.submit(blockingTask);
+            assertEquals(1, pool.getQueueDepth());
+            assertEquals(1, pool.getActiveCount());
+            try {
+                pool.submit(blockingTask);
+                fail("The task should be rejected when the queue is full");
+            } catch (RejectedExecutionException ex) {
+                assertEquals(1, pool.getRejectedCount());
+            }
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(2, pool.getCompletedTaskCount());
+        assertTrue(pool.getMaxLatency() >= pool.getAverageLatency());
+        assertFalse(InstrumentedThreadPool.getPools().contains(pool));
+    }
+
+    @Test
+    public void testCallerRunsWhenQueueIsFull() throws Exception {
+        InstrumentedThreadPool pool = new InstrumentedThreadPool("test", 1, 1, InstrumentedThreadPool.CALLER_RUNS);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blockingTask = new Runnable() {
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+        try {
+            pool.submit(blockingTask);
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            pool.submit(blockingTask);
+            pool.submit(new Runnable() {
+                public void run() {
+                    thread.set(Thread.currentThread());
+                }
+            });
+            assertSame(Thread.currentThread(), thread.get());
+            assertEquals(1, pool.getRejectedCount());
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+}